@@ -0,0 +1,89 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation which defines a column of a {@link Table#materialize materialized} table as an
+ * aggregate of the source rows within each group. All columns of a materialized table which
+ * aren't part of the primary key must have this annotation, and at least one of them must be
+ * a {@link Type#COUNT COUNT}.
+ *
+ * <blockquote><pre>{@code
+ * @PrimaryKey("dept")
+ * public interface DeptStats {
+ *     String dept();
+ *     void dept(String dept);
+ *
+ *     @Aggregate(Aggregate.Type.COUNT)
+ *     long count();
+ *     void count(long count);
+ *
+ *     @Aggregate(value=Aggregate.Type.SUM, column="salary")
+ *     long totalSalary();
+ *     void totalSalary(long total);
+ * }
+ * }</pre></blockquote>
+ *
+ * @author Brian S O'Neill
+ * @see Table#materialize
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Aggregate {
+    /**
+     * The aggregate function to apply.
+     */
+    Type value();
+
+    /**
+     * The source column to aggregate, which is required for all functions except for {@code
+     * COUNT}.
+     */
+    String column() default "";
+
+    /**
+     * Supported aggregate functions.
+     */
+    public static enum Type {
+        /**
+         * Counts the number of rows in the group. The column type must be an int or a long.
+         */
+        COUNT,
+
+        /**
+         * Sums the non-null values of a numerical source column. The column type must be an
+         * int, long, float, double, BigInteger or BigDecimal.
+         */
+        SUM,
+
+        /**
+         * Selects the lowest non-null value of the source column, which must have the same
+         * type as this column.
+         */
+        MIN,
+
+        /**
+         * Selects the highest non-null value of the source column, which must have the same
+         * type as this column.
+         */
+        MAX
+    }
+}
@@ -23,8 +23,8 @@ import java.lang.annotation.*;
  * Annotation which can be applied to the last column of a primary key, indicating that it
  * should be automatically generated when not explicitly provided. The column type can only be
  * a primitive int or long, and they are assigned randomly and sequentially generated
- * values. The effective range is clamped to be within the bounds of the column type, and zero
- * is never generated.
+ * values, unless {@link #sequential sequential} generation is enabled. The effective range
+ * is clamped to be within the bounds of the column type, and zero is never generated.
  *
  * @author Brian S O'Neill
  */
@@ -45,4 +45,14 @@ public @interface Automatic {
      * maximum won't be higher than the maximum int value.
      */
     long max() default Long.MAX_VALUE;
+
+    /**
+     * When true, values are generated in ascending order instead of from random starting
+     * points. Each inserting thread leases a block of values, and so values are only strictly
+     * ascending when generated by one thread. Sequential values cause inserts to go into the
+     * right edge of the table, reducing the number of partially filled nodes. A high-water
+     * mark is persisted for each table, and so values aren't reused after a restart, even if
+     * the rows were deleted. Values which were leased but not used are skipped.
+     */
+    boolean sequential() default false;
 }
@@ -0,0 +1,66 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation which defines a column whose value is computed by an expression over another
+ * column of the same row. Whenever the source column is set, the computed column is set
+ * too, and so the computed value is stored like any other column. A computed column can be
+ * referenced by a {@link SecondaryIndex secondary index}, and queries which filter against
+ * the same expression are rewritten to use the computed column instead, allowing the index
+ * to be selected.
+ *
+ * {@snippet lang="java" :
+ * @PrimaryKey("id")
+ * @SecondaryIndex("emailLower")
+ * public interface User {
+ *     long id();
+ *     void id(long id);
+ *
+ *     String email();
+ *     void email(String email);
+ *
+ *     @Computed("lower(email)")
+ *     String emailLower();
+ *     void emailLower(String emailLower);
+ * }
+ *
+ * // Selects the emailLower index.
+ * var query = table.query("lower(email) == ?");
+ * }
+ *
+ * <p>The expression must refer to exactly one column, which isn't itself computed, and it
+ * cannot call any non-pure functions or have any parameters. A computed column cannot be a
+ * primary key column, and it shouldn't be set directly, because the value is replaced
+ * whenever the source column is set.
+ *
+ * @author Brian S O'Neill
+ * @see Table
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Computed {
+    /**
+     * The expression which computes the column value, using the same syntax as a {@link
+     * Query query} projection. For example: {@code "lower(email)"}.
+     */
+    String value();
+}
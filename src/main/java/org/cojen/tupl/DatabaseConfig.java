@@ -304,6 +304,50 @@ public class DatabaseConfig implements Cloneable {
         return this;
     }
 
+    /**
+     * Set the number of pages which are reserved at a time by each index, to improve the
+     * locality of its nodes. When a node is split or is modified for the first time after a
+     * checkpoint, it's assigned a page from the index's own extent, and so logically adjacent
+     * nodes tend to be physically adjacent too. This can make range scans much faster when
+     * the database file is on a device which is slow at random access. Unused pages are
+     * returned to the free lists by each checkpoint. Default is zero, which disables this
+     * feature.
+     *
+     * @throws IllegalArgumentException if negative
+     */
+    public DatabaseConfig pageExtentSize(int pages) {
+        mLauncher.pageExtentSize(pages);
+        return this;
+    }
+
+    /**
+     * Partition the cache across the NUMA nodes of the machine, such that threads prefer to
+     * allocate nodes from memory which is local to the processor they're running on. This can
+     * reduce memory access latency on large multi-socket machines. This option is only
+     * supported on Linux, and it has no effect when the machine has only one NUMA node or if
+     * the database is fully mapped. Default is false.
+     */
+    public DatabaseConfig numaAware(boolean enabled) {
+        mLauncher.numaAware(enabled);
+        return this;
+    }
+
+    /**
+     * Back the cache with huge pages, which reduces TLB misses when the cache is large. Huge
+     * pages which have been explicitly reserved by the operating system (vm.nr_hugepages) are
+     * used if available, and otherwise transparent huge pages are requested. Only the minimum
+     * cache size is allocated up front, and so huge pages are only fully effective when the
+     * minimum and maximum cache sizes are the same. This option is only supported on Linux,
+     * and it has no effect if the database is fully mapped. Default is false, although
+     * transparent huge pages are still requested for caches which are at least 1GB.
+     *
+     * @see org.cojen.tupl.diag.DatabaseStats#cacheHugePages
+     */
+    public DatabaseConfig hugePages(boolean enabled) {
+        mLauncher.hugePages(enabled);
+        return this;
+    }
+
     /**
      * @deprecated direct page access is always enabled
      */
@@ -317,6 +361,11 @@ public class DatabaseConfig implements Cloneable {
      * process is cleanly shutdown. When opened again, the priming set is applied and the file
      * is deleted. Option has no effect if database is non-durable.
      *
+     * <p>Unlike the priming set written by {@link Database#createCachePrimer}, the special
+     * file records page identifiers instead of keys. Pages are loaded in ascending order
+     * without performing any searches, and so priming speed is mostly limited by the disk
+     * bandwidth.
+     *
      * @see Database#createCachePrimer
      */
     public DatabaseConfig cachePriming(boolean priming) {
@@ -366,6 +415,18 @@ public class DatabaseConfig implements Cloneable {
         return this;
     }
 
+    /**
+     * Specify the maximum number of threads for scanning a table when a new secondary index
+     * is added, to speed up the index backfill. Small tables are always scanned by one thread.
+     * Default is half the number of available processors, leaving the rest for concurrent
+     * operations. If a negative number is provided, the actual number applied is {@code (-num
+     * * availableProcessors)}.
+     */
+    public DatabaseConfig maxBackfillThreads(int num) {
+        mLauncher.maxBackfillThreads(num);
+        return this;
+    }
+
     public DatabaseConfig enableJMX(boolean enable) {
         mLauncher.enableJMX(enable);
         return this;
@@ -422,6 +483,46 @@ public class DatabaseConfig implements Cloneable {
         return this;
     }
 
+    /**
+     * Enable a secondary cache which holds compressed copies of clean pages that were evicted
+     * from the primary cache. Reading a page from the secondary cache requires decompressing
+     * it, which is typically much faster than reading it from the underlying storage. For
+     * compressible data, the secondary cache can hold several times as many pages as the
+     * primary cache can in the same amount of memory. The secondary cache is allocated
+     * off-heap, and it isn't used when the database is fully mapped or non-durable.
+     *
+     * @param size cache size, in bytes; zero disables the secondary cache, which is the
+     * default
+     * @param factory creates new page compressor instances; {@link PageCompressor#lz4
+     * PageCompressor.lz4()} is recommended
+     * @throws IllegalArgumentException if the size is negative, or if the size is positive
+     * and no factory is provided
+     */
+    public DatabaseConfig compressedCacheSize(long size,
+                                              Supplier<? extends PageCompressor> factory)
+    {
+        mLauncher.compressedCacheSize(size, factory);
+        return this;
+    }
+
+    /**
+     * Train a dictionary for compressing pages, which can significantly improve the
+     * compression ratio when the full page size is small. The first pages which are written
+     * are sampled, and then all subsequent pages are compressed using the dictionary. Once
+     * trained, the dictionary is stored permanently, and it's always used for compressing
+     * pages. Dictionaries are supported by the zlib and zstd compressors, but not by lz4. By
+     * default, no dictionary is trained.
+     *
+     * @param bytes maximum dictionary size; 16384 bytes is a good choice, and zero disables
+     * training
+     * @throws IllegalArgumentException if the size is negative
+     * @see #compressPages compressPages
+     */
+    public DatabaseConfig compressionDictionarySize(int bytes) {
+        mLauncher.compressionDictionarySize(bytes);
+        return this;
+    }
+
     /**
      * Provide handlers for recovering custom transactional operations. The name assigned to
      * each handler must be unique and never change.
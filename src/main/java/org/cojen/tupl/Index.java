@@ -20,6 +20,7 @@ package org.cojen.tupl;
 import java.io.Closeable;
 import java.io.IOException;
 
+import org.cojen.tupl.diag.CompactionObserver;
 import org.cojen.tupl.diag.IndexStats;
 import org.cojen.tupl.diag.VerificationObserver;
 
@@ -95,6 +96,28 @@ public interface Index extends View, Closeable {
      */
     public boolean verify(VerificationObserver observer, int numThreads) throws IOException;
 
+    /**
+     * Rewrites the leaf nodes of this index in key order, packing entries into as few nodes as
+     * possible. Over time, random deletes leave nodes partially empty, and splits allocate
+     * nodes wherever free pages are available. Defragmentation restores the node fill factor
+     * and physical ordering, which improves the performance of range scans. A checkpoint is
+     * performed first, and the index remains fully usable while being defragmented. The
+     * rewritten nodes become durable with the next checkpoint.
+     *
+     * <p>Leaf nodes are placed in contiguous pages only when a {@link
+     * DatabaseConfig#pageExtentSize page extent size} is configured. Otherwise, the new pages
+     * are allocated from the free lists in ascending batches.
+     *
+     * <p>The default implementation doesn't support defragmentation, and it does nothing
+     * except return false.
+     *
+     * @param observer optional observer; pass null for default
+     * @return false if defragmentation was aborted or isn't supported
+     */
+    public default boolean defragment(CompactionObserver observer) throws IOException {
+        return false;
+    }
+
     /**
      * Closes this index reference. The underlying index is still valid and can be re-opened,
      * unless it's a {@linkplain Database#newTemporaryIndex temporary} index.
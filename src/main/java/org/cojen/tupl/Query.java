@@ -25,6 +25,7 @@ import org.cojen.tupl.diag.QueryPlan;
 
 import org.cojen.tupl.io.Utils;
 
+import org.cojen.tupl.table.LimitQuery;
 import org.cojen.tupl.table.RowUtils;
 
 import static org.cojen.tupl.table.RowUtils.NO_ARGS;
@@ -123,6 +124,38 @@ public interface Query<R> {
         return newUpdater(row, txn, NO_ARGS);
     }
 
+    /**
+     * Returns a new updater for all the rows of this query, which applies secondary index
+     * changes in batches. Rather than updating each secondary index immediately as each row is
+     * updated or deleted, the changes are collected, sorted by key, and then applied to each
+     * index in key order. This reduces the cost of updating many rows, because the secondary
+     * index writes are no longer random.
+     *
+     * <p>The collected changes are applied whenever the batch gets large, and when the updater
+     * finishes, throws an exception, or is explicitly closed. They're also applied when the
+     * transaction commits or enters a nested scope, and before a query within the transaction
+     * reads from a secondary index. If the transaction scope exits without committing, the
+     * collected changes are discarded. In auto-commit mode, a transaction is created by the
+     * updater, and it's committed whenever the collected changes are applied, and when the
+     * updater finishes, throws an exception, or is explicitly closed. Alternate keys are
+     * always updated immediately, in order for unique constraints to be checked.
+     *
+     * @param txn optional transaction for the updater to use; pass null for auto-commit mode
+     * @param args arguments required by this query
+     * @return a new updater positioned at the first row in the table accepted by the query
+     * @throws IllegalStateException if transaction belongs to another database instance
+     */
+    default Updater<R> newBatchUpdater(Transaction txn, Object... args) throws IOException {
+        return newUpdater(txn, args);
+    }
+
+    /**
+     * @hidden
+     */
+    default Updater<R> newBatchUpdater(Transaction txn) throws IOException {
+        return newBatchUpdater(txn, NO_ARGS);
+    }
+
     /**
      * Returns a new stream for all the rows of this query.
      *
@@ -210,6 +243,18 @@ public interface Query<R> {
         return anyRows(row, txn, NO_ARGS);
     }
 
+    /**
+     * Returns a query which produces at most the given amount of rows. If this query needs to
+     * sort its rows, only the first rows are retained, which is more efficient than sorting
+     * all of them.
+     *
+     * @param limit maximum amount of rows to produce
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    default Query<R> limit(long limit) {
+        return LimitQuery.make(this, limit);
+    }
+
     /**
      * Returns a query plan used by {@link #newScanner(Transaction, Object...) newScanner}.
      *
@@ -41,6 +41,41 @@ public @interface SecondaryIndex {
      */
     String[] value();
 
+    /**
+     * The set of additional columns to store within the secondary index, which don't affect
+     * the natural ordering. A query which only needs the key columns and the included columns
+     * can be satisfied by the secondary index alone, avoiding a join to the primary key for
+     * each row.
+     */
+    String[] include() default {};
+
+    /**
+     * An optional {@link Query query} filter which restricts the set of rows stored within the
+     * secondary index, making it a partial index. Only rows which match the filter have
+     * entries in the index. The filter can refer to any column of the row, and it can contain
+     * literals, but it cannot contain parameters. For example: {@code "status == \"active\""}.
+     *
+     * <p>A partial index is only selected by a query whose filter implies the index filter.
+     * Each term of the index filter must be matched by a term of the query which uses the
+     * same column and operator, and any literal must be equal to the corresponding query
+     * argument.
+     */
+    String filter() default "";
+
+    /**
+     * When true, the secondary index is maintained asynchronously, making it eventually
+     * consistent. Changes to the table are written to a durable queue within the transaction,
+     * and a background task applies them to the secondary index in sorted batches. This
+     * reduces the cost of writing to a table which has many secondary indexes, but queries
+     * which use a deferred index might not observe the most recent changes. Call {@link
+     * Table#awaitIndexes awaitIndexes} to wait for the deferred indexes to catch up.
+     *
+     * <p>Deferred maintenance only applies after the index has been fully built, and it
+     * isn't supported for alternate keys, because unique constraints must be checked
+     * immediately.
+     */
+    boolean deferred() default false;
+
     /**
      * @hidden
      */
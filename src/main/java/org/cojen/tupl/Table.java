@@ -22,6 +22,8 @@ import java.io.IOException;
 
 import java.util.Comparator;
 
+import java.util.concurrent.TimeUnit;
+
 import java.util.function.Predicate;
 
 import java.util.stream.Stream;
@@ -86,8 +88,8 @@ import static org.cojen.tupl.table.RowUtils.NO_ARGS;
  * <p>Scans over the rows of the table can be reduced by a query, described by this syntax:
  *
  * <blockquote><pre>{@code
- * Query        = RowFilter
- *              | Projection [ RowFilter ]
+ * Query        = ( RowFilter | Projection [ RowFilter ] ) [ Slice ]
+ *              | Slice
  * RowFilter    = AndFilter { "||" AndFilter }
  * AndFilter    = EntityFilter { "&&" EntityFilter }
  * EntityFilter = ColumnFilter | ParenFilter
@@ -99,6 +101,9 @@ import static org.cojen.tupl.table.RowUtils.NO_ARGS;
  * Projection   = "{" ProjColumns "}"
  * ProjColumns  = [ ProjColumn { "," ProjColumn } ]
  * ProjColumn   = ( ( ( ( "+" | "-" ) [ "!" ] ) | "~" ) ColumnName ) | "*"
+ * Slice        = "limit" Count [ "offset" Count ]
+ *              | "offset" Count
+ * Count        = uint | ArgRef
  * ColumnName   = string
  * ArgRef       = "?" [ uint ]
  * }</pre></blockquote>
@@ -106,6 +111,10 @@ import static org.cojen.tupl.table.RowUtils.NO_ARGS;
  * Note that a query projection specifies the minimum set of requested columns, but additional
  * ones might be provided if they were needed by the query implementation.
  *
+ * <p>A slice skips over the first {@code offset} rows and then produces at most {@code limit}
+ * rows. When the count is supplied by an argument, a null value implies no limit or no
+ * offset. A slice cannot be applied to a view.
+ *
  * @author Brian S O'Neill
  * @see Database#openTable Database.openTable
  * @see PrimaryKey
@@ -674,6 +683,49 @@ public interface Table<R> extends Closeable {
         return AggregatedTable.aggregate(this, targetType, factory);
     }
 
+    /**
+     * Returns a persistent table consisting of aggregate rows, which are grouped by the {@link
+     * PrimaryKey primary key} of the target type. The primary key columns must exactly
+     * correspond to columns of this source table, and all other target columns must be
+     * defined by {@link Aggregate} annotations. Unlike the {@link #aggregate aggregate}
+     * method, the aggregates are stored in the given index, and they're updated within each
+     * transaction which modifies this table. Queries against the returned table don't need to
+     * examine the source rows.
+     *
+     * <p>The materialization is persisted, and so changes made to this table are tracked
+     * again as soon as it's opened, without needing to call this method. The aggregate rows
+     * are initially built by scanning this table in batches, and this method returns once the
+     * build has finished. If the build fails or is interrupted, calling this method again
+     * resumes it. Calling this method again returns the same table. The returned table must
+     * not be modified directly.
+     *
+     * @param target index which stores the aggregate rows
+     * @throws NullPointerException if any parameter is null
+     * @throws IllegalArgumentException if the target type is malformed or if the target
+     * index is this table's index
+     * @throws IllegalStateException if the target index is already used by a materialized
+     * table of a different type
+     * @throws UnsupportedOperationException if this table doesn't support materialization
+     */
+    public default <T> Table<T> materialize(Index target, Class<T> targetType)
+        throws IOException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Waits for all the changes which were made to this table before this method was called
+     * to be applied to the {@link SecondaryIndex#deferred deferred} secondary indexes. Call
+     * this method before running a query which must observe the most recent changes. If the
+     * table has no deferred indexes, then this method returns immediately.
+     *
+     * @param timeout maximum time to wait; pass -1 for infinite timeout
+     * @return false if timed out
+     */
+    public default boolean awaitIndexes(long timeout, TimeUnit unit) throws IOException {
+        return true;
+    }
+
     /**
      * Returns a view backed by this table, which processes groups of source rows into groups
      * of target rows. The view returned by this method is unmodifiable, closing it has no
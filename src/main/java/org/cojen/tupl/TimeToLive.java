@@ -0,0 +1,66 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl;
+
+import java.lang.annotation.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotation which defines a timestamp column which causes rows to expire. The column type
+ * must be a non-nullable {@code long}, and it holds a time in milliseconds since the epoch,
+ * as returned by {@link System#currentTimeMillis}. A row expires when the amount of time
+ * specified by this annotation has elapsed since the column time, and then it's deleted by a
+ * background task.
+ *
+ * <p>The column must be the first column of a complete (not partial) {@link SecondaryIndex
+ * secondary index}, which is used to find the expired rows in time order. Expired rows are
+ * deleted in small batches, each within a short transaction which doesn't flush the redo
+ * log, and so expiration has little effect on concurrent writes. Queries can still observe
+ * rows which have expired but haven't been deleted yet.
+ *
+ * {@snippet lang="java" :
+ * @PrimaryKey("id")
+ * @SecondaryIndex("created")
+ * public interface Event {
+ *     long id();
+ *     void id(long id);
+ *
+ *     @TimeToLive(value=30, unit=TimeUnit.DAYS)
+ *     long created();
+ *     void created(long created);
+ * }
+ * }
+ *
+ * @author Brian S O'Neill
+ * @see Table
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface TimeToLive {
+    /**
+     * The amount of time that a row lives, which must be positive.
+     */
+    long value();
+
+    /**
+     * The time unit of the {@link #value value}, which is milliseconds by default.
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
@@ -44,6 +44,7 @@ import org.cojen.tupl.diag.IndexStats;
 import org.cojen.tupl.diag.VerificationObserver;
 
 import org.cojen.tupl.util.Runner;
+import org.cojen.tupl.util.WideLatch;
 
 import org.cojen.tupl.views.BoundedView;
 import org.cojen.tupl.views.UnmodifiableView;
@@ -88,6 +89,9 @@ sealed class BTree implements Index {
     // object when the tree root changes.
     final Node mRoot;
 
+    // Optional extent for allocating the pages of nodes, to improve their locality.
+    final PageManager.Extent mExtent;
+
     // Name is null for all internal trees.
     volatile byte[] mName;
 
@@ -97,12 +101,18 @@ sealed class BTree implements Index {
     // be latched exclusively when modifying this list.
     private Node mStubTail;
 
+    // Is set when the most recent store landed at the high extremity of the tree, suggesting
+    // that keys are being appended in ascending order. Is only a hint, and so it's accessed
+    // without any synchronization.
+    boolean mAppendHint;
+
     BTree(LocalDatabase db, long id, byte[] idBytes, Node root) {
         mDatabase = db;
         mLockManager = db.mLockManager;
         mId = id;
         mIdBytes = idBytes;
         mRoot = root;
+        mExtent = db.mPageDb.newExtent();
     }
 
     /**
@@ -236,39 +246,7 @@ sealed class BTree implements Index {
             }
         }
 
-        Node node = mRoot;
-        node.acquireShared();
-
-        // Note: No need to check if root has split, since root splits are always completed
-        // before releasing the root latch. Also, Node.used is not invoked for the root node,
-        // because it cannot be evicted.
-
-        ThreadLocalRandom rnd = ThreadLocalRandom.current();
-
-        while (!node.isLeaf()) {
-            int childPos;
-            try {
-                childPos = Node.internalPos(node.binarySearch(key));
-            } catch (Throwable e) {
-                node.releaseShared();
-                throw e;
-            }
-
-            long childId = node.childId(childPos);
-            Node childNode = mDatabase.nodeMapGetShared(childId);
-
-            if (childNode != null) {
-                node.releaseShared();
-                node = childNode;
-                node.used(rnd);
-            } else {
-                node = node.loadChild(mDatabase, childId, Node.OPTION_PARENT_RELEASE_SHARED);
-            }
-
-            if (node.mSplit != null) {
-                node = node.mSplit.selectNode(node, key);
-            }
-        }
+        Node node = findLeafShared(key);
 
         // Sub search into leaf with shared latch held.
 
@@ -460,39 +438,7 @@ sealed class BTree implements Index {
             }
         }
 
-        Node node = mRoot;
-        node.acquireShared();
-
-        // Note: No need to check if root has split, since root splits are always completed
-        // before releasing the root latch. Also, Node.used is not invoked for the root node,
-        // because it cannot be evicted.
-
-        ThreadLocalRandom rnd = ThreadLocalRandom.current();
-
-        while (!node.isLeaf()) {
-            int childPos;
-            try {
-                childPos = Node.internalPos(node.binarySearch(key));
-            } catch (Throwable e) {
-                node.releaseShared();
-                throw e;
-            }
-
-            long childId = node.childId(childPos);
-            Node childNode = mDatabase.nodeMapGetShared(childId);
-
-            if (childNode != null) {
-                node.releaseShared();
-                node = childNode;
-                node.used(rnd);
-            } else {
-                node = node.loadChild(mDatabase, childId, Node.OPTION_PARENT_RELEASE_SHARED);
-            }
-
-            if (node.mSplit != null) {
-                node = node.mSplit.selectNode(node, key);
-            }
-        }
+        Node node = findLeafShared(key);
 
         // Sub search into leaf with shared latch held.
 
@@ -555,6 +501,144 @@ sealed class BTree implements Index {
         }
     }
 
+    /**
+     * Returns the leaf node which should contain the given key, with a shared latch held.
+     * The internal nodes are first searched optimistically, without latching them, and
+     * latch coupling is used only if the optimistic search fails.
+     */
+    private Node findLeafShared(byte[] key) throws IOException {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+        Node node = tryFindLeafOptimistic(key, rnd);
+
+        if (node != null) {
+            if (node.mSplit != null) {
+                node = node.mSplit.selectNode(node, key);
+            }
+            return node;
+        }
+
+        node = mRoot;
+        node.acquireShared();
+
+        // Note: No need to check if root has split, since root splits are always completed
+        // before releasing the root latch. Also, Node.used is not invoked for the root node,
+        // because it cannot be evicted.
+
+        while (!node.isLeaf()) {
+            int childPos;
+            try {
+                childPos = Node.internalPos(node.binarySearch(key));
+            } catch (Throwable e) {
+                node.releaseShared();
+                throw e;
+            }
+
+            long childId = node.childId(childPos);
+            Node childNode = mDatabase.nodeMapGetShared(childId);
+
+            if (childNode != null) {
+                node.releaseShared();
+                node = childNode;
+                node.used(rnd);
+            } else {
+                node = node.loadChild(mDatabase, childId, Node.OPTION_PARENT_RELEASE_SHARED);
+            }
+
+            if (node.mSplit != null) {
+                node = node.mSplit.selectNode(node, key);
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Descends to the leaf node which should contain the given key, without latching any
+     * internal nodes. Each internal node is read optimistically, and its read stamp is
+     * validated after the child node has been found. This avoids cache line contention on
+     * the upper tree levels, which are shared by all threads.
+     *
+     * @return shared latched leaf node, or null if the optimistic search failed
+     */
+    private Node tryFindLeafOptimistic(byte[] key, ThreadLocalRandom rnd) {
+        LocalDatabase db = mDatabase;
+
+        // Prevents the page memory from being freed by close while it's being read.
+        WideLatch guard = db.mOptimisticLatch;
+        if (!guard.tryAcquireShared()) {
+            return null;
+        }
+
+        Node node = mRoot;
+        int stamp;
+
+        try {
+            stamp = node.tryOptimisticRead();
+
+            while (true) {
+                if (stamp < 0) {
+                    return null;
+                }
+
+                long pageAddr = node.mPageAddr;
+                byte type = p_byteGet(pageAddr, 0);
+
+                if (type < 0) {
+                    // Is a leaf node.
+                    break;
+                }
+
+                if ((type & 0xe0) != 0x60 || node.mSplit != null) {
+                    // Not an internal node, or it's being split.
+                    return null;
+                }
+
+                long childId = node.optimisticChildId(pageAddr, key);
+                if (childId < 0) {
+                    return null;
+                }
+
+                Node childNode = db.nodeMapGet(childId);
+                if (childNode == null) {
+                    // Needs to be loaded, which requires latching.
+                    return null;
+                }
+
+                int childStamp = childNode.tryOptimisticRead();
+
+                if (childNode.id() != childId || !node.validate(stamp)) {
+                    return null;
+                }
+
+                if (node != mRoot) {
+                    node.usedOptimistic(rnd);
+                }
+
+                node = childNode;
+                stamp = childStamp;
+            }
+        } finally {
+            guard.releaseShared();
+        }
+
+        // Latching the leaf doesn't access its page, and so the guard isn't needed. If the
+        // leaf changed in any way after it was found, then validation fails.
+
+        node.acquireShared();
+
+        if (!node.validate(stamp)) {
+            node.releaseShared();
+            return null;
+        }
+
+        if (node != mRoot) {
+            node.used(rnd);
+        }
+
+        return node;
+    }
+
     @Override
     public final void store(Transaction txn, byte[] key, byte[] value) throws IOException {
         keyCheck(key);
@@ -876,6 +960,47 @@ sealed class BTree implements Index {
         }
     }
 
+    @Override
+    public boolean defragment(CompactionObserver observer) throws IOException {
+        if (observer == null) {
+            observer = new CompactionObserver();
+        }
+
+        // Checkpoint first, to ensure that the nodes are clean. Marking them dirty again in
+        // key order allocates their new pages in the same order.
+        mDatabase.checkpoint();
+
+        Index view = observableView();
+
+        try {
+            if (!observer.indexBegin(view)) {
+                return false;
+            }
+        } catch (Throwable e) {
+            uncaught(e);
+            return false;
+        }
+
+        BTreeCursor cursor = newCursor(Transaction.BOGUS);
+        try {
+            cursor.mKeyOnly = true;
+            cursor.firstLeaf();
+
+            if (!cursor.defragment(observer)) {
+                return false;
+            }
+        } finally {
+            cursor.reset();
+        }
+
+        try {
+            return observer.indexComplete(view);
+        } catch (Throwable e) {
+            uncaught(e);
+            return false;
+        }
+    }
+
     @Override
     public final boolean verify(VerificationObserver observer, int numThreads) throws IOException {
         var vo = new VerifyObserver(observer);
@@ -1456,6 +1581,18 @@ sealed class BTree implements Index {
         new Primer(this, din).run();
     }
 
+    final void writePagePrimer(DataOutput dout) throws IOException {
+        PagePrimer.write(this, dout);
+    }
+
+    final void applyPagePrimer(DataInput din) throws IOException {
+        new PagePrimer(this, PagePrimer.read(din)).run();
+    }
+
+    static void skipPagePrimer(DataInput din) throws IOException {
+        PagePrimer.skip(din);
+    }
+
     static void skipCachePrimer(DataInput din) throws IOException {
         while (true) {
             int len = din.readUnsignedShort();
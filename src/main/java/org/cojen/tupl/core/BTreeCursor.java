@@ -2118,12 +2118,14 @@ public class BTreeCursor extends CoreValueAccessor implements Cursor {
                             CursorFrame frame, Node node)
         throws IOException
     {
+        final boolean append = mTree.mAppendHint;
+
         while (true) {
             if (node.isLeaf()) {
                 int pos;
                 if (node.mSplit == null) {
                     try {
-                        pos = node.binarySearch(key);
+                        pos = append ? node.binarySearchAppend(key) : node.binarySearch(key);
                     } catch (Throwable e) {
                         node.releaseShared();
                         throw cleanup(e, frame);
@@ -2155,6 +2157,10 @@ public class BTreeCursor extends CoreValueAccessor implements Cursor {
                     } else {
                         mValue = NOT_LOADED;
                     }
+                    // Only write the shared hint when it changes.
+                    if (node.isAppendPos(pos) != append) {
+                        mTree.mAppendHint = !append;
+                    }
                     return LockResult.UNOWNED;
                 }
 
@@ -2196,7 +2202,8 @@ public class BTreeCursor extends CoreValueAccessor implements Cursor {
             if (split == null) {
                 int childPos;
                 try {
-                    childPos = Node.internalPos(node.binarySearch(key));
+                    int pos = append ? node.binarySearchAppend(key) : node.binarySearch(key);
+                    childPos = Node.internalPos(pos);
                 } catch (Throwable e) {
                     node.releaseShared();
                     throw cleanup(e, frame);
@@ -5024,6 +5031,65 @@ public class BTreeCursor extends CoreValueAccessor implements Cursor {
         }
     }
 
+    /**
+     * Visits all the leaf nodes in key order, marking them dirty and moving entries into the
+     * left sibling nodes when they have room. Nodes which end up underutilized are merged.
+     * Cursor must be positioned at the first leaf, without a loaded key.
+     *
+     * @return false if defragmentation should stop
+     */
+    final boolean defragment(CompactionObserver observer) throws IOException {
+        final CommitLock commitLock = mTree.mDatabase.commitLock();
+
+        while (true) {
+            long id;
+
+            CommitLock.Shared shared = commitLock.acquireShared();
+            try {
+                CursorFrame frame = frameExclusive();
+                Node node = notSplitDirty(frame);
+                id = node.id();
+
+                CursorFrame parentFrame = frame.mParentFrame;
+
+                if (parentFrame != null && node.hasKeys()) {
+                    // Position at the highest entry, which always remains in this node.
+                    frame.mNotFoundKey = null;
+                    frame.mNodePos = node.highestLeafPos();
+
+                    node.tryPackLeafLeft(mTree, parentFrame);
+
+                    if (node.shouldLeafMerge()) {
+                        mergeLeaf(frame, node);
+                        node = null;
+                    }
+                }
+
+                if (node != null) {
+                    node.releaseExclusive();
+                }
+            } finally {
+                shared.release();
+            }
+
+            try {
+                if (!observer.indexNodeVisited(id)) {
+                    return false;
+                }
+            } catch (Throwable e) {
+                uncaught(e);
+                return false;
+            }
+
+            skipToNextLeafNoLoad();
+
+            if (mFrame == null) {
+                // No more nodes to examine.
+                return true;
+            }
+        }
+    }
+
     /**
      * Test method which confirms that the given cursor is positioned exactly the same as this
      * one.
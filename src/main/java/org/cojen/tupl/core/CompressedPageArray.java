@@ -22,43 +22,121 @@ import java.io.OutputStream;
 
 import java.lang.foreign.Arena;
 import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
 
 import java.nio.channels.ClosedChannelException;
 
+import java.util.Arrays;
+
+import java.util.concurrent.ConcurrentHashMap;
+
 import java.util.function.Supplier;
 
 import org.cojen.tupl.Cursor;
+import org.cojen.tupl.DatabaseException;
 import org.cojen.tupl.Index;
 import org.cojen.tupl.Snapshot;
 import org.cojen.tupl.Transaction;
+import org.cojen.tupl.View;
 
 import org.cojen.tupl.io.PageArray;
 import org.cojen.tupl.io.PageCompressor;
 
+import org.cojen.tupl.util.Latch;
 import org.cojen.tupl.util.LocalPool;
+import org.cojen.tupl.util.Runner;
 
 /**
  * PageArray implementation which compresses pages and stores them into another database.
  *
+ * <p>When a dictionary size is provided, the first pages which are written are sampled, and
+ * then a dictionary is trained from them. Pages which are written afterwards are compressed
+ * using the dictionary. Dictionaries are stored in the same index as the pages, after all of
+ * the page keys, and so they're always as durable as the pages which refer to them.
+ *
  * @author Brian S O'Neill
  */
-final class CompressedPageArray extends PageArray implements Supplier<PageCompressor>, Compactable {
+final class CompressedPageArray extends PageArray
+    implements Supplier<PageCompressor>, PageCompressor.Dictionaries, Compactable
+{
+    // Dictionary keys have this prefix, followed by a 4-byte version.
+    private static final byte[] DICTIONARY_PREFIX = {-1, -1, -1, -1, -1, -1};
+
+    // Amount of sample data to gather per byte of dictionary, as recommended by zstd.
+    private static final int SAMPLE_RATIO = 100;
+
     private final LocalDatabase mDatabase;
-    private final Index mPages;
+    private final Index mRegistry;
+    private final View mPages;
     private final Supplier<? extends PageCompressor> mCompressorFactory;
     private final LocalPool<PageCompressor> mCompressors;
 
+    private final int mDictionarySize;
+    private final ConcurrentHashMap<Long, byte[]> mDictionaries;
+    private volatile byte[] mCurrentDictionary;
+    private int mDictionaryVersion;
+
+    private final Latch mSampleLatch;
+    // Is null when not sampling.
+    private byte[] mSamples;
+    private int[] mSampleSizes;
+    private int mSampleCount, mSamplesLength;
+
     /**
      * @param fullPageSize full size of pages when uncompressed
+     * @param dictionarySize maximum size of the dictionary to train; pass 0 to disable
      */
     CompressedPageArray(int fullPageSize, LocalDatabase db, Index pages,
-                        Supplier<? extends PageCompressor> factory)
+                        Supplier<? extends PageCompressor> factory, int dictionarySize)
+        throws IOException
     {
         super(fullPageSize);
         mDatabase = db;
-        mPages = pages;
+        mRegistry = pages;
+        mPages = pages.viewLt(DICTIONARY_PREFIX);
         mCompressorFactory = factory;
         mCompressors = new LocalPool<>(this);
+
+        mDictionarySize = dictionarySize;
+        mDictionaries = new ConcurrentHashMap<>();
+        loadDictionaries();
+
+        mSampleLatch = new Latch();
+
+        if (dictionarySize > 0 && mCurrentDictionary == null && !db.isReadOnly()) {
+            int length = (int) Math.min((long) dictionarySize * SAMPLE_RATIO, 1 << 28);
+            int maxSamples = length / fullPageSize;
+            if (maxSamples > 0) {
+                mSamples = new byte[maxSamples * fullPageSize];
+                mSampleSizes = new int[maxSamples];
+            }
+        }
+    }
+
+    private void loadDictionaries() throws IOException {
+        try (Cursor c = mRegistry.viewPrefix(DICTIONARY_PREFIX, 0).newCursor(Transaction.BOGUS)) {
+            c.first();
+            if (c.key() == null) {
+                return;
+            }
+
+            PageCompressor compressor = mCompressorFactory.get();
+            try {
+                for (; c.key() != null; c.next()) {
+                    byte[] dictionary = c.value();
+                    try {
+                        mDictionaries.put(compressor.dictionaryId(dictionary), dictionary);
+                    } catch (UnsupportedOperationException e) {
+                        throw new DatabaseException
+                            ("Page compressor doesn't support dictionaries: " + compressor);
+                    }
+                    mCurrentDictionary = dictionary;
+                    mDictionaryVersion = Utils.decodeIntBE(c.key(), DICTIONARY_PREFIX.length);
+                }
+            } finally {
+                compressor.close();
+            }
+        }
     }
 
     // Required by Supplier.
@@ -67,7 +145,21 @@ final class CompressedPageArray extends PageArray implements Supplier<PageCompre
         if (isClosed()) {
             throw Utils.rethrow(new ClosedChannelException());
         }
-        return mCompressorFactory.get();
+        PageCompressor compressor = mCompressorFactory.get();
+        compressor.dictionaries(this);
+        return compressor;
+    }
+
+    // Required by PageCompressor.Dictionaries.
+    @Override
+    public byte[] current() {
+        return mCurrentDictionary;
+    }
+
+    // Required by PageCompressor.Dictionaries.
+    @Override
+    public byte[] find(long id) {
+        return mDictionaries.get(id);
     }
 
     public boolean isCacheOnly() {
@@ -166,6 +258,72 @@ final class CompressedPageArray extends PageArray implements Supplier<PageCompre
                 entry.release();
             }
         }
+
+        if (mSamples != null) {
+            sample(srcAddr, offset);
+        }
+    }
+
+    private void sample(long srcAddr, int offset) {
+        // Sampling is optional, so don't wait for the latch.
+        if (!mSampleLatch.tryAcquireExclusive()) {
+            return;
+        }
+
+        try {
+            byte[] samples = mSamples;
+            if (samples == null) {
+                return;
+            }
+
+            int pageSize = pageSize();
+            int length = mSamplesLength;
+            MemorySegment.copy(DirectMemory.ALL, ValueLayout.JAVA_BYTE, srcAddr + offset,
+                               samples, length, pageSize);
+            mSampleSizes[mSampleCount++] = pageSize;
+            mSamplesLength = length += pageSize;
+
+            if (length >= samples.length) {
+                int[] sampleSizes = mSampleSizes;
+                mSamples = null;
+                mSampleSizes = null;
+                Runner.start("CompressedPageArray", () -> train(samples, sampleSizes));
+            }
+        } finally {
+            mSampleLatch.releaseExclusive();
+        }
+    }
+
+    private void train(byte[] samples, int[] sampleSizes) {
+        try {
+            byte[] dictionary;
+            long id;
+
+            PageCompressor compressor = mCompressorFactory.get();
+            try {
+                dictionary = compressor.trainDictionary(samples, sampleSizes, mDictionarySize);
+                if (dictionary == null || dictionary.length == 0) {
+                    return;
+                }
+                id = compressor.dictionaryId(dictionary);
+            } finally {
+                compressor.close();
+            }
+
+            // Store the dictionary before any pages refer to it. It's stored in the same
+            // database as the pages, and so a checkpoint persists them together.
+            int version = ++mDictionaryVersion;
+            byte[] key = Arrays.copyOf(DICTIONARY_PREFIX, DICTIONARY_PREFIX.length + 4);
+            Utils.encodeIntBE(key, DICTIONARY_PREFIX.length, version);
+            mRegistry.store(Transaction.BOGUS, key, dictionary);
+
+            mDictionaries.put(id, dictionary);
+            mCurrentDictionary = dictionary;
+        } catch (Throwable e) {
+            if (!isClosed()) {
+                Utils.uncaught(e);
+            }
+        }
     }
 
     @Override
@@ -231,7 +389,7 @@ final class CompressedPageArray extends PageArray implements Supplier<PageCompre
 
             try (var snapDb = launcher.open(false, null)) {
                 snapArray = new CompressedPageArray
-                    (pageSize(), snapDb, snapDb.registry(), mCompressorFactory);
+                    (pageSize(), snapDb, snapDb.registry(), mCompressorFactory, 0);
                 var snapPageDb = StoredPageDb.open(null, snapArray, null, null, false, 0);
                 redoPos = snapPageDb.snapshotRedoPos();
             }
@@ -0,0 +1,315 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.io.IOException;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+import java.util.function.Supplier;
+
+import org.cojen.tupl.io.PageCompressor;
+
+import org.cojen.tupl.util.Latch;
+
+import static org.cojen.tupl.core.PageOps.*;
+
+/**
+ * Secondary cache tier which holds compressed copies of clean pages that were evicted from
+ * the primary node cache. Pages are stored in off-heap memory, and reading a page from here
+ * avoids a read from the underlying page array.
+ *
+ * <p>The cache is partitioned into segments, each of which is a circular log of compressed
+ * pages. New pages are appended to the log, overwriting the oldest pages. A page is removed
+ * when it's read, since it's then held by the primary cache again, and it's also removed
+ * when the page is written, deleted, or recycled.
+ *
+ * @author Brian S O'Neill
+ */
+final class CompressedPageCache {
+    // Each record is an 8-byte page id, a 4-byte length, and then the compressed page. A page
+    // id of zero indicates that the record is padding.
+    private static final int HEADER_SIZE = 12;
+
+    private final int mPageSize;
+    private final Supplier<? extends PageCompressor> mCompressorFactory;
+    private final Segment[] mSegments;
+    private final int mSegmentShift;
+
+    /**
+     * @param size total cache size, in bytes
+     * @param pageSize uncompressed page size
+     * @param factory creates new page compressor instances
+     */
+    CompressedPageCache(long size, int pageSize, Supplier<? extends PageCompressor> factory) {
+        mPageSize = pageSize;
+        mCompressorFactory = factory;
+
+        // Each segment should hold a reasonable amount of pages.
+        long maxSegments = Math.max(1, size / ((long) pageSize * 64));
+        int numSegments = Utils.roundUpPower2(Runtime.getRuntime().availableProcessors() * 2);
+        while (numSegments > maxSegments) {
+            numSegments >>= 1;
+        }
+        numSegments = Math.max(1, numSegments);
+
+        int capacity = (int) Math.min(Integer.MAX_VALUE, size / numSegments);
+
+        mSegments = new Segment[numSegments];
+        try {
+            for (int i=0; i<numSegments; i++) {
+                mSegments[i] = new Segment(capacity);
+            }
+        } catch (Throwable e) {
+            close();
+            throw e;
+        }
+
+        mSegmentShift = Integer.numberOfLeadingZeros(numSegments - 1);
+    }
+
+    /**
+     * Stores a copy of the given clean page, replacing any existing copy.
+     */
+    void put(long id, long pageAddr) throws IOException {
+        segmentFor(id).put(this, id, pageAddr);
+    }
+
+    /**
+     * Reads and removes a page from the cache.
+     *
+     * @return false if not found
+     */
+    boolean remove(long id, long pageAddr) throws IOException {
+        return segmentFor(id).remove(this, id, pageAddr);
+    }
+
+    /**
+     * Removes a page from the cache, if it exists.
+     */
+    void invalidate(long id) {
+        segmentFor(id).invalidate(id);
+    }
+
+    void addTo(PageDb.Stats stats) {
+        for (Segment segment : mSegments) {
+            segment.addTo(stats);
+        }
+    }
+
+    void close() {
+        for (Segment segment : mSegments) {
+            if (segment != null) {
+                segment.close();
+            }
+        }
+    }
+
+    private Segment segmentFor(long id) {
+        int hash = (int) Utils.scramble(id);
+        return mSegments[mSegmentShift >= 32 ? 0 : (hash >>> mSegmentShift)];
+    }
+
+    private static final class Location extends LHashTable.Entry<Location> {
+        // Absolute log position of the record.
+        long pos;
+    }
+
+    private static final class Locations extends LHashTable<Location> {
+        Locations(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        protected Location newEntry() {
+            return new Location();
+        }
+    }
+
+    private static final class Segment extends Latch {
+        private final int mCapacity;
+        private final Locations mLocations;
+
+        // Is zero when closed.
+        private long mBufferAddr;
+
+        // Absolute positions, which only increase. The buffer offset is the position modulo
+        // the capacity. All the records between the tail and head are in the buffer.
+        private long mHeadPos, mTailPos;
+
+        private PageCompressor mCompressor;
+        private byte[] mScratch;
+
+        private long mHits, mMisses;
+
+        Segment(int capacity) {
+            mCapacity = capacity;
+            mLocations = new Locations(Math.max(16, capacity >> 12));
+            mBufferAddr = DirectMemory.malloc(capacity);
+        }
+
+        void put(CompressedPageCache cache, long id, long pageAddr) throws IOException {
+            acquireExclusive();
+            try {
+                long bufferAddr = mBufferAddr;
+                if (bufferAddr == 0) {
+                    return;
+                }
+
+                PageCompressor compressor = mCompressor;
+                if (compressor == null) {
+                    mCompressor = compressor = cache.mCompressorFactory.get();
+                }
+
+                int pageSize = cache.mPageSize;
+                int len = compressor.compress(pageAddr, 0, pageSize);
+                int recordSize = HEADER_SIZE + len;
+
+                if (len >= pageSize || recordSize > mCapacity) {
+                    // Not worth caching.
+                    mLocations.remove(id);
+                    return;
+                }
+
+                long pos = mHeadPos;
+                int offset = (int) (pos % mCapacity);
+
+                if (offset + recordSize > mCapacity) {
+                    // Pad the end of the buffer and wrap around.
+                    int padding = mCapacity - offset;
+                    evictTo(pos + padding);
+                    if (padding >= HEADER_SIZE) {
+                        p_longPutLE(bufferAddr, offset, 0);
+                        p_intPutLE(bufferAddr, offset + 8, padding - HEADER_SIZE);
+                    }
+                    pos += padding;
+                    offset = 0;
+                }
+
+                evictTo(pos + recordSize);
+
+                p_longPutLE(bufferAddr, offset, id);
+                p_intPutLE(bufferAddr, offset + 8, len);
+                MemorySegment.copy(compressor.compressedBytes(), 0, DirectMemory.ALL,
+                                   ValueLayout.JAVA_BYTE, bufferAddr + offset + HEADER_SIZE, len);
+
+                mHeadPos = pos + recordSize;
+                mLocations.put(id).pos = pos;
+            } finally {
+                releaseExclusive();
+            }
+        }
+
+        /**
+         * Removes the oldest records until the given position can be written. Caller must
+         * hold exclusive latch.
+         */
+        private void evictTo(long endPos) {
+            long tailPos = mTailPos;
+            long limit = endPos - mCapacity;
+
+            while (tailPos < limit) {
+                int offset = (int) (tailPos % mCapacity);
+                int remaining = mCapacity - offset;
+                if (remaining < HEADER_SIZE) {
+                    tailPos += remaining;
+                    continue;
+                }
+                long id = p_longGetLE(mBufferAddr, offset);
+                int len = p_intGetLE(mBufferAddr, offset + 8);
+                if (id != 0) {
+                    Location e = mLocations.get(id);
+                    if (e != null && e.pos == tailPos) {
+                        mLocations.remove(id);
+                    }
+                }
+                tailPos += HEADER_SIZE + len;
+            }
+
+            mTailPos = tailPos;
+        }
+
+        boolean remove(CompressedPageCache cache, long id, long pageAddr) throws IOException {
+            acquireExclusive();
+            try {
+                Location e;
+                if (mBufferAddr == 0 || (e = mLocations.remove(id)) == null) {
+                    mMisses++;
+                    return false;
+                }
+
+                int offset = (int) (e.pos % mCapacity);
+                int len = p_intGetLE(mBufferAddr, offset + 8);
+
+                byte[] scratch = mScratch;
+                if (scratch == null || scratch.length < len) {
+                    mScratch = scratch = new byte[cache.mPageSize];
+                }
+
+                MemorySegment.copy(DirectMemory.ALL, ValueLayout.JAVA_BYTE,
+                                   mBufferAddr + offset + HEADER_SIZE, scratch, 0, len);
+
+                mCompressor.decompress(scratch, 0, len, pageAddr, 0, cache.mPageSize);
+
+                mHits++;
+                return true;
+            } finally {
+                releaseExclusive();
+            }
+        }
+
+        void invalidate(long id) {
+            acquireExclusive();
+            try {
+                mLocations.remove(id);
+            } finally {
+                releaseExclusive();
+            }
+        }
+
+        void addTo(PageDb.Stats stats) {
+            acquireShared();
+            try {
+                stats.compressedCachePages += mLocations.size();
+                stats.compressedCacheHits += mHits;
+                stats.compressedCacheMisses += mMisses;
+            } finally {
+                releaseShared();
+            }
+        }
+
+        void close() {
+            acquireExclusive();
+            try {
+                long bufferAddr = mBufferAddr;
+                if (bufferAddr != 0) {
+                    mBufferAddr = 0;
+                    DirectMemory.free(bufferAddr);
+                    mLocations.clear(0);
+                }
+                if (mCompressor != null) {
+                    mCompressor.close();
+                    mCompressor = null;
+                }
+            } finally {
+                releaseExclusive();
+            }
+        }
+    }
+}
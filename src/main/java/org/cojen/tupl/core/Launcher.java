@@ -83,11 +83,15 @@ public final class Launcher implements Cloneable {
     boolean mFileSync;
     boolean mReadOnly;
     int mPageSize;
+    int mPageExtentSize;
+    boolean mNumaAware;
+    boolean mHugePages;
     boolean mCachePriming;
     boolean mCleanShutdown;
     ReplicatorConfig mReplConfig;
     StreamReplicator mRepl;
     int mMaxReplicaThreads;
+    int mMaxBackfillThreads;
     boolean mEnableJMX;
     Crypto mDataCrypto;
     Crypto mRedoCrypto;
@@ -95,6 +99,9 @@ public final class Launcher implements Cloneable {
     int mCompressorPageSize;
     long mCompressorCacheSize;
     Supplier<? extends PageCompressor> mCompressorFactory;
+    int mCompressorDictionarySize;
+    long mCompressedCacheSize;
+    Supplier<? extends PageCompressor> mCompressedCacheFactory;
     Map<String, CustomHandler> mCustomHandlers;
     Map<String, PrepareHandler> mPrepareHandlers;
     TempFileManager mTempFileManager;
@@ -232,6 +239,21 @@ public final class Launcher implements Cloneable {
         mPageSize = size;
     }
 
+    public void pageExtentSize(int pages) {
+        if (pages < 0) {
+            throw new IllegalArgumentException("Page extent size: " + pages);
+        }
+        mPageExtentSize = pages;
+    }
+
+    public void numaAware(boolean enabled) {
+        mNumaAware = enabled;
+    }
+
+    public void hugePages(boolean enabled) {
+        mHugePages = enabled;
+    }
+
     public void cachePriming(boolean priming) {
         mCachePriming = priming;
     }
@@ -254,6 +276,10 @@ public final class Launcher implements Cloneable {
         mMaxReplicaThreads = num;
     }
 
+    public void maxBackfillThreads(int num) {
+        mMaxBackfillThreads = num;
+    }
+
     public void enableJMX(boolean enable) {
         mEnableJMX = enable;
     }
@@ -275,6 +301,24 @@ public final class Launcher implements Cloneable {
         mCompressorFactory = factory;
     }
 
+    public void compressionDictionarySize(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Illegal dictionary size: " + bytes);
+        }
+        mCompressorDictionarySize = bytes;
+    }
+
+    public void compressedCacheSize(long size, Supplier<? extends PageCompressor> factory) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Illegal cache size: " + size);
+        }
+        if (size > 0 && factory == null) {
+            throw new IllegalArgumentException("No page compressor");
+        }
+        mCompressedCacheSize = size;
+        mCompressedCacheFactory = factory;
+    }
+
     public void customHandlers(Map<String, ? extends CustomHandler> handlers) {
         mCustomHandlers = mapClone(handlers);
     }
@@ -488,6 +532,7 @@ public final class Launcher implements Cloneable {
             subLauncher.replicate((StreamReplicator) null);
             subLauncher.enableJMX(false);
             subLauncher.compressPages(0, 0, null);
+            subLauncher.compressedCacheSize(0, null);
             subLauncher.customHandlers(null);
             subLauncher.prepareHandlers(null);
 
@@ -495,7 +540,8 @@ public final class Launcher implements Cloneable {
             restore = null;
 
             var compressed = new CompressedPageArray
-                (mCompressorPageSize, sub, sub.registry(), mCompressorFactory);
+                (mCompressorPageSize, sub, sub.registry(), mCompressorFactory,
+                 mCompressorDictionarySize);
 
             mPageSize = 0;
             dataPageArray(compressed);
@@ -112,6 +112,7 @@ import org.cojen.tupl.table.RowStore;
 
 import org.cojen.tupl.util.Latch;
 import org.cojen.tupl.util.Runner;
+import org.cojen.tupl.util.WideLatch;
 
 import static org.cojen.tupl.core.Node.*;
 import static org.cojen.tupl.core.PageOps.*;
@@ -131,6 +132,7 @@ public final class LocalDatabase implements Database {
     private static final int MIN_CACHE_NODES = 5;
 
     private static final long PRIMER_MAGIC_NUMBER = 4943712973215968399L;
+    private static final long PAGE_PRIMER_MAGIC_NUMBER = 4943712973215968400L;
 
     private static final String LOCK_FILE_SUFFIX = ".lock";
     static final String PRIMER_FILE_SUFFIX = ".primer";
@@ -198,14 +200,22 @@ public final class LocalDatabase implements Database {
 
     final DurabilityMode mDurabilityMode;
     final long mDefaultLockTimeoutNanos;
+    private final int mMaxBackfillThreads;
     final LockManager mLockManager;
     private final ThreadLocal<SoftReference<LocalTransaction>> mLocalTransaction;
     final RedoWriter mRedoWriter;
     final PageDb mPageDb;
     final int mPageSize;
 
-    private final Object mArena;
+    // Is null if fully mapped, and has one arena per NUMA node if NUMA aware.
+    private final Object[] mArenas;
     private final NodeGroup[] mNodeGroups;
+    // Is null if not NUMA aware.
+    private final Numa mNuma;
+
+    // Is held shared while node pages are read optimistically, without any node latches
+    // held. Is held exclusively (and never released) once node pages are freed by close.
+    final WideLatch mOptimisticLatch = new WideLatch();
 
     private final CommitLock mCommitLock;
 
@@ -412,6 +422,18 @@ public final class LocalDatabase implements Database {
 
         mDurabilityMode = launcher.mDurabilityMode;
         mDefaultLockTimeoutNanos = launcher.mLockTimeoutNanos;
+
+        {
+            int procs = Runtime.getRuntime().availableProcessors();
+            int backfillThreads = launcher.mMaxBackfillThreads;
+            if (backfillThreads == 0) {
+                backfillThreads = Math.max(1, procs >> 1);
+            } else if (backfillThreads < 0) {
+                backfillThreads = -backfillThreads * procs;
+            }
+            mMaxBackfillThreads = backfillThreads;
+        }
+
         mLockManager = new LockManager(this, launcher.mLockUpgradeRule, mDefaultLockTimeoutNanos);
         mLocalTransaction = new ThreadLocal<>();
 
@@ -505,6 +527,13 @@ public final class LocalDatabase implements Database {
 
             mCommitLock = mPageDb.commitLock();
 
+            mPageDb.extentSize(launcher.mPageExtentSize);
+
+            if (!fullyMapped) {
+                mPageDb.compressedCache
+                    (launcher.mCompressedCacheSize, launcher.mCompressedCacheFactory);
+            }
+
             // Actual page size might differ from configured size.
             pageSize = mPageSize = mPageDb.pageSize();
 
@@ -554,25 +583,6 @@ public final class LocalDatabase implements Database {
 
             NodeGroup[] groups;
             try {
-                // Try to allocate the minimum cache size into an arena, which has lower memory
-                // overhead, is page aligned, and takes less time to zero-fill.
-                arenaAlloc: {
-                    // If database is fully mapped, then no cache pages are allocated at all.
-                    // Nodes point directly to a mapped region of memory.
-                    if (mFullyMapped) {
-                        mArena = null;
-                        break arenaAlloc;
-                    }
-
-                    try {
-                        mArena = p_arenaAlloc(mPageDb.directPageSize(), minCache, mEventListener);
-                    } catch (IOException e) {
-                        var oom = new OutOfMemoryError();
-                        oom.initCause(e);
-                        throw oom;
-                    }
-                }
-
                 long usedRate;
                 if (isCacheOnly()) {
                     // Nothing gets evicted, so no need to ever adjust usage order.
@@ -594,6 +604,15 @@ public final class LocalDatabase implements Database {
                     stripes >>= 1;
                 }
 
+                // Group ranges are assigned to NUMA nodes, and so each node needs at least one.
+                Numa numa = null;
+                if (launcher.mNumaAware && !mFullyMapped
+                    && (numa = Numa.topology()) != null && numa.nodeCount() > stripes)
+                {
+                    numa = null;
+                }
+                mNuma = numa;
+
                 int rem = maxCache % stripes;
 
                 groups = new NodeGroup[stripes];
@@ -610,13 +629,61 @@ public final class LocalDatabase implements Database {
                 stripeSize = minCache / stripes;
                 rem = minCache % stripes;
 
-                for (NodeGroup group : groups) {
+                var minSizes = new int[stripes];
+                for (int i=0; i<stripes; i++) {
                     int size = stripeSize;
                     if (rem > 0) {
                         size++;
                         rem--;
                     }
-                    group.initialize(mArena, size);
+                    minSizes[i] = size;
+                }
+
+                // Try to allocate the minimum cache size into arenas, which have lower memory
+                // overhead, are page aligned, and take less time to zero-fill. When NUMA
+                // aware, each NUMA node has its own arena and its own range of node groups.
+                arenaAlloc: {
+                    // If database is fully mapped, then no cache pages are allocated at all.
+                    // Nodes point directly to a mapped region of memory.
+                    if (mFullyMapped) {
+                        mArenas = null;
+                        break arenaAlloc;
+                    }
+
+                    int numArenas = numa == null ? 1 : numa.nodeCount();
+                    mArenas = new Object[numArenas];
+
+                    for (int n=0; n<numArenas; n++) {
+                        long arenaSize = 0;
+                        for (int i = firstGroup(n, stripes); i < firstGroup(n + 1, stripes); i++) {
+                            arenaSize += minSizes[i];
+                        }
+                        if (arenaSize == 0) {
+                            continue;
+                        }
+                        try {
+                            mArenas[n] = p_arenaAlloc
+                                (mPageDb.directPageSize(), arenaSize, launcher.mHugePages,
+                                 numa, n, mEventListener);
+                        } catch (IOException e) {
+                            var oom = new OutOfMemoryError();
+                            oom.initCause(e);
+                            throw oom;
+                        }
+                    }
+
+                    if (numa != null && mEventListener != null) {
+                        mEventListener.notify(EventType.CACHE_INIT_INFO,
+                                              "Cache is partitioned across %1$d NUMA nodes",
+                                              numArenas);
+                    }
+                }
+
+                for (int n = 0, i = 0; i < stripes; i++) {
+                    while (i >= firstGroup(n + 1, stripes)) {
+                        n++;
+                    }
+                    groups[i].initialize(mArenas == null ? null : mArenas[n], minSizes[i]);
                 }
             } catch (OutOfMemoryError e) {
                 groups = null; // help free memory
@@ -769,8 +836,8 @@ public final class LocalDatabase implements Database {
                         boolean trace = debugListener != null &&
                             Boolean.TRUE.equals(launcher.mDebugOpen.get("traceUndo"));
 
-                        // TODO: Can this be done in parallel?
-                        master.recoverTransactions(debugListener, trace, txns);
+                        master.recoverTransactions
+                            (debugListener, trace, txns, launcher.mMaxReplicaThreads);
                     }
                 }
 
@@ -1180,7 +1247,7 @@ public final class LocalDatabase implements Database {
                     var fout = new FileOutputStream(primer);
                     try {
                         try (var bout = new BufferedOutputStream(fout)) {
-                            db.createCachePrimer(bout);
+                            db.createPagePrimer(bout);
                         }
                     } catch (IOException e) {
                         fout.close();
@@ -2453,6 +2520,20 @@ public final class LocalDatabase implements Database {
 
     @Override
     public void createCachePrimer(OutputStream out) throws IOException {
+        createCachePrimer(out, false);
+    }
+
+    /**
+     * Writes a cache primer which records page ids instead of keys. It can only be applied
+     * to this database, but it's applied much more quickly.
+     *
+     * @see PagePrimer
+     */
+    void createPagePrimer(OutputStream out) throws IOException {
+        createCachePrimer(out, true);
+    }
+
+    private void createCachePrimer(OutputStream out, boolean pages) throws IOException {
         final OutputStream original = out;
         out = mPageDb.asStoredPageDb("Cache priming").encrypt(original);
 
@@ -2463,13 +2544,17 @@ public final class LocalDatabase implements Database {
             dout = new DataOutputStream(out);
         }
 
-        dout.writeLong(PRIMER_MAGIC_NUMBER);
+        dout.writeLong(pages ? PAGE_PRIMER_MAGIC_NUMBER : PRIMER_MAGIC_NUMBER);
 
         for (BTreeRef treeRef : mOpenTrees.values()) {
             BTree tree = treeRef.get();
             // TODO: Doesn't work for anonymous indexes. The written name is empty and useless.
             if (tree != null && !BTree.isInternal(tree.id())) {
-                tree.writeCachePrimer(dout);
+                if (pages) {
+                    tree.writePagePrimer(dout);
+                } else {
+                    tree.writeCachePrimer(dout);
+                }
             }
         }
 
@@ -2494,7 +2579,8 @@ public final class LocalDatabase implements Database {
             }
 
             long magic = din.readLong();
-            if (magic != PRIMER_MAGIC_NUMBER) {
+            boolean pages = magic == PAGE_PRIMER_MAGIC_NUMBER;
+            if (!pages && magic != PRIMER_MAGIC_NUMBER) {
                 throw new DatabaseException("Wrong cache primer magic number: " + magic);
             }
 
@@ -2507,7 +2593,13 @@ public final class LocalDatabase implements Database {
                 din.readFully(name);
                 BTree tree = openTree(name, false);
                 if (tree != null) {
-                    tree.applyCachePrimer(din);
+                    if (pages) {
+                        tree.applyPagePrimer(din);
+                    } else {
+                        tree.applyCachePrimer(din);
+                    }
+                } else if (pages) {
+                    BTree.skipPagePrimer(din);
                 } else {
                     BTree.skipCachePrimer(din);
                 }
@@ -2581,6 +2673,7 @@ public final class LocalDatabase implements Database {
             RowStore rs = mRowStore;
             if (rs != null) {
                 cursorCount += countCursors((BTree) rs.schemata(), strict);
+                rs.addStats(stats);
             }
 
             stats.openIndexes = openTreesCount;
@@ -2590,6 +2683,12 @@ public final class LocalDatabase implements Database {
             stats.freePages = pstats.freePages;
             stats.totalPages = pstats.totalPages;
 
+            if (mArenas != null) {
+                for (Object arena : mArenas) {
+                    stats.cacheHugePages += p_arenaHugePages(arena);
+                }
+            }
+
             stats.lockCount = mLockManager.numLocksHeld();
 
             for (TransactionContext txnContext : mTxnContexts) {
@@ -3224,6 +3323,8 @@ public final class LocalDatabase implements Database {
                 lock.acquireExclusive();
             }
             try {
+                mOptimisticLatch.acquireExclusive();
+
                 if (mNodeGroups != null) {
                     for (int i=0; i<mNodeGroups.length; i++) {
                         NodeGroup group = mNodeGroups[i];
@@ -3284,7 +3385,11 @@ public final class LocalDatabase implements Database {
                 mPageDb.delete();
             }
             deleteCommitHeader();
-            p_arenaDelete(mArena);
+            if (mArenas != null) {
+                for (Object arena : mArenas) {
+                    p_arenaDelete(arena);
+                }
+            }
         }
     }
 
@@ -4969,7 +5074,7 @@ public final class LocalDatabase implements Database {
         mode |= mPageDb.allocMode();
 
         NodeGroup[] groups = mNodeGroups;
-        int groupIx = ThreadLocalRandom.current().nextInt() & (groups.length - 1);
+        int groupIx = randomGroup(groups);
         IOException fail = null;
 
         for (int trial = 1; trial <= 3; trial++) {
@@ -5012,6 +5117,33 @@ public final class LocalDatabase implements Database {
         }
     }
 
+    /**
+     * Returns a random node group index, which is local to the current NUMA node when NUMA
+     * aware. Groups are tried in descending order, and so the local groups which are below
+     * the selected one are tried next.
+     */
+    private int randomGroup(NodeGroup[] groups) {
+        int rnd = ThreadLocalRandom.current().nextInt();
+        Numa numa = mNuma;
+        if (numa == null) {
+            return rnd & (groups.length - 1);
+        }
+        int node = numa.currentNode();
+        int start = firstGroup(node, groups.length);
+        return start + ((rnd >>> 1) % (firstGroup(node + 1, groups.length) - start));
+    }
+
+    /**
+     * Returns the index of the first node group which belongs to the given NUMA node. Group i
+     * belongs to node (i * nodeCount / numGroups), and all groups belong to node 0 when not
+     * NUMA aware.
+     */
+    private int firstGroup(int node, int numGroups) {
+        Numa numa = mNuma;
+        int nodeCount = numa == null ? 1 : numa.nodeCount();
+        return (int) (((long) node * numGroups + nodeCount - 1) / nodeCount);
+    }
+
     /**
      * Returns a new or recycled Node instance, latched exclusively, marked dirty, and with the
      * given id. Caller must be certain that the page with the given id can be written to.
@@ -5033,7 +5165,7 @@ public final class LocalDatabase implements Database {
         }
 
         NodeGroup[] groups = mNodeGroups;
-        int groupIx = ThreadLocalRandom.current().nextInt(groups.length);
+        int groupIx = randomGroup(groups);
 
         Node node = groups[groupIx].tryAllocLatchedNode(1, NodeGroup.MODE_NO_EVICT);
 
@@ -5061,7 +5193,18 @@ public final class LocalDatabase implements Database {
      * @param mode MODE_UNEVICTABLE if allocated node cannot be automatically evicted
      */
     Node allocDirtyNode(int mode) throws IOException {
-        Node node = mPageDb.allocLatchedNode(this, mode);
+        return allocDirtyNode(mode, null);
+    }
+
+    /**
+     * Returns a new or recycled Node instance, latched exclusively, marked
+     * dirty and unevictable. Caller must hold commit lock.
+     *
+     * @param mode MODE_UNEVICTABLE if allocated node cannot be automatically evicted
+     * @param tree optional tree which the node belongs to
+     */
+    Node allocDirtyNode(int mode, BTree tree) throws IOException {
+        Node node = mPageDb.allocLatchedNode(this, mode, tree == null ? null : tree.mExtent);
 
         if (mFullyMapped) {
             node.mPageAddr = mPageDb.dirtyPage(node.id());
@@ -5206,7 +5349,7 @@ public final class LocalDatabase implements Database {
             node.write(mPageDb);
         }
 
-        long newId = mPageDb.allocPage();
+        long newId = mPageDb.allocPage(tree.mExtent);
         long oldId = node.id();
 
         try {
@@ -6222,6 +6365,14 @@ public final class LocalDatabase implements Database {
         return mEventListener;
     }
 
+    /**
+     * Returns the maximum number of threads to use for scanning a table during a secondary
+     * index backfill, which is at least one.
+     */
+    public int maxBackfillThreads() {
+        return mMaxBackfillThreads;
+    }
+
     /**
      * Caller must hold mCheckpointLock.
      */
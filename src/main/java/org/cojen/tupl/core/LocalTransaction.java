@@ -19,6 +19,8 @@ package org.cojen.tupl.core;
 
 import java.io.IOException;
 
+import java.util.ArrayList;
+
 import java.util.concurrent.TimeUnit;
 
 import org.cojen.tupl.DatabaseException;
@@ -74,6 +76,9 @@ public final class LocalTransaction extends Locker implements CoreTransaction {
 
     private Object mAttachment;
 
+    // Registered changes which must be applied before the current scope commits.
+    private ArrayList<Deferred> mDeferred;
+
     // Is an exception if transaction is borked, BOGUS if bogus.
     private Object mBorked;
 
@@ -166,6 +171,77 @@ public final class LocalTransaction extends Locker implements CoreTransaction {
         }
     }
 
+    /**
+     * Changes which are made to the transaction lazily, but which must be applied before the
+     * current scope commits. They're not permitted to span scopes, and so they're also
+     * applied before entering a nested scope.
+     */
+    public static interface Deferred {
+        /**
+         * Called before the current scope commits, before entering a nested scope, and by
+         * the applyDeferred method.
+         */
+        void apply(LocalTransaction txn) throws IOException;
+
+        /**
+         * Called when the current scope exits or when the transaction is reset, because all
+         * the changes made by the scope are rolled back.
+         */
+        void discard();
+    }
+
+    /**
+     * Registers deferred changes, which remain registered until explicitly removed.
+     */
+    public final void addDeferred(Deferred deferred) {
+        ArrayList<Deferred> list = mDeferred;
+        if (list == null) {
+            mDeferred = list = new ArrayList<>(1);
+        }
+        list.add(deferred);
+    }
+
+    public final void removeDeferred(Deferred deferred) {
+        ArrayList<Deferred> list = mDeferred;
+        if (list != null && list.remove(deferred) && list.isEmpty()) {
+            mDeferred = null;
+        }
+    }
+
+    /**
+     * Applies all registered deferred changes, such that they're visible to subsequent
+     * operations made by this transaction. If applying fails, the transaction is rolled back.
+     */
+    public final void applyDeferred() throws IOException {
+        ArrayList<Deferred> list = mDeferred;
+        if (list != null) {
+            // Prevent recursion if applying the changes enters a scope.
+            mDeferred = null;
+            Throwable failed = null;
+            try {
+                for (Deferred deferred : list) {
+                    deferred.apply(this);
+                }
+            } catch (Throwable e) {
+                failed = e;
+            }
+            mDeferred = list;
+            if (failed != null) {
+                // Cannot proceed with incomplete changes.
+                borked(failed, true, true); // rollback = true, rethrow = true
+            }
+        }
+    }
+
+    private void discardDeferred() {
+        ArrayList<Deferred> list = mDeferred;
+        if (list != null) {
+            for (Deferred deferred : list) {
+                deferred.discard();
+            }
+        }
+    }
+
     @Override
     public final LockMode lockMode() {
         return mLockMode;
@@ -237,6 +313,8 @@ public final class LocalTransaction extends Locker implements CoreTransaction {
             check(borked);
         }
 
+        applyDeferred();
+
         ParentScope parentScope = mParentScope;
         if (parentScope == null) {
             try {
@@ -566,6 +644,8 @@ public final class LocalTransaction extends Locker implements CoreTransaction {
             check(borked);
         }
 
+        applyDeferred();
+
         try {
             ParentScope parentScope = super.scopeEnter();
             parentScope.mLockMode = mLockMode;
@@ -589,6 +669,8 @@ public final class LocalTransaction extends Locker implements CoreTransaction {
 
     @Override
     public final void exit() {
+        discardDeferred();
+
         if (mBorked != null) {
             super.scopeExit();
             return;
@@ -634,6 +716,8 @@ public final class LocalTransaction extends Locker implements CoreTransaction {
 
     @Override
     public final void reset() {
+        discardDeferred();
+
         if (mBorked == null) {
             try {
                 rollbackAll();
@@ -647,6 +731,8 @@ public final class LocalTransaction extends Locker implements CoreTransaction {
 
     @Override
     public final void reset(Throwable cause) {
+        discardDeferred();
+
         if (cause == null) {
             try {
                 reset();
@@ -672,6 +758,8 @@ public final class LocalTransaction extends Locker implements CoreTransaction {
     }
 
     private void rollbackAll() throws IOException {
+        discardDeferred();
+
         int hasState = mHasState;
         ParentScope parentScope = mParentScope;
         while (parentScope != null) {
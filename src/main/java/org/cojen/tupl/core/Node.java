@@ -420,6 +420,14 @@ final class Node extends Clutch implements DatabaseAccess {
         mGroup.used(this, rnd);
     }
 
+    /**
+     * Variant of the used method which doesn't require that the caller hold a latch on the
+     * node, intended for nodes which were only read optimistically.
+     */
+    void usedOptimistic(ThreadLocalRandom rnd) {
+        mGroup.usedOptimistic(this, rnd);
+    }
+
     /**
      * Indicate that node is least recently used, allowing it to be recycled immediately
      * without evicting another node. Node must be latched by caller, which is always released
@@ -786,6 +794,8 @@ final class Node extends Clutch implements DatabaseAccess {
                         mPageAddr = newPageAddr;
                     }
                     mCachedState = CACHED_CLEAN;
+                } else if (!db.mFullyMapped) {
+                    db.mPageDb.evictCleanPage(id, mPageAddr);
                 }
 
                 db.nodeMapRemove(this, Long.hashCode(id));
@@ -1151,6 +1161,34 @@ final class Node extends Clutch implements DatabaseAccess {
             searchVecEnd() > searchVecStart();
     }
 
+    /**
+     * Returns true if the given leaf position is an insertion position at the high
+     * extremity of the tree, which is where ascending keys are appended. Caller must hold
+     * any latch.
+     *
+     * @param pos 2-based insertion pos, as provided by binarySearch
+     */
+    boolean isAppendPos(int pos) {
+        return pos < 0 && ~pos > highestLeafPos() && (type() & HIGH_EXTREMITY) != 0;
+    }
+
+    /**
+     * Variant of binarySearch which first checks if the key is higher than all the keys in
+     * this node, if it's at the high extremity of the tree. When keys are being appended in
+     * ascending order, only one key comparison is required per level.
+     *
+     * @return 2-based insertion pos, which is negative if key isn't found
+     */
+    int binarySearchAppend(byte[] key) throws IOException {
+        if ((type() & HIGH_EXTREMITY) != 0) {
+            int highPos = highestKeyPos();
+            if (highPos >= 0 && compareKey(highPos, key) < 0) {
+                return ~(highPos + 2);
+            }
+        }
+        return binarySearch(key);
+    }
+
     /**
      * @return 2-based insertion pos, which is negative if key isn't found
      */
@@ -1250,6 +1288,104 @@ final class Node extends Clutch implements DatabaseAccess {
         return ~(lowPos - startPos);
     }
 
+    /**
+     * Performs a binary search against an internal node without any latch held, returning
+     * the identifier of the child node to descend into. Every offset is checked against the
+     * page bounds, since the page contents might be changing. The result must be validated
+     * against the node's optimistic read stamp.
+     *
+     * @param pageAddr the node's page, which was read optimistically
+     * @return child node id, or -1 if the search cannot be performed optimistically, which
+     * is also the case when a fragmented key is encountered
+     */
+    long optimisticChildId(final long pageAddr, byte[] key) {
+        if (isClosedOrDeleted(pageAddr) || pageAddr == p_stubTreePage()) {
+            return -1;
+        }
+
+        final int pageSize = pageSize();
+        final int keyLen = key.length;
+        final int startPos = p_ushortGetLE(pageAddr, 8);
+        final int endPos = p_ushortGetLE(pageAddr, 10);
+
+        // The child ids follow the search vector, and there's one more child than keys.
+        if (startPos < TN_HEADER_SIZE || ((startPos | endPos) & 1) != 0
+            || endPos < startPos - 2
+            || endPos + 2 + ((endPos - startPos + 2L) << 2) + 8 > pageSize)
+        {
+            return -1;
+        }
+
+        int lowPos = startPos;
+        int highPos = endPos;
+
+        outer: while (lowPos <= highPos) {
+            int midPos = ((lowPos + highPos) >> 1) & ~1;
+
+            int compareLoc = p_ushortGetLE(pageAddr, midPos);
+            if (compareLoc < TN_HEADER_SIZE || compareLoc + 2 > pageSize) {
+                return -1;
+            }
+
+            int compareLen = p_byteGet(pageAddr, compareLoc++);
+            if (compareLen >= 0) {
+                compareLen++;
+            } else {
+                if ((compareLen & ENTRY_FRAGMENTED) != 0) {
+                    return -1;
+                }
+                compareLen = ((compareLen & 0x3f) << 8) | p_ubyteGet(pageAddr, compareLoc++);
+            }
+
+            if (compareLoc + compareLen > pageSize) {
+                return -1;
+            }
+
+            int minLen = Math.min(compareLen, keyLen);
+            int minLen8 = minLen & ~7;
+            int i = 0;
+
+            for (; i < minLen8; i += 8) {
+                long cv = p_longGetBE(pageAddr, compareLoc + i);
+                long kv = Utils.decodeLongBE(key, i);
+                int cmp = Long.compareUnsigned(cv, kv);
+                if (cmp != 0) {
+                    if (cmp < 0) {
+                        lowPos = midPos + 2;
+                    } else {
+                        highPos = midPos - 2;
+                    }
+                    continue outer;
+                }
+            }
+
+            for (; i < minLen; i++) {
+                byte cb = p_byteGet(pageAddr, compareLoc + i);
+                byte kb = key[i];
+                if (cb != kb) {
+                    if ((cb & 0xff) < (kb & 0xff)) {
+                        lowPos = midPos + 2;
+                    } else {
+                        highPos = midPos - 2;
+                    }
+                    continue outer;
+                }
+            }
+
+            if (compareLen < keyLen) {
+                lowPos = midPos + 2;
+            } else if (compareLen > keyLen) {
+                highPos = midPos - 2;
+            } else {
+                // Same as internalPos for a found key.
+                lowPos = midPos + 2;
+                break;
+            }
+        }
+
+        return childIdByOffset(pageAddr, endPos + 2 + ((lowPos - startPos) << 2));
+    }
+
     /**
      * @param midPos 2-based starting position
      * @return 2-based insertion pos, which is negative if key isn't found
@@ -2474,9 +2610,39 @@ final class Node extends Clutch implements DatabaseAccess {
             return 0;
         }
 
+        final Node left = tryLatchLeftSibling(parentFrame);
+        if (left == null) {
+            return 0;
+        }
+
+        final int lastPos = lastSearchVecLoc - searchVecStart();
+
+        if (!moveLeafEntriesLeft(tree, parentFrame, left, lastSearchVecLoc, moveAmount)) {
+            return 0;
+        }
+
+        // Expand search vector for inserted entry and write pointer to the re-used slot.
+        garbage(garbage() - insertLen);
+        pos -= lastPos;
+        int searchVecStart = searchVecStart();
+        p_copy(rightPageAddr, searchVecStart, rightPageAddr, searchVecStart -= 2, pos);
+        searchVecStart(searchVecStart);
+        p_shortPutLE(rightPageAddr, searchVecStart + pos, insertLoc);
+        return insertLoc;
+    }
+
+    /**
+     * Attempts to latch the parent and the left sibling of this node without waiting, avoiding
+     * deadlocks. Caller must hold exclusive latch on this node.
+     *
+     * @param parentFrame required
+     * @return exclusively latched left sibling, with the parent node latched exclusively too,
+     * or null if try failed
+     */
+    private Node tryLatchLeftSibling(CursorFrame parentFrame) {
         final Node parent = parentFrame.tryAcquireExclusive();
         if (parent == null) {
-            return 0;
+            return null;
         }
 
         final int childPos = parentFrame.mNodePos;
@@ -2486,25 +2652,45 @@ final class Node extends Clutch implements DatabaseAccess {
         {
             // No left child or sanity checks failed.
             parent.releaseExclusive();
-            return 0;
+            return null;
         }
 
         final Node left;
         try {
             left = parent.tryLatchChildNotSplit(childPos - 2);
         } catch (IOException e) {
-            return 0;
+            return null;
         }
 
         if (left == null) {
             parent.releaseExclusive();
-            return 0;
         }
 
+        return left;
+    }
+
+    /**
+     * Moves the lowest entries of this node into the left sibling node, and then updates the
+     * parent search key. The parent and left sibling latches are always released by this
+     * method, and the latch on this node is retained.
+     *
+     * @param parentFrame required, latched exclusively
+     * @param left left sibling, latched exclusively
+     * @param lastSearchVecLoc exclusive search vector location of the last entry to move
+     * @param moveAmount total encoded length of the entries to move, including search vector
+     * @return false if the left node or parent node doesn't have enough room
+     */
+    private boolean moveLeafEntriesLeft(BTree tree, CursorFrame parentFrame, Node left,
+                                        int lastSearchVecLoc, int moveAmount)
+    {
         // Notice that try-finally pattern is not used to release the latches. An uncaught
         // exception can only be caused by a bug. Leaving the latches held prevents database
         // corruption from being persisted.
 
+        final Node parent = parentFrame.mNode;
+        final int childPos = parentFrame.mNodePos;
+        final long rightPageAddr = mPageAddr;
+
         final byte[] newKey;
         final int newKeyLen;
         final long parentPageAddr;
@@ -2538,7 +2724,7 @@ final class Node extends Clutch implements DatabaseAccess {
             }
             left.releaseExclusive();
             parent.releaseExclusive();
-            return 0;
+            return false;
         }
 
         try {
@@ -2548,7 +2734,7 @@ final class Node extends Clutch implements DatabaseAccess {
         } catch (IOException e) {
             left.releaseExclusive();
             parent.releaseExclusive();
-            return 0;
+            return false;
         }
 
         // Update the parent key.
@@ -2607,14 +2793,55 @@ final class Node extends Clutch implements DatabaseAccess {
         left.releaseExclusive();
         parent.releaseExclusive();
 
-        // Expand search vector for inserted entry and write pointer to the re-used slot.
-        garbage(garbage() - insertLen);
-        pos -= lastPos;
-        int searchVecStart = searchVecStart();
-        p_copy(rightPageAddr, searchVecStart, rightPageAddr, searchVecStart -= 2, pos);
-        searchVecStart(searchVecStart);
-        p_shortPutLE(rightPageAddr, searchVecStart + pos, insertLoc);
-        return insertLoc;
+        return true;
+    }
+
+    /**
+     * Moves as many entries as possible from this node into the left sibling node, but
+     * always leaving at least one behind. Latches are acquired without waiting, and so the
+     * move might not be performed at all. Caller must hold exclusive latch on this node and
+     * it must be dirty. Latch is retained by this method.
+     *
+     * @param tree required
+     * @param parentFrame required
+     * @return amount of entries moved
+     */
+    int tryPackLeafLeft(BTree tree, CursorFrame parentFrame) {
+        if (mSplit != null || numKeys() <= 1) {
+            return 0;
+        }
+
+        final Node left = tryLatchLeftSibling(parentFrame);
+        if (left == null) {
+            return 0;
+        }
+
+        final long pageAddr = mPageAddr;
+        final int leftAvail = left.availableLeafBytes();
+
+        int moveAmount = 0;
+        int searchVecLoc = searchVecStart();
+        final int searchVecEnd = searchVecEnd();
+
+        // Note that loop doesn't examine last entry. At least one must remain.
+        for (; searchVecLoc < searchVecEnd; searchVecLoc += 2) {
+            int entryLoc = p_ushortGetLE(pageAddr, searchVecLoc);
+            int amount = leafEntryLengthAtLoc(pageAddr, entryLoc) + 2;
+            if (moveAmount + amount > leftAvail) {
+                break;
+            }
+            moveAmount += amount;
+        }
+
+        final int count = (searchVecLoc - searchVecStart()) >> 1;
+
+        if (count == 0) {
+            left.releaseExclusive();
+            parentFrame.mNode.releaseExclusive();
+            return 0;
+        }
+
+        return moveLeafEntriesLeft(tree, parentFrame, left, searchVecLoc, moveAmount) ? count : 0;
     }
 
     /**
@@ -4600,7 +4827,7 @@ final class Node extends Clutch implements DatabaseAccess {
         long pageAddr = mPageAddr;
         checkClosedIndexException(pageAddr);
 
-        Node newNode = tree.mDatabase.allocDirtyNode(NodeGroup.MODE_UNEVICTABLE);
+        Node newNode = tree.mDatabase.allocDirtyNode(NodeGroup.MODE_UNEVICTABLE, tree);
         tree.mDatabase.nodeMapPut(newNode);
 
         long newPageAddr = newNode.mPageAddr;
@@ -4662,7 +4889,7 @@ final class Node extends Clutch implements DatabaseAccess {
         long pageAddr = mPageAddr;
         checkClosedIndexException(pageAddr);
 
-        Node newNode = tree.mDatabase.allocDirtyNode(NodeGroup.MODE_UNEVICTABLE);
+        Node newNode = tree.mDatabase.allocDirtyNode(NodeGroup.MODE_UNEVICTABLE, tree);
         tree.mDatabase.nodeMapPut(newNode);
 
         long newPageAddr = newNode.mPageAddr;
@@ -5244,6 +5471,13 @@ final class Node extends Clutch implements DatabaseAccess {
         // +2: right
         int splitSide = (keyPos < (searchVecEnd - searchVecStart - keyPos)) ? -1 : 1;
 
+        // When inserting into the right edge of the highest node, keys are likely being
+        // appended in ascending order. Only the new entry goes into the new right node, and
+        // so this node remains full. Splitting in the middle would leave a trail of nodes
+        // which are never filled.
+        final boolean append = keyLoc == searchVecEnd + 2
+            && (searchVecEnd - searchVecStart) >= 4 && (type() & HIGH_EXTREMITY) != 0;
+
         Split split = null;
         doSplit: while (true) {
             garbageAccum = 0;
@@ -5409,7 +5643,7 @@ final class Node extends Clutch implements DatabaseAccess {
 
                     boolean full = size < TN_HEADER_SIZE || newSize > pageSize();
 
-                    if (full || newSize >= size) {
+                    if (full || newSize >= size || append) {
                         // New node has accumulated enough entries...
 
                         if (newKeyLoc != 0) {
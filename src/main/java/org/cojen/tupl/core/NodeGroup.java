@@ -293,6 +293,22 @@ final class NodeGroup extends Clutch.Pack implements Checkpointer.DirtySet {
         }
     }
 
+    /**
+     * Variant of the used method which latches the node only when the usage list is
+     * actually updated.
+     */
+    void usedOptimistic(final Node node, final ThreadLocalRandom rnd) {
+        if ((rnd.nextLong() & mUsedRate) == 0 && node.tryAcquireShared()) {
+            try {
+                if (tryAcquireExclusive()) {
+                    doUsed(node);
+                }
+            } finally {
+                node.releaseShared();
+            }
+        }
+    }
+
     private void doUsed(final Node node) {
         Node moreUsed = node.mMoreUsed;
         if (moreUsed != null) {
@@ -35,6 +35,8 @@ import org.cojen.tupl.DatabaseFullException;
 
 import org.cojen.tupl.ext.Crypto;
 
+import org.cojen.tupl.io.PageCompressor;
+
 /**
  * PageDb implementation which doesn't actually store anything into a file or page array.
  *
@@ -97,7 +99,9 @@ final class NonPageDb extends PageDb {
     }
 
     @Override
-    public Node allocLatchedNode(LocalDatabase db, int mode) throws IOException {
+    public Node allocLatchedNode(LocalDatabase db, int mode, PageManager.Extent extent)
+        throws IOException
+    {
         Node node = db.allocLatchedNode(mode);
         long nodeId = node.id();
         if (nodeId < 0) {
@@ -137,6 +141,27 @@ final class NonPageDb extends PageDb {
         // Ignored.
     }
 
+    @Override
+    public void extentSize(int pages) {
+        // Ignored.
+    }
+
+    @Override
+    public void compressedCache(long size, Supplier<? extends PageCompressor> factory) {
+        // Ignored.
+    }
+
+    @Override
+    public void evictCleanPage(long id, long pageAddr) {
+        // Ignored.
+    }
+
+    @Override
+    public PageManager.Extent newExtent() {
+        // Pages aren't stored, and so locality doesn't matter.
+        return null;
+    }
+
     @Override
     public Stats stats() {
         var stats = new Stats();
@@ -167,6 +192,11 @@ final class NonPageDb extends PageDb {
         return id;
     }
 
+    @Override
+    public long allocPage(PageManager.Extent extent) throws IOException {
+        return allocPage();
+    }
+
     @Override
     public void writePage(long id, long pageAddr) throws IOException {
         fail(true);
@@ -0,0 +1,220 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.io.IOException;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+
+import java.lang.invoke.MethodHandle;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+
+/**
+ * Describes the NUMA topology of the machine, and supports binding memory to NUMA nodes.
+ * Only Linux is supported.
+ *
+ * @author Brian S O'Neill
+ */
+final class Numa {
+    private static final MethodHandle sched_getcpu, syscall;
+    private static final long SYS_MBIND;
+
+    private static final int MPOL_PREFERRED = 1;
+
+    static {
+        MethodHandle getcpu = null, sys = null;
+        long mbind = 0;
+
+        if (System.getProperty("os.name").startsWith("Linux")) {
+            try {
+                Linker linker = Linker.nativeLinker();
+                SymbolLookup lookup = linker.defaultLookup();
+
+                getcpu = linker.downcallHandle
+                    (lookup.find("sched_getcpu").get(),
+                     FunctionDescriptor.of(ValueLayout.JAVA_INT));
+
+                mbind = switch (System.getProperty("os.arch")) {
+                    case "amd64", "x86_64" -> 237;
+                    case "aarch64" -> 235;
+                    default -> 0;
+                };
+
+                if (mbind != 0) {
+                    // All of the variadic arguments are passed as longs, which is what the
+                    // kernel expects to find in the registers.
+                    sys = linker.downcallHandle
+                        (lookup.find("syscall").get(),
+                         FunctionDescriptor.of
+                         (ValueLayout.JAVA_LONG,
+                          ValueLayout.JAVA_LONG,  // number
+                          ValueLayout.JAVA_LONG,  // addr
+                          ValueLayout.JAVA_LONG,  // len
+                          ValueLayout.JAVA_LONG,  // mode
+                          ValueLayout.JAVA_LONG,  // nodemask
+                          ValueLayout.JAVA_LONG,  // maxnode
+                          ValueLayout.JAVA_LONG), // flags
+                         Linker.Option.firstVariadicArg(1)
+                         );
+                }
+            } catch (Throwable e) {
+                getcpu = null;
+                sys = null;
+            }
+        }
+
+        sched_getcpu = getcpu;
+        syscall = sys;
+        SYS_MBIND = mbind;
+    }
+
+    /**
+     * Returns the NUMA topology of the machine, or null if unknown or if the machine only
+     * has one NUMA node.
+     */
+    static Numa topology() {
+        if (sched_getcpu == null) {
+            return null;
+        }
+
+        try {
+            Path base = Path.of("/sys/devices/system/node");
+            int[] nodes = parseList(Files.readString(base.resolve("online")));
+            if (nodes.length <= 1) {
+                return null;
+            }
+
+            var cpuToNode = new int[Runtime.getRuntime().availableProcessors()];
+            for (int i=0; i<nodes.length; i++) {
+                Path cpuList = base.resolve("node" + nodes[i]).resolve("cpulist");
+                for (int cpu : parseList(Files.readString(cpuList))) {
+                    if (cpu >= cpuToNode.length) {
+                        cpuToNode = Arrays.copyOf(cpuToNode, cpu + 1);
+                    }
+                    cpuToNode[cpu] = i;
+                }
+            }
+
+            return new Numa(nodes, cpuToNode);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a Linux list format, like "0-3,8-11".
+     */
+    static int[] parseList(String list) {
+        list = list.trim();
+        if (list.isEmpty()) {
+            return new int[0];
+        }
+
+        var result = new int[8];
+        int size = 0;
+
+        for (String range : list.split(",")) {
+            int ix = range.indexOf('-');
+            int start, end;
+            if (ix < 0) {
+                start = end = Integer.parseInt(range.trim());
+            } else {
+                start = Integer.parseInt(range.substring(0, ix).trim());
+                end = Integer.parseInt(range.substring(ix + 1).trim());
+            }
+            for (int i=start; i<=end; i++) {
+                if (size >= result.length) {
+                    result = Arrays.copyOf(result, size << 1);
+                }
+                result[size++] = i;
+            }
+        }
+
+        return Arrays.copyOf(result, size);
+    }
+
+    // Maps logical node numbers to the actual NUMA node ids.
+    private final int[] mNodeIds;
+    // Maps cpu numbers to logical node numbers.
+    private final int[] mCpuToNode;
+
+    Numa(int[] nodeIds, int[] cpuToNode) {
+        mNodeIds = nodeIds;
+        mCpuToNode = cpuToNode;
+    }
+
+    /**
+     * Returns the number of NUMA nodes, which is at least two.
+     */
+    int nodeCount() {
+        return mNodeIds.length;
+    }
+
+    /**
+     * Returns the logical NUMA node that the current thread is running on, which is in the
+     * range [0, nodeCount).
+     */
+    int currentNode() {
+        int cpu;
+        try {
+            cpu = (int) sched_getcpu.invokeExact();
+        } catch (Throwable e) {
+            return 0;
+        }
+        int[] cpuToNode = mCpuToNode;
+        return (cpu >= 0 && cpu < cpuToNode.length) ? cpuToNode[cpu] : 0;
+    }
+
+    /**
+     * Set the preferred NUMA node for a range of memory which hasn't been touched yet. The
+     * operating system falls back to other nodes if the preferred one runs out of memory.
+     *
+     * @param node logical node number
+     * @return false if not supported or if the operation failed
+     */
+    boolean bind(long addr, long length, int node) {
+        if (syscall == null) {
+            return false;
+        }
+
+        int nodeId = mNodeIds[node];
+
+        try (Arena a = Arena.ofConfined()) {
+            int words = (nodeId >> 6) + 1;
+            MemorySegment mask = a.allocate(ValueLayout.JAVA_LONG, words);
+            mask.setAtIndex(ValueLayout.JAVA_LONG, nodeId >> 6, 1L << (nodeId & 63));
+
+            var result = (long) syscall.invokeExact
+                (SYS_MBIND, addr, length, (long) MPOL_PREFERRED, mask.address(),
+                 (long) (words * 64 + 1), 0L);
+
+            return result == 0;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.util.zip.Checksum;
 import org.cojen.tupl.ext.Crypto;
 
 import org.cojen.tupl.io.CauseCloseable;
+import org.cojen.tupl.io.PageCompressor;
 
 /**
  * Interface which defines a simple "page database" layer, or a "database of pages". The real
@@ -108,9 +109,11 @@ abstract class PageDb implements CauseCloseable {
 
     /**
      * @param mode NodeGroup.MODE_UNEVICTABLE | MODE_NO_EVICT
+     * @param extent optional extent to allocate the node id from
      * @return node with id assigned
      */
-    public abstract Node allocLatchedNode(LocalDatabase db, int mode) throws IOException;
+    public abstract Node allocLatchedNode(LocalDatabase db, int mode, PageManager.Extent extent)
+        throws IOException;
 
     /**
      * Returns the fixed size of all pages in the store, in bytes.
@@ -125,6 +128,35 @@ abstract class PageDb implements CauseCloseable {
 
     public abstract void pageLimitOverride(long limit);
 
+    /**
+     * Set the maximum amount of pages to reserve for each extent. Zero disables extents.
+     */
+    public abstract void extentSize(int pages);
+
+    /**
+     * Returns a new extent for allocating pages which are near each other, or null if
+     * extents aren't supported or enabled.
+     */
+    public abstract PageManager.Extent newExtent();
+
+    /**
+     * Enable a secondary cache which holds compressed copies of clean pages which were
+     * evicted from the primary cache.
+     *
+     * @param size cache size, in bytes; zero disables the cache
+     * @param factory creates new page compressor instances
+     */
+    public abstract void compressedCache(long size, Supplier<? extends PageCompressor> factory);
+
+    /**
+     * Called when a clean page is evicted from the primary cache. The page contents are
+     * identical to what was last written.
+     *
+     * @param id page id which was evicted
+     * @param pageAddr page contents
+     */
+    public abstract void evictCleanPage(long id, long pageAddr) throws IOException;
+
     /**
      * Returns a snapshot of additional store stats.
      */
@@ -133,9 +165,24 @@ abstract class PageDb implements CauseCloseable {
     public static final class Stats {
         public long totalPages;
         public long freePages;
+        // Free pages which are reserved by threads, also included in freePages.
+        public long reservedPages;
+        // Amount of times a reservation was filled from the free lists.
+        public long reservationRefills;
+        // Pages which are held by the compressed secondary cache.
+        public long compressedCachePages;
+        // Amount of page reads which were served by the compressed secondary cache.
+        public long compressedCacheHits;
+        // Amount of page reads which had to access the underlying page array.
+        public long compressedCacheMisses;
 
         public String toString() {
-            return "PageDb.Stats{totalPages=" + totalPages + ", freePages=" + freePages + '}';
+            return "PageDb.Stats{totalPages=" + totalPages + ", freePages=" + freePages
+                + ", reservedPages=" + reservedPages
+                + ", reservationRefills=" + reservationRefills
+                + ", compressedCachePages=" + compressedCachePages
+                + ", compressedCacheHits=" + compressedCacheHits
+                + ", compressedCacheMisses=" + compressedCacheMisses + '}';
         }
     }
 
@@ -157,6 +204,14 @@ abstract class PageDb implements CauseCloseable {
      */
     public abstract long allocPage() throws IOException;
 
+    /**
+     * Allocates a page to be written to, preferably from the given extent.
+     *
+     * @param extent optional extent to allocate from
+     * @return page id; never zero or one
+     */
+    public abstract long allocPage(PageManager.Extent extent) throws IOException;
+
     /**
      * Writes to an allocated page, but doesn't commit it. A written page is
      * immediately readable even if not committed. An uncommitted page can be
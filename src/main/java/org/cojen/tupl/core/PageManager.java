@@ -30,6 +30,8 @@ import org.cojen.tupl.diag.EventType;
 
 import org.cojen.tupl.io.PageArray;
 
+import org.cojen.tupl.util.Latch;
+
 /**
  * Manages free and deleted pages for {@link StoredPageDb}.
  *
@@ -55,6 +57,15 @@ final class PageManager implements Compactable {
     static final int I_RECYCLE_QUEUE     = I_REGULAR_QUEUE + PageQueue.HEADER_SIZE;
     static final int I_RESERVE_QUEUE     = I_RECYCLE_QUEUE + PageQueue.HEADER_SIZE;
 
+    // Maximum amount of free pages which are reserved by each thread. Zero disables the
+    // reservations.
+    private static final int RESERVE_SIZE;
+
+    static {
+        Integer size = Integer.getInteger(PageManager.class.getName() + ".reserveSize");
+        RESERVE_SIZE = size == null ? 32 : Math.max(0, size);
+    }
+
     final PageArray mPageArray;
     private final int mPageSize;
 
@@ -75,6 +86,13 @@ final class PageManager implements Compactable {
     // Accessed by PageQueue with append or remove lock held.
     LocalDatabase mPageCache;
 
+    private final ThreadLocal<Reservation> mReservation;
+    private volatile int mExtentSize;
+
+    // Linked list of reservations which might have pages. Guarded by remove lock.
+    private Reservation mReservations;
+    private long mReservationRefills;
+
     /**
      * Create a new PageManager.
      */
@@ -107,6 +125,7 @@ final class PageManager implements Compactable {
         mRemoveLock = new ReentrantLock(false);
         mRegularFreeList = PageQueue.newRegularFreeList(this);
         mRecycleFreeList = PageQueue.newRecycleFreeList(this);
+        mReservation = RESERVE_SIZE <= 0 ? null : new ThreadLocal<>();
 
         mPageLimit = -1; // no limit
 
@@ -299,6 +318,212 @@ final class PageManager implements Compactable {
         }
     }
 
+    /**
+     * Allocates a page from a batch of pages which was reserved by the current thread, which
+     * reduces contention when many threads are allocating pages concurrently. If the
+     * reservation is empty, then it's filled from the free lists. If the free lists don't
+     * have any pages available for reservation, then the regular allocPage method is called.
+     *
+     * <p>Reservations are returned to the free lists by commitStart and compactionStart.
+     * Caller must hold shared commit lock, which ensures that a reservation isn't accessed by
+     * its thread when it's being returned.
+     *
+     * @return non-zero page id
+     */
+    public long allocReservedPage() throws IOException {
+        ThreadLocal<Reservation> local = mReservation;
+        if (local == null || mCompacting) {
+            return allocPage();
+        }
+
+        Reservation r = local.get();
+        if (r == null) {
+            r = new Reservation(RESERVE_SIZE);
+            local.set(r);
+        }
+
+        int pos = r.mPos;
+        if (pos < r.mEnd) {
+            r.mPos = pos + 1;
+            return r.mPageIds[pos];
+        }
+
+        return fillReservation(r, false);
+    }
+
+    /**
+     * Returns a new extent for allocating pages which are near each other, or null if extents
+     * aren't enabled.
+     */
+    Extent newExtent() {
+        int size = mExtentSize;
+        return size <= 0 ? null : new Extent(size);
+    }
+
+    /**
+     * Set the maximum amount of pages to reserve for each extent. Zero disables extents.
+     */
+    void extentSize(int pages) {
+        mExtentSize = Math.max(0, pages);
+    }
+
+    /**
+     * Allocates a page from the given extent. Extents are filled with ascending page ids from
+     * a single free list node, or with a contiguous range of new pages when the free lists are
+     * empty. Allocating all the nodes of an index from its own extent tends to keep
+     * logically adjacent nodes physically close to each other.
+     *
+     * <p>The amount of new pages reserved by an extent starts at zero, and it doubles each
+     * time the extent is refilled with new pages, up to the extent size. When a checkpoint
+     * finds new pages which weren't used, the amount is halved. Only indexes which are
+     * growing steadily reserve large ranges of new pages, limiting how much the file grows
+     * on behalf of indexes which grow slowly.
+     *
+     * <p>Extents are returned to the free lists by commitStart and compactionStart. Caller
+     * must hold shared commit lock.
+     *
+     * @return non-zero page id
+     */
+    public long allocExtentPage(Extent extent) throws IOException {
+        if (mCompacting) {
+            return allocPage();
+        }
+
+        extent.mLatch.acquireExclusive();
+        try {
+            int pos = extent.mPos;
+            if (pos < extent.mEnd) {
+                extent.mPos = pos + 1;
+                return extent.mPageIds[pos];
+            }
+            return fillReservation(extent, true);
+        } finally {
+            extent.mLatch.releaseExclusive();
+        }
+    }
+
+    /**
+     * Fills the given empty reservation and returns the first page from it.
+     *
+     * @param extend when true and the free lists are empty, fill with new pages
+     * @return non-zero page id
+     */
+    private long fillReservation(Reservation r, boolean extend) throws IOException {
+        final long[] pageIds = r.mPageIds;
+        final ReentrantLock lock = mRemoveLock;
+
+        int end;
+        lock.lock();
+        try {
+            if (mCompacting) {
+                end = 0;
+            } else {
+                // Favor recently recycled pages, like allocPage does. Pages aren't combined
+                // from both lists, ensuring that the page ids are ascending.
+                end = mRecycleFreeList.tryRemoveBatch(pageIds, 0);
+                if (end == 0) {
+                    end = mRegularFreeList.tryRemoveBatch(pageIds, 0);
+                }
+            }
+            if (end != 0) {
+                register(r, 1, end);
+                if (extend) {
+                    ((Extent) r).mExtended = false;
+                }
+                return pageIds[0];
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long pageId = allocPage();
+
+        if (extend) {
+            lock.lock();
+            try {
+                // If the page count was just increased, then continue with a contiguous
+                // range of new pages. Don't reserve new pages when a capacity limit is set,
+                // since they can cause other allocations to fail.
+                if (!mCompacting && mPageLimit < 0 && pageId == mTotalPageCount - 1) {
+                    var extent = (Extent) r;
+                    int growth = extent.mGrowth;
+                    while (end < growth) {
+                        try {
+                            pageIds[end] = increasePageCount();
+                        } catch (DatabaseFullException e) {
+                            break;
+                        }
+                        end++;
+                    }
+                    extent.mGrowth = Math.min(pageIds.length, Math.max(1, growth << 1));
+                    if (end != 0) {
+                        register(r, 0, end);
+                        extent.mExtended = true;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return pageId;
+    }
+
+    /**
+     * Caller must hold remove lock.
+     */
+    private void register(Reservation r, int pos, int end) {
+        r.mPos = pos;
+        r.mEnd = end;
+        mReservationRefills++;
+        if (!r.mRegistered) {
+            r.mRegistered = true;
+            r.mNext = mReservations;
+            mReservations = r;
+        }
+    }
+
+    /**
+     * Returns all of the reserved pages to the free lists. Caller must hold exclusive commit
+     * lock.
+     *
+     * @param recycle when false, pages are deleted and available again after the next
+     * commit; commitStart must pass false, because draining the recycle free list during
+     * commitStart can delete regular free list nodes after the regular free list has been
+     * pre-committed
+     */
+    private void returnReservations(boolean recycle) throws IOException {
+        Reservation r;
+        mRemoveLock.lock();
+        r = mReservations;
+        mReservations = null;
+        mRemoveLock.unlock();
+
+        while (r != null) {
+            if (r instanceof Extent extent && extent.mExtended) {
+                if (r.mPos < r.mEnd) {
+                    // New pages were reserved but not used, so reserve fewer next time.
+                    extent.mGrowth >>= 1;
+                }
+                extent.mExtended = false;
+            }
+            for (int i=r.mPos; i<r.mEnd; i++) {
+                long id = r.mPageIds[i];
+                if (recycle) {
+                    recyclePage(id);
+                } else {
+                    deletePage(id, true);
+                }
+            }
+            r.mPos = 0;
+            r.mEnd = 0;
+            r.mRegistered = false;
+            Reservation next = r.mNext;
+            r.mNext = null;
+            r = next;
+        }
+    }
+
     /**
      * Deletes a page to be reused after commit is called. No page deletions
      * are permanent until after commit is called.
@@ -481,6 +706,11 @@ final class PageManager implements Compactable {
         mCompacting = true;
         mRemoveLock.unlock();
 
+        // Recycle the reserved pages now that compaction is in progress, moving the pages
+        // which are in the compaction zone to the reserve list. The remaining pages must be
+        // immediately available, or else compaction can abort when it runs out of pages.
+        returnReservations(true);
+
         return true;
     }
 
@@ -633,6 +863,10 @@ final class PageManager implements Compactable {
     public void commitStart(long headerAddr, int offset) throws IOException {
         fullLock();
         try {
+            // Unused reserved pages must be in the free lists before they're committed,
+            // otherwise they would leak if the database is closed or crashes.
+            returnReservations(false);
+
             // Allow commit to exceed the page limit. Without this, database cannot complete a
             // checkpoint when the limit is reached.
             if (mPageLimit > 0) {
@@ -718,6 +952,13 @@ final class PageManager implements Compactable {
         fullLock();
         try {
             stats.totalPages += mTotalPageCount;
+            for (Reservation r = mReservations; r != null; r = r.mNext) {
+                // Racy read, since the reservation isn't guarded by any locks held here.
+                int size = Math.max(0, r.mEnd - r.mPos);
+                stats.freePages += size;
+                stats.reservedPages += size;
+            }
+            stats.reservationRefills += mReservationRefills;
             mRegularFreeList.addTo(stats);
             mRecycleFreeList.addTo(stats);
             if (mReserveList != null) {
@@ -734,4 +975,40 @@ final class PageManager implements Compactable {
     boolean isPageOutOfBounds(long id) {
         return id <= 1 || id >= mTotalPageCount;
     }
+
+    /**
+     * Batch of free pages which is reserved by a thread. Page ids are only accessed by the
+     * thread while it holds the shared commit lock, or by returnReservations.
+     */
+    private static class Reservation {
+        final long[] mPageIds;
+        int mPos, mEnd;
+
+        // Guarded by remove lock, or by exclusive commit lock.
+        boolean mRegistered;
+        Reservation mNext;
+
+        Reservation(int size) {
+            mPageIds = new long[size];
+        }
+    }
+
+    /**
+     * Batch of free pages which is reserved by an index. Page ids are only accessed with the
+     * latch and the shared commit lock held, or by returnReservations.
+     */
+    static final class Extent extends Reservation {
+        final Latch mLatch;
+
+        // Amount of new pages to reserve when the free lists are empty.
+        int mGrowth;
+
+        // Is true when the reserved pages are new.
+        boolean mExtended;
+
+        Extent(int size) {
+            super(size);
+            mLatch = new Latch();
+        }
+    }
 }
@@ -20,13 +20,16 @@ package org.cojen.tupl.core;
 import java.io.IOException;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 
 import org.cojen.tupl.ClosedIndexException;
 import org.cojen.tupl.DeletedIndexException;
 
 import org.cojen.tupl.diag.EventListener;
+import org.cojen.tupl.diag.EventType;
 
 import org.cojen.tupl.io.MappedPageArray;
+import org.cojen.tupl.io.OpenOption;
 
 import org.cojen.tupl.util.Latch;
 import org.cojen.tupl.util.Runner;
@@ -177,15 +180,33 @@ final class PageOps extends DirectPageOps {
 
         private long mNextAddr;
 
-        Arena(int pageSize, long pageCount, EventListener listener) throws IOException {
+        /**
+         * @param hugePages pass true to request huge pages
+         * @param numa optional NUMA topology
+         * @param numaNode preferred NUMA node, if a topology is provided
+         */
+        Arena(int pageSize, long pageCount, boolean hugePages, Numa numa, int numaNode,
+              EventListener listener)
+            throws IOException
+        {
             pageSize = Math.abs(pageSize);
-            mPageArray = MappedPageArray.factory(pageSize, pageCount, null, null, listener).get();
+            EnumSet<OpenOption> options = hugePages ? EnumSet.of(OpenOption.HUGE_PAGES) : null;
+            mPageArray = MappedPageArray.factory
+                (pageSize, pageCount, null, options, listener).get();
             mStartAddr = mPageArray.directPageAddress(0);
             mEndAddr = mStartAddr + (pageSize * pageCount);
             synchronized (this) {
                 mNextAddr = mStartAddr;
             }
 
+            // Must bind before touching any pages, which is when they get assigned.
+            if (numa != null && !numa.bind(mStartAddr, mEndAddr - mStartAddr, numaNode)
+                && listener != null)
+            {
+                listener.notify(EventType.CACHE_INIT_INFO,
+                                "Unable to bind the cache to NUMA node %1$d", numaNode);
+            }
+
             if (true) {
                 // Pre-touch the pages, using the OS page size.
 
@@ -239,6 +260,12 @@ final class PageOps extends DirectPageOps {
             mNextAddr = mEndAddr;
             mPageArray.close();
         }
+
+        long hugePageCount() {
+            int pageSize = mPageArray.pageSize();
+            return Math.min(mPageArray.hugePageBytes() / pageSize,
+                            (mEndAddr - mStartAddr) / pageSize);
+        }
     }
 
     private static volatile Arena[] cArenas;
@@ -325,9 +352,25 @@ final class PageOps extends DirectPageOps {
      */
     static Object p_arenaAlloc(int pageSize, long pageCount, EventListener listener)
         throws IOException
+    {
+        return p_arenaAlloc(pageSize, pageCount, false, null, 0, listener);
+    }
+
+    /**
+     * Allocates an arena whose memory is preferably allocated from the given NUMA node.
+     *
+     * @param hugePages pass true to request huge pages
+     * @param numa optional NUMA topology
+     * @param numaNode preferred NUMA node, if a topology is provided
+     * @param listener optional
+     * @return null if not supported
+     */
+    static Object p_arenaAlloc(int pageSize, long pageCount, boolean hugePages,
+                               Numa numa, int numaNode, EventListener listener)
+        throws IOException
     {
         try {
-            var arena = new Arena(pageSize, pageCount, listener);
+            var arena = new Arena(pageSize, pageCount, hugePages, numa, numaNode, listener);
             registerArena(arena);
             return arena;
         } catch (UnsupportedOperationException e) {
@@ -336,6 +379,20 @@ final class PageOps extends DirectPageOps {
         }
     }
 
+    /**
+     * Returns the number of arena pages which are backed by huge pages.
+     *
+     * @throws IllegalArgumentException if unknown arena
+     */
+    static long p_arenaHugePages(Object arena) {
+        if (arena instanceof Arena a) {
+            return a.hugePageCount();
+        } else if (arena != null) {
+            throw new IllegalArgumentException();
+        }
+        return 0;
+    }
+
     /**
      * @throws IllegalArgumentException if unknown arena
      */
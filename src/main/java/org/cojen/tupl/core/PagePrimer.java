@@ -0,0 +1,332 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cojen.tupl.DatabaseException;
+
+import org.cojen.tupl.diag.EventListener;
+import org.cojen.tupl.diag.EventType;
+
+import org.cojen.tupl.util.Runner;
+
+/**
+ * Cache primer which records the ids of the pages which were loaded, rather than keys. Unlike
+ * the {@link Primer key-based primer}, a page primer is only valid for the database which
+ * created it.
+ *
+ * <p>When applied, each tree is loaded one level at a time, starting from the root. The
+ * recorded child nodes of a level are loaded in ascending page order by several threads, and
+ * so reads are mostly sequential and no keys are searched. Only pages which are referenced by
+ * a parent node are loaded, and so recorded pages which are stale are harmlessly skipped.
+ *
+ * @author Brian S O'Neill
+ */
+final class PagePrimer {
+    /**
+     * Writes the ids of all the loaded nodes of a tree, except for the root.
+     */
+    static void write(BTree tree, DataOutput dout) throws IOException {
+        byte[] name = tree.mName;
+        dout.writeInt(name.length);
+        dout.write(name);
+
+        var idsRef = new long[][] {new long[16]};
+        var count = new int[1];
+        final Node root = tree.mRoot;
+
+        tree.traverseLoaded((node) -> {
+            try {
+                if (node != root) {
+                    long[] ids = idsRef[0];
+                    int num = count[0];
+                    if (num >= ids.length) {
+                        idsRef[0] = ids = Arrays.copyOf(ids, ids.length << 1);
+                    }
+                    ids[num] = node.id();
+                    count[0] = num + 1;
+                }
+            } finally {
+                node.releaseShared();
+            }
+        });
+
+        long[] sorted = Arrays.copyOf(idsRef[0], count[0]);
+        Arrays.sort(sorted);
+
+        dout.writeInt(sorted.length);
+
+        // Encode the differences between the sorted ids, which are usually small.
+        long prev = 0;
+        for (long id : sorted) {
+            writeUnsignedVarLong(dout, id - prev);
+            prev = id;
+        }
+    }
+
+    static void skip(DataInput din) throws IOException {
+        int count = din.readInt();
+        for (int i=0; i<count; i++) {
+            readUnsignedVarLong(din);
+        }
+    }
+
+    /**
+     * @return sorted page ids
+     */
+    static long[] read(DataInput din) throws IOException {
+        int count = din.readInt();
+        var ids = new long[count];
+        long prev = 0;
+        for (int i=0; i<count; i++) {
+            ids[i] = prev += readUnsignedVarLong(din);
+        }
+        return ids;
+    }
+
+    private static void writeUnsignedVarLong(DataOutput dout, long v) throws IOException {
+        while ((v & ~0x7fL) != 0) {
+            dout.writeByte((int) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        dout.writeByte((int) v);
+    }
+
+    private static long readUnsignedVarLong(DataInput din) throws IOException {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = din.readUnsignedByte();
+            v |= ((long) (b & 0x7f)) << shift;
+            if (b < 0x80) {
+                return v;
+            }
+        }
+    }
+
+    /**
+     * A node which is expected to have a specific id.
+     */
+    private record Ref(Node node, long id) { }
+
+    /**
+     * A child node to load.
+     */
+    private record Load(Ref parent, int pos, long childId) { }
+
+    private final BTree mTree;
+    private final long[] mIds;
+    private final int mTaskLimit;
+
+    private int mTaskCount;
+    private IOException mEx;
+
+    /**
+     * @param ids sorted page ids
+     */
+    PagePrimer(BTree tree, long[] ids) {
+        mTree = tree;
+        mIds = ids;
+        mTaskLimit = Runtime.getRuntime().availableProcessors() * 8;
+    }
+
+    void run() throws IOException {
+        if (mIds.length == 0) {
+            return;
+        }
+
+        List<Ref> level;
+        {
+            Node root = mTree.mRoot;
+            root.acquireShared();
+            try {
+                level = List.of(new Ref(root, root.id()));
+            } finally {
+                root.releaseShared();
+            }
+        }
+
+        while (!level.isEmpty()) {
+            level = loadLevel(level);
+        }
+    }
+
+    /**
+     * Loads all the recorded children of the given level.
+     *
+     * @return the next level
+     */
+    private List<Ref> loadLevel(List<Ref> level) throws IOException {
+        var loads = new ArrayList<Load>();
+
+        for (Ref ref : level) {
+            Node node = ref.node();
+            node.acquireShared();
+            try {
+                if (node.id() != ref.id() || !node.isInternal()) {
+                    continue;
+                }
+                int highestPos = node.highestInternalPos();
+                for (int pos = 0; pos <= highestPos; pos += 2) {
+                    long childId = node.childId(pos);
+                    if (Arrays.binarySearch(mIds, childId) >= 0) {
+                        loads.add(new Load(ref, pos, childId));
+                    }
+                }
+            } finally {
+                node.releaseShared();
+            }
+        }
+
+        if (loads.isEmpty()) {
+            return List.of();
+        }
+
+        loads.sort((a, b) -> Long.compare(a.childId(), b.childId()));
+
+        // Divide the loads into contiguous ranges, each of which is loaded by a separate
+        // task. Each task reads pages in ascending order.
+        int numTasks = Math.max(1, Math.min(mTaskLimit, loads.size() / MIN_TASK_SIZE));
+
+        @SuppressWarnings("unchecked")
+        var results = (List<Ref>[]) new List<?>[numTasks];
+
+        synchronized (this) {
+            mTaskCount = numTasks;
+        }
+
+        for (int i=0; i<numTasks; i++) {
+            int start = (int) ((long) i * loads.size() / numTasks);
+            int end = (int) ((long) (i + 1) * loads.size() / numTasks);
+            List<Load> subList = loads.subList(start, end);
+            int slot = i;
+            Runnable task = () -> load(subList, results, slot);
+            if (i == numTasks - 1) {
+                task.run();
+            } else {
+                try {
+                    Runner.start(task);
+                } catch (Throwable e) {
+                    task.run();
+                }
+            }
+        }
+
+        // Wait for other task threads to finish.
+        synchronized (this) {
+            while (true) {
+                if (mEx != null) {
+                    throw mEx;
+                }
+                if (mTaskCount <= 0) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+
+        var next = new ArrayList<Ref>(loads.size());
+        for (List<Ref> result : results) {
+            if (result != null) {
+                next.addAll(result);
+            }
+        }
+
+        return next;
+    }
+
+    private static final int MIN_TASK_SIZE = 64;
+
+    /**
+     * @param results the loaded child nodes are stored into this array
+     * @param slot results array slot
+     */
+    private void load(List<Load> loads, List<Ref>[] results, int slot) {
+        var loaded = new ArrayList<Ref>(loads.size());
+
+        try {
+            LocalDatabase db = mTree.mDatabase;
+
+            for (Load load : loads) {
+                Node parent = load.parent().node();
+                long childId = load.childId();
+
+                parent.acquireShared();
+
+                // Verify that the child is still referenced by the parent.
+                if (parent.id() != load.parent().id()
+                    || !parent.isInternal()
+                    || load.pos() > parent.highestInternalPos()
+                    || parent.childId(load.pos()) != childId)
+                {
+                    parent.releaseShared();
+                    continue;
+                }
+
+                Node child = db.nodeMapGetShared(childId);
+                if (child == null) {
+                    child = parent.loadChild(db, childId, Node.OPTION_PARENT_RELEASE_SHARED);
+                } else {
+                    parent.releaseShared();
+                }
+
+                child.releaseShared();
+
+                loaded.add(new Ref(child, childId));
+            }
+
+            results[slot] = loaded;
+        } catch (Throwable e) {
+            IOException ex;
+            if (e instanceof IOException io) {
+                ex = io;
+            } else {
+                // Unexpected, and so report it. Priming stops, but the database is fine.
+                EventListener listener = mTree.mDatabase.eventListener();
+                if (listener == null) {
+                    Utils.uncaught(e);
+                } else {
+                    listener.notify(EventType.PANIC_UNHANDLED_EXCEPTION,
+                                    "Cache priming failed due to exception: %1$s", e);
+                }
+                ex = new DatabaseException(e);
+            }
+            synchronized (this) {
+                if (mEx == null) {
+                    mEx = ex;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                mTaskCount--;
+                notifyAll();
+            }
+        }
+    }
+}
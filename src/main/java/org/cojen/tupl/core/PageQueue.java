@@ -367,6 +367,47 @@ final class PageQueue implements IntegerRef {
         return pageId;
     }
 
+    /**
+     * Remove pages from the current remove node only, to fill a batch of reserved pages. The
+     * last page of the node is never removed, because removing it requires that the node
+     * itself be deleted. Caller must hold remove lock, which is not released by this method.
+     *
+     * @param ids destination for removed page ids
+     * @param size amount of ids already in the destination
+     * @return new amount of ids in the destination
+     */
+    int tryRemoveBatch(long[] ids, int size) throws IOException {
+        if (mRemoveHeadId == 0 || mIsReserve) {
+            return size;
+        }
+
+        final long headAddr = mRemoveHeadAddr;
+
+        while (size < ids.length && mRemoveHeadOffset < mPageSize) {
+            long pageId = mRemoveHeadFirstPageId;
+
+            if (mManager.isPageOutOfBounds(pageId)) {
+                throw new CorruptDatabaseException
+                    ("Invalid page id in free list: " + pageId + "; list node: " + mRemoveHeadId);
+            }
+
+            int offset = mRemoveHeadOffset;
+            // Pass this as an IntegerRef to mRemoveHeadOffset.
+            long delta = p_ulongGetVar(headAddr, this);
+            if (delta == 0) {
+                // Zero delta is a terminator, which must be consumed by tryRemove.
+                mRemoveHeadOffset = offset;
+                break;
+            }
+
+            mRemovePageCount--;
+            mRemoveHeadFirstPageId = pageId + delta;
+            ids[size++] = pageId;
+        }
+
+        return size;
+    }
+
     // Caller must hold remove lock.
     private void loadRemoveNode(long id) throws IOException {
         if (mManager.isPageOutOfBounds(id)) {
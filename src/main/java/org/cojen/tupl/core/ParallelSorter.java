@@ -788,7 +788,13 @@ final class ParallelSorter implements Sorter, Node.Supplier {
         mLastMerger = merger;
 
         try {
-            while (mMergerCount >= MERGE_THREAD_COUNT) {
+            // Mergers must start in order. When multiple threads are adding entries, a
+            // merger which started before its predecessor would hold onto its slot until
+            // the predecessor finished, and the predecessor might never get a slot.
+            Merger prev;
+            while (mMergerCount >= MERGE_THREAD_COUNT
+                   || ((prev = merger.mPrev) != null && !prev.mStarted))
+            {
                 wait();
             }
         } catch (InterruptedException e) {
@@ -796,7 +802,11 @@ final class ParallelSorter implements Sorter, Node.Supplier {
         }
 
         mMergerCount++;
+        merger.mStarted = true;
         mExecutor.execute(merger);
+
+        // Wake up any thread which is waiting for this merger to start.
+        notifyAll();
     }
 
     /**
@@ -812,6 +822,9 @@ final class ParallelSorter implements Sorter, Node.Supplier {
         // Is set when more trees must be added when merge is done.
         Merger mNext;
 
+        // Is set when the merger is passed to the executor.
+        boolean mStarted;
+
         Merger(Merger prev, BTree[] sortTrees, int size, BTree dest) {
             mPrev = prev;
             mSortTrees = sortTrees;
@@ -0,0 +1,188 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+
+import java.util.Arrays;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.cojen.tupl.util.Runner;
+
+import static org.cojen.tupl.core.Utils.*;
+
+/**
+ * InputStream which reads from a source stream using a background thread, allowing the
+ * source to be read (and decrypted) while the consumer is busy processing what it already
+ * read. Used by recovery to overlap redo log file reads with decoding.
+ *
+ * @author Brian S O'Neill
+ */
+final class ReadAheadInputStream extends InputStream implements Runnable {
+    private static final int CHUNK_SIZE = 1 << 20, MAX_CHUNKS = 8;
+
+    private static final byte[] EOF = new byte[0];
+
+    private final InputStream mSource;
+    private final BlockingQueue<Object> mQueue;
+
+    private volatile boolean mClosed;
+
+    private byte[] mChunk;
+    private int mChunkPos;
+
+    // Is true if the background thread couldn't be started.
+    private boolean mDirect;
+
+    ReadAheadInputStream(InputStream source) {
+        mSource = source;
+        mQueue = new ArrayBlockingQueue<>(MAX_CHUNKS);
+
+        try {
+            Runner.start("ReadAheadInputStream", this);
+        } catch (Throwable e) {
+            // Read in the current thread instead.
+            mDirect = true;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        var buf = new byte[1];
+        return read(buf, 0, 1) <= 0 ? -1 : (buf[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (mDirect) {
+            return mSource.read(buf, off, len);
+        }
+
+        byte[] chunk = mChunk;
+
+        if (chunk == null || mChunkPos >= chunk.length) {
+            if (chunk == EOF) {
+                return -1;
+            }
+
+            Object next;
+            try {
+                // Poll, because nothing more is enqueued once this stream is closed.
+                while ((next = mQueue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                    if (mClosed) {
+                        throw new IOException("Closed");
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+
+            if (next instanceof Throwable e) {
+                mChunk = EOF;
+                throw rethrow(e);
+            }
+
+            mChunk = chunk = (byte[]) next;
+            mChunkPos = 0;
+
+            if (chunk == EOF) {
+                return -1;
+            }
+        }
+
+        int amt = Math.min(len, chunk.length - mChunkPos);
+        System.arraycopy(chunk, mChunkPos, buf, off, amt);
+        mChunkPos += amt;
+        return amt;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mClosed = true;
+        mQueue.clear();
+        mSource.close();
+    }
+
+    /**
+     * Background thread which reads chunks from the source.
+     */
+    @Override
+    public void run() {
+        Object next;
+
+        try {
+            while (true) {
+                var chunk = new byte[CHUNK_SIZE];
+                int len = 0;
+                while (len < chunk.length) {
+                    int amt = mSource.read(chunk, len, chunk.length - len);
+                    if (amt <= 0) {
+                        break;
+                    }
+                    len += amt;
+                }
+
+                if (len == 0) {
+                    next = EOF;
+                    break;
+                }
+
+                if (!put(len < chunk.length ? Arrays.copyOf(chunk, len) : chunk)) {
+                    return;
+                }
+
+                if (len < chunk.length) {
+                    next = EOF;
+                    break;
+                }
+            }
+        } catch (Throwable e) {
+            if (mClosed) {
+                return;
+            }
+            next = e;
+        }
+
+        put(next);
+    }
+
+    /**
+     * @return false if closed
+     */
+    private boolean put(Object next) {
+        try {
+            while (!mClosed) {
+                if (mQueue.offer(next, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Treat as closed.
+        }
+        return false;
+    }
+}
@@ -28,6 +28,7 @@ import java.io.OutputStream;
 
 import java.nio.channels.ClosedChannelException;
 
+import java.util.ArrayDeque;
 import java.util.TreeMap;
 
 import java.security.GeneralSecurityException;
@@ -157,43 +158,47 @@ final class RedoLog extends RedoWriter {
             throw new IllegalStateException();
         }
 
+        // Each file is decoded independently, and so the next few files are decoded in the
+        // background while the current one is applied. The visitor is always called in log
+        // order, from this thread.
+        int maxPrefetch = Math.clamp(Runtime.getRuntime().availableProcessors() / 2, 1, 8);
+        var prefetchers = new ArrayDeque<RedoLogPrefetcher>(maxPrefetch);
+
         acquireExclusive();
         try {
             var files = new TreeMap<Long, File>();
 
+            long nextLogId = mLogId;
+            boolean more = true;
+
             while (true) {
-                File file = fileFor(mBaseFile, mLogId);
+                while (more && prefetchers.size() < maxPrefetch) {
+                    RedoLogPrefetcher prefetcher = openPrefetcher(nextLogId, listener);
+                    if (prefetcher == null) {
+                        more = false;
+                    } else {
+                        prefetchers.add(prefetcher);
+                        nextLogId++;
+                    }
+                }
 
-                InputStream in;
-                try {
-                    in = new FileInputStream(file);
-                } catch (FileNotFoundException e) {
+                RedoLogPrefetcher prefetcher = prefetchers.poll();
+                if (prefetcher == null) {
                     break;
                 }
 
                 boolean finished;
                 try {
-                    if (mCrypto != null) {
-                        try {
-                            in = mCrypto.newDecryptingStream(in);
-                        } catch (IOException e) {
-                            throw e;
-                        } catch (Exception e) {
-                            throw new DatabaseException(e);
-                        }
-                    }
-
                     if (listener != null) {
                         listener.notify(type, message, mLogId);
                     }
 
-                    files.put(mLogId, file);
+                    files.put(mLogId, prefetcher.file());
 
-                    var din = new DataIn.Stream(mPosition, in);
-                    finished = replay(din, visitor, listener);
-                    mPosition = din.mPos;
+                    finished = prefetcher.apply(visitor);
+                    mPosition += prefetcher.position();
                 } finally {
-                    closeQuietly(in);
+                    prefetcher.close();
                 }
 
                 mLogId++;
@@ -201,6 +206,7 @@ final class RedoLog extends RedoWriter {
                 if (!finished) {
                     if (!readOnly) {
                         // Last log file was truncated, so chuck the rest.
+                        closePrefetchers(prefetchers);
                         deleteNumberedFiles(mBaseFile, REDO_FILE_SUFFIX, mLogId, Long.MAX_VALUE);
                     }
                     break;
@@ -211,10 +217,61 @@ final class RedoLog extends RedoWriter {
         } catch (IOException e) {
             throw rethrow(e, mCloseCause);
         } finally {
+            closePrefetchers(prefetchers);
             releaseExclusive();
         }
     }
 
+    /**
+     * Opens a redo log file and starts decoding it in the background.
+     *
+     * @return null if the file doesn't exist
+     */
+    private RedoLogPrefetcher openPrefetcher(long logId, EventListener listener)
+        throws IOException
+    {
+        File file = fileFor(mBaseFile, logId);
+
+        InputStream in;
+        try {
+            in = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+
+        RedoLogPrefetcher prefetcher;
+        try {
+            if (mCrypto != null) {
+                try {
+                    in = mCrypto.newDecryptingStream(in);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new DatabaseException(e);
+                }
+            }
+
+            // Read and decrypt the file in the background, overlapping with decoding.
+            in = new ReadAheadInputStream(in);
+
+            prefetcher = new RedoLogPrefetcher(logId, file, in, listener);
+        } catch (Throwable e) {
+            closeQuietly(in);
+            throw e;
+        }
+
+        prefetcher.start();
+
+        return prefetcher;
+    }
+
+    private static void closePrefetchers(ArrayDeque<RedoLogPrefetcher> prefetchers) {
+        RedoLogPrefetcher prefetcher;
+        while ((prefetcher = prefetchers.poll()) != null) {
+            prefetcher.close();
+        }
+    }
+
     private void openNextFile(long logId) throws IOException {
         if (mNextLogId == logId) {
             // Already open.
@@ -585,7 +642,12 @@ final class RedoLog extends RedoWriter {
         // Recovery handler can only be invoked when restarting the database.
     }
 
-    private boolean replay(DataIn in, RedoVisitor visitor, EventListener listener)
+    /**
+     * Decodes a redo log file, which must have the given identifier.
+     *
+     * @return false if the visitor returned false or if the file is truncated
+     */
+    static boolean replay(long logId, DataIn in, RedoVisitor visitor, EventListener listener)
         throws IOException
     {
         try {
@@ -608,9 +670,9 @@ final class RedoLog extends RedoWriter {
         }
 
         long id = in.readLongLE();
-        if (id != mLogId) {
+        if (id != logId) {
             throw new DatabaseException
-                ("Expected redo log identifier of " + mLogId + ", but actual is: " + id);
+                ("Expected redo log identifier of " + logId + ", but actual is: " + id);
         }
 
         // Skip a field which was originally used to initialize the terminator sequence.
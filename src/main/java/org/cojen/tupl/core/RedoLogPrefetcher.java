@@ -0,0 +1,485 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.cojen.tupl.diag.EventListener;
+import org.cojen.tupl.diag.EventType;
+
+import org.cojen.tupl.util.Runner;
+import org.cojen.tupl.util.WeakPool;
+
+import static org.cojen.tupl.core.Utils.*;
+
+/**
+ * Decodes a redo log file in a background thread, buffering the decoded operations until
+ * they're passed to the actual visitor. Each redo log file starts with a transaction id of
+ * zero, and so files can be decoded independently of each other. Recovery decodes several
+ * files at once, but it applies the operations strictly in log order, which also preserves
+ * the order of each transaction.
+ *
+ * <p>Events which are reported by the decoder are buffered too, and they're only reported
+ * when the operations which preceded them have been applied.
+ *
+ * @author Brian S O'Neill
+ * @see RedoLog#replay
+ */
+final class RedoLogPrefetcher implements RedoVisitor, EventListener, Runnable {
+    /**
+     * A buffered operation, which calls the corresponding visitor method.
+     */
+    @FunctionalInterface
+    private interface Op {
+        boolean apply(RedoVisitor visitor) throws IOException;
+    }
+
+    /**
+     * A group of buffered operations, and the log position after each one.
+     */
+    private record Chunk(Op[] ops, long[] positions, int size) { }
+
+    /**
+     * Final queue element when decoding has stopped.
+     *
+     * @param finished true if end of file was reached
+     * @param position log position at the end of the file
+     */
+    private record End(boolean finished, long position) { }
+
+    // Limits on the number of operations and the amount of key and value bytes per chunk.
+    private static final int CHUNK_SIZE = 1000, CHUNK_BYTES = 1 << 20, MAX_CHUNKS = 16;
+
+    private final long mLogId;
+    private final File mFile;
+    private final InputStream mIn;
+    private final EventListener mListener;
+    private final BlockingQueue<Object> mQueue;
+
+    private volatile boolean mClosed;
+
+    // Is true if the background thread couldn't be started.
+    private boolean mDirect;
+
+    private DataIn mDataIn;
+    private Op[] mOps;
+    private long[] mPositions;
+    private int mSize;
+    private long mBytes;
+
+    // Log position after the last operation which was applied.
+    private long mPosition;
+
+    /**
+     * @param in decrypted file contents
+     * @param listener optional
+     */
+    RedoLogPrefetcher(long logId, File file, InputStream in, EventListener listener) {
+        mLogId = logId;
+        mFile = file;
+        mIn = in;
+        mListener = listener;
+        mQueue = new ArrayBlockingQueue<>(MAX_CHUNKS);
+    }
+
+    /**
+     * Starts decoding in a background thread. If no thread can be started, then the file is
+     * decoded when the operations are applied instead.
+     */
+    void start() {
+        try {
+            Runner.start("RedoLogPrefetcher", this);
+        } catch (Throwable e) {
+            mDirect = true;
+        }
+    }
+
+    long logId() {
+        return mLogId;
+    }
+
+    File file() {
+        return mFile;
+    }
+
+    /**
+     * Passes all the decoded operations to the given visitor, in order, waiting for them to
+     * be decoded as necessary.
+     *
+     * @return true if end of file was reached; false if the visitor returned false or if the
+     * file is truncated
+     */
+    boolean apply(RedoVisitor visitor) throws IOException {
+        if (mDirect) {
+            var din = new DataIn.Stream(0, mIn);
+            try {
+                return RedoLog.replay(mLogId, din, visitor, mListener);
+            } finally {
+                mPosition = din.mPos;
+            }
+        }
+
+        while (true) {
+            Object next;
+            try {
+                next = mQueue.take();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+
+            if (next instanceof Chunk chunk) {
+                Op[] ops = chunk.ops();
+                for (int i=0; i<chunk.size(); i++) {
+                    boolean result = ops[i].apply(visitor);
+                    mPosition = chunk.positions()[i];
+                    if (!result) {
+                        return false;
+                    }
+                }
+            } else if (next instanceof End end) {
+                mPosition = end.position();
+                return end.finished();
+            } else {
+                throw rethrow((Throwable) next);
+            }
+        }
+    }
+
+    /**
+     * Returns the log position, relative to the start of the file, after the last operation
+     * which was applied.
+     */
+    long position() {
+        return mPosition;
+    }
+
+    /**
+     * Stops decoding, and discards all the buffered operations.
+     */
+    void close() {
+        mClosed = true;
+        mQueue.clear();
+        closeQuietly(mIn);
+    }
+
+    /**
+     * Background thread which decodes the file.
+     */
+    @Override
+    public void run() {
+        Object end;
+
+        try {
+            var din = new DataIn.Stream(0, mIn);
+            mDataIn = din;
+            boolean finished = RedoLog.replay(mLogId, din, this, mListener == null ? null : this);
+            if (mClosed) {
+                return;
+            }
+            flush();
+            end = new End(finished, din.mPos);
+        } catch (Throwable e) {
+            if (mClosed) {
+                return;
+            }
+            end = e;
+        } finally {
+            closeQuietly(mIn);
+        }
+
+        put(end);
+    }
+
+    /**
+     * @return false if closed
+     */
+    private boolean add(Op op) {
+        return add(op, 0);
+    }
+
+    /**
+     * @param bytes amount of key and value bytes referenced by the operation
+     * @return false if closed
+     */
+    private boolean add(Op op, long bytes) {
+        Op[] ops = mOps;
+        long[] positions = mPositions;
+        if (ops == null) {
+            mOps = ops = new Op[CHUNK_SIZE];
+            mPositions = positions = new long[CHUNK_SIZE];
+        }
+        int size = mSize;
+        ops[size] = op;
+        positions[size] = mDataIn.mPos;
+        mSize = ++size;
+        mBytes += bytes;
+        return (size < CHUNK_SIZE && mBytes < CHUNK_BYTES) ? !mClosed : flush();
+    }
+
+    /**
+     * @return false if closed
+     */
+    private boolean flush() {
+        int size = mSize;
+        if (size == 0) {
+            return !mClosed;
+        }
+        var chunk = new Chunk(mOps, mPositions, size);
+        mOps = null;
+        mPositions = null;
+        mSize = 0;
+        mBytes = 0;
+        return put(chunk);
+    }
+
+    /**
+     * @return false if closed
+     */
+    private boolean put(Object next) {
+        try {
+            while (!mClosed) {
+                if (mQueue.offer(next, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Treat as closed.
+        }
+        return false;
+    }
+
+    private static long length(byte[] key, byte[] value) {
+        return (long) key.length + (value == null ? 0 : value.length);
+    }
+
+    @Override
+    public void notify(EventType type, String message, Object... args) {
+        add(v -> {
+            mListener.notify(type, message, args);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean isObserved(EventType type) {
+        return mListener.isObserved(type);
+    }
+
+    @Override
+    public boolean isObserved(EventType.Category category) {
+        return mListener.isObserved(category);
+    }
+
+    @Override
+    public boolean isObserved(System.Logger.Level level) {
+        return mListener.isObserved(level);
+    }
+
+    @Override
+    public boolean reset() {
+        return add(RedoVisitor::reset);
+    }
+
+    @Override
+    public boolean timestamp(long timestamp) {
+        return add(v -> v.timestamp(timestamp));
+    }
+
+    @Override
+    public boolean shutdown(long timestamp) {
+        return add(v -> v.shutdown(timestamp));
+    }
+
+    @Override
+    public boolean close(long timestamp) {
+        return add(v -> v.close(timestamp));
+    }
+
+    @Override
+    public boolean endFile(long timestamp) {
+        return add(v -> v.endFile(timestamp));
+    }
+
+    @Override
+    public boolean control(byte[] message) {
+        return add(v -> v.control(message));
+    }
+
+    @Override
+    public boolean store(long indexId, byte[] key, byte[] value) {
+        return add(v -> v.store(indexId, key, value), length(key, value));
+    }
+
+    @Override
+    public boolean storeNoLock(long indexId, byte[] key, byte[] value) {
+        return add(v -> v.storeNoLock(indexId, key, value), length(key, value));
+    }
+
+    @Override
+    public boolean renameIndex(long txnId, long indexId, byte[] newName) {
+        return add(v -> v.renameIndex(txnId, indexId, newName));
+    }
+
+    @Override
+    public boolean deleteIndex(long txnId, long indexId) {
+        return add(v -> v.deleteIndex(txnId, indexId));
+    }
+
+    @Override
+    public boolean txnEnter(long txnId) {
+        return add(v -> v.txnEnter(txnId));
+    }
+
+    @Override
+    public boolean txnRollback(long txnId) {
+        return add(v -> v.txnRollback(txnId));
+    }
+
+    @Override
+    public boolean txnRollbackFinal(long txnId) {
+        return add(v -> v.txnRollbackFinal(txnId));
+    }
+
+    @Override
+    public boolean txnCommit(long txnId) {
+        return add(v -> v.txnCommit(txnId));
+    }
+
+    @Override
+    public boolean txnCommitFinal(long txnId) {
+        return add(v -> v.txnCommitFinal(txnId));
+    }
+
+    @Override
+    public boolean txnEnterStore(long txnId, long indexId, byte[] key, byte[] value) {
+        return add(v -> v.txnEnterStore(txnId, indexId, key, value),
+                   length(key, value));
+    }
+
+    @Override
+    public boolean txnStore(long txnId, long indexId, byte[] key, byte[] value) {
+        return add(v -> v.txnStore(txnId, indexId, key, value),
+                   length(key, value));
+    }
+
+    @Override
+    public boolean txnStoreCommit(long txnId, long indexId, byte[] key, byte[] value) {
+        return add(v -> v.txnStoreCommit(txnId, indexId, key, value),
+                   length(key, value));
+    }
+
+    @Override
+    public boolean txnStoreCommitFinal(long txnId, long indexId, byte[] key, byte[] value) {
+        return add(v -> v.txnStoreCommitFinal(txnId, indexId, key, value),
+                   length(key, value));
+    }
+
+    @Override
+    public boolean cursorRegister(long cursorId, long indexId) {
+        return add(v -> v.cursorRegister(cursorId, indexId));
+    }
+
+    @Override
+    public boolean cursorUnregister(long cursorId) {
+        return add(v -> v.cursorUnregister(cursorId));
+    }
+
+    @Override
+    public boolean cursorStore(long cursorId, long txnId, byte[] key, byte[] value) {
+        return add(v -> v.cursorStore(cursorId, txnId, key, value), length(key, value));
+    }
+
+    @Override
+    public boolean cursorFind(long cursorId, long txnId, byte[] key) {
+        return add(v -> v.cursorFind(cursorId, txnId, key));
+    }
+
+    @Override
+    public boolean cursorValueSetLength(long cursorId, long txnId, long length) {
+        return add(v -> v.cursorValueSetLength(cursorId, txnId, length));
+    }
+
+    @Override
+    public boolean cursorValueWrite(long cursorId, long txnId, long pos,
+                                    WeakPool.Entry<byte[]> entry, byte[] buf, int off, int len)
+    {
+        // The buffer isn't released until the actual visitor is finished with it.
+        return add(v -> v.cursorValueWrite(cursorId, txnId, pos, entry, buf, off, len), len);
+    }
+
+    @Override
+    public boolean cursorValueClear(long cursorId, long txnId, long pos, long length) {
+        return add(v -> v.cursorValueClear(cursorId, txnId, pos, length));
+    }
+
+    @Override
+    public boolean txnLockShared(long txnId, long indexId, byte[] key) {
+        return add(v -> v.txnLockShared(txnId, indexId, key));
+    }
+
+    @Override
+    public boolean txnLockUpgradable(long txnId, long indexId, byte[] key) {
+        return add(v -> v.txnLockUpgradable(txnId, indexId, key));
+    }
+
+    @Override
+    public boolean txnLockExclusive(long txnId, long indexId, byte[] key) {
+        return add(v -> v.txnLockExclusive(txnId, indexId, key));
+    }
+
+    @Override
+    public boolean txnPrepare(long txnId, long prepareTxnId,
+                              int handlerId, byte[] message, boolean commit)
+    {
+        return add(v -> v.txnPrepare(txnId, prepareTxnId, handlerId, message, commit));
+    }
+
+    @Override
+    public boolean txnPrepareRollback(long txnId, long prepareTxnId) {
+        return add(v -> v.txnPrepareRollback(txnId, prepareTxnId));
+    }
+
+    @Override
+    public boolean txnCommitFinalNotifySchema(long txnId, long indexId) {
+        return add(v -> v.txnCommitFinalNotifySchema(txnId, indexId));
+    }
+
+    @Override
+    public boolean txnPredicateMode(long txnId) {
+        return add(v -> v.txnPredicateMode(txnId));
+    }
+
+    @Override
+    public boolean txnCustom(long txnId, int handlerId, byte[] message) {
+        return add(v -> v.txnCustom(txnId, handlerId, message));
+    }
+
+    @Override
+    public boolean txnCustomLock(long txnId, int handlerId, byte[] message,
+                                 long indexId, byte[] key)
+    {
+        return add(v -> v.txnCustomLock(txnId, handlerId, message, indexId, key));
+    }
+}
@@ -54,6 +54,7 @@ import org.cojen.tupl.ext.Crypto;
 import org.cojen.tupl.io.FilePageArray;
 import org.cojen.tupl.io.OpenOption;
 import org.cojen.tupl.io.PageArray;
+import org.cojen.tupl.io.PageCompressor;
 import org.cojen.tupl.io.StripedPageArray;
 
 import org.cojen.tupl.util.Latch;
@@ -118,6 +119,9 @@ final class StoredPageDb extends PageDb implements Compactable {
     private final SnapshotPageArray mPageArray;
     private final PageManager mPageManager;
 
+    // Is null if not enabled.
+    private CompressedPageCache mCompressedCache;
+
     private final Latch mHeaderLatch;
     // Commit number is the highest one which has been committed.
     private int mCommitNumber;
@@ -429,6 +433,16 @@ final class StoredPageDb extends PageDb implements Compactable {
         return false;
     }
 
+    /**
+     * Returns the current compression dictionary, or null if none has been trained yet.
+     */
+    byte[] currentDictionary() {
+        if (mPageArray.mSource instanceof CompressedPageArray cpa) {
+            return cpa.current();
+        }
+        return null;
+    }
+
     @Override
     public int directPageSize() {
         return mPageArray.directPageSize();
@@ -440,8 +454,10 @@ final class StoredPageDb extends PageDb implements Compactable {
     }
 
     @Override
-    public Node allocLatchedNode(LocalDatabase db, int mode) throws IOException {
-        long nodeId = allocPage();
+    public Node allocLatchedNode(LocalDatabase db, int mode, PageManager.Extent extent)
+        throws IOException
+    {
+        long nodeId = allocPage(extent);
         try {
             Node node = db.allocLatchedNode(mode);
             node.id(nodeId);
@@ -481,10 +497,44 @@ final class StoredPageDb extends PageDb implements Compactable {
         mPageManager.pageLimitOverride(bytes);
     }
 
+    @Override
+    public void extentSize(int pages) {
+        mPageManager.extentSize(pages);
+    }
+
+    @Override
+    public void compressedCache(long size, Supplier<? extends PageCompressor> factory) {
+        CompressedPageCache cache = mCompressedCache;
+        if (cache != null) {
+            mCompressedCache = null;
+            cache.close();
+        }
+        if (size > 0 && factory != null && !mPageArray.isFullyMapped()) {
+            mCompressedCache = new CompressedPageCache(size, pageSize(), factory);
+        }
+    }
+
+    @Override
+    public void evictCleanPage(long id, long pageAddr) throws IOException {
+        CompressedPageCache cache = mCompressedCache;
+        if (cache != null) {
+            cache.put(id, pageAddr);
+        }
+    }
+
+    @Override
+    public PageManager.Extent newExtent() {
+        return mPageManager.newExtent();
+    }
+
     @Override
     public Stats stats() {
         var stats = new Stats();
         mPageManager.addTo(stats);
+        CompressedPageCache cache = mCompressedCache;
+        if (cache != null) {
+            cache.addTo(stats);
+        }
         return stats;
     }
 
@@ -496,6 +546,10 @@ final class StoredPageDb extends PageDb implements Compactable {
     @Override
     public void readPage(long id, long pageAddr) throws IOException {
         try {
+            CompressedPageCache cache = mCompressedCache;
+            if (cache != null && cache.remove(id, pageAddr)) {
+                return;
+            }
             mPageArray.readPage(id, pageAddr, 0, pageSize());
         } catch (Throwable e) {
             throw closeOnFailure(e);
@@ -504,9 +558,18 @@ final class StoredPageDb extends PageDb implements Compactable {
 
     @Override
     public long allocPage() throws IOException {
+        return allocPage(null);
+    }
+
+    @Override
+    public long allocPage(PageManager.Extent extent) throws IOException {
         CommitLock.Shared shared = mCommitLock.acquireShared();
         try {
-            return mPageManager.allocPage();
+            if (extent == null) {
+                return mPageManager.allocReservedPage();
+            } else {
+                return mPageManager.allocExtentPage(extent);
+            }
         } catch (DatabaseException e) {
             if (e.isRecoverable()) {
                 throw e;
@@ -522,18 +585,32 @@ final class StoredPageDb extends PageDb implements Compactable {
     @Override
     public void writePage(long id, long pageAddr) throws IOException {
         checkId(id);
+        invalidate(id);
         mPageArray.writePage(id, pageAddr, 0);
     }
 
     @Override
     public long evictPage(long id, long pageAddr) throws IOException {
         checkId(id);
+        invalidate(id);
         return mPageArray.evictPage(id, pageAddr);
     }
 
+    /**
+     * Removes a page from the compressed cache, if enabled, because its contents are
+     * changing or because the page is being freed.
+     */
+    private void invalidate(long id) {
+        CompressedPageCache cache = mCompressedCache;
+        if (cache != null) {
+            cache.invalidate(id);
+        }
+    }
+
     @Override
     public void deletePage(long id, boolean force) throws IOException {
         checkId(id);
+        invalidate(id);
         CommitLock.Shared shared = mCommitLock.acquireShared();
         try {
             mPageManager.deletePage(id, force);
@@ -549,6 +626,7 @@ final class StoredPageDb extends PageDb implements Compactable {
     @Override
     public void recyclePage(long id) throws IOException {
         checkId(id);
+        invalidate(id);
         CommitLock.Shared shared = mCommitLock.acquireShared();
         try {
             try {
@@ -747,8 +825,15 @@ final class StoredPageDb extends PageDb implements Compactable {
 
     @Override
     public void close(Throwable cause) throws IOException {
-        if (mPageArray != null) {
-            mPageArray.close(cause);
+        try {
+            if (mPageArray != null) {
+                mPageArray.close(cause);
+            }
+        } finally {
+            CompressedPageCache cache = mCompressedCache;
+            if (cache != null) {
+                cache.close();
+            }
         }
     }
 
@@ -20,9 +20,11 @@ package org.cojen.tupl.core;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 
+import java.io.InterruptedIOException;
 import java.io.IOException;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
 
@@ -39,6 +41,8 @@ import org.cojen.tupl.Transaction;
 import org.cojen.tupl.diag.EventListener;
 import org.cojen.tupl.diag.EventType;
 
+import org.cojen.tupl.util.Runner;
+
 import static org.cojen.tupl.core.PageOps.*;
 import static org.cojen.tupl.core.Utils.*;
 
@@ -1720,40 +1724,143 @@ final class UndoLog implements DatabaseAccess {
      * recovery is complete. Master log is truncated as a side effect of
      * calling this method.
      *
+     * <p>Each transaction undo log is independent of the others, and so they're recovered
+     * by several threads. Trace mode always recovers using the current thread, to keep the
+     * trace output in order.
+     *
      * @param debugListener optional
      * @param trace when true, log all recovered undo operations to debugListener
+     * @param maxThreads maximum number of threads to use; 0 for the number of processors,
+     * and negative for a multiple of the number of processors
      */
     void recoverTransactions(EventListener debugListener, boolean trace,
-                             LHashTable.Obj<LocalTransaction> txns)
+                             LHashTable.Obj<LocalTransaction> txns, int maxThreads)
         throws IOException
     {
+        // Gather all the master log entries first, which also truncates the master log.
+        var entries = new ArrayList<MasterEntry>();
         new PopAll() {
             @Override
             public boolean accept(byte op, byte[] entry) throws IOException {
-                UndoLog log = recoverUndoLog(op, entry);
-
-                if (debugListener != null) {
-                    debugListener.notify
-                        (EventType.DEBUG,
-                         "Recovered transaction undo log: " +
-                         "txnId=%1$d, length=%2$d, bufferPos=%3$d, " +
-                         "nodeId=%4$d, nodeTopPos=%5$d, activeIndexId=%6$d, committed=%7$s",
-                         log.mTxnId, log.mLength, log.mBufferPos,
-                         log.mNode == null ? 0 : log.mNode.id(), log.mNodeTopPos,
-                         log.mActiveIndexId, log.mCommitted != 0);
+                entries.add(new MasterEntry(op, entry));
+                return true;
+            }
+        }.go(true, 0);
+
+        if (maxThreads <= 0) {
+            int procCount = Runtime.getRuntime().availableProcessors();
+            maxThreads = maxThreads == 0 ? procCount : (-maxThreads * procCount);
+            if (maxThreads <= 0) {
+                // Overflowed.
+                maxThreads = Integer.MAX_VALUE;
+            }
+        }
+
+        int numThreads = trace ? 1 : Math.min(maxThreads, entries.size());
+
+        if (numThreads <= 1) {
+            for (MasterEntry entry : entries) {
+                recoverTransaction(debugListener, trace, txns, entry);
+            }
+            return;
+        }
+
+        new Object() {
+            private int mNext;
+            private int mActive;
+            private IOException mEx;
+
+            void run() throws IOException {
+                synchronized (this) {
+                    mActive = numThreads;
                 }
 
-                LocalTransaction txn = log.recoverTransaction(debugListener, trace);
+                for (int i=1; i<numThreads; i++) {
+                    try {
+                        Runner.start(this::recover);
+                    } catch (Throwable e) {
+                        synchronized (this) {
+                            mActive--;
+                        }
+                    }
+                }
 
-                // Reload the UndoLog, since recoverTransaction consumes it all.
-                txn.recoveredUndoLog(recoverUndoLog(op, entry));
-                txn.attach("recovery");
+                recover();
 
-                txns.put(log.mTxnId).value = txn;
+                synchronized (this) {
+                    while (mActive > 0) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            throw new InterruptedIOException();
+                        }
+                    }
+                    if (mEx != null) {
+                        throw mEx;
+                    }
+                }
+            }
 
-                return true;
+            private void recover() {
+                try {
+                    while (true) {
+                        MasterEntry entry;
+                        synchronized (this) {
+                            if (mEx != null || mNext >= entries.size()) {
+                                break;
+                            }
+                            entry = entries.get(mNext++);
+                        }
+                        recoverTransaction(debugListener, false, txns, entry);
+                    }
+                } catch (Throwable e) {
+                    synchronized (this) {
+                        if (mEx == null) {
+                            mEx = e instanceof IOException ioe ? ioe : new DatabaseException(e);
+                        }
+                    }
+                } finally {
+                    synchronized (this) {
+                        mActive--;
+                        notifyAll();
+                    }
+                }
             }
-        }.go(true, 0);
+        }.run();
+    }
+
+    private record MasterEntry(byte op, byte[] entry) { }
+
+    private void recoverTransaction(EventListener debugListener, boolean trace,
+                                    LHashTable.Obj<LocalTransaction> txns,
+                                    MasterEntry masterEntry)
+        throws IOException
+    {
+        byte op = masterEntry.op();
+        byte[] entry = masterEntry.entry();
+
+        UndoLog log = recoverUndoLog(op, entry);
+
+        if (debugListener != null) {
+            debugListener.notify
+                (EventType.DEBUG,
+                 "Recovered transaction undo log: " +
+                 "txnId=%1$d, length=%2$d, bufferPos=%3$d, " +
+                 "nodeId=%4$d, nodeTopPos=%5$d, activeIndexId=%6$d, committed=%7$s",
+                 log.mTxnId, log.mLength, log.mBufferPos,
+                 log.mNode == null ? 0 : log.mNode.id(), log.mNodeTopPos,
+                 log.mActiveIndexId, log.mCommitted != 0);
+        }
+
+        LocalTransaction txn = log.recoverTransaction(debugListener, trace);
+
+        // Reload the UndoLog, since recoverTransaction consumes it all.
+        txn.recoveredUndoLog(recoverUndoLog(op, entry));
+        txn.attach("recovery");
+
+        synchronized (txns) {
+            txns.put(log.mTxnId).value = txn;
+        }
     }
 
     /**
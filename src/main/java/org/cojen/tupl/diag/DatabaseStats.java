@@ -56,6 +56,15 @@ public class DatabaseStats implements Cloneable, Serializable {
      */
     public long dirtyPages;
 
+    /**
+     * The amount of cache pages which are currently backed by huge pages. Explicit huge pages
+     * are counted when they're obtained. Transparent huge pages are counted when the operating
+     * system reports them as being in use, which might be fewer than were requested.
+     *
+     * @see org.cojen.tupl.DatabaseConfig#hugePages
+     */
+    public long cacheHugePages;
+
     /**
      * The amount of indexes currently open.
      */
@@ -94,6 +103,49 @@ public class DatabaseStats implements Cloneable, Serializable {
      */
     public long replicationBacklog;
 
+    /**
+     * The amount of queries which are currently cached on behalf of remote clients.
+     */
+    public int preparedQueries;
+
+    /**
+     * The amount of times that a remote client requested a query which was already cached.
+     */
+    public long preparedQueryHits;
+
+    /**
+     * The amount of times that a query had to be prepared for a remote client, because it
+     * wasn't cached.
+     */
+    public long preparedQueryMisses;
+
+    /**
+     * The amount of cached remote queries which were evicted, because the cache was full.
+     */
+    public long preparedQueryEvictions;
+
+    /**
+     * The amount of generated query and codec classes which are strongly retained, to prevent
+     * them from being generated again after a garbage collection.
+     */
+    public int codeCacheRetained;
+
+    /**
+     * The amount of times that a generated query or codec class was found in a cache.
+     */
+    public long codeCacheHits;
+
+    /**
+     * The amount of times that a query or codec class had to be generated, because it wasn't
+     * found in a cache.
+     */
+    public long codeCacheMisses;
+
+    /**
+     * The total time spent generating query and codec classes, in milliseconds.
+     */
+    public long codeGenerationTime;
+
     @Override
     public DatabaseStats clone() {
         try {
@@ -123,12 +175,21 @@ public class DatabaseStats implements Cloneable, Serializable {
                 && totalPages == other.totalPages
                 && cachePages == other.cachePages
                 && dirtyPages == other.dirtyPages
+                && cacheHugePages == other.cacheHugePages
                 && openIndexes == other.openIndexes
                 && lockCount == other.lockCount
                 && cursorCount == other.cursorCount
                 && transactionCount == other.transactionCount
                 && checkpointDuration == other.checkpointDuration
-                && replicationBacklog == other.replicationBacklog;
+                && replicationBacklog == other.replicationBacklog
+                && preparedQueries == other.preparedQueries
+                && preparedQueryHits == other.preparedQueryHits
+                && preparedQueryMisses == other.preparedQueryMisses
+                && preparedQueryEvictions == other.preparedQueryEvictions
+                && codeCacheRetained == other.codeCacheRetained
+                && codeCacheHits == other.codeCacheHits
+                && codeCacheMisses == other.codeCacheMisses
+                && codeGenerationTime == other.codeGenerationTime;
         }
         return false;
     }
@@ -140,12 +201,21 @@ public class DatabaseStats implements Cloneable, Serializable {
             + ", totalPages=" + totalPages
             + ", cachePages=" + cachePages
             + ", dirtyPages=" + dirtyPages
+            + ", cacheHugePages=" + cacheHugePages
             + ", openIndexes=" + openIndexes
             + ", lockCount=" + lockCount
             + ", cursorCount=" + cursorCount
             + ", transactionCount=" + transactionCount
             + ", checkpointDuration=" + checkpointDuration
             + ", replicationBacklog=" + replicationBacklog
+            + ", preparedQueries=" + preparedQueries
+            + ", preparedQueryHits=" + preparedQueryHits
+            + ", preparedQueryMisses=" + preparedQueryMisses
+            + ", preparedQueryEvictions=" + preparedQueryEvictions
+            + ", codeCacheRetained=" + codeCacheRetained
+            + ", codeCacheHits=" + codeCacheHits
+            + ", codeCacheMisses=" + codeCacheMisses
+            + ", codeGenerationTime=" + codeGenerationTime
             + '}';
     }
 }
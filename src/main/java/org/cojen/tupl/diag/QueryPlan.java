@@ -376,6 +376,69 @@ public abstract sealed class QueryPlan implements Serializable {
         }
     }
 
+    /**
+     * Query plan node which skips over an optional amount of rows, and then stops producing
+     * rows once a limit has been reached.
+     */
+    public static final class Limit extends QueryPlan {
+        private static final long serialVersionUID = 1L;
+
+        public final long limit, offset;
+        public final QueryPlan source;
+
+        /**
+         * @param limit maximum amount of rows produced
+         * @param source child plan node
+         */
+        public Limit(long limit, QueryPlan source) {
+            this(limit, 0, source);
+        }
+
+        /**
+         * @param limit maximum amount of rows produced; is Long.MAX_VALUE if unlimited
+         * @param offset amount of source rows to skip
+         * @param source child plan node
+         */
+        public Limit(long limit, long offset, QueryPlan source) {
+            this.limit = limit;
+            this.offset = offset;
+            this.source = source;
+        }
+
+        @Override
+        void appendTo(Appendable a, String in1, String in2) throws IOException {
+            if (limit == Long.MAX_VALUE) {
+                a.append(in1).append("offset").append(": ").append(String.valueOf(offset));
+                a.append('\n');
+            } else {
+                a.append(in1).append("limit").append(": ").append(String.valueOf(limit));
+                a.append('\n');
+                if (offset != 0) {
+                    appendItem(a, in2, "offset").append(String.valueOf(offset)).append('\n');
+                }
+            }
+            appendSub(a, in2, null, source);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Limit lim && matches(lim);
+        }
+
+        boolean matches(Limit other) {
+            return limit == other.limit && offset == other.offset
+                && Objects.equals(source, other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Long.hashCode(limit);
+            hash = hash * 31 + Long.hashCode(offset);
+            hash = hash * 31 + Objects.hashCode(source);
+            return hash ^ 1288213629;
+        }
+    }
+
     /**
      * Query plan node which applies custom row mapping and filtering.
      */
@@ -645,6 +708,50 @@ public abstract sealed class QueryPlan implements Serializable {
         }
     }
 
+    /**
+     * Query plan node which sorts rows, but only retains the first rows. The amount of rows
+     * which must be held in memory is bounded by the limit.
+     */
+    public static final class TopSort extends Sort {
+        private static final long serialVersionUID = 1L;
+
+        public final long limit;
+
+        /**
+         * @param sortColumns columns with '+' or '-' prefix
+         * @param limit maximum amount of rows produced
+         * @param source child plan node
+         */
+        public TopSort(String[] sortColumns, long limit, QueryPlan source) {
+            super(sortColumns, source);
+            this.limit = limit;
+        }
+
+        @Override
+        void appendTo(Appendable a, String in1, String in2) throws IOException {
+            a.append(in1).append("top sort").append(": ");
+            appendArray(a, sortColumns).append('\n');
+            appendItem(a, in2, "limit").append(String.valueOf(limit)).append('\n');
+            appendSub(a, in2, null, source);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TopSort sort && matches(sort);
+        }
+
+        boolean matches(TopSort other) {
+            return super.matches(other) && limit == other.limit;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = super.hashCode();
+            hash = hash * 31 + Long.hashCode(limit);
+            return hash ^ 1930163841;
+        }
+    }
+
     /**
      * Query plan node which sorts rows within a group. The groups are already ordered
      * correctly with respect to other groups, and so a full sort isn't required.
@@ -139,6 +139,15 @@ public abstract sealed class MappedPageArray extends PageArray
         return pageCount() == 0;
     }
 
+    /**
+     * Returns the amount of bytes in the mapping which are currently backed by huge pages.
+     * When transparent huge pages are requested, the operating system decides which parts of
+     * the mapping to back with huge pages, and so the amount can change over time.
+     */
+    public long hugePageBytes() {
+        return 0;
+    }
+
     @Override
     public long pageCount() {
         return mPageCount;
@@ -52,4 +52,11 @@ public enum OpenOption {
      * be accessed in the near future.
      */
     CLOSE_DONTNEED,
+
+    /**
+     * Back an anonymous mapping with explicitly reserved huge pages, falling back to
+     * transparent huge pages if none are available. Only supported on Linux, and it has no
+     * effect on file mappings.
+     */
+    HUGE_PAGES,
 }
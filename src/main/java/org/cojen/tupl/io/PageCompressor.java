@@ -91,5 +91,56 @@ public interface PageCompressor extends Closeable {
     public void decompress(byte[] src, int srcOff, int srcLen, long dstAddr, int dstOff, int dstLen)
         throws IOException;
 
+    /**
+     * Trains a dictionary from a set of sample pages. When compressing small pages which
+     * have similar content, a dictionary can significantly improve the compression ratio.
+     * Default implementation returns null, indicating that dictionaries aren't supported.
+     *
+     * @param samples sample pages, concatenated together
+     * @param sampleSizes the size of each sample page
+     * @param capacity maximum dictionary size, in bytes
+     * @return new dictionary, or null if not supported
+     */
+    public default byte[] trainDictionary(byte[] samples, int[] sampleSizes, int capacity)
+        throws IOException
+    {
+        return null;
+    }
+
+    /**
+     * Returns the identifier of a dictionary which was created by the {@link #trainDictionary
+     * trainDictionary} method. The identifier is recorded in each compressed page, and it's
+     * used to find the dictionary again when decompressing. Default implementation throws an
+     * exception.
+     *
+     * @throws UnsupportedOperationException if dictionaries aren't supported
+     */
+    public default long dictionaryId(byte[] dictionary) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Provide access to the dictionaries which should be used when compressing and
+     * decompressing pages. Default implementation does nothing.
+     */
+    public default void dictionaries(Dictionaries dictionaries) {
+    }
+
     public void close();
+
+    /**
+     * Provides access to dictionaries which were created by the {@link #trainDictionary
+     * trainDictionary} method. Implementations must be thread-safe.
+     */
+    public static interface Dictionaries {
+        /**
+         * Returns the dictionary to use for compressing pages, or null if none.
+         */
+        public byte[] current();
+
+        /**
+         * Returns the dictionary with the given identifier, or null if not found.
+         */
+        public byte[] find(long id);
+    }
 }
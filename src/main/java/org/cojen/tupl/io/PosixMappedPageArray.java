@@ -17,9 +17,13 @@
 
 package org.cojen.tupl.io;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import java.util.EnumSet;
 
 import org.cojen.tupl.diag.EventListener;
@@ -32,9 +36,20 @@ import org.cojen.tupl.diag.EventType;
  */
 final class PosixMappedPageArray extends MappedPageArray {
     private final int mFileDescriptor;
+    private final long mMappingSize;
+
+    // Explicit huge pages are always obtained, but transparent huge pages are only requested.
+    private final boolean mExplicitHugePages, mTransparentHugePages;
 
     private volatile boolean mEmpty;
 
+    // Reading /proc/self/smaps is expensive, and so the transparent huge page amount is
+    // only refreshed after this many nanoseconds.
+    private static final long HUGE_PAGE_REFRESH_NANOS = 5_000_000_000L;
+
+    private long mHugePageBytes, mHugePageCheckNanos;
+    private boolean mHugePageChecked;
+
     PosixMappedPageArray(int pageSize, long pageCount,
                          File file, EnumSet<OpenOption> options, EventListener listener)
         throws IOException
@@ -51,13 +66,43 @@ final class PosixMappedPageArray extends MappedPageArray {
             flags |= PosixFileIO.OS_TYPE == PosixFileIO.OSX ? 0x1000 : 0x20; // MAP_ANONYMOUS
 
             long mappingSize = pageSize * pageCount;
-            long addr = PosixFileIO.mmapFd(mappingSize, prot, flags, -1, 0);
+            long addr = 0;
+            boolean huge = options.contains(OpenOption.HUGE_PAGES)
+                && PosixFileIO.OS_TYPE == PosixFileIO.LINUX;
+
+            boolean explicit = false, transparent = false;
+
+            if (huge) {
+                // Explicit huge pages must have been reserved in advance, by setting
+                // vm.nr_hugepages. The mapping size must be a multiple of the huge page size,
+                // or else munmap fails.
+                long hugeSize = hugePageSize();
+                long hugeMappingSize = ((mappingSize + hugeSize - 1) / hugeSize) * hugeSize;
+                try {
+                    addr = PosixFileIO.mmapFd
+                        (hugeMappingSize, prot, flags | 0x40000, -1, 0); // MAP_HUGETLB
+                    mappingSize = hugeMappingSize;
+                    explicit = true;
+                } catch (IOException e) {
+                    if (listener != null) {
+                        listener.notify
+                            (EventType.CACHE_INIT_INFO,
+                             "Unable to allocate using explicit huge pages: %1$s", e.getMessage());
+                    }
+                }
+            }
 
-            hugePages(addr, mappingSize, listener);
+            if (addr == 0) {
+                addr = PosixFileIO.mmapFd(mappingSize, prot, flags, -1, 0);
+                transparent = hugePages(addr, mappingSize, huge, listener);
+            }
 
             setMappingAddr(addr);
 
             mFileDescriptor = -1;
+            mMappingSize = mappingSize;
+            mExplicitHugePages = explicit;
+            mTransparentHugePages = transparent;
             mEmpty = true;
 
             return;
@@ -135,14 +180,24 @@ final class PosixMappedPageArray extends MappedPageArray {
         }
 
         mFileDescriptor = fd;
+        mMappingSize = mappingSize;
+        mExplicitHugePages = false;
+        mTransparentHugePages = false;
 
         setMappingAddr(addr);
     }
 
-    private static void hugePages(long addr, long mappingSize, EventListener listener) {
-        if (mappingSize >= (1L << 30) && PosixFileIO.OS_TYPE == PosixFileIO.LINUX) {
+    /**
+     * @param force when false, only use transparent huge pages for large mappings
+     * @return true if transparent huge pages were requested
+     */
+    private static boolean hugePages(long addr, long mappingSize, boolean force,
+                                     EventListener listener)
+    {
+        if ((force || mappingSize >= (1L << 30)) && PosixFileIO.OS_TYPE == PosixFileIO.LINUX) {
             try {
                 PosixFileIO.madviseAddr(addr, mappingSize, 14); // 14 = MADV_HUGEPAGE
+                return true;
             } catch (IOException e) {
                 if (listener != null) {
                     listener.notify
@@ -151,6 +206,98 @@ final class PosixMappedPageArray extends MappedPageArray {
                 }
             }
         }
+        return false;
+    }
+
+    /**
+     * Returns the default huge page size, as reported by /proc/meminfo.
+     */
+    private static long hugePageSize() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/meminfo"))) {
+                if (line.startsWith("Hugepagesize:")) {
+                    String size = line.substring(13).trim();
+                    if (size.endsWith("kB")) {
+                        return Long.parseLong(size.substring(0, size.length() - 2).trim()) << 10;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+        }
+        return 2L << 20;
+    }
+
+    @Override
+    public long hugePageBytes() {
+        if (mExplicitHugePages) {
+            return mMappingSize;
+        }
+        if (mTransparentHugePages) {
+            return transparentHugePageBytes();
+        }
+        return 0;
+    }
+
+    private synchronized long transparentHugePageBytes() {
+        long now = System.nanoTime();
+        if (!mHugePageChecked || (now - mHugePageCheckNanos) >= HUGE_PAGE_REFRESH_NANOS) {
+            long start;
+            try {
+                start = mappingAddr();
+            } catch (IOException e) {
+                // Closed.
+                return 0;
+            }
+            long bytes = anonHugePageBytes(start, start + mMappingSize);
+            mHugePageBytes = Math.min(mMappingSize, bytes);
+            mHugePageCheckNanos = now;
+            mHugePageChecked = true;
+        }
+        return mHugePageBytes;
+    }
+
+    /**
+     * Returns the amount of bytes within the given address range which are backed by
+     * transparent huge pages, as reported by /proc/self/smaps. Reading stops at the
+     * first mapping which is beyond the range.
+     */
+    private static long anonHugePageBytes(long start, long end) {
+        long total = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(Path.of("/proc/self/smaps"))) {
+            boolean inRange = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Each mapping begins with a line like "7f0000000000-7f0040000000 rw-p ...",
+                // which is followed by lines of fields.
+                int dash = line.indexOf('-');
+                int space = line.indexOf(' ');
+                if (dash > 0 && space > dash) {
+                    try {
+                        long vmStart = Long.parseUnsignedLong(line, 0, dash, 16);
+                        long vmEnd = Long.parseUnsignedLong(line, dash + 1, space, 16);
+                        if (Long.compareUnsigned(vmStart, end) >= 0) {
+                            // Mappings are listed in ascending order, so none remain.
+                            break;
+                        }
+                        inRange = Long.compareUnsigned(vmEnd, start) > 0;
+                        continue;
+                    } catch (NumberFormatException e) {
+                        // Not a mapping line.
+                    }
+                }
+                if (inRange && line.startsWith("AnonHugePages:")) {
+                    String size = line.substring(14).trim();
+                    if (size.endsWith("kB")) {
+                        total += Long.parseLong
+                            (size.substring(0, size.length() - 2).trim()) << 10;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+        }
+
+        return total;
     }
 
     @Override
@@ -180,7 +327,7 @@ final class PosixMappedPageArray extends MappedPageArray {
     }
 
     void doClose(long mappingAddr) throws IOException {
-        PosixFileIO.munmapAddr(mappingAddr, super.pageCount() * pageSize());
+        PosixFileIO.munmapAddr(mappingAddr, mMappingSize);
         if (mFileDescriptor != -1) {
             PosixFileIO.closeFd(mFileDescriptor);
         }
@@ -21,6 +21,9 @@ import java.lang.foreign.MemorySegment;
 
 import java.nio.ByteBuffer;
 
+import java.util.Arrays;
+
+import java.util.zip.Adler32;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -36,6 +39,8 @@ final class ZlibCompressor implements PageCompressor {
 
     private byte[] mCompressedBytes;
 
+    private Dictionaries mDictionaries;
+
     ZlibCompressor() {
         this(Deflater.DEFAULT_COMPRESSION);
     }
@@ -56,6 +61,11 @@ final class ZlibCompressor implements PageCompressor {
             .reinterpret(srcLen).asByteBuffer();
 
         try {
+            Dictionaries dictionaries = mDictionaries;
+            byte[] dict;
+            if (dictionaries != null && (dict = dictionaries.current()) != null) {
+                mDeflater.setDictionary(dict);
+            }
             mDeflater.setInput(bb);
             mDeflater.finish();
             int dstOff = 0;
@@ -89,7 +99,16 @@ final class ZlibCompressor implements PageCompressor {
 
         try {
             mInflater.setInput(src, srcOff, srcLen);
-            mInflater.inflate(bb);
+            if (mInflater.inflate(bb) == 0 && mInflater.needsDictionary()) {
+                Dictionaries dictionaries = mDictionaries;
+                long id = mInflater.getAdler() & 0xffff_ffffL;
+                byte[] dict;
+                if (dictionaries == null || (dict = dictionaries.find(id)) == null) {
+                    throw new DataFormatException("Dictionary not found: " + id);
+                }
+                mInflater.setDictionary(dict);
+                mInflater.inflate(bb);
+            }
         } catch (DataFormatException e) {
             throw Utils.rethrow(e);
         } finally {
@@ -97,9 +116,107 @@ final class ZlibCompressor implements PageCompressor {
         }
     }
 
+    @Override
+    public byte[] trainDictionary(byte[] samples, int[] sampleSizes, int capacity) {
+        return train(samples, sampleSizes, Math.min(capacity, MAX_DICTIONARY_SIZE));
+    }
+
+    @Override
+    public long dictionaryId(byte[] dictionary) {
+        var adler = new Adler32();
+        adler.update(dictionary);
+        return adler.getValue();
+    }
+
+    @Override
+    public void dictionaries(Dictionaries dictionaries) {
+        mDictionaries = dictionaries;
+    }
+
     @Override
     public void close() {
         mDeflater.end();
         mInflater.end();
     }
+
+    // Deflate cannot reference anything farther back than the window size.
+    private static final int MAX_DICTIONARY_SIZE = 32768;
+
+    private static final int GRAM_SIZE = 8, SEGMENT_SIZE = 64, TABLE_BITS = 20;
+
+    /**
+     * Builds a dictionary out of the sample segments which share the most content with other
+     * samples. Each segment is scored by counting how many samples contain each of its
+     * grams, and the highest scoring segments are selected. Deflate encodes short distances
+     * more efficiently, and so the best segments are placed at the end of the dictionary.
+     */
+    static byte[] train(byte[] samples, int[] sampleSizes, int capacity) {
+        final int mask = (1 << TABLE_BITS) - 1;
+
+        // Counts how many samples contain each gram, with hash collisions ignored.
+        var counts = new int[1 << TABLE_BITS];
+        // Identifies the last sample which counted a gram, to count each one only once.
+        var stamps = new int[1 << TABLE_BITS];
+
+        int numSegments = 0;
+        for (int i=0, off=0; i<sampleSizes.length; off += sampleSizes[i++]) {
+            int size = sampleSizes[i];
+            numSegments += size / SEGMENT_SIZE;
+            for (int j=0; j<=size-GRAM_SIZE; j++) {
+                int h = gramHash(samples, off + j) & mask;
+                if (stamps[h] != i + 1) {
+                    stamps[h] = i + 1;
+                    counts[h]++;
+                }
+            }
+        }
+
+        // Each element is the score in the upper word and the segment offset in the lower.
+        var segments = new long[numSegments];
+        numSegments = 0;
+        for (int i=0, off=0; i<sampleSizes.length; off += sampleSizes[i++]) {
+            int end = off + sampleSizes[i] - SEGMENT_SIZE;
+            for (int segOff = off; segOff <= end; segOff += SEGMENT_SIZE) {
+                long score = segmentScore(samples, segOff, counts, mask);
+                if (score > 0) {
+                    segments[numSegments++] = (score << 32) | segOff;
+                }
+            }
+        }
+
+        Arrays.sort(segments, 0, numSegments);
+
+        var dict = new byte[Math.min(capacity, numSegments * SEGMENT_SIZE)];
+        int dictPos = dict.length;
+
+        for (int i = numSegments; --i >= 0 && dictPos >= SEGMENT_SIZE; ) {
+            int segOff = (int) segments[i];
+            // Score again, since selected segments might share the same content.
+            if (segmentScore(samples, segOff, counts, mask) <= 0) {
+                continue;
+            }
+            dictPos -= SEGMENT_SIZE;
+            System.arraycopy(samples, segOff, dict, dictPos, SEGMENT_SIZE);
+            // Don't select the same content again.
+            for (int j=0; j<=SEGMENT_SIZE-GRAM_SIZE; j++) {
+                counts[gramHash(samples, segOff + j) & mask] = 0;
+            }
+        }
+
+        return dictPos == 0 ? dict : Arrays.copyOfRange(dict, dictPos, dict.length);
+    }
+
+    private static long segmentScore(byte[] samples, int segOff, int[] counts, int mask) {
+        long score = 0;
+        for (int j=0; j<=SEGMENT_SIZE-GRAM_SIZE; j++) {
+            // Subtract one to exclude the sample which contains the segment.
+            score += Math.max(0, counts[gramHash(samples, segOff + j) & mask] - 1);
+        }
+        return score;
+    }
+
+    private static int gramHash(byte[] b, int off) {
+        long v = Utils.decodeLongLE(b, off);
+        return (int) ((v * 0x9e3779b97f4a7c15L) >>> (64 - TABLE_BITS));
+    }
 }
@@ -37,6 +37,12 @@ final class ZstdCompressor implements PageCompressor {
     private static final MethodHandle getErrorName;
     private static final MethodHandle compressBound, createCCtx, freeCCtx, compressCCtx;
     private static final MethodHandle createDCtx, freeDCtx, decompressDCtx;
+    private static final MethodHandle trainFromBuffer, isError, getDictID, getDictIDFromFrame;
+
+    // Magic number at the start of a trained dictionary, which is followed by the id.
+    private static final int DICT_MAGIC = 0xec30a437;
+    private static final MethodHandle createCDict, freeCDict, compressUsingCDict;
+    private static final MethodHandle createDDict, freeDDict, decompressUsingDDict;
 
     static {
         SymbolLookup lookup;
@@ -103,6 +109,86 @@ final class ZstdCompressor implements PageCompressor {
               ValueLayout.JAVA_LONG), // srcSize
              Linker.Option.critical(true)
              );
+
+        // The dictionary builder functions are optional, and some builds of the library don't
+        // have them.
+        trainFromBuffer = lookup.find("ZDICT_trainFromBuffer").map(addr -> {
+            return linker.downcallHandle
+                (addr, FunctionDescriptor.of
+                 (ValueLayout.JAVA_LONG,  // result
+                  ValueLayout.ADDRESS,    // dictBuffer
+                  ValueLayout.JAVA_LONG,  // dictBufferCapacity
+                  ValueLayout.ADDRESS,    // samplesBuffer
+                  ValueLayout.ADDRESS,    // samplesSizes
+                  ValueLayout.JAVA_INT)); // nbSamples
+        }).orElse(null);
+
+        isError = lookup.find("ZDICT_isError").map(addr -> {
+            return linker.downcallHandle
+                (addr, FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG));
+        }).orElse(null);
+
+        getDictID = lookup.find("ZDICT_getDictID").map(addr -> {
+            return linker.downcallHandle
+                (addr, FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS,
+                                             ValueLayout.JAVA_LONG));
+        }).orElse(null);
+
+        getDictIDFromFrame = linker.downcallHandle
+            (lookup.find("ZSTD_getDictID_fromFrame").get(),
+             FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS,
+                                   ValueLayout.JAVA_LONG),
+             Linker.Option.critical(true)
+             );
+
+        createCDict = linker.downcallHandle
+            (lookup.find("ZSTD_createCDict").get(),
+             FunctionDescriptor.of
+             (ValueLayout.ADDRESS,    // result
+              ValueLayout.ADDRESS,    // dictBuffer
+              ValueLayout.JAVA_LONG,  // dictSize
+              ValueLayout.JAVA_INT)); // compressionLevel
+
+        freeCDict = linker.downcallHandle
+            (lookup.find("ZSTD_freeCDict").get(),
+             FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.ADDRESS));
+
+        compressUsingCDict = linker.downcallHandle
+            (lookup.find("ZSTD_compress_usingCDict").get(),
+             FunctionDescriptor.of
+             (ValueLayout.JAVA_LONG,  // result
+              ValueLayout.ADDRESS,    // cctx
+              ValueLayout.ADDRESS,    // dst
+              ValueLayout.JAVA_LONG,  // dstCapacity
+              ValueLayout.ADDRESS,    // src
+              ValueLayout.JAVA_LONG,  // srcSize
+              ValueLayout.ADDRESS),   // cdict
+             Linker.Option.critical(true)
+             );
+
+        createDDict = linker.downcallHandle
+            (lookup.find("ZSTD_createDDict").get(),
+             FunctionDescriptor.of
+             (ValueLayout.ADDRESS,     // result
+              ValueLayout.ADDRESS,     // dictBuffer
+              ValueLayout.JAVA_LONG)); // dictSize
+
+        freeDDict = linker.downcallHandle
+            (lookup.find("ZSTD_freeDDict").get(),
+             FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.ADDRESS));
+
+        decompressUsingDDict = linker.downcallHandle
+            (lookup.find("ZSTD_decompress_usingDDict").get(),
+             FunctionDescriptor.of
+             (ValueLayout.JAVA_LONG,  // result
+              ValueLayout.ADDRESS,    // dctx
+              ValueLayout.ADDRESS,    // dst
+              ValueLayout.JAVA_LONG,  // dstCapacity
+              ValueLayout.ADDRESS,    // src
+              ValueLayout.JAVA_LONG,  // srcSize
+              ValueLayout.ADDRESS),   // ddict
+             Linker.Option.critical(true)
+             );
     }
 
     private final int mLevel;
@@ -111,6 +197,14 @@ final class ZstdCompressor implements PageCompressor {
 
     private byte[] mCompressedBytes;
 
+    private Dictionaries mDictionaries;
+
+    // The most recently used dictionaries, which are expensive to prepare.
+    private byte[] mCompressDictionary;
+    private MemorySegment mCompressDict;
+    private int mDecompressDictionaryId;
+    private MemorySegment mDecompressDict;
+
     ZstdCompressor(int level) {
         mLevel = level;
 
@@ -140,14 +234,27 @@ final class ZstdCompressor implements PageCompressor {
         }
 
         try {
+            MemorySegment cdict = compressDict();
+
             while (true) {
-                var result = (long) compressCCtx.invokeExact
-                    (mCompressContext,
-                     MemorySegment.ofArray(dstBytes),
-                     (long) dstBytes.length,
-                     MemorySegment.ofAddress(srcAddr + srcOff),
-                     (long) srcLen,
-                     mLevel);
+                long result;
+                if (cdict == null) {
+                    result = (long) compressCCtx.invokeExact
+                        (mCompressContext,
+                         MemorySegment.ofArray(dstBytes),
+                         (long) dstBytes.length,
+                         MemorySegment.ofAddress(srcAddr + srcOff),
+                         (long) srcLen,
+                         mLevel);
+                } else {
+                    result = (long) compressUsingCDict.invokeExact
+                        (mCompressContext,
+                         MemorySegment.ofArray(dstBytes),
+                         (long) dstBytes.length,
+                         MemorySegment.ofAddress(srcAddr + srcOff),
+                         (long) srcLen,
+                         cdict);
+                }
 
                 if (result < 0) {
                     if (result == -70) { // Destination buffer is too small
@@ -167,6 +274,76 @@ final class ZstdCompressor implements PageCompressor {
         }
     }
 
+    /**
+     * Returns the prepared form of the current dictionary, or null if none.
+     */
+    private MemorySegment compressDict() throws Throwable {
+        Dictionaries dictionaries = mDictionaries;
+        byte[] dictionary;
+        if (dictionaries == null || (dictionary = dictionaries.current()) == null) {
+            return null;
+        }
+
+        if (dictionary != mCompressDictionary) {
+            MemorySegment cdict;
+            try (Arena a = Arena.ofConfined()) {
+                MemorySegment dict = copy(a, dictionary);
+                cdict = (MemorySegment) createCDict.invokeExact
+                    (dict, (long) dictionary.length, mLevel);
+            }
+            if (cdict.address() == 0) {
+                throw new OutOfMemoryError();
+            }
+            freeCompressDict();
+            mCompressDictionary = dictionary;
+            mCompressDict = cdict;
+        }
+
+        return mCompressDict;
+    }
+
+    /**
+     * Returns the prepared form of the dictionary which was used to compress the given
+     * frame, or null if none.
+     */
+    private MemorySegment decompressDict(MemorySegment frame, int frameLen) throws Throwable {
+        var id = (int) getDictIDFromFrame.invokeExact(frame, (long) frameLen);
+
+        if (id == 0) {
+            return null;
+        }
+
+        if (id != mDecompressDictionaryId || mDecompressDict == null) {
+            Dictionaries dictionaries = mDictionaries;
+            byte[] dictionary;
+            if (dictionaries == null
+                || (dictionary = dictionaries.find(id & 0xffff_ffffL)) == null)
+            {
+                throw new IllegalStateException
+                    ("Dictionary not found: " + (id & 0xffff_ffffL));
+            }
+            MemorySegment ddict;
+            try (Arena a = Arena.ofConfined()) {
+                MemorySegment dict = copy(a, dictionary);
+                ddict = (MemorySegment) createDDict.invokeExact(dict, (long) dictionary.length);
+            }
+            if (ddict.address() == 0) {
+                throw new OutOfMemoryError();
+            }
+            freeDecompressDict();
+            mDecompressDictionaryId = id;
+            mDecompressDict = ddict;
+        }
+
+        return mDecompressDict;
+    }
+
+    private static MemorySegment copy(Arena a, byte[] bytes) {
+        MemorySegment segment = a.allocate(bytes.length);
+        MemorySegment.copy(bytes, 0, segment, ValueLayout.JAVA_BYTE, 0, bytes.length);
+        return segment;
+    }
+
     private static int compressBound(int srcLen) {
         try {
             var size = (long) compressBound.invokeExact((long) srcLen);
@@ -192,12 +369,25 @@ final class ZstdCompressor implements PageCompressor {
                 srcSegment = srcSegment.asSlice(srcOff);
             }
 
-            var result = (long) decompressDCtx.invokeExact
-                (mDecompressContext,
-                 MemorySegment.ofAddress(dstAddr + dstOff),
-                 (long) dstLen,
-                 srcSegment,
-                 (long) srcLen);
+            MemorySegment ddict = decompressDict(srcSegment, srcLen);
+
+            long result;
+            if (ddict == null) {
+                result = (long) decompressDCtx.invokeExact
+                    (mDecompressContext,
+                     MemorySegment.ofAddress(dstAddr + dstOff),
+                     (long) dstLen,
+                     srcSegment,
+                     (long) srcLen);
+            } else {
+                result = (long) decompressUsingDDict.invokeExact
+                    (mDecompressContext,
+                     MemorySegment.ofAddress(dstAddr + dstOff),
+                     (long) dstLen,
+                     srcSegment,
+                     (long) srcLen,
+                     ddict);
+            }
 
             if (result < 0) {
                 throw new IllegalStateException(errorMessage(result));
@@ -207,8 +397,93 @@ final class ZstdCompressor implements PageCompressor {
         }
     }
 
+    @Override
+    public byte[] trainDictionary(byte[] samples, int[] sampleSizes, int capacity) {
+        if (trainFromBuffer == null || isError == null) {
+            return null;
+        }
+
+        int totalSize = 0;
+        for (int size : sampleSizes) {
+            totalSize += size;
+        }
+
+        try (Arena a = Arena.ofConfined()) {
+            MemorySegment dict = a.allocate(capacity);
+            MemorySegment samplesSegment = a.allocate(Math.max(1, totalSize));
+            MemorySegment.copy(samples, 0, samplesSegment, ValueLayout.JAVA_BYTE, 0, totalSize);
+            MemorySegment sizesSegment = a.allocate(ValueLayout.JAVA_LONG, sampleSizes.length);
+            for (int i=0; i<sampleSizes.length; i++) {
+                sizesSegment.setAtIndex(ValueLayout.JAVA_LONG, i, sampleSizes[i]);
+            }
+
+            var result = (long) trainFromBuffer.invokeExact
+                (dict, (long) capacity, samplesSegment, sizesSegment, sampleSizes.length);
+
+            if ((int) isError.invokeExact(result) != 0) {
+                // Usually caused by not having enough samples.
+                return null;
+            }
+
+            return dict.asSlice(0, result).toArray(ValueLayout.JAVA_BYTE);
+        } catch (Throwable e) {
+            throw Utils.rethrow(e);
+        }
+    }
+
+    @Override
+    public long dictionaryId(byte[] dictionary) {
+        if (getDictID == null) {
+            // Decode the header directly, which is what ZDICT_getDictID does.
+            if (dictionary.length < 8 || Utils.decodeIntLE(dictionary, 0) != DICT_MAGIC) {
+                return 0;
+            }
+            return Utils.decodeIntLE(dictionary, 4) & 0xffff_ffffL;
+        }
+
+        try (Arena a = Arena.ofConfined()) {
+            MemorySegment dict = copy(a, dictionary);
+            return ((int) getDictID.invokeExact(dict, (long) dictionary.length)) & 0xffff_ffffL;
+        } catch (Throwable e) {
+            throw Utils.rethrow(e);
+        }
+    }
+
+    @Override
+    public void dictionaries(Dictionaries dictionaries) {
+        mDictionaries = dictionaries;
+    }
+
+    private void freeCompressDict() {
+        MemorySegment cdict = mCompressDict;
+        if (cdict != null) {
+            mCompressDict = null;
+            mCompressDictionary = null;
+            try {
+                var result = (long) freeCDict.invokeExact(cdict);
+            } catch (Throwable e) {
+                // ignore
+            }
+        }
+    }
+
+    private void freeDecompressDict() {
+        MemorySegment ddict = mDecompressDict;
+        if (ddict != null) {
+            mDecompressDict = null;
+            try {
+                var result = (long) freeDDict.invokeExact(ddict);
+            } catch (Throwable e) {
+                // ignore
+            }
+        }
+    }
+
     @Override
     public void close() {
+        freeCompressDict();
+        freeDecompressDict();
+
         try {
             MemorySegment ctx = mCompressContext;
             if (ctx != null) {
@@ -28,6 +28,7 @@ import org.cojen.tupl.Transaction;
 
 import org.cojen.tupl.core.TupleKey;
 
+import org.cojen.tupl.diag.CompactionObserver;
 import org.cojen.tupl.diag.IndexStats;
 import org.cojen.tupl.diag.VerificationObserver;
 
@@ -91,6 +92,12 @@ class ClientIndex extends ClientView<RemoteIndex> implements Index {
         return server.check(mRemote.verify(server.flags(), server, numThreads));
     }
 
+    @Override
+    public boolean defragment(CompactionObserver observer) throws IOException {
+        var server = ServerCompactionObserver.make(mDb, observer);
+        return server.check(mRemote.defragment(server.flags(), server));
+    }
+
     @Override
     public void close() {
         close(true, false);
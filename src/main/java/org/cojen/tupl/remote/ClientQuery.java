@@ -33,11 +33,24 @@ import org.cojen.tupl.diag.QueryPlan;
  */
 final class ClientQuery<R> implements Query<R> {
     final ClientTable<R> mTable;
+
+    // Is null if the server doesn't support prepared queries.
+    final RemoteQuery mRemote;
+
+    // Is only used if the server doesn't support prepared queries.
     final String mQuery;
     final int mArgCount;
 
+    ClientQuery(ClientTable<R> table, RemoteQuery remote) {
+        mTable = table;
+        mRemote = remote;
+        mQuery = null;
+        mArgCount = 0;
+    }
+
     ClientQuery(ClientTable<R> table, String query, int argCount) {
         mTable = table;
+        mRemote = null;
         mQuery = query;
         mArgCount = argCount;
     }
@@ -49,27 +62,44 @@ final class ClientQuery<R> implements Query<R> {
 
     @Override
     public int argumentCount() {
-        return mArgCount;
+        RemoteQuery remote = mRemote;
+        return remote == null ? mArgCount : remote.argumentCount();
     }
 
     @Override
     public Scanner<R> newScanner(R row, Transaction txn, Object... args) throws IOException {
-        return mTable.newScanner(row, txn, mQuery, args);
+        RemoteQuery remote = mRemote;
+        if (remote == null) {
+            return mTable.newScanner(row, txn, mQuery, args);
+        }
+        return mTable.newScanner(remote.newScanner(remoteTransaction(txn), null, args), row);
     }
 
     @Override
     public Updater<R> newUpdater(R row, Transaction txn, Object... args) throws IOException {
-        return mTable.newUpdater(txn, mQuery, args);
+        RemoteQuery remote = mRemote;
+        if (remote == null) {
+            return mTable.newUpdater(row, txn, mQuery, args);
+        }
+        return mTable.newUpdater(remote.newUpdater(remoteTransaction(txn), null, args), row);
     }
 
     @Override
     public long deleteAll(Transaction txn, Object... args) throws IOException {
-        return mTable.mRemote.deleteAll(mTable.mDb.remoteTransaction(txn), mQuery, args);
+        RemoteQuery remote = mRemote;
+        if (remote == null) {
+            return mTable.mRemote.deleteAll(remoteTransaction(txn), mQuery, args);
+        }
+        return remote.deleteAll(remoteTransaction(txn), args);
     }
 
     @Override
     public boolean anyRows(Transaction txn, Object... args) throws IOException {
-        return mTable.mRemote.anyRows(mTable.mDb.remoteTransaction(txn), mQuery, args);
+        RemoteQuery remote = mRemote;
+        if (remote == null) {
+            return mTable.mRemote.anyRows(remoteTransaction(txn), mQuery, args);
+        }
+        return remote.anyRows(remoteTransaction(txn), args);
     }
 
     @Override
@@ -79,16 +109,32 @@ final class ClientQuery<R> implements Query<R> {
 
     @Override
     public QueryPlan scannerPlan(Transaction txn, Object... args) throws IOException {
-        return mTable.mRemote.scannerPlan(mTable.mDb.remoteTransaction(txn), mQuery, args);
+        RemoteQuery remote = mRemote;
+        if (remote == null) {
+            return mTable.mRemote.scannerPlan(remoteTransaction(txn), mQuery, args);
+        }
+        return remote.scannerPlan(remoteTransaction(txn), args);
     }
 
     @Override
     public QueryPlan updaterPlan(Transaction txn, Object... args) throws IOException {
-        return mTable.mRemote.updaterPlan(mTable.mDb.remoteTransaction(txn), mQuery, args);
+        RemoteQuery remote = mRemote;
+        if (remote == null) {
+            return mTable.mRemote.updaterPlan(remoteTransaction(txn), mQuery, args);
+        }
+        return remote.updaterPlan(remoteTransaction(txn), args);
     }
 
     @Override
     public QueryPlan streamPlan(Transaction txn, Object... args) throws IOException {
-        return mTable.mRemote.streamPlan(mTable.mDb.remoteTransaction(txn), mQuery, args);
+        RemoteQuery remote = mRemote;
+        if (remote == null) {
+            return mTable.mRemote.streamPlan(remoteTransaction(txn), mQuery, args);
+        }
+        return remote.streamPlan(remoteTransaction(txn), args);
+    }
+
+    private RemoteTransaction remoteTransaction(Transaction txn) {
+        return mTable.mDb.remoteTransaction(txn);
     }
 }
@@ -27,6 +27,7 @@ import java.util.Spliterator;
 import org.cojen.dirmi.ClosedException;
 import org.cojen.dirmi.Pipe;
 import org.cojen.dirmi.RemoteException;
+import org.cojen.dirmi.UnimplementedException;
 
 import org.cojen.tupl.ColumnProcessor;
 import org.cojen.tupl.DurabilityMode;
@@ -60,6 +61,8 @@ final class ClientTable<R> implements Table<R> {
 
     private RemoteTableProxy mProxy;
 
+    private volatile boolean mPrepareUnsupported;
+
     static final VarHandle cProxyHandle;
 
     static {
@@ -137,7 +140,7 @@ final class ClientTable<R> implements Table<R> {
         return newScanner(mRemote.newScanner(mDb.remoteTransaction(txn), null, query, args), row);
     }
 
-    private Scanner<R> newScanner(Pipe pipe, R row) throws IOException {
+    Scanner<R> newScanner(Pipe pipe, R row) throws IOException {
         try {
             pipe.flush();
             return new RowReader<R>(mType, pipe, row);
@@ -159,7 +162,7 @@ final class ClientTable<R> implements Table<R> {
         return newUpdater(mRemote.newUpdater(mDb.remoteTransaction(txn), null, query, args), row);
     }
 
-    private ClientUpdater<R> newUpdater(Pipe pipe, R row) throws IOException {
+    ClientUpdater<R> newUpdater(Pipe pipe, R row) throws IOException {
         RemoteTableProxy proxy = proxy();
 
         pipe.writeObject(proxy);
@@ -194,13 +197,19 @@ final class ClientTable<R> implements Table<R> {
 
     @Override
     public Query<R> query(String query) throws IOException {
-        // TODO: This design just validates the query and sends the query string to the server
-        // each time. An improved design should cache the client and server query objects, and
-        // the server needs to be able to release the objects when memory is low. It will need
-        // to use a SoftReference and some way of disposing the remote object in a way that
-        // preserves restorability.
-        int argCount = mRemote.query(query);
-        return new ClientQuery<>(this, query, argCount);
+        if (!mPrepareUnsupported) {
+            try {
+                // The server keeps the prepared query in a bounded cache, which is strongly
+                // referenced. The remote handle is restored automatically after reconnecting.
+                return new ClientQuery<>(this, mRemote.prepare(query));
+            } catch (UnimplementedException e) {
+                // The server is older and doesn't support prepared queries, so pass the
+                // query string along with each request instead.
+                mPrepareUnsupported = true;
+            }
+        }
+
+        return new ClientQuery<>(this, query, mRemote.query(query));
     }
 
     @Override
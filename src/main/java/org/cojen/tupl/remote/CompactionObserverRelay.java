@@ -40,15 +40,27 @@ final class CompactionObserverRelay extends CompactionObserver {
     public static boolean compactFile(int flags, Database db,
                                       RemoteCompactionObserver remote, double target)
         throws IOException
+    {
+        return compact(flags, remote, obs -> db.compactFile(obs, target));
+    }
+
+    /**
+     * @param flags bit 1: provide indexNodeVisited messages
+     * @param remote provided by the client
+     * @param upon calls the compaction method upon a local index or database instance
+     */
+    public static boolean compact(int flags, RemoteCompactionObserver remote,
+                                  ObserverCallback<CompactionObserver, IOException> upon)
+        throws IOException
     {
         if (remote == null) {
-            return db.compactFile(new CompactionObserver(), target);
+            return upon.run(new CompactionObserver());
         }
 
         var relay = new CompactionObserverRelay(flags, remote);
 
         try {
-            return db.compactFile(relay, target);
+            return upon.run(relay);
         } finally {
             relay.finished();
         }
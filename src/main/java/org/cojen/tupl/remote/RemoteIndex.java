@@ -63,6 +63,11 @@ public interface RemoteIndex extends RemoteView {
     public boolean verify(int flags, RemoteVerificationObserver observer, int numThreads)
         throws IOException;
 
+    /**
+     * @param flags bit 1: provide indexNodeVisited messages
+     */
+    public boolean defragment(int flags, RemoteCompactionObserver observer) throws IOException;
+
     @Disposer
     public void close() throws IOException;
 
@@ -64,6 +64,14 @@ public interface RemoteTable extends Remote, Disposable {
      */
     public int query(String query) throws IOException;
 
+    /**
+     * Returns a handle to a query which is prepared by the server. The server keeps the
+     * prepared query strongly referenced in a bounded cache which is shared by all
+     * connections.
+     */
+    @Restorable
+    public RemoteQuery prepare(String query) throws IOException;
+
     public long deleteAll(RemoteTransaction txn, String query, Object... args) throws IOException;
 
     public boolean anyRows(RemoteTransaction txn) throws IOException;
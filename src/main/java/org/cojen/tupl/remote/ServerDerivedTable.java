@@ -20,6 +20,7 @@ package org.cojen.tupl.remote;
 import java.io.IOException;
 
 import org.cojen.tupl.table.BaseTable;
+import org.cojen.tupl.table.PreparedQueryCache;
 
 /**
  * 
@@ -29,8 +30,11 @@ import org.cojen.tupl.table.BaseTable;
 final class ServerDerivedTable<R> extends ServerTable<R> implements RemoteTable {
     private final byte[] mDescriptor;
 
-    ServerDerivedTable(BaseTable<R> table, byte[] descriptor) throws IOException {
-        super(table);
+    ServerDerivedTable(BaseTable<R> table, PreparedQueryCache queryCache, Object tableKey,
+                       byte[] descriptor)
+        throws IOException
+    {
+        super(table, queryCache, tableKey);
         mDescriptor = descriptor;
     }
 
@@ -62,7 +62,8 @@ class ServerIndex extends ServerView<Index> implements RemoteIndex {
             throw new IllegalStateException(e);
         }
 
-        return new ServerTable<>((StoredTable<?>) mView.asTable(clazz));
+        var table = (StoredTable<?>) mView.asTable(clazz);
+        return new ServerTable<>(table, table.preparedQueries());
     }
 
     @Override
@@ -86,6 +87,11 @@ class ServerIndex extends ServerView<Index> implements RemoteIndex {
             (flags, remote, obs -> mView.verify(obs, numThreads));
     }
 
+    @Override
+    public boolean defragment(int flags, RemoteCompactionObserver remote) throws IOException {
+        return CompactionObserverRelay.compact(flags, remote, obs -> mView.defragment(obs));
+    }
+
     @Override
     public void close() throws IOException {
         mView.close();
@@ -0,0 +1,90 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.remote;
+
+import java.io.IOException;
+
+import org.cojen.dirmi.Pipe;
+
+import org.cojen.tupl.Query;
+
+import org.cojen.tupl.diag.QueryPlan;
+
+/**
+ * 
+ *
+ * @author Brian S. O'Neill
+ * @see org.cojen.tupl.table.PreparedQueryCache
+ */
+final class ServerQuery<R> implements RemoteQuery {
+    private final ServerTable<R> mTable;
+    private final String mQueryStr;
+    private final Query<R> mQuery;
+
+    ServerQuery(ServerTable<R> table, String queryStr, Query<R> query) {
+        mTable = table;
+        mQueryStr = queryStr;
+        mQuery = query;
+    }
+
+    @Override
+    public int argumentCount() {
+        return mQuery.argumentCount();
+    }
+
+    @Override
+    public Pipe newScanner(RemoteTransaction txn, Pipe pipe, Object... args) throws IOException {
+        return mTable.scanWrite(txn, pipe, mQuery, null, args);
+    }
+
+    @Override
+    public Pipe newUpdater(RemoteTransaction txn, Pipe pipe, Object... args) throws IOException {
+        mTable.newUpdater(mQuery.newUpdater(ServerTransaction.txn(txn), args), pipe);
+        return null;
+    }
+
+    @Override
+    public long deleteAll(RemoteTransaction txn, Object... args) throws IOException {
+        return mQuery.deleteAll(ServerTransaction.txn(txn), args);
+    }
+
+    @Override
+    public boolean anyRows(RemoteTransaction txn, Object... args) throws IOException {
+        return mQuery.anyRows(ServerTransaction.txn(txn), args);
+    }
+
+    @Override
+    public QueryPlan scannerPlan(RemoteTransaction txn, Object... args) throws IOException {
+        return mQuery.scannerPlan(ServerTransaction.txn(txn), args);
+    }
+
+    @Override
+    public QueryPlan updaterPlan(RemoteTransaction txn, Object... args) throws IOException {
+        return mQuery.updaterPlan(ServerTransaction.txn(txn), args);
+    }
+
+    @Override
+    public QueryPlan streamPlan(RemoteTransaction txn, Object... args) throws IOException {
+        return mQuery.streamPlan(ServerTransaction.txn(txn), args);
+    }
+
+    @Override
+    public void dispose() {
+        mTable.release(mQueryStr, mQuery);
+    }
+}
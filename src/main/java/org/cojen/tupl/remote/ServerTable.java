@@ -30,6 +30,7 @@ import org.cojen.tupl.diag.QueryPlan;
 import org.cojen.tupl.io.Utils;
 
 import org.cojen.tupl.table.BaseTable;
+import org.cojen.tupl.table.PreparedQueryCache;
 import org.cojen.tupl.table.RowInfo;
 import org.cojen.tupl.table.RowStore;
 import org.cojen.tupl.table.WeakCache;
@@ -42,10 +43,30 @@ import org.cojen.tupl.table.WeakCache;
 sealed class ServerTable<R> implements RemoteTable permits ServerDerivedTable {
     final BaseTable<R> mTable;
 
+    private final PreparedQueryCache mQueryCache;
+
+    // Identifies the table in the query cache; see PreparedQueryCache.derivedKey.
+    private final Object mTableKey;
+
     private final WeakCache<byte[], RemoteTableProxy, Object> mProxyCache;
 
-    ServerTable(BaseTable<R> table) throws IOException {
+    /**
+     * @param queryCache optional cache of prepared queries
+     */
+    ServerTable(BaseTable<R> table, PreparedQueryCache queryCache) throws IOException {
+        this(table, queryCache, table);
+    }
+
+    /**
+     * @param queryCache optional cache of prepared queries
+     * @param tableKey identifies the table in the query cache
+     */
+    ServerTable(BaseTable<R> table, PreparedQueryCache queryCache, Object tableKey)
+        throws IOException
+    {
         mTable = table;
+        mQueryCache = queryCache;
+        mTableKey = tableKey;
 
         mProxyCache = new WeakCache<>() {
             @Override
@@ -86,11 +107,32 @@ sealed class ServerTable<R> implements RemoteTable permits ServerDerivedTable {
     }
 
     @Override
-    public Pipe newScanner(RemoteTransaction txn, Pipe pipe, String query, Object... args)
+    public Pipe newScanner(RemoteTransaction txn, Pipe pipe, String queryStr, Object... args)
+        throws IOException
+    {
+        Query<R> query;
+        try {
+            query = prepared(queryStr);
+        } catch (RuntimeException | IOException e) {
+            // Scan using the query string instead, which writes the exception to the pipe.
+            query = null;
+        }
+        return scanWrite(txn, pipe, query, queryStr, args);
+    }
+
+    /**
+     * @param query if null, scan using the query string instead
+     */
+    Pipe scanWrite(RemoteTransaction txn, Pipe pipe, Query<R> query, String queryStr,
+                   Object... args)
         throws IOException
     {
         try {
-            mTable.scanWrite(ServerTransaction.txn(txn), pipe, query, args);
+            if (query != null) {
+                mTable.scanWrite(ServerTransaction.txn(txn), pipe, query, args);
+            } else {
+                mTable.scanWrite(ServerTransaction.txn(txn), pipe, queryStr, args);
+            }
             pipe.flush();
             pipe.recycle();
             return null;
@@ -113,7 +155,7 @@ sealed class ServerTable<R> implements RemoteTable permits ServerDerivedTable {
     public Pipe newUpdater(RemoteTransaction txn, Pipe pipe, String query, Object... args)
         throws IOException
     {
-        newUpdater(mTable.newUpdater(ServerTransaction.txn(txn), query, args), pipe);
+        newUpdater(prepared(query).newUpdater(ServerTransaction.txn(txn), args), pipe);
         return null;
     }
 
@@ -146,15 +188,41 @@ sealed class ServerTable<R> implements RemoteTable permits ServerDerivedTable {
     @Override
     public int query(String query) throws IOException {
         // This just validates the query.
-        return mTable.query(query).argumentCount();
+        return prepared(query).argumentCount();
+    }
+
+    @Override
+    public RemoteQuery prepare(String query) throws IOException {
+        PreparedQueryCache cache = mQueryCache;
+        if (cache == null) {
+            return new ServerQuery<>(this, query, mTable.query(query));
+        }
+        return new ServerQuery<>(this, query, cache.acquire(mTable, mTableKey, query));
+    }
+
+    /**
+     * Returns a Query object from the database's cache of prepared queries.
+     */
+    Query<R> prepared(String query) throws IOException {
+        PreparedQueryCache cache = mQueryCache;
+        return cache == null ? mTable.query(query) : cache.obtain(mTable, mTableKey, query);
+    }
+
+    /**
+     * Called when a query handle returned by the prepare method is disposed.
+     */
+    void release(String queryStr, Query<R> query) {
+        PreparedQueryCache cache = mQueryCache;
+        if (cache != null) {
+            cache.release(mTableKey, queryStr, query);
+        }
     }
 
     @Override
     public long deleteAll(RemoteTransaction txn, String queryStr, Object... args)
         throws IOException
     {
-        Query query = mTable.query(queryStr);
-        return query.deleteAll(ServerTransaction.txn(txn), args);
+        return prepared(queryStr).deleteAll(ServerTransaction.txn(txn), args);
     }
 
     @Override
@@ -164,7 +232,7 @@ sealed class ServerTable<R> implements RemoteTable permits ServerDerivedTable {
 
     @Override
     public boolean anyRows(RemoteTransaction txn, String query, Object... args) throws IOException {
-        return mTable.anyRows(ServerTransaction.txn(txn), query, args);
+        return prepared(query).anyRows(ServerTransaction.txn(txn), args);
     }
 
     @Override
@@ -186,7 +254,9 @@ sealed class ServerTable<R> implements RemoteTable permits ServerDerivedTable {
         // There's no reason to assume that the server will have an interface that the client
         // has, and it might not match anyhow.
         Class<?> rowType = RowTypeCache.findPlain(descriptor);
-        return new ServerTable((BaseTable) mTable.derive(rowType, query, args));
+        var table = (BaseTable) mTable.derive(rowType, query, args);
+        Object key = PreparedQueryCache.derivedKey(mTableKey, descriptor, query, args);
+        return new ServerTable(table, mQueryCache, key);
 
         /* Attempt to find the interface by name.
         findRowType: {
@@ -209,7 +279,8 @@ sealed class ServerTable<R> implements RemoteTable permits ServerDerivedTable {
     public RemoteTable derive(String query, Object... args) throws IOException {
         var table = (BaseTable) mTable.derive(query, args);
         byte[] descriptor = RowStore.primaryDescriptor(RowInfo.find(table.rowType()));
-        return new ServerDerivedTable(table, descriptor);
+        Object key = PreparedQueryCache.derivedKey(mTableKey, null, query, args);
+        return new ServerDerivedTable(table, mQueryCache, key, descriptor);
     }
 
     @Override
@@ -221,29 +292,30 @@ sealed class ServerTable<R> implements RemoteTable permits ServerDerivedTable {
     public QueryPlan scannerPlan(RemoteTransaction txn, String queryStr, Object... args)
         throws IOException
     {
-        Query query = mTable.query(queryStr);
-        return query.scannerPlan(ServerTransaction.txn(txn), args);
+        return prepared(queryStr).scannerPlan(ServerTransaction.txn(txn), args);
     }
 
     @Override
     public QueryPlan updaterPlan(RemoteTransaction txn, String queryStr, Object... args)
         throws IOException
     {
-        Query query = mTable.query(queryStr);
-        return query.updaterPlan(ServerTransaction.txn(txn), args);
+        return prepared(queryStr).updaterPlan(ServerTransaction.txn(txn), args);
     }
 
     @Override
     public QueryPlan streamPlan(RemoteTransaction txn, String queryStr, Object... args)
         throws IOException
     {
-        Query query = mTable.query(queryStr);
-        return query.streamPlan(ServerTransaction.txn(txn), args);
+        return prepared(queryStr).streamPlan(ServerTransaction.txn(txn), args);
     }
 
     @Override
     public void close() throws IOException {
         mTable.close();
+        PreparedQueryCache cache = mQueryCache;
+        if (cache != null) {
+            cache.removeAll(mTable);
+        }
     }
 
     @Override
@@ -0,0 +1,113 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import org.cojen.tupl.Transaction;
+
+/**
+ * Trigger which maintains materialized aggregate tables, after first calling a trigger which
+ * maintains the secondary indexes.
+ *
+ * @author Brian S O'Neill
+ * @see MaterializedAggregate
+ */
+final class AggregateTrigger<R> extends Trigger<R> {
+    private final Trigger<R> mIndexTrigger;
+    private final MaterializedAggregate<?, ?>[] mAggregates;
+
+    /**
+     * @param indexTrigger can be null if no secondary indexes exist
+     */
+    AggregateTrigger(Trigger<R> indexTrigger, MaterializedAggregate<?, ?>[] aggregates) {
+        mIndexTrigger = indexTrigger;
+        mAggregates = aggregates;
+    }
+
+    @Override
+    public void store(Transaction txn, R row, byte[] key, byte[] oldValue, byte[] newValue)
+        throws IOException
+    {
+        if (mIndexTrigger != null) {
+            mIndexTrigger.store(txn, row, key, oldValue, newValue);
+        }
+        for (var agg : mAggregates) {
+            agg.stored(txn, key, oldValue, newValue);
+        }
+    }
+
+    @Override
+    public void storeP(Transaction txn, R row, byte[] key, byte[] oldValue, byte[] newValue)
+        throws IOException
+    {
+        if (mIndexTrigger != null) {
+            mIndexTrigger.storeP(txn, row, key, oldValue, newValue);
+        }
+        for (var agg : mAggregates) {
+            agg.stored(txn, key, oldValue, newValue);
+        }
+    }
+
+    @Override
+    public void insert(Transaction txn, R row, byte[] key, byte[] newValue) throws IOException {
+        if (mIndexTrigger != null) {
+            mIndexTrigger.insert(txn, row, key, newValue);
+        }
+        for (var agg : mAggregates) {
+            agg.inserted(txn, key, newValue);
+        }
+    }
+
+    @Override
+    public void insertP(Transaction txn, R row, byte[] key, byte[] newValue) throws IOException {
+        if (mIndexTrigger != null) {
+            mIndexTrigger.insertP(txn, row, key, newValue);
+        }
+        for (var agg : mAggregates) {
+            agg.inserted(txn, key, newValue);
+        }
+    }
+
+    @Override
+    public void delete(Transaction txn, R row, byte[] key, byte[] oldValue) throws IOException {
+        if (mIndexTrigger != null) {
+            mIndexTrigger.delete(txn, row, key, oldValue);
+        }
+        for (var agg : mAggregates) {
+            agg.deleted(txn, key, oldValue);
+        }
+    }
+
+    @Override
+    public void delete(Transaction txn, byte[] key, byte[] oldValue) throws IOException {
+        if (mIndexTrigger != null) {
+            mIndexTrigger.delete(txn, key, oldValue);
+        }
+        for (var agg : mAggregates) {
+            agg.deleted(txn, key, oldValue);
+        }
+    }
+
+    @Override
+    protected void notifyDisabled() {
+        if (mIndexTrigger != null) {
+            mIndexTrigger.notifyDisabled();
+        }
+    }
+}
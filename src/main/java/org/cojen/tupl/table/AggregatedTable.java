@@ -103,7 +103,8 @@ public abstract class AggregatedTable<S, T> extends WrappedTable<S, T>
      * Applies a special form of aggregation which selects distinct rows. If the given table
      * already has a primary key, then it's simply returned. Otherwise, a primary key is
      * chosen, the source is ordered by it, and an AggregatedTable is returned which uses
-     * DistinctScanner instead of AggregatedScanner.
+     * DistinctScanner instead of AggregatedScanner. If the query doesn't request any
+     * ordering, then the source isn't ordered, and a HashDistinctScanner is used instead.
      */
     @SuppressWarnings("unchecked")
     public static <R> Table<R> distinct(Table<R> source) throws IOException {
@@ -472,6 +473,10 @@ public abstract class AggregatedTable<S, T> extends WrappedTable<S, T>
             }
         }
 
+        // When no target ordering is requested, the distinct variant doesn't need to order the
+        // source rows, and so a hash-based approach is used instead.
+        boolean hashDistinct = mAggregatorFactory == null && targetQuery.orderBy() == null;
+
         OrderBy sourceOrderBy = null, targetOrderBy;
 
         if (targetInfo.keyColumns.isEmpty()) {
@@ -524,7 +529,7 @@ public abstract class AggregatedTable<S, T> extends WrappedTable<S, T>
             }
         }
 
-        if (!targetInfo.keyColumns.isEmpty()) {
+        if (!targetInfo.keyColumns.isEmpty() && !hashDistinct) {
             // To ensure proper grouping, all group-by columns (the target primary key) must be
             // appended to the source order-by.
             if (sourceOrderBy == null) {
@@ -578,7 +583,7 @@ public abstract class AggregatedTable<S, T> extends WrappedTable<S, T>
 
             Variable targetComparatorVar = null;
 
-            if (!targetInfo.keyColumns.isEmpty()) {
+            if (!targetInfo.keyColumns.isEmpty() && !hashDistinct) {
                 var aggregateOrderBy = new OrderBy(sourceOrderBy);
                 Iterator<Map.Entry<String, OrderBy.Rule>> it =
                     aggregateOrderBy.entrySet().iterator();
@@ -606,6 +611,27 @@ public abstract class AggregatedTable<S, T> extends WrappedTable<S, T>
 
                 targetScannerVar = mm.new_(AggregatedScanner.class, tableVar, sourceScannerVar,
                                            targetComparatorVar, targetRowVar, aggregatorVar);
+            } else if (hashDistinct) {
+                var spec = new StringBuilder();
+                for (String name : targetInfo.keyColumns.keySet()) {
+                    spec.append('+').append(name);
+                }
+
+                var codecVar = mm.var(SortRowCodec.class).setExact
+                    (SortRowCodec.find(targetType, null, spec.toString()));
+
+                final var distinctScannerVar = mm.var(Scanner.class);
+                targetScannerVar = distinctScannerVar;
+
+                var sourceScannerVar = mm.field("squery")
+                    .invoke(methodName, targetRowVar, txnVar, argsVar);
+
+                mm.invoke("isUnion", sourceScannerVar).ifTrue(() -> {
+                    distinctScannerVar.set(sourceScannerVar);
+                }, () -> {
+                    distinctScannerVar.set(mm.new_(HashDistinctScanner.class, mm.invoke("source"),
+                                                   codecVar, sourceScannerVar));
+                });
             } else {
                 final var comparatorVar = targetComparatorVar;
                 assert comparatorVar != null;
@@ -664,7 +690,7 @@ public abstract class AggregatedTable<S, T> extends WrappedTable<S, T>
             if (mAggregatorFactory != null) {
                 planVar = tableVar.invoke("plan", mm.invoke("aggregatorPlan", null, planVar));
             } else {
-                planVar = mm.invoke("distinctPlan", planVar);
+                planVar = mm.invoke("distinctPlan", planVar, hashDistinct);
             }
 
             if (targetQuery.filter() != TrueFilter.THE) {
@@ -747,8 +773,11 @@ public abstract class AggregatedTable<S, T> extends WrappedTable<S, T>
             return scanner instanceof UnionScanner;
         }
 
-        protected final QueryPlan distinctPlan(QueryPlan source) {
-            return squery instanceof UnionQuery ? source : aggregatorPlan("distinct", source);
+        protected final QueryPlan distinctPlan(QueryPlan source, boolean hash) {
+            if (squery instanceof UnionQuery) {
+                return source;
+            }
+            return aggregatorPlan(hash ? "hash distinct" : "distinct", source);
         }
     }
 
@@ -29,6 +29,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.random.RandomGenerator;
 
 import org.cojen.tupl.Cursor;
+import org.cojen.tupl.DatabaseException;
 import org.cojen.tupl.Index;
 import org.cojen.tupl.LockFailureException;
 import org.cojen.tupl.LockResult;
@@ -44,10 +45,17 @@ import org.cojen.tupl.util.LocalPool;
  * @author Brian S O'Neill
  */
 public abstract class AutomaticKeyGenerator<R> {
+    // Number of sequential values which are leased at a time.
+    static final int BLOCK_SIZE = 256;
+
     private final Index mIndex;
     private final LocalPool<SoftReference<KeyState>> mStatePool;
 
-    AutomaticKeyGenerator(Index index) {
+    // Is null when not generating sequential values.
+    private final TableManager<?> mManager;
+
+    AutomaticKeyGenerator(TableManager<?> manager, Index index) {
+        mManager = manager;
         mIndex = index;
         mStatePool = new LocalPool<>(null);
     }
@@ -61,12 +69,42 @@ public abstract class AutomaticKeyGenerator<R> {
          * @param max inclusive
          */
         public OfInt(Index index, int min, int max, Applier<R> applier) {
-            super(index);
+            this(null, index, min, max, applier);
+        }
+
+        /**
+         * Constructor for generating sequential values.
+         *
+         * @param manager is used for persisting the high-water mark
+         * @param min inclusive
+         * @param max inclusive
+         */
+        public OfInt(TableManager<?> manager, Index index, int min, int max,
+                     Applier<R> applier)
+        {
+            super(manager, index);
             mMin = min;
             mMax = max;
             mApplier = applier;
         }
 
+        @Override
+        protected long firstValue() {
+            return mMin;
+        }
+
+        @Override
+        protected long nextBlock(long start) {
+            int end = ((int) start) + BLOCK_SIZE;
+            return (end > mMax || end <= ((int) start)) ? mMin : end;
+        }
+
+        @Override
+        protected void sequenceKey(byte[] key, long start) {
+            // Encode the value which precedes the start, because incrementKey is called next.
+            encode(key, ((int) start) - 1);
+        }
+
         @Override
         public void writeTail(byte[] key, DataOutput out) throws IOException {
             out.writeInt(decode(key));
@@ -151,6 +189,19 @@ public abstract class AutomaticKeyGenerator<R> {
             super(index, min, max, applier);
         }
 
+        /**
+         * Constructor for generating sequential values.
+         *
+         * @param manager is used for persisting the high-water mark
+         * @param min inclusive
+         * @param max inclusive
+         */
+        public OfUInt(TableManager<?> manager, Index index, int min, int max,
+                      Applier<R> applier)
+        {
+            super(manager, index, min, max, applier);
+        }
+
         protected int decode(byte[] key) {
             return RowUtils.decodeIntBE(key, key.length - 4);
         }
@@ -169,12 +220,42 @@ public abstract class AutomaticKeyGenerator<R> {
          * @param max inclusive
          */
         public OfLong(Index index, long min, long max, Applier<R> applier) {
-            super(index);
+            this(null, index, min, max, applier);
+        }
+
+        /**
+         * Constructor for generating sequential values.
+         *
+         * @param manager is used for persisting the high-water mark
+         * @param min inclusive
+         * @param max inclusive
+         */
+        public OfLong(TableManager<?> manager, Index index, long min, long max,
+                      Applier<R> applier)
+        {
+            super(manager, index);
             mMin = min;
             mMax = max;
             mApplier = applier;
         }
 
+        @Override
+        protected long firstValue() {
+            return mMin;
+        }
+
+        @Override
+        protected long nextBlock(long start) {
+            long end = start + BLOCK_SIZE;
+            return (end > mMax || end <= start) ? mMin : end;
+        }
+
+        @Override
+        protected void sequenceKey(byte[] key, long start) {
+            // Encode the value which precedes the start, because incrementKey is called next.
+            encode(key, start - 1);
+        }
+
         @Override
         public void writeTail(byte[] key, DataOutput out) throws IOException {
             out.writeLong(decode(key));
@@ -259,6 +340,19 @@ public abstract class AutomaticKeyGenerator<R> {
             super(index, min, max, applier);
         }
 
+        /**
+         * Constructor for generating sequential values.
+         *
+         * @param manager is used for persisting the high-water mark
+         * @param min inclusive
+         * @param max inclusive
+         */
+        public OfULong(TableManager<?> manager, Index index, long min, long max,
+                       Applier<R> applier)
+        {
+            super(manager, index, min, max, applier);
+        }
+
         protected long decode(byte[] key) {
             return RowUtils.decodeLongBE(key, key.length - 8);
         }
@@ -288,9 +382,13 @@ public abstract class AutomaticKeyGenerator<R> {
             } else {
                 c = mIndex.newCursor(Transaction.BOGUS);
                 c.autoload(false);
-                var rnd = RandomGenerator.of("L64X128MixRandom");
-                randomPosition(key, rnd, c);
-                state = register(c, rnd);
+                if (mManager != null) {
+                    state = register(c, null);
+                } else {
+                    var rnd = RandomGenerator.of("L64X128MixRandom");
+                    randomPosition(key, rnd, c);
+                    state = register(c, rnd);
+                }
                 entry.replace(new SoftReference<>(state));
             }
 
@@ -299,6 +397,15 @@ public abstract class AutomaticKeyGenerator<R> {
                 byte[] srcKey = c.key();
 
                 while (true) {
+                    if (mManager != null && --state.mRemaining < 0) {
+                        // Lease a new block of sequential values.
+                        sequenceKey(key, leaseBlock());
+                        state.mRemaining = BLOCK_SIZE - 1;
+                        c.find(key);
+                        c.register();
+                        srcKey = key;
+                    }
+
                     RowPredicateLock.Closer closer = incrementKey(txn, row, srcKey, key, value);
 
                     if (closer != null) {
@@ -370,7 +477,9 @@ public abstract class AutomaticKeyGenerator<R> {
                         Thread.yield();
                     }
 
-                    randomPosition(key, state.mRandom, c);
+                    if (mManager == null) {
+                        randomPosition(key, state.mRandom, c);
+                    }
                 }
             } finally {
                 // Prevent the cursor from being closed prematurely due to GC. The loop isn't
@@ -401,11 +510,39 @@ public abstract class AutomaticKeyGenerator<R> {
 
     protected abstract void randomKey(byte[] key, RandomGenerator rnd);
 
+    /**
+     * Returns the first sequential value to generate when no high-water mark exists.
+     */
+    protected abstract long firstValue();
+
+    /**
+     * Returns the start of the sequential block which follows the block with the given
+     * start, wrapping around to the minimum value if necessary.
+     */
+    protected abstract long nextBlock(long start);
+
+    /**
+     * Encodes the key tail such that the next call to incrementKey produces the given
+     * sequential value.
+     */
+    protected abstract void sequenceKey(byte[] key, long start);
+
     protected abstract RowPredicateLock.Closer incrementKey(Transaction txn, R row,
                                                             byte[] srcKey, byte[] dstKey,
                                                             byte[] value)
         throws IOException;
 
+    /**
+     * Returns the start of a newly leased block of sequential values.
+     */
+    private long leaseBlock() throws IOException {
+        RowStore rs = mManager.mRowStoreRef.get();
+        if (rs == null) {
+            throw new DatabaseException("Closed");
+        }
+        return rs.leaseAutoBlock(mIndex.id(), firstValue(), this::nextBlock);
+    }
+
     private void randomPosition(byte[] key, RandomGenerator rnd, Cursor c) throws IOException {
         randomKey(key, rnd);
         c.find(key);
@@ -445,6 +582,9 @@ public abstract class AutomaticKeyGenerator<R> {
         final Cursor mCursor;
         final RandomGenerator mRandom;
 
+        // Number of sequential values remaining in the currently leased block.
+        int mRemaining;
+
         KeyState(Cursor c, RandomGenerator rnd) {
             mCursor = c;
             mRandom = rnd;
@@ -21,6 +21,7 @@ import java.io.IOException;
 
 import org.cojen.dirmi.Pipe;
 
+import org.cojen.tupl.Query;
 import org.cojen.tupl.Scanner;
 import org.cojen.tupl.Table;
 import org.cojen.tupl.Transaction;
@@ -77,6 +78,28 @@ public abstract class BaseTable<R> extends MultiCache<Object, Object, Object, IO
         writer.writeTerminator();
     }
 
+    /**
+     * Scan and write a subset of rows from this table to a remote endpoint. This method
+     * doesn't flush the output stream. Note: This method is overridden in StoredTable to
+     * operate against binary encoded rows directly.
+     *
+     * @param query expected to be a Query object obtained from this table
+     */
+    public void scanWrite(Transaction txn, Pipe out, Query<R> query, Object... args)
+        throws IOException
+    {
+        var writer = new RowWriter.ForEncoder<R>(out);
+
+        try {
+            scanWrite(writer, query.newScanner(txn, args));
+        } catch (RuntimeException | IOException e) {
+            writer.writeTerminalException(e);
+            return;
+        }
+
+        writer.writeTerminator();
+    }
+
     private void scanWrite(RowWriter.ForEncoder<R> writer, Scanner<R> scanner) throws IOException {
         try {
             WriteRow<R> wr = WriteRow.find(rowType());
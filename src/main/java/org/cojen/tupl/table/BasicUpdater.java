@@ -49,6 +49,7 @@ class BasicUpdater<R> extends BasicScanner<R> implements Updater<R> {
     @Override
     public final R update(R row) throws IOException {
         updateCurrent();
+        rowFinished(this, mCursor.link());
         return doStep(row);
     }
 
@@ -243,9 +244,24 @@ class BasicUpdater<R> extends BasicScanner<R> implements Updater<R> {
     @Override
     public final R delete(R row) throws IOException {
         deleteCurrent();
+        rowFinished(this, mCursor.link());
         return doStep(row);
     }
 
+    /**
+     * Called after the current row has been updated or deleted, but before stepping to the
+     * next row.
+     *
+     * @see SecondaryBatch#rowFinished
+     */
+    static void rowFinished(BasicScanner<?> scanner, Transaction txn) throws IOException {
+        try {
+            SecondaryBatch.rowFinished(txn);
+        } catch (Throwable e) {
+            throw RowUtils.fail(scanner, e);
+        }
+    }
+
     protected final void deleteCurrent() throws IOException {
         doDelete: try {
             Trigger<R> trigger = mTable.getTrigger();
@@ -0,0 +1,260 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import org.cojen.tupl.Transaction;
+import org.cojen.tupl.Updater;
+
+import org.cojen.tupl.core.LocalTransaction;
+
+/**
+ * Wraps an Updater and collects the secondary index changes into a SecondaryBatch, which is
+ * applied in key order whenever it gets large, and when the updater finishes. The changes
+ * made by a row are only accepted into the batch if the row update or delete succeeds.
+ *
+ * <p>When the updater finishes, throws an exception, or is explicitly closed, all accepted
+ * changes are applied. The batch is registered with the caller's transaction, and so it's
+ * also applied when the transaction commits or enters a nested scope, or when a query reads
+ * from a secondary index. If the transaction scope exits or resets, the batch is discarded.
+ *
+ * <p>In auto-commit mode, the updater creates its own transaction, which commits whenever
+ * the batch is applied before stepping to the next row. The transaction also commits when
+ * the updater finishes, following the same rules as {@link WrappedUpdater.EndCommit}.
+ *
+ * @author Brian S O'Neill
+ * @see SecondaryBatch
+ */
+final class BatchUpdater<R> implements Updater<R>, LocalTransaction.Deferred {
+    private final Updater<R> mUpdater;
+    private final Transaction mTxn;
+    private final boolean mCommit;
+    private final SecondaryBatch mBatch;
+
+    private boolean mFinished;
+
+    // Is true while the wrapped updater is acting upon the current row, which can enter and
+    // exit nested transaction scopes. They don't affect the batch.
+    private boolean mActive;
+
+    /**
+     * @param txn optional transaction for the updater to use; pass null for auto-commit mode
+     */
+    static <R> Updater<R> make(StoredTable<R> table, StoredQueryLauncher<R> launcher,
+                               R row, Transaction txn, Object... args)
+        throws IOException
+    {
+        if (txn != null) {
+            if (txn == Transaction.BOGUS) {
+                // The bogus transaction is shared, and so nothing can be attached to it.
+                return launcher.newUpdater(row, txn, args);
+            }
+            var updater = new BatchUpdater<>(launcher.newUpdater(row, txn, args), txn, false);
+            if (txn instanceof LocalTransaction local) {
+                local.addDeferred(updater);
+            }
+            return updater;
+        }
+
+        // True auto-commit behavior isn't feasible, because the batched changes are applied
+        // long after each row has been updated. Instead, the transaction commits each time
+        // the batch is applied.
+
+        txn = table.mSource.newTransaction(null);
+
+        Updater<R> updater;
+        try {
+            updater = launcher.newUpdater(row, txn, args);
+        } catch (Throwable e) {
+            txn.exit();
+            throw e;
+        }
+
+        return new BatchUpdater<>(updater, txn, true);
+    }
+
+    private BatchUpdater(Updater<R> updater, Transaction txn, boolean commit) {
+        mUpdater = updater;
+        mTxn = txn;
+        mCommit = commit;
+        mBatch = new SecondaryBatch(commit);
+    }
+
+    @Override
+    public R row() {
+        return mUpdater.row();
+    }
+
+    @Override
+    public R step() throws IOException {
+        return step(null);
+    }
+
+    @Override
+    public R step(R row) throws IOException {
+        try {
+            row = mUpdater.step(row);
+        } catch (Throwable e) {
+            failed(e);
+            throw e;
+        }
+        if (row == null) {
+            finish();
+        }
+        return row;
+    }
+
+    @Override
+    public R update(R row) throws IOException {
+        Object old = mTxn.attachment();
+        mTxn.attach(mBatch);
+        mActive = true;
+        try {
+            row = mUpdater.update(row);
+        } catch (Throwable e) {
+            mActive = false;
+            mTxn.attach(old);
+            failed(e);
+            throw e;
+        }
+        mActive = false;
+        mTxn.attach(old);
+        return accepted(row);
+    }
+
+    @Override
+    public R delete(R row) throws IOException {
+        Object old = mTxn.attachment();
+        mTxn.attach(mBatch);
+        mActive = true;
+        try {
+            row = mUpdater.delete(row);
+        } catch (Throwable e) {
+            mActive = false;
+            mTxn.attach(old);
+            failed(e);
+            throw e;
+        }
+        mActive = false;
+        mTxn.attach(old);
+        return accepted(row);
+    }
+
+    @Override
+    public long estimateSize() {
+        return mUpdater.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return mUpdater.characteristics();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!mFinished) {
+            try {
+                mUpdater.close();
+            } catch (Throwable e) {
+                failed(e);
+                throw e;
+            }
+            finish();
+        }
+    }
+
+    private R accepted(R row) throws IOException {
+        mBatch.accept();
+        if (row == null) {
+            finish();
+        } else if (mBatch.isFull()) {
+            try {
+                mBatch.apply(mTxn);
+            } catch (Throwable e) {
+                finished();
+                try {
+                    mUpdater.close();
+                } catch (Throwable e2) {
+                    RowUtils.suppress(e, e2);
+                }
+                applyFailed(e);
+                throw e;
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public void apply(LocalTransaction txn) throws IOException {
+        if (!mActive) {
+            mBatch.apply(txn);
+        }
+    }
+
+    @Override
+    public void discard() {
+        if (!mActive) {
+            mBatch.clear();
+        }
+    }
+
+    private void finish() throws IOException {
+        if (mFinished) {
+            return;
+        }
+        finished();
+        try {
+            mBatch.apply(mTxn);
+        } catch (Throwable e) {
+            applyFailed(e);
+            throw e;
+        }
+        if (mCommit) {
+            mTxn.commit();
+        }
+    }
+
+    private void finished() {
+        mFinished = true;
+        if (!mCommit && mTxn instanceof LocalTransaction local) {
+            local.removeDeferred(this);
+        }
+    }
+
+    /**
+     * Called when the underlying updater has failed, which has also closed it. The changes
+     * made by the failed row are discarded, but all the accepted changes are applied.
+     */
+    private void failed(Throwable e) {
+        mBatch.discard();
+        try {
+            finish();
+        } catch (Throwable e2) {
+            RowUtils.suppress(e, e2);
+        }
+    }
+
+    /**
+     * Called when the batch couldn't be fully applied. The transaction is rolled back,
+     * because it cannot be committed with incomplete secondary indexes.
+     */
+    private void applyFailed(Throwable e) {
+        mTxn.reset(e);
+    }
+}
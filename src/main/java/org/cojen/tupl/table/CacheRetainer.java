@@ -0,0 +1,249 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.cojen.tupl.Database;
+
+import org.cojen.tupl.diag.DatabaseStats;
+
+import org.cojen.tupl.util.Latch;
+
+/**
+ * Strongly retains a bounded set of values which were generated by a {@link RetainedCache} or
+ * by the query cache of a {@link StoredTable}, preventing them from being cleared by the
+ * garbage collector. Without retention, generated codecs and queries can be discarded after a
+ * full GC, only to be generated again by the next request.
+ * Each database has its own retainer, which is cleared when the database is closed.
+ *
+ * <p>Retention follows a segmented LRU policy. New values enter a probationary segment, and
+ * values which are requested again are promoted to a protected segment. Values are evicted
+ * from the probationary segment first, and so frequently requested values are favored over
+ * those which were only requested once. When the protected segment is full, its least
+ * recently used value is demoted back to the probationary segment.
+ *
+ * <p>Requests for existing values only set a flag, without allocating or latching. The
+ * segments are reordered lazily, when new values are retained.
+ *
+ * <p>The maximum amount of retained values is set by the
+ * "org.cojen.tupl.table.CacheRetainSize" system property, and the default is 1000. A value of
+ * zero disables retention and leaves eviction entirely up to the garbage collector.
+ * Statistics are gathered regardless, and they're reported by {@link Database#stats}.
+ *
+ * @author Brian S. O'Neill
+ * @see RowStore#cacheRetainer
+ */
+final class CacheRetainer {
+    private static final int DEFAULT_CAPACITY;
+
+    static {
+        int capacity = 1000;
+        String name = "org.cojen.tupl.table.CacheRetainSize";
+        String prop = System.getProperty(name);
+        if (prop != null) {
+            try {
+                capacity = Math.max(0, Integer.parseInt(prop.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException
+                    ("Malformed system property: " + name + '=' + prop, e);
+            }
+        }
+        DEFAULT_CAPACITY = capacity;
+    }
+
+    private final int mCapacity, mProtectedCapacity;
+
+    private final LongAdder mHits, mMisses, mGenerateNanos;
+
+    // Generated values are expected to be compared by identity.
+    private final ConcurrentHashMap<Object, Node> mNodes;
+
+    private final Latch mLatch;
+
+    // Segments are circular lists, with the least recently used node at the head.
+    private final Node mProbation, mProtected;
+    private int mProtectedSize;
+
+    CacheRetainer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    CacheRetainer(int capacity) {
+        mCapacity = capacity;
+        mProtectedCapacity = (int) (capacity * 0.8);
+        mHits = new LongAdder();
+        mMisses = new LongAdder();
+        mGenerateNanos = new LongAdder();
+        mNodes = new ConcurrentHashMap<>();
+        mLatch = new Latch();
+        mProbation = new Node(null);
+        mProtected = new Node(null);
+    }
+
+    /**
+     * Called when a cache finds an existing value.
+     */
+    void hit(Object value) {
+        mHits.increment();
+        Node node = mNodes.get(value);
+        if (node != null && !node.mReferenced) {
+            node.mReferenced = true;
+        }
+    }
+
+    /**
+     * Called when a cache has generated a new value.
+     *
+     * @param nanos time spent generating the value
+     */
+    void retain(Object value, long nanos) {
+        mMisses.increment();
+        mGenerateNanos.add(nanos);
+
+        if (mCapacity == 0) {
+            return;
+        }
+
+        mLatch.acquireExclusive();
+        try {
+            if (mNodes.containsKey(value)) {
+                return;
+            }
+            var node = new Node(value);
+            mNodes.put(value, node);
+            node.linkBefore(mProbation);
+            evict();
+        } finally {
+            mLatch.releaseExclusive();
+        }
+    }
+
+    /**
+     * Releases all the retained values.
+     */
+    void clear() {
+        mLatch.acquireExclusive();
+        try {
+            mNodes.clear();
+            mProbation.mPrev = mProbation.mNext = mProbation;
+            mProtected.mPrev = mProtected.mNext = mProtected;
+            mProtectedSize = 0;
+        } finally {
+            mLatch.releaseExclusive();
+        }
+    }
+
+    Stats stats() {
+        return new Stats(mHits.sum(), mMisses.sum(), mGenerateNanos.sum(),
+                         mNodes.size(), mCapacity);
+    }
+
+    void addStats(DatabaseStats stats) {
+        stats.codeCacheRetained += mNodes.size();
+        stats.codeCacheHits += mHits.sum();
+        stats.codeCacheMisses += mMisses.sum();
+        stats.codeGenerationTime += mGenerateNanos.sum() / 1_000_000L;
+    }
+
+    /**
+     * Caller must hold exclusive latch.
+     */
+    private void evict() {
+        while (mNodes.size() > mCapacity) {
+            Node node = mProbation.mNext;
+
+            if (node == mProbation) {
+                // Only protected nodes remain.
+                node = mProtected.mNext;
+                node.unlink();
+                mProtectedSize--;
+                if (node.mReferenced) {
+                    node.mReferenced = false;
+                    node.linkBefore(mProbation);
+                    continue;
+                }
+            } else {
+                node.unlink();
+                if (node.mReferenced) {
+                    node.mReferenced = false;
+                    promote(node);
+                    continue;
+                }
+            }
+
+            mNodes.remove(node.mValue);
+        }
+    }
+
+    /**
+     * Caller must hold exclusive latch.
+     */
+    private void promote(Node node) {
+        node.linkBefore(mProtected);
+        if (++mProtectedSize > mProtectedCapacity) {
+            Node demoted = mProtected.mNext;
+            demoted.unlink();
+            mProtectedSize--;
+            demoted.linkBefore(mProbation);
+        }
+    }
+
+    /**
+     * @param hits amount of times a cache found an existing value
+     * @param misses amount of times a cache had to generate a new value
+     * @param generateNanos total time spent generating new values
+     * @param retained current amount of strongly retained values
+     * @param capacity maximum amount of strongly retained values
+     */
+    static record Stats(long hits, long misses, long generateNanos, int retained, int capacity) {
+    }
+
+    private static final class Node {
+        final Object mValue;
+
+        Node mPrev, mNext;
+
+        // Is set when the value is requested again, and is cleared when the node is moved.
+        volatile boolean mReferenced;
+
+        Node(Object value) {
+            mValue = value;
+            mPrev = mNext = this;
+        }
+
+        /**
+         * Link this node before the given list head, which is the most recently used end.
+         */
+        void linkBefore(Node head) {
+            Node prev = head.mPrev;
+            mPrev = prev;
+            mNext = head;
+            prev.mNext = this;
+            head.mPrev = this;
+        }
+
+        void unlink() {
+            mPrev.mNext = mNext;
+            mNext.mPrev = mPrev;
+            mPrev = mNext = this;
+        }
+    }
+}
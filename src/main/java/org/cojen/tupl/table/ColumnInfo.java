@@ -114,6 +114,15 @@ public class ColumnInfo implements Cloneable {
 
     public long autoMin, autoMax;
 
+    // When true, automatic values are generated in ascending order.
+    public boolean autoSequential;
+
+    // Expression which computes the column value, or null if not computed.
+    public String computed;
+
+    // Time-to-live in milliseconds, which is non-zero if the column causes rows to expire.
+    public long timeToLive;
+
     private String mPrefix;
     private ColumnInfo mTail;
 
@@ -125,6 +134,14 @@ public class ColumnInfo implements Cloneable {
         return autoMin != autoMax;
     }
 
+    public boolean isComputed() {
+        return computed != null;
+    }
+
+    public boolean isExpiration() {
+        return timeToLive != 0;
+    }
+
     public int plainTypeCode() {
         return plainTypeCode(typeCode);
     }
@@ -21,6 +21,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Objects;
 
 /**
  * 
@@ -71,12 +72,21 @@ public class ColumnSet {
     // Map is ordered lexicographically by name.
     public NavigableMap<String, ColumnInfo> allColumns;
 
+    // Optional filter for a partial secondary index; is null if the index is complete.
+    public String filter;
+
+    // Is true if the secondary index is maintained asynchronously. This only affects how the
+    // index is maintained, and so it's not compared by the matches method.
+    public boolean deferred;
+
     /**
-     * Compares all columns for equality based on their natural order.
+     * Compares all columns for equality based on their natural order, and also compares the
+     * filters.
      */
     final boolean matches(ColumnSet other) {
         return matches(allColumns, other.allColumns) &&
-            matches(valueColumns, other.valueColumns) && matches(keyColumns, other.keyColumns);
+            matches(valueColumns, other.valueColumns) && matches(keyColumns, other.keyColumns)
+            && Objects.equals(filter, other.filter);
     }
 
     /**
@@ -160,7 +170,8 @@ public class ColumnSet {
 
     @Override
     public String toString() {
-        return keyColumns.values() + " -> " + valueColumns.values() +
+        String str = keyColumns.values() + " -> " + valueColumns.values() +
             ", allColumns: " + allColumns.values();
+        return filter == null ? str : (str + ", filter: " + filter);
     }
 }
@@ -43,10 +43,24 @@ class ColumnSetComparator implements Comparator<ColumnSet> {
         int compare = compareColumns(a.keyColumns, b.keyColumns);
         if (compare == 0) {
             compare = compareColumns(a.valueColumns, b.valueColumns);
+            if (compare == 0) {
+                compare = compareFilters(a.filter, b.filter);
+            }
         }
         return compare;
     }
 
+    /**
+     * Complete indexes (no filter) are ordered before partial indexes.
+     */
+    private static int compareFilters(String a, String b) {
+        if (a == null) {
+            return b == null ? 0 : -1;
+        } else {
+            return b == null ? 1 : a.compareTo(b);
+        }
+    }
+
     private int compareColumns(Map<String, ColumnInfo> a, Map<String, ColumnInfo> b) {
         if (a.size() < b.size()) {
             return -1;
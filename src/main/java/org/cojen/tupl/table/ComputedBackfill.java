@@ -0,0 +1,245 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.cojen.tupl.Cursor;
+import org.cojen.tupl.LockFailureException;
+import org.cojen.tupl.LockMode;
+import org.cojen.tupl.Transaction;
+import org.cojen.tupl.UnmodifiableReplicaException;
+
+import org.cojen.tupl.diag.EventListener;
+import org.cojen.tupl.diag.EventType;
+
+import org.cojen.tupl.table.expr.Parser;
+import org.cojen.tupl.table.expr.TableExpr;
+
+import org.cojen.tupl.util.Worker;
+
+import static org.cojen.tupl.table.RowUtils.*;
+
+/**
+ * Background task which computes the values of computed columns for all the rows of a table.
+ * Rows which were stored before a column was computed (or before its expression changed)
+ * have a stale value, and so queries cannot be rewritten to reference the column until the
+ * backfill finishes. Rows are updated in batches, each within its own transaction, and the
+ * index triggers update any secondary indexes over the computed columns.
+ *
+ * @author Brian S O'Neill
+ * @see org.cojen.tupl.Computed
+ */
+final class ComputedBackfill<R> extends Worker.Task {
+    // Maximum number of rows to examine per transaction.
+    private static final int BATCH_SIZE = 1000;
+
+    // Delay before retrying a batch which failed to acquire a lock.
+    private static final long RETRY_DELAY_MILLIS = 10;
+
+    private final RowStore mRowStore;
+    private final StoredTable<R> mTable;
+    private final List<ColumnInfo> mColumns;
+
+    // Computed column getters, and the getters and setters of the source columns.
+    private final MethodHandle[] mComputedGetters;
+    private final MethodHandle[] mSourceGetters, mSourceSetters;
+
+    /**
+     * @param columns computed columns to backfill
+     * @throws IllegalArgumentException if the columns cannot be accessed
+     */
+    ComputedBackfill(RowStore rs, StoredTable<R> table, List<ColumnInfo> columns) {
+        mRowStore = rs;
+        mTable = table;
+        mColumns = columns;
+
+        Class<R> rowType = table.rowType();
+        RowInfo info = RowInfo.find(rowType);
+        var from = TableExpr.make(-1, -1, rowType);
+        var lookup = MethodHandles.publicLookup();
+
+        // Only need to set each source column once per row.
+        Set<String> sources = new HashSet<>();
+
+        int num = columns.size();
+        mComputedGetters = new MethodHandle[num];
+        var sourceGetters = new MethodHandle[num];
+        var sourceSetters = new MethodHandle[num];
+        int numSources = 0;
+
+        try {
+            for (int i=0; i<num; i++) {
+                ColumnInfo column = columns.get(i);
+                mComputedGetters[i] = getter(lookup, rowType, column);
+
+                var names = new HashSet<String>();
+                Parser.parseExpr(from, column.computed)
+                    .gatherEvalColumns(c -> names.add(c.name()));
+
+                for (String name : names) {
+                    if (sources.add(name)) {
+                        ColumnInfo source = info.allColumns.get(name);
+                        sourceGetters[numSources] = getter(lookup, rowType, source);
+                        sourceSetters[numSources] = setter(lookup, rowType, source);
+                        numSources++;
+                    }
+                }
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        mSourceGetters = Arrays.copyOf(sourceGetters, numSources);
+        mSourceSetters = Arrays.copyOf(sourceSetters, numSources);
+    }
+
+    private static MethodHandle getter(MethodHandles.Lookup lookup,
+                                       Class<?> rowType, ColumnInfo column)
+        throws NoSuchMethodException, IllegalAccessException
+    {
+        return lookup.findVirtual(rowType, column.name, MethodType.methodType(column.type))
+            .asType(MethodType.methodType(Object.class, Object.class));
+    }
+
+    private static MethodHandle setter(MethodHandles.Lookup lookup,
+                                       Class<?> rowType, ColumnInfo column)
+        throws NoSuchMethodException, IllegalAccessException
+    {
+        return lookup.findVirtual(rowType, column.name,
+                                  MethodType.methodType(void.class, column.type))
+            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+    }
+
+    @Override
+    public void run() {
+        try {
+            byte[] frontier = null;
+            do {
+                try {
+                    frontier = backfillBatch(frontier);
+                } catch (LockFailureException e) {
+                    // Contended with a writer, so try again.
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                }
+            } while (frontier != null);
+
+            mTable.mTableManager.computedFinished(mRowStore, mColumns);
+        } catch (UnmodifiableReplicaException e) {
+            // The leader backfills the rows, and the changes are replicated.
+        } catch (Throwable e) {
+            if (mRowStore.mDatabase.isClosed()) {
+                return;
+            }
+            EventListener listener = mRowStore.mDatabase.eventListener();
+            if (listener == null) {
+                uncaught(e);
+            } else {
+                listener.notify(EventType.TABLE_INDEX_ERROR,
+                                "Unable to compute column values for %1$s: %2$s",
+                                mTable.rowType().getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the columns of a batch of rows.
+     *
+     * @param frontier last key of the previous batch, or null to start at the first row
+     * @return the last key of this batch, or null if finished
+     */
+    private byte[] backfillBatch(byte[] frontier) throws IOException {
+        RowDecoder<R> decoder = mTable.unfiltered();
+
+        Transaction txn = mTable.newTransaction(null);
+        try {
+            // Upgradable locks are retained until the batch commits, and so a row cannot be
+            // changed concurrently between being decoded and updated.
+            txn.lockMode(LockMode.UPGRADABLE_READ);
+
+            byte[] last = null;
+            int count = 0;
+
+            try (Cursor c = mTable.mSource.newCursor(txn)) {
+                if (frontier == null) {
+                    c.first();
+                } else {
+                    c.findGt(frontier);
+                }
+                for (byte[] key; (key = c.key()) != null; c.next()) {
+                    byte[] value = c.value();
+                    if (value != null) {
+                        R row = decoder.decodeRow(null, key, value);
+                        if (recompute(row)) {
+                            mTable.update(txn, row);
+                        }
+                    }
+                    last = key;
+                    if (++count >= BATCH_SIZE) {
+                        break;
+                    }
+                }
+            }
+
+            txn.commit();
+
+            return count < BATCH_SIZE ? null : last;
+        } finally {
+            txn.reset();
+        }
+    }
+
+    /**
+     * Sets the source columns of the given row to their current values, which also sets the
+     * computed columns.
+     *
+     * @return true if any computed column value changed
+     */
+    private boolean recompute(R row) throws IOException {
+        try {
+            var old = new Object[mComputedGetters.length];
+            for (int i=0; i<old.length; i++) {
+                old[i] = mComputedGetters[i].invoke(row);
+            }
+
+            for (int i=0; i<mSourceGetters.length; i++) {
+                mSourceSetters[i].invoke(row, mSourceGetters[i].invoke(row));
+            }
+
+            for (int i=0; i<old.length; i++) {
+                if (!Objects.deepEquals(old[i], mComputedGetters[i].invoke(row))) {
+                    return true;
+                }
+            }
+
+            return false;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+}
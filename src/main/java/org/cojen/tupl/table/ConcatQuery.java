@@ -74,6 +74,35 @@ class ConcatQuery<R> implements Query<R> {
         };
     }
 
+    /**
+     * Returns a new scanner which produces at most the given amount of rows. The limit is
+     * also pushed down into each source, since no source needs to produce more rows.
+     *
+     * @see LimitQuery
+     */
+    Scanner<R> newLimitScanner(long limit, R row, Transaction txn, Object... args)
+        throws IOException
+    {
+        var scanner = new ConcatScanner<R>(row) {
+            private int mWhich;
+
+            @Override
+            public Scanner<R> next(R dst) throws IOException {
+                int which = mWhich;
+                if (which >= mSources.length) {
+                    return null;
+                } else {
+                    Scanner<R> next = LimitQuery.newScanner
+                        (mSources[which], limit, dst, txn, args);
+                    mWhich = which + 1;
+                    return next;
+                }
+            }
+        };
+
+        return new LimitScanner<>(scanner, limit);
+    }
+
     @Override
     public Updater<R> newUpdater(R row, Transaction txn, Object... args) throws IOException {
         checkCanUpdate(txn, args);
@@ -138,6 +167,17 @@ class ConcatQuery<R> implements Query<R> {
         return newPlan(subPlans);
     }
 
+    /**
+     * Returns a query plan used by the newLimitScanner method.
+     */
+    QueryPlan limitScannerPlan(long limit, Transaction txn, Object... args) throws IOException {
+        var subPlans = new QueryPlan[mSources.length];
+        for (int i=0; i<subPlans.length; i++) {
+            subPlans[i] = LimitQuery.scannerPlan(mSources[i], limit, txn, args);
+        }
+        return new QueryPlan.Limit(limit, newPlan(subPlans));
+    }
+
     @Override
     public QueryPlan updaterPlan(Transaction txn, Object... args) throws IOException {
         var subPlans = new QueryPlan[mSources.length];
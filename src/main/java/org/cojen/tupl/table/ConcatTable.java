@@ -26,6 +26,8 @@ import org.cojen.tupl.core.TupleKey;
 
 import org.cojen.tupl.table.expr.CompiledQuery;
 import org.cojen.tupl.table.expr.Parser;
+import org.cojen.tupl.table.expr.RelationExpr;
+import org.cojen.tupl.table.expr.SliceExpr;
 
 /**
  * 
@@ -130,17 +132,30 @@ public final class ConcatTable<R> extends MultiSourceTable<R> {
 
         var queryStr = (String) key;
 
-        String orderBy = Parser.parse(this, rowType(), queryStr).orderBySpec();
+        RelationExpr expr = Parser.parse(this, rowType(), queryStr);
+
+        QuerySlice slice = null;
+        if (expr instanceof SliceExpr se) {
+            // Apply the limit and offset to the combined results, which in turn pushes the
+            // limit down to each source.
+            slice = se.slice();
+            queryStr = se.sourceQueryString(queryStr);
+        }
+
+        String orderBy = expr.orderBySpec();
 
         @SuppressWarnings("unchecked") Query<R>[] queries = new Query[mSources.length];
         for (int i=0; i<queries.length; i++) {
             queries[i] = mSources[i].query(queryStr);
         }
 
+        Query<R> query;
         if (orderBy.isEmpty()) {
-            return new ConcatQuery<R>(queries);
+            query = new ConcatQuery<R>(queries);
         } else {
-            return new MergeQuery<R>(comparator(orderBy), queries);
+            query = new MergeQuery<R>(comparator(orderBy), queries);
         }
+
+        return slice == null ? query : LimitQuery.make(query, slice);
     }
 }
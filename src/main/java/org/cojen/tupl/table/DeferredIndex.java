@@ -0,0 +1,378 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.InterruptedIOException;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.TimeUnit;
+
+import org.cojen.tupl.ClosedIndexException;
+import org.cojen.tupl.Cursor;
+import org.cojen.tupl.DeletedIndexException;
+import org.cojen.tupl.DurabilityMode;
+import org.cojen.tupl.Index;
+import org.cojen.tupl.LockMode;
+import org.cojen.tupl.Transaction;
+import org.cojen.tupl.UnmodifiableReplicaException;
+
+import org.cojen.tupl.diag.EventListener;
+import org.cojen.tupl.diag.EventType;
+
+import org.cojen.tupl.util.Runner;
+
+/**
+ * Maintains a secondary index asynchronously. The index trigger stores changes into a
+ * durable queue, within the same transaction which modifies the primary index. The queue is
+ * keyed by the secondary key, and so multiple changes against the same secondary entry
+ * only retain the most recent one. A background task applies the queued changes to the
+ * secondary index in key order, deleting the queue entries in the same transaction.
+ *
+ * <p>Deletes aren't queued, but are instead applied immediately. A secondary index entry
+ * never refers to a row which has since changed, and so queries against the index might
+ * not find new rows, but they never find stale ones.
+ *
+ * @author Brian S O'Neill
+ * @see TableManager
+ */
+public final class DeferredIndex implements Runnable {
+    private static final byte OP_STORE = 1;
+
+    // Maximum number of changes to apply per transaction.
+    private static final int BATCH_SIZE = 1000;
+
+    // Maximum time to wait for a skipped entry to be unlocked, per attempt.
+    private static final long RETRY_TIMEOUT_NANOS = 10_000_000L;
+
+    private final RowStore mRowStore;
+    private final Index mSecondaryIndex;
+    private final Index mQueue;
+    private final String mSecondaryStr;
+
+    // Is true when the queue should be examined by a new pass.
+    private volatile boolean mPending;
+
+    private boolean mRunning;
+    private boolean mClosed;
+
+    // Pass counters, which are used by the await method.
+    private long mStarted, mFinished;
+
+    private Throwable mException;
+
+    DeferredIndex(RowStore rs, Index secondaryIndex, Index queue, String secondaryStr) {
+        mRowStore = rs;
+        mSecondaryIndex = secondaryIndex;
+        mQueue = queue;
+        mSecondaryStr = secondaryStr;
+    }
+
+    /**
+     * Called by the index trigger to enqueue a change. A delete is applied immediately, and
+     * it also discards any queued change against the same entry.
+     *
+     * @param value new secondary value, or null to delete the entry
+     */
+    public void store(Transaction txn, byte[] key, byte[] value) throws IOException {
+        if (value == null) {
+            // The queue entry is locked first, which is the same order used when applying.
+            mQueue.store(txn, key, null);
+            mSecondaryIndex.store(txn, key, null);
+            return;
+        }
+
+        var entry = new byte[1 + value.length];
+        entry[0] = OP_STORE;
+        System.arraycopy(value, 0, entry, 1, value.length);
+
+        mQueue.store(txn, key, entry);
+
+        // The entry must be stored before checking the pending state. A pass which starts
+        // after the pending state is cleared will find the entry, waiting for the transaction
+        // to finish if necessary.
+        if (!mPending) {
+            signal();
+        }
+    }
+
+    /**
+     * Requests that a new pass over the queue be started.
+     */
+    synchronized void signal() {
+        mPending = true;
+        if (!mRunning && !mClosed) {
+            mRunning = true;
+            try {
+                Runner.start(this);
+            } catch (Throwable e) {
+                mRunning = false;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Waits for all the changes which were enqueued before this method was called to be
+     * applied.
+     *
+     * @param timeout maximum time to wait; pass -1 for infinite timeout
+     * @return false if timed out
+     */
+    synchronized boolean await(long timeout, TimeUnit unit) throws IOException {
+        signal();
+
+        // A pass which starts after this point is guaranteed to observe all the changes.
+        long target = mStarted + 1;
+
+        long end = timeout < 0 ? 0 : (System.nanoTime() + unit.toNanos(timeout));
+
+        while (mFinished < target) {
+            if (mException != null && !mRunning) {
+                Throwable e = mException;
+                if (e instanceof IOException ioe) {
+                    throw ioe;
+                }
+                throw RowUtils.rethrow(e);
+            }
+            if (mClosed) {
+                return false;
+            }
+            try {
+                if (timeout < 0) {
+                    wait();
+                } else {
+                    long remaining = end - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Stops the background task. Any queued changes remain in the queue.
+     */
+    synchronized void close() {
+        mClosed = true;
+        notifyAll();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            long pass;
+            synchronized (this) {
+                if (!mPending || mClosed) {
+                    mRunning = false;
+                    notifyAll();
+                    return;
+                }
+                mPending = false;
+                mException = null;
+                pass = ++mStarted;
+            }
+
+            try {
+                if (!applyAll()) {
+                    synchronized (this) {
+                        mRunning = false;
+                        notifyAll();
+                    }
+                    return;
+                }
+            } catch (Throwable e) {
+                synchronized (this) {
+                    mException = e;
+                    mRunning = false;
+                    notifyAll();
+                }
+                if (!isExpected(e)) {
+                    error(e);
+                }
+                return;
+            }
+
+            synchronized (this) {
+                mFinished = pass;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Applies all the queued changes, waiting for any which are still being written.
+     *
+     * @return false if closed
+     */
+    private boolean applyAll() throws IOException, InterruptedException {
+        var skipped = new ArrayList<byte[]>();
+
+        byte[] start = null;
+        do {
+            start = applyBatch(start, skipped);
+        } while (start != null);
+
+        // Only the skipped entries need to be examined again. Entries which were enqueued
+        // after this pass started are applied by the next pass.
+        while (!skipped.isEmpty()) {
+            for (int i = skipped.size(); --i >= 0; ) {
+                if (applyOne(skipped.get(i))) {
+                    skipped.remove(i);
+                }
+            }
+
+            if (skipped.isEmpty()) {
+                break;
+            }
+
+            synchronized (this) {
+                if (mClosed) {
+                    return false;
+                }
+                wait(10);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Applies a batch of changes, in key order. Entries which are locked are skipped, because
+     * waiting for them can cause a deadlock with the transaction which holds the lock.
+     *
+     * @param start first key to examine; pass null to start at the first key
+     * @param skipped the keys of the skipped entries are added to this list
+     * @return the key to start the next batch from, or null if the end was reached
+     */
+    private byte[] applyBatch(byte[] start, List<byte[]> skipped) throws IOException {
+        // The queued changes are already durable, and so the batch can be applied without
+        // flushing. After a crash, any lost changes are applied again.
+        Transaction txn = mRowStore.mDatabase.newTransaction(DurabilityMode.NO_FLUSH);
+        try {
+            txn.lockMode(LockMode.UPGRADABLE_READ);
+
+            long queueId = mQueue.id();
+            long secondaryId = mSecondaryIndex.id();
+            int count = 0;
+
+            // Use a cursor which doesn't lock anything, to find the keys.
+            try (Cursor c = mQueue.newCursor(Transaction.BOGUS)) {
+                c.autoload(false);
+                if (start == null) {
+                    c.first();
+                } else {
+                    c.findGe(start);
+                }
+
+                for (byte[] key; (key = c.key()) != null; c.next()) {
+                    if (count >= BATCH_SIZE) {
+                        txn.commit();
+                        return key;
+                    }
+
+                    // The secondary entry can be locked by a scan.
+                    if (!txn.tryLockUpgradable(queueId, key, 0).isHeld()
+                        || !txn.tryLockExclusive(secondaryId, key, 0).isHeld())
+                    {
+                        skipped.add(key);
+                        continue;
+                    }
+
+                    if (apply(txn, key)) {
+                        count++;
+                    }
+                }
+            }
+
+            txn.commit();
+
+            return null;
+        } finally {
+            txn.reset();
+        }
+    }
+
+    /**
+     * Applies a change which was skipped by a batch, waiting a short time for the entry to
+     * be unlocked. No other locks are held, and so waiting cannot cause a deadlock.
+     *
+     * @return false if still locked
+     */
+    private boolean applyOne(byte[] key) throws IOException {
+        Transaction txn = mRowStore.mDatabase.newTransaction(DurabilityMode.NO_FLUSH);
+        try {
+            txn.lockMode(LockMode.UPGRADABLE_READ);
+            if (!txn.tryLockUpgradable(mQueue.id(), key, RETRY_TIMEOUT_NANOS).isHeld()
+                || !txn.tryLockExclusive(mSecondaryIndex.id(), key, RETRY_TIMEOUT_NANOS).isHeld())
+            {
+                return false;
+            }
+            apply(txn, key);
+            txn.commit();
+            return true;
+        } finally {
+            txn.reset();
+        }
+    }
+
+    /**
+     * Applies a queued change and deletes the queue entry. The caller must hold the locks.
+     *
+     * @return false if the queue entry doesn't exist
+     */
+    private boolean apply(Transaction txn, byte[] key) throws IOException {
+        byte[] entry = mQueue.load(txn, key);
+        if (entry == null) {
+            // Was rolled back, deleted, or already applied.
+            return false;
+        }
+
+        var value = new byte[entry.length - 1];
+        System.arraycopy(entry, 1, value, 0, value.length);
+        mSecondaryIndex.store(txn, key, value);
+
+        mQueue.store(txn, key, null);
+
+        return true;
+    }
+
+    private boolean isExpected(Throwable e) {
+        return e instanceof UnmodifiableReplicaException
+            || e instanceof DeletedIndexException || e instanceof ClosedIndexException
+            || mRowStore.mDatabase.isClosed();
+    }
+
+    private void error(Throwable e) {
+        EventListener listener = mRowStore.mDatabase.eventListener();
+        if (listener == null) {
+            RowUtils.uncaught(e);
+        } else {
+            listener.notify(EventType.TABLE_INDEX_ERROR,
+                            "Unable to apply deferred changes to %1$s: %2$s", mSecondaryStr, e);
+        }
+    }
+}
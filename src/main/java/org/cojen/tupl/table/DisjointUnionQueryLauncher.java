@@ -76,6 +76,29 @@ public final class DisjointUnionQueryLauncher<R> extends QueryLauncher<R> {
         };
     }
 
+    @Override
+    public Scanner<R> newLimitScanner(long limit, R row, Transaction txn, Object... args)
+        throws IOException
+    {
+        var scanner = new ConcatScanner<R>(row) {
+            private int mWhich;
+
+            @Override
+            public Scanner<R> next(R dst) throws IOException {
+                int which = mWhich;
+                if (which >= mLaunchers.length) {
+                    return null;
+                } else {
+                    Scanner<R> next = mLaunchers[which].newLimitScanner(limit, dst, txn, args);
+                    mWhich = which + 1;
+                    return next;
+                }
+            }
+        };
+
+        return new LimitScanner<>(scanner, limit);
+    }
+
     @Override
     public Updater<R> newUpdater(R row, Transaction txn, Object... args) throws IOException {
         return new ConcatUpdater<R>(row) {
@@ -96,10 +119,10 @@ public final class DisjointUnionQueryLauncher<R> extends QueryLauncher<R> {
     }
 
     @Override
-    public void scanWrite(Transaction txn, RowWriter writer, Object... args) throws IOException {
+    public void scanWrite(Transaction txn, RowWriter<R> writer, Object... args) throws IOException {
         writer.writeCharacteristics(NONNULL | ORDERED | CONCURRENT, 0);
 
-        for (QueryLauncher launcher : mLaunchers) {
+        for (QueryLauncher<R> launcher : mLaunchers) {
             launcher.scanWrite(txn, writer, args);
         }
     }
@@ -113,6 +136,17 @@ public final class DisjointUnionQueryLauncher<R> extends QueryLauncher<R> {
         return new QueryPlan.DisjointUnion(subPlans);
     }
 
+    @Override
+    public QueryPlan limitScannerPlan(long limit, Transaction txn, Object... args)
+        throws IOException
+    {
+        var subPlans = new QueryPlan[mLaunchers.length];
+        for (int i=0; i<subPlans.length; i++) {
+            subPlans[i] = mLaunchers[i].limitScannerPlan(limit, txn, args);
+        }
+        return new QueryPlan.Limit(limit, new QueryPlan.DisjointUnion(subPlans));
+    }
+
     @Override
     public QueryPlan updaterPlan(Transaction txn, Object... args) throws IOException {
         var subPlans = new QueryPlan[mLaunchers.length];
@@ -0,0 +1,230 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import java.lang.ref.WeakReference;
+
+import java.util.concurrent.TimeUnit;
+
+import java.util.function.Predicate;
+
+import org.cojen.tupl.ClosedIndexException;
+import org.cojen.tupl.DeletedIndexException;
+import org.cojen.tupl.DurabilityMode;
+import org.cojen.tupl.LockFailureException;
+import org.cojen.tupl.LockMode;
+import org.cojen.tupl.Scanner;
+import org.cojen.tupl.Table;
+import org.cojen.tupl.Transaction;
+import org.cojen.tupl.UnmodifiableReplicaException;
+
+import org.cojen.tupl.core.LocalDatabase;
+import org.cojen.tupl.core.Scheduler;
+
+import org.cojen.tupl.diag.EventListener;
+import org.cojen.tupl.diag.EventType;
+
+/**
+ * Background task which deletes the rows of a table which have expired, as defined by a
+ * {@link org.cojen.tupl.TimeToLive TimeToLive} column. The expired rows are found by
+ * scanning a secondary index whose first column is the expiration column, and so only the
+ * expired range is examined. Rows are deleted in small batches, each within its own short
+ * transaction, with a pause between batches to limit the write rate.
+ *
+ * @author Brian S O'Neill
+ * @see TableManager
+ */
+final class Expiration<R> implements Runnable {
+    // Maximum number of rows to delete per transaction.
+    private static final int BATCH_SIZE = 1000;
+
+    // Delay between batches, when more expired rows remain.
+    private static final long BATCH_DELAY_MILLIS = 10;
+
+    // Bounds for the delay between passes, which is also a fraction of the time-to-live.
+    private static final long MIN_INTERVAL_MILLIS = 1000, MAX_INTERVAL_MILLIS = 60_000;
+
+    // Don't wait for row locks, which are likely held by an active writer. Locked rows are
+    // skipped, and they're examined again by the next pass.
+    private static final long LOCK_TIMEOUT_MILLIS = 0;
+
+    private final WeakReference<StoredTable<R>> mTableRef;
+    private final String mQuery;
+    private final String[] mIndexSpec;
+    private final long mTimeToLive;
+    private final long mInterval;
+
+    private boolean mClosed;
+
+    /**
+     * @param column the expiration column
+     * @param index secondary index whose first column is the expiration column
+     */
+    Expiration(StoredTable<R> table, ColumnInfo column, ColumnSet index) {
+        mTableRef = new WeakReference<>(table);
+        mQuery = column.name + " <= ?";
+        mIndexSpec = index.keySpec();
+        mTimeToLive = column.timeToLive;
+        mInterval = Math.clamp(mTimeToLive / 10, MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+    }
+
+    StoredTable<R> table() {
+        return mTableRef.get();
+    }
+
+    /**
+     * Starts the first pass.
+     */
+    void start() {
+        schedule(0);
+    }
+
+    /**
+     * Stops the background task. Rows which have expired remain until the next time the
+     * task is started.
+     */
+    synchronized void close() {
+        mClosed = true;
+    }
+
+    private synchronized void schedule(long delayMillis) {
+        if (!mClosed) {
+            Scheduler.daemon().scheduleMillis(this, delayMillis);
+        }
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+        }
+
+        StoredTable<R> table = mTableRef.get();
+        if (table == null) {
+            // The table isn't used anymore.
+            close();
+            return;
+        }
+
+        long delayMillis;
+        try {
+            delayMillis = expireBatch(table) ? BATCH_DELAY_MILLIS : mInterval;
+        } catch (Throwable e) {
+            if (isClosed(table)) {
+                close();
+                return;
+            }
+            if (!isExpected(e)) {
+                error(table, e);
+            }
+            delayMillis = mInterval;
+        }
+
+        schedule(delayMillis);
+    }
+
+    /**
+     * Deletes a batch of expired rows.
+     *
+     * @return true if more expired rows might remain
+     */
+    private boolean expireBatch(StoredTable<R> table) throws IOException {
+        Table<R> index;
+        try {
+            index = table.viewSecondaryIndex(mIndexSpec).viewUnjoined();
+        } catch (NoSuchIndexException e) {
+            // The index is still being built.
+            return false;
+        }
+
+        long cutoff = System.currentTimeMillis() - mTimeToLive;
+        Predicate<R> expired = table.predicate(mQuery, cutoff);
+
+        // The index is scanned without acquiring any locks, and each candidate row is then
+        // locked and checked again before being deleted. A row which is locked by another
+        // transaction is skipped instead of stalling the whole batch.
+        Transaction scanTxn = table.newTransaction(null);
+
+        // An expired row won't be seen again, and so the deletes don't need to be flushed.
+        // After a crash, any lost deletes are performed again.
+        Transaction txn = table.newTransaction(DurabilityMode.NO_FLUSH);
+
+        try {
+            scanTxn.lockMode(LockMode.READ_UNCOMMITTED);
+            txn.lockTimeout(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+            int count = 0;
+
+            try (Scanner<R> scanner = index.newScanner(scanTxn, mQuery, cutoff)) {
+                for (R row = scanner.row(); row != null; row = scanner.step(row)) {
+                    if (count >= BATCH_SIZE) {
+                        break;
+                    }
+                    R primary = table.newRow();
+                    table.copyRow(row, primary);
+                    try {
+                        if (table.tryLoad(txn, primary) && expired.test(primary)) {
+                            table.delete(txn, primary);
+                            count++;
+                        }
+                    } catch (LockFailureException e) {
+                        // Try again on the next pass.
+                    }
+                }
+            }
+
+            txn.commit();
+
+            return count >= BATCH_SIZE;
+        } finally {
+            txn.reset();
+            scanTxn.reset();
+        }
+    }
+
+    private static boolean isExpected(Throwable e) {
+        return e instanceof UnmodifiableReplicaException
+            || e instanceof DeletedIndexException || e instanceof ClosedIndexException;
+    }
+
+    private static boolean isClosed(StoredTable<?> table) {
+        LocalDatabase db = database(table);
+        return db == null || db.isClosed();
+    }
+
+    private static LocalDatabase database(StoredTable<?> table) {
+        RowStore rs = table.rowStoreRef().get();
+        return rs == null ? null : rs.mDatabase;
+    }
+
+    private void error(StoredTable<?> table, Throwable e) {
+        LocalDatabase db = database(table);
+        EventListener listener = db == null ? null : db.eventListener();
+        if (listener == null) {
+            RowUtils.uncaught(e);
+        } else {
+            listener.notify(EventType.TABLE_INDEX_ERROR,
+                            "Unable to delete expired rows from %1$s: %2$s",
+                            table.rowType().getName(), e);
+        }
+    }
+}
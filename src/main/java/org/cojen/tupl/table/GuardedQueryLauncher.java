@@ -0,0 +1,125 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import org.cojen.tupl.Scanner;
+import org.cojen.tupl.Updater;
+import org.cojen.tupl.Transaction;
+
+import org.cojen.tupl.diag.QueryPlan;
+
+/**
+ * Supports queries which select a partial secondary index, but only when the query arguments
+ * match the literals of the index filter. Otherwise, a launcher which doesn't use any partial
+ * indexes is used instead.
+ *
+ * @author Brian S O'Neill
+ * @see IndexFilter
+ */
+final class GuardedQueryLauncher<R> extends QueryLauncher<R> {
+    private final IndexFilter.Guard[] mGuards;
+    private final QueryLauncher<R> mPartial, mFull;
+
+    /**
+     * @param guards must all pass for the partial launcher to be used
+     * @param partial launcher which uses a partial index
+     * @param full launcher which doesn't use any partial indexes
+     */
+    GuardedQueryLauncher(IndexFilter.Guard[] guards,
+                         QueryLauncher<R> partial, QueryLauncher<R> full)
+    {
+        mGuards = guards;
+        mPartial = partial;
+        mFull = full;
+    }
+
+    private QueryLauncher<R> select(Object... args) {
+        return IndexFilter.passes(mGuards, args) ? mPartial : mFull;
+    }
+
+    @Override
+    public Class<R> rowType() {
+        return mFull.rowType();
+    }
+
+    @Override
+    public int argumentCount() {
+        return Math.max(mPartial.argumentCount(), mFull.argumentCount());
+    }
+
+    @Override
+    public Scanner<R> newScanner(R row, Transaction txn, Object... args) throws IOException {
+        return select(args).newScanner(row, txn, args);
+    }
+
+    @Override
+    public Scanner<R> newLimitScanner(long limit, R row, Transaction txn, Object... args)
+        throws IOException
+    {
+        return select(args).newLimitScanner(limit, row, txn, args);
+    }
+
+    @Override
+    public Updater<R> newUpdater(R row, Transaction txn, Object... args) throws IOException {
+        return select(args).newUpdater(row, txn, args);
+    }
+
+    @Override
+    public void scanWrite(Transaction txn, RowWriter<R> writer, Object... args) throws IOException {
+        select(args).scanWrite(txn, writer, args);
+    }
+
+    @Override
+    public void limitScanWrite(Transaction txn, RowWriter<R> writer, long offset, long limit,
+                               Object... args)
+        throws IOException
+    {
+        select(args).limitScanWrite(txn, writer, offset, limit, args);
+    }
+
+    @Override
+    public QueryPlan scannerPlan(Transaction txn, Object... args) throws IOException {
+        return select(args).scannerPlan(txn, args);
+    }
+
+    @Override
+    public QueryPlan limitScannerPlan(long limit, Transaction txn, Object... args)
+        throws IOException
+    {
+        return select(args).limitScannerPlan(limit, txn, args);
+    }
+
+    @Override
+    public QueryPlan updaterPlan(Transaction txn, Object... args) throws IOException {
+        return select(args).updaterPlan(txn, args);
+    }
+
+    @Override
+    protected void closeIndexes() throws IOException {
+        mPartial.closeIndexes();
+        mFull.closeIndexes();
+    }
+
+    @Override
+    protected void clearCache() {
+        mPartial.clearCache();
+        mFull.clearCache();
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import java.util.Arrays;
+
+import org.cojen.tupl.Database;
+import org.cojen.tupl.Index;
+import org.cojen.tupl.Scanner;
+import org.cojen.tupl.Table;
+import org.cojen.tupl.Transaction;
+
+import org.cojen.tupl.util.Runner;
+
+import static org.cojen.tupl.core.Utils.EMPTY_BYTES;
+
+/**
+ * Filters out duplicate rows without requiring that the source be ordered. Each row is
+ * encoded into a binary form and is tracked by an open addressing hash set. When the
+ * estimated memory used by the set exceeds a threshold, all of the keys are transferred into
+ * a temporary index, if possible. The threshold is 64MiB or a sixteenth of the maximum heap
+ * size, whichever is smaller, and it can be changed with the {@code
+ * org.cojen.tupl.table.HashDistinctScanner.spillBytes} system property.
+ * Distinct rows are produced as soon as they're first seen.
+ *
+ * @author Brian S. O'Neill
+ * @see AggregatedTable
+ * @see DistinctScanner
+ */
+public final class HashDistinctScanner<R> implements Scanner<R> {
+    // Approximate memory used by the hash set to track each key, excluding the key bytes.
+    // Includes the array header of the key, and the slots of the half-full hash set.
+    private static final int ENTRY_OVERHEAD = 16 + (4 + 8) * 2;
+
+    // Amount of memory which the hash set can use before spilling into a temporary index.
+    private static final long SPILL_THRESHOLD;
+
+    static {
+        long threshold = Math.min(64L << 20, Runtime.getRuntime().maxMemory() / 16);
+        String name = HashDistinctScanner.class.getName() + ".spillBytes";
+        String prop = System.getProperty(name);
+        if (prop != null) {
+            try {
+                threshold = Long.parseLong(prop.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException
+                    ("Malformed system property: " + name + '=' + prop, e);
+            }
+        }
+        SPILL_THRESHOLD = threshold;
+    }
+
+    private final Table<R> mSourceTable;
+    private final SortRowCodec<R> mCodec;
+    private final Scanner<R> mSourceScanner;
+
+    private final byte[][] mKvPairs;
+
+    // Open addressing hash set. A zero hash code is never stored, indicating an empty slot.
+    private int[] mHashes;
+    private byte[][] mKeys;
+    private int mSize;
+    private long mBytes;
+    private long mSpillThreshold;
+
+    private Database mDatabase;
+    private Index mSpill;
+
+    /**
+     * @param codec must encode all columns into the key
+     */
+    public HashDistinctScanner(Table<R> sourceTable, SortRowCodec<R> codec,
+                               Scanner<R> sourceScanner)
+        throws IOException
+    {
+        mSourceTable = sourceTable;
+        mCodec = codec;
+        mSourceScanner = sourceScanner;
+        mKvPairs = new byte[2][];
+        mHashes = new int[16];
+        mKeys = new byte[16][];
+        mSpillThreshold = SPILL_THRESHOLD;
+
+        R sourceRow = sourceScanner.row();
+        if (sourceRow != null) {
+            try {
+                add(sourceRow);
+            } catch (Throwable e) {
+                try {
+                    close();
+                } catch (Throwable e2) {
+                    RowUtils.suppress(e, e2);
+                }
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public R row() {
+        return mSourceScanner.row();
+    }
+
+    @Override
+    public R step(R row) throws IOException {
+        try {
+            while ((row = mSourceScanner.step(row)) != null) {
+                if (add(row)) {
+                    return row;
+                }
+            }
+        } catch (Throwable e) {
+            try {
+                close();
+            } catch (Throwable e2) {
+                RowUtils.suppress(e, e2);
+            }
+            throw e;
+        }
+        close();
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mSourceScanner.close();
+        mHashes = null;
+        mKeys = null;
+        mSize = 0;
+        mBytes = 0;
+        Index spill = mSpill;
+        if (spill != null) {
+            mSpill = null;
+            Runnable deleteTask = mDatabase.deleteIndex(spill);
+            Runner.start(deleteTask);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return DISTINCT | NONNULL | CONCURRENT;
+    }
+
+    /**
+     * @return false if the row was already seen
+     */
+    private boolean add(R row) throws IOException {
+        byte[][] kvPairs = mKvPairs;
+        mCodec.encode(row, 0, kvPairs, 0);
+        byte[] key = kvPairs[0];
+        kvPairs[0] = null;
+        kvPairs[1] = null;
+
+        Index spill = mSpill;
+        if (spill != null) {
+            return spill.insert(Transaction.BOGUS, key, EMPTY_BYTES);
+        }
+
+        int hash = hash(key);
+        int[] hashes = mHashes;
+        byte[][] keys = mKeys;
+        int mask = hashes.length - 1;
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int h = hashes[slot];
+            if (h == 0) {
+                hashes[slot] = hash;
+                keys[slot] = key;
+                break;
+            }
+            if (h == hash && Arrays.equals(keys[slot], key)) {
+                return false;
+            }
+        }
+
+        int size = mSize + 1;
+        long bytes = mBytes + key.length + ENTRY_OVERHEAD;
+
+        if (bytes < mSpillThreshold || !spill()) {
+            mSize = size;
+            mBytes = bytes;
+            if (size > (hashes.length >> 1)) {
+                grow();
+            }
+        }
+
+        return true;
+    }
+
+    private static int hash(byte[] key) {
+        int hash = Arrays.hashCode(key) * 0x9e3779b9;
+        hash ^= hash >>> 16;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private void grow() {
+        int[] oldHashes = mHashes;
+        byte[][] oldKeys = mKeys;
+
+        var hashes = new int[oldHashes.length << 1];
+        var keys = new byte[hashes.length][];
+        int mask = hashes.length - 1;
+
+        for (int i=0; i<oldHashes.length; i++) {
+            int hash = oldHashes[i];
+            if (hash != 0) {
+                int slot = hash & mask;
+                while (hashes[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = hash;
+                keys[slot] = oldKeys[i];
+            }
+        }
+
+        mHashes = hashes;
+        mKeys = keys;
+    }
+
+    /**
+     * Transfers all keys into a temporary index, and then discards the hash set.
+     *
+     * @return false if not supported
+     */
+    private boolean spill() throws IOException {
+        Database db = RowSorter.findDatabase(mSourceTable);
+        if (db == null) {
+            mSpillThreshold = Long.MAX_VALUE;
+            return false;
+        }
+
+        Index spill = db.newTemporaryIndex();
+        mDatabase = db;
+        mSpill = spill;
+
+        // Insert in order, which is more efficient.
+        byte[][] keys = mKeys;
+        int size = 0;
+        for (byte[] key : keys) {
+            if (key != null) {
+                keys[size++] = key;
+            }
+        }
+        Arrays.sort(keys, 0, size, Arrays::compareUnsigned);
+
+        for (int i=0; i<size; i++) {
+            spill.store(Transaction.BOGUS, keys[i], EMPTY_BYTES);
+        }
+
+        mHashes = null;
+        mKeys = null;
+        mSize = 0;
+        mBytes = 0;
+
+        return true;
+    }
+}
@@ -21,9 +21,14 @@ import java.io.Closeable;
 import java.io.InterruptedIOException;
 import java.io.IOException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 import org.cojen.tupl.ClosedIndexException;
 import org.cojen.tupl.Cursor;
 import org.cojen.tupl.Database;
@@ -39,6 +44,8 @@ import org.cojen.tupl.core.RedoListener;
 import org.cojen.tupl.diag.EventListener;
 import org.cojen.tupl.diag.EventType;
 
+import org.cojen.tupl.io.Utils;
+
 import org.cojen.tupl.util.Runner;
 import org.cojen.tupl.util.Worker;
 
@@ -68,6 +75,15 @@ public abstract class IndexBackfill<R> extends Worker.Task implements RedoListen
     // The new secondary index as built by the sorter.
     private Index mNewSecondaryIndex;
 
+    // Is null if progress isn't reported.
+    private EventListener mProgressListener;
+
+    // Number of primary index entries scanned so far.
+    private final LongAdder mScanned;
+
+    // Time at which progress should next be reported.
+    private final AtomicLong mProgressNanos;
+
     /**
      * @param autoload pass true to autoload values from the primary index because they're
      * needed to create secondary index entries
@@ -89,6 +105,9 @@ public abstract class IndexBackfill<R> extends Worker.Task implements RedoListen
         mDeleted = db.newTemporaryIndex();
 
         mTriggers = new HashSet<>();
+
+        mScanned = new LongAdder();
+        mProgressNanos = new AtomicLong();
     }
 
     @Override
@@ -113,6 +132,11 @@ public abstract class IndexBackfill<R> extends Worker.Task implements RedoListen
 
         boolean success = false;
 
+        if (listener != null) {
+            mProgressListener = listener;
+            mProgressNanos.set(System.nanoTime() + PROGRESS_INTERVAL_NANOS);
+        }
+
         try {
             success = doRun();
 
@@ -151,40 +175,15 @@ public abstract class IndexBackfill<R> extends Worker.Task implements RedoListen
      * @return false if closed
      */
     private boolean doRun() throws IOException {
-        var primaryBatch = new byte[100 * 2][];
-        var secondaryBatch = new byte[primaryBatch.length][];
+        if (!scan()) {
+            return false;
+        }
 
         Transaction txn = mRowStore.mDatabase.newTransaction();
         txn.lockMode(LockMode.READ_COMMITTED);
         txn.lockTimeout(-1, null);
         txn.durabilityMode(DurabilityMode.NO_REDO);
 
-        try (Cursor c = mManager.mPrimaryIndex.newCursor(txn)) {
-            c.autoload(mAutoload);
-            c.first();
-            int length = 0;
-            while (true) {
-                byte[] key = c.key();
-                if (key == null) {
-                    if (length > 0) {
-                        if (!addBatch(primaryBatch, secondaryBatch, length)) {
-                            return false;
-                        }
-                    }
-                    break;
-                }
-                primaryBatch[length++] = key;
-                primaryBatch[length++] = c.value();
-                if (length >= primaryBatch.length) {
-                    if (!addBatch(primaryBatch, secondaryBatch, length)) {
-                        return false;
-                    }
-                    length = 0;
-                }
-                c.next();
-            }
-        }
-
         Sorter sorter = mSorter;
         if (sorter == null) {
             return false;
@@ -292,6 +291,218 @@ public abstract class IndexBackfill<R> extends Worker.Task implements RedoListen
         return true;
     }
 
+    /**
+     * Scans the primary index and adds all the new secondary index entries into the sorter.
+     * Large primary indexes are split into key ranges which are scanned by multiple threads.
+     * The number of threads is limited by the {@link
+     * org.cojen.tupl.DatabaseConfig#maxBackfillThreads maxBackfillThreads} option, which
+     * prevents the backfill from consuming all the processors.
+     *
+     * @return false if closed
+     */
+    private boolean scan() throws IOException {
+        byte[][] splits = splitKeys(mRowStore.mDatabase.maxBackfillThreads());
+
+        if (splits.length == 0) {
+            return scan(null, null);
+        }
+
+        var tasks = new ArrayList<RangeScan>(splits.length);
+        for (int i=0; i<splits.length; i++) {
+            var task = new RangeScan(splits[i], i + 1 < splits.length ? splits[i + 1] : null);
+            tasks.add(task);
+            Runner.start(task);
+        }
+
+        boolean result = false;
+        Throwable ex = null;
+
+        // Scan the first range in the current thread.
+        try {
+            result = scan(null, splits[0]);
+        } catch (Throwable e) {
+            ex = e;
+        }
+
+        // Always wait for the other ranges, even if the scan failed. They add entries into
+        // the sorter, which must not be reset or closed until they finish.
+        for (RangeScan task : tasks) {
+            try {
+                result &= task.await();
+            } catch (Throwable e) {
+                if (ex == null) {
+                    ex = e;
+                } else {
+                    Utils.suppress(ex, e);
+                }
+            }
+        }
+
+        if (ex != null) {
+            throw Utils.rethrow(ex);
+        }
+
+        return result;
+    }
+
+    /**
+     * Scans a range of the primary index.
+     *
+     * @param lowKey inclusive low key; pass null for open range
+     * @param highKey exclusive high key; pass null for open range
+     * @return false if closed
+     */
+    private boolean scan(byte[] lowKey, byte[] highKey) throws IOException {
+        var primaryBatch = new byte[100 * 2][];
+        var secondaryBatch = new byte[primaryBatch.length][];
+
+        Transaction txn = mRowStore.mDatabase.newTransaction();
+        txn.lockMode(LockMode.READ_COMMITTED);
+        txn.lockTimeout(-1, null);
+        txn.durabilityMode(DurabilityMode.NO_REDO);
+
+        try (Cursor c = mManager.mPrimaryIndex.newCursor(txn)) {
+            c.autoload(mAutoload);
+            if (lowKey == null) {
+                c.first();
+            } else {
+                c.findGe(lowKey);
+            }
+            int length = 0;
+            while (true) {
+                byte[] key = c.key();
+                if (key == null
+                    || (highKey != null && Arrays.compareUnsigned(key, highKey) >= 0))
+                {
+                    if (length > 0) {
+                        if (!addBatch(primaryBatch, secondaryBatch, length)) {
+                            return false;
+                        }
+                    }
+                    break;
+                }
+                primaryBatch[length++] = key;
+                primaryBatch[length++] = c.value();
+                if (length >= primaryBatch.length) {
+                    if (!addBatch(primaryBatch, secondaryBatch, length)) {
+                        return false;
+                    }
+                    length = 0;
+                }
+                c.next();
+            }
+        } finally {
+            txn.reset();
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the keys which split the primary index into ranges of roughly equal size, one
+     * range per thread. An empty array is returned if the index is too small to split.
+     */
+    private byte[][] splitKeys(int maxThreads) throws IOException {
+        if (maxThreads <= 1) {
+            return NO_SPLITS;
+        }
+
+        Index primary = mManager.mPrimaryIndex;
+
+        // Average several probes to improve the estimate.
+        double entryCount = 0;
+        for (int i=0; i<4; i++) {
+            entryCount += primary.analyze(null, null).entryCount;
+        }
+        entryCount /= 4;
+
+        int numRanges = (int) Math.min(maxThreads, entryCount / MIN_RANGE_SIZE);
+        if (numRanges <= 1) {
+            return NO_SPLITS;
+        }
+
+        // Oversample random keys, and then select evenly spaced splits from them.
+        var samples = new byte[numRanges * 8][];
+        int num = 0;
+        try (Cursor c = primary.newCursor(Transaction.BOGUS)) {
+            c.autoload(false);
+            for (int i=0; i<samples.length; i++) {
+                c.random(null, null);
+                byte[] key = c.key();
+                if (key != null) {
+                    samples[num++] = key;
+                }
+            }
+        }
+
+        if (num < samples.length) {
+            return NO_SPLITS;
+        }
+
+        Arrays.sort(samples, Arrays::compareUnsigned);
+
+        var splits = new ArrayList<byte[]>(numRanges - 1);
+        for (int i=1; i<numRanges; i++) {
+            byte[] key = samples[(int) ((long) i * num / numRanges)];
+            if (splits.isEmpty() || Arrays.compareUnsigned(splits.getLast(), key) < 0) {
+                splits.add(key);
+            }
+        }
+
+        return splits.toArray(byte[][]::new);
+    }
+
+    private static final byte[][] NO_SPLITS = new byte[0][];
+
+    // Minimum estimated number of primary index entries to scan per thread.
+    private static final long MIN_RANGE_SIZE = 10_000;
+
+    /**
+     * Scans a range of the primary index in a separate thread.
+     */
+    private final class RangeScan implements Runnable {
+        private final byte[] mLowKey, mHighKey;
+
+        private boolean mDone;
+        private boolean mResult;
+        private Throwable mException;
+
+        RangeScan(byte[] lowKey, byte[] highKey) {
+            mLowKey = lowKey;
+            mHighKey = highKey;
+        }
+
+        @Override
+        public void run() {
+            boolean result = false;
+            Throwable ex = null;
+            try {
+                result = scan(mLowKey, mHighKey);
+            } catch (Throwable e) {
+                ex = e;
+            }
+            synchronized (this) {
+                mResult = result;
+                mException = ex;
+                mDone = true;
+                notifyAll();
+            }
+        }
+
+        /**
+         * @return false if closed
+         */
+        synchronized boolean await() throws Throwable {
+            while (!mDone) {
+                wait();
+            }
+            if (mException != null) {
+                throw mException;
+            }
+            return mResult;
+        }
+    }
+
     /**
      * Runs the given callback with the trigger lock held exclusively.
      */
@@ -331,14 +542,18 @@ public abstract class IndexBackfill<R> extends Worker.Task implements RedoListen
             return false;
         }
 
+        int num = 0;
         for (int i=0; i<length; i+=2) {
-            encode(primaryBatch[i], primaryBatch[i + 1], secondaryBatch, i);
+            if (encode(primaryBatch[i], primaryBatch[i + 1], secondaryBatch, num)) {
+                num += 2;
+            }
         }
 
-        sorter.addBatch(secondaryBatch, 0, length >> 1);
+        sorter.addBatch(secondaryBatch, 0, num >> 1);
 
         if (mSorter != null) {
             // Still in use.
+            progress(length >> 1);
             return true;
         }
 
@@ -352,6 +567,30 @@ public abstract class IndexBackfill<R> extends Worker.Task implements RedoListen
         return false;
     }
 
+    private static final long PROGRESS_INTERVAL_NANOS = 60L * 1_000_000_000L;
+
+    /**
+     * Periodically reports the number of primary index entries scanned so far.
+     *
+     * @param count number of entries just scanned
+     */
+    private void progress(int count) {
+        EventListener listener = mProgressListener;
+        if (listener == null) {
+            return;
+        }
+
+        mScanned.add(count);
+
+        long now = System.nanoTime();
+        long next = mProgressNanos.get();
+        if (now - next >= 0 && mProgressNanos.compareAndSet(next, now + PROGRESS_INTERVAL_NANOS))
+        {
+            listener.notify(EventType.TABLE_INDEX_INFO,
+                            "Backfill for %1$s scanned %2$d rows", mSecondaryStr, mScanned.sum());
+        }
+    }
+
     @Override
     public void close() {
         unused(null, true);
@@ -533,7 +772,9 @@ public abstract class IndexBackfill<R> extends Worker.Task implements RedoListen
      * @param primaryValue primary index value
      * @param secondaryEntry key-value pair for secondary index to be stored here
      * @param offset offset into secondaryEntry for key-value pair
+     * @return false if the primary entry isn't included by a partial index filter, in which
+     * case nothing was stored into the secondaryEntry
      */
-    protected abstract void encode(byte[] primaryKey, byte[] primaryValue,
+    protected abstract boolean encode(byte[] primaryKey, byte[] primaryValue,
                                    byte[][] secondaryEntry, int offset);
 }
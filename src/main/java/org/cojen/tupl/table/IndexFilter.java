@@ -0,0 +1,182 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.math.BigInteger;
+
+import java.util.ArrayList;
+import java.util.Objects;
+
+import org.cojen.tupl.QueryException;
+
+import org.cojen.tupl.table.expr.Parser;
+import org.cojen.tupl.table.expr.RelationExpr;
+
+import org.cojen.tupl.table.filter.AndFilter;
+import org.cojen.tupl.table.filter.ColumnFilter;
+import org.cojen.tupl.table.filter.ColumnToArgFilter;
+import org.cojen.tupl.table.filter.ColumnToColumnFilter;
+import org.cojen.tupl.table.filter.QuerySpec;
+import org.cojen.tupl.table.filter.RowFilter;
+
+/**
+ * Parsed form of a partial secondary index filter, in which all literals have been replaced
+ * with arguments.
+ *
+ * @author Brian S O'Neill
+ * @see org.cojen.tupl.SecondaryIndex#filter
+ */
+final class IndexFilter {
+    /**
+     * Requires that a query argument be equal to a literal of the index filter.
+     *
+     * @param argument query argument number, starting at one
+     */
+    record Guard(int argument, Object value) { }
+
+    /**
+     * @throws QueryException if the filter is malformed or isn't supported
+     */
+    static IndexFilter parse(Class<?> rowType, String filter) {
+        RelationExpr expr = Parser.parse(rowType, filter);
+
+        if (expr.maxArgument() != 0) {
+            throw new QueryException("Partial index filter cannot have parameters: " + filter);
+        }
+
+        var literals = new ArrayList<Object>();
+        QuerySpec spec = expr.tryLiteralQuerySpec(rowType, literals);
+
+        if (spec == null || spec.projection() != null || spec.orderBy() != null
+            || spec.slice() != null)
+        {
+            throw new QueryException("Unsupported partial index filter: " + filter);
+        }
+
+        return new IndexFilter(spec.reduce(), literals.toArray());
+    }
+
+    private final QuerySpec mSpec;
+    private final Object[] mArguments;
+
+    private IndexFilter(QuerySpec spec, Object[] arguments) {
+        mSpec = spec;
+        mArguments = arguments;
+    }
+
+    /**
+     * Returns a query string which has arguments instead of literals.
+     */
+    String queryString() {
+        return mSpec.toString();
+    }
+
+    /**
+     * Returns the literal values, ordered by argument number.
+     */
+    Object[] arguments() {
+        return mArguments;
+    }
+
+    /**
+     * Determines if a query filter implies this filter, returning null if not. Each term of
+     * this filter must be matched by a term of the query filter which has the same column and
+     * operator. When the terms refer to arguments, the query argument must equal the literal
+     * at runtime, as described by the returned guards.
+     *
+     * @param group must be a single DNF group; no "or" filters
+     * @return null if not implied, or else an array of guards which must all pass
+     */
+    Guard[] impliedBy(RowFilter group) {
+        RowFilter[] terms = terms(mSpec.filter());
+        RowFilter[] groupTerms;
+        if (terms == null || (groupTerms = terms(group)) == null) {
+            return null;
+        }
+
+        var guards = new ArrayList<Guard>(terms.length);
+
+        outer: for (RowFilter term : terms) {
+            if (term instanceof ColumnToArgFilter cf) {
+                for (RowFilter groupTerm : groupTerms) {
+                    if (groupTerm instanceof ColumnToArgFilter gf
+                        && gf.operator() == cf.operator()
+                        && gf.column().name.equals(cf.column().name))
+                    {
+                        guards.add(new Guard(gf.argument(), mArguments[cf.argument() - 1]));
+                        continue outer;
+                    }
+                }
+            } else if (term instanceof ColumnToColumnFilter) {
+                for (RowFilter groupTerm : groupTerms) {
+                    if (term.equals(groupTerm)) {
+                        continue outer;
+                    }
+                }
+            }
+            return null;
+        }
+
+        return guards.toArray(Guard[]::new);
+    }
+
+    /**
+     * Returns the terms of a conjunction, or null if not supported.
+     */
+    private static RowFilter[] terms(RowFilter filter) {
+        if (filter instanceof AndFilter af) {
+            return af.subFilters();
+        } else if (filter instanceof ColumnFilter) {
+            return new RowFilter[] {filter};
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if all the guards pass for the given query arguments.
+     */
+    static boolean passes(Guard[] guards, Object... args) {
+        for (Guard guard : guards) {
+            int argNum = guard.argument();
+            if (argNum > args.length || !sameValue(args[argNum - 1], guard.value())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares values conservatively. Returning false only means that the partial index
+     * isn't used.
+     */
+    private static boolean sameValue(Object a, Object b) {
+        if (Objects.deepEquals(a, b)) {
+            return true;
+        }
+        if (isIntegral(a) && isIntegral(b)) {
+            return new BigInteger(a.toString()).equals(new BigInteger(b.toString()));
+        }
+        return false;
+    }
+
+    private static boolean isIntegral(Object v) {
+        return v instanceof Integer || v instanceof Long || v instanceof Short
+            || v instanceof Byte || v instanceof BigInteger;
+    }
+}
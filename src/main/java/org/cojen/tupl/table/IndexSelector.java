@@ -20,8 +20,10 @@ package org.cojen.tupl.table;
 import java.io.IOException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Iterator;
@@ -47,6 +49,7 @@ import org.cojen.tupl.table.filter.Visitor;
  * @author Brian S O'Neill
  */
 final class IndexSelector<R> {
+    private final Class<R> mRowType;
     private final RowInfo mPrimaryInfo;
     private final QuerySpec mQuery;
     private final boolean mForUpdate;
@@ -69,14 +72,29 @@ final class IndexSelector<R> {
 
     private boolean mForUpdateRule;
 
+    // Parsed partial index filters, and the guards for the partial indexes which were chosen.
+    private Map<ColumnSet, IndexFilter> mIndexFilters;
+    private Map<ColumnSet, List<IndexFilter.Guard>> mPartialGuards;
+
     /**
      * @param table used to verify that the selected indexes are available; pass null to skip
-     * verification
+     * verification, which also prevents partial secondary indexes from being selected
      * @throws IOException only can be thrown if a table was provided
      */
     IndexSelector(StoredTable<R> table, RowInfo primaryInfo, QuerySpec query, boolean forUpdate)
         throws IOException
     {
+        this(table, primaryInfo, query, forUpdate, true);
+    }
+
+    /**
+     * @param partial when false, partial secondary indexes aren't selected
+     */
+    private IndexSelector(StoredTable<R> table, RowInfo primaryInfo, QuerySpec query,
+                          boolean forUpdate, boolean partial)
+        throws IOException
+    {
+        mRowType = table == null ? null : table.rowType();
         mPrimaryInfo = primaryInfo;
         mQuery = query;
         mForUpdate = forUpdate;
@@ -84,6 +102,17 @@ final class IndexSelector<R> {
         mAlternateKeys = primaryInfo.alternateKeys;
         mSecondaryIndexes = primaryInfo.secondaryIndexes;
 
+        if (!partial || mRowType == null) {
+            for (ColumnSet cs : mSecondaryIndexes) {
+                if (cs.filter != null) {
+                    if (mSecondaryIndexes == primaryInfo.secondaryIndexes) {
+                        mSecondaryIndexes = new TreeSet<>(mSecondaryIndexes);
+                    }
+                    mSecondaryIndexes.remove(cs);
+                }
+            }
+        }
+
         analyze: while (true) {
             analyze();
 
@@ -118,7 +147,8 @@ final class IndexSelector<R> {
                 } else {
                     // Secondary index.
                     try {
-                        subTable = table.viewIndexTable(false, subIndex.fullSpec());
+                        subTable = table.viewIndexTable
+                            (false, subIndex.filter, subIndex.fullSpec());
                     } catch (NoSuchIndexException e) {
                         // Secondary index isn't available, so analyze again without it.
                         if (mSecondaryIndexes == primaryInfo.secondaryIndexes) {
@@ -272,6 +302,8 @@ final class IndexSelector<R> {
     }
 
     private void selectIndexes() {
+        mPartialGuards = null;
+
         final ColumnSet theOne;
 
         one: {
@@ -376,6 +408,36 @@ final class IndexSelector<R> {
         mSelectedQueries = new QuerySpec[] {mQuery.withOrderBy(null)};
     }
 
+    /**
+     * Returns a new selector for the same query, except partial secondary indexes aren't
+     * selected.
+     */
+    IndexSelector<R> withoutPartialIndexes(StoredTable<R> table) throws IOException {
+        return new IndexSelector<R>(table, mPrimaryInfo, mQuery, mForUpdate, false);
+    }
+
+    /**
+     * Returns the guards which must pass for the selected partial secondary indexes to be
+     * used, or else null if none.
+     *
+     * @see GuardedQueryLauncher
+     */
+    IndexFilter.Guard[] partialGuards() {
+        if (mPartialGuards == null) {
+            return null;
+        }
+
+        var guards = new ArrayList<IndexFilter.Guard>();
+        for (ColumnSet cs : mSelectedIndexes) {
+            List<IndexFilter.Guard> list = mPartialGuards.get(cs);
+            if (list != null) {
+                guards.addAll(list);
+            }
+        }
+
+        return guards.isEmpty() ? null : guards.toArray(IndexFilter.Guard[]::new);
+    }
+
     /**
      * Returns the constructor parameter.
      */
@@ -466,6 +528,10 @@ final class IndexSelector<R> {
      * @throws NullPointerException if no base table was provided to the constructor
      */
     boolean noJoins() {
+        if (partialGuards() != null) {
+            // The selector which is used when the guards don't pass might need joins.
+            return false;
+        }
         int numSelected = numSelected();
         for (int i=0; i<numSelected; i++) {
             if (selectedIndexTable(i).joinedPrimaryTableClass() != null) {
@@ -522,15 +588,49 @@ final class IndexSelector<R> {
             }
         }
 
+        IndexFilter.Guard[] bestGuards = null;
+
         for (ColumnSet cs : mSecondaryIndexes) {
+            IndexFilter.Guard[] guards = null;
+            if (cs.filter != null && (guards = impliedGuards(cs, group)) == null) {
+                // The partial index doesn't contain all the rows which the query needs.
+                continue;
+            }
             if (compareIndexes(group, terms, cs, best) < 0) {
                 best = cs;
+                bestGuards = guards;
+            }
+        }
+
+        if (bestGuards != null && bestGuards.length != 0) {
+            if (mPartialGuards == null) {
+                mPartialGuards = new HashMap<>();
             }
+            mPartialGuards.computeIfAbsent(best, k -> new ArrayList<>())
+                .addAll(Arrays.asList(bestGuards));
         }
 
         return best;
     }
 
+    /**
+     * Returns null if the filter group doesn't imply the filter of the given partial index.
+     *
+     * @param group must be a single DNF group; no "or" filters
+     * @see IndexFilter#impliedBy
+     */
+    private IndexFilter.Guard[] impliedGuards(ColumnSet cs, RowFilter group) {
+        if (mIndexFilters == null) {
+            mIndexFilters = new HashMap<>();
+        }
+        IndexFilter filter = mIndexFilters.get(cs);
+        if (filter == null) {
+            filter = IndexFilter.parse(mRowType, cs.filter);
+            mIndexFilters.put(cs, filter);
+        }
+        return filter.impliedBy(group);
+    }
+
     /**
      * Returns -1 if cs1 is better than cs2, ...
      *
@@ -909,7 +1009,7 @@ final class IndexSelector<R> {
             }
 
             for (ColumnSet cs : mSecondaryIndexes) {
-                if (compareCovering(required, cs, best, true) < 0) {
+                if (cs.filter == null && compareCovering(required, cs, best, true) < 0) {
                     best = cs;
                 }
             }
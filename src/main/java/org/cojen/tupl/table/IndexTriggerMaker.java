@@ -23,6 +23,7 @@ import java.lang.invoke.MethodType;
 
 import java.lang.ref.WeakReference;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,6 +34,7 @@ import org.cojen.tupl.Index;
 import org.cojen.tupl.Transaction;
 import org.cojen.tupl.UniqueConstraintException;
 
+import org.cojen.tupl.core.RowPredicate;
 import org.cojen.tupl.core.RowPredicateLock;
 
 import org.cojen.maker.ClassMaker;
@@ -60,6 +62,8 @@ public class IndexTriggerMaker<R> {
     final Index[] mSecondaryIndexes;
     final RowPredicateLock<R>[] mSecondaryLocks;
     final IndexBackfill<R>[] mBackfills;
+    final RowPredicate<R>[] mSecondaryFilters;
+    final DeferredIndex[] mDeferredIndexes;
 
     private ClassMaker mClassMaker;
 
@@ -77,6 +81,10 @@ public class IndexTriggerMaker<R> {
         mSecondaryIndexes = new Index[numIndexes];
         mSecondaryLocks = new RowPredicateLock[numIndexes];
         mBackfills = new IndexBackfill[numIndexes];
+        @SuppressWarnings("unchecked")
+        var filters = (RowPredicate<R>[]) new RowPredicate<?>[numIndexes];
+        mSecondaryFilters = filters;
+        mDeferredIndexes = new DeferredIndex[numIndexes];
     }
 
     /**
@@ -91,7 +99,7 @@ public class IndexTriggerMaker<R> {
         cm.extend(IndexBackfill.class).final_();
 
         MethodMaker mm = cm.addMethod
-            (null, "encode", byte[].class, byte[].class, byte[][].class, int.class);
+            (boolean.class, "encode", byte[].class, byte[].class, byte[][].class, int.class);
         mm.protected_();
 
         var primaryKeyVar = mm.param(0);
@@ -104,11 +112,23 @@ public class IndexTriggerMaker<R> {
         var indy = mm.var(IndexTriggerMaker.class).indy
             ("indyBackfillEncode", rs.ref(), mRowType, primaryIndexId, secondaryDesc);
 
+        RowPredicate<R> filter = mSecondaryFilters[which];
+        if (filter != null) {
+            // Partial index, so skip the entries which don't match the filter.
+            Label match = mm.label();
+            mm.var(RowPredicate.class).setExact(filter)
+                .invoke("test", primaryKeyVar, primaryValueVar).ifTrue(match);
+            mm.return_(false);
+            match.here();
+        }
+
         var schemaVersion = mm.var(RowUtils.class).invoke("decodeSchemaVersion", primaryValueVar);
 
         indy.invoke(null, "encode", null, schemaVersion,
                     primaryKeyVar, primaryValueVar, secondaryEntryVar, offsetVar);
 
+        mm.return_(true);
+
         // Now define the constructor.
 
         MethodType ctorMethodType = MethodType.methodType
@@ -197,6 +217,7 @@ public class IndexTriggerMaker<R> {
         mClassMaker.extend(Trigger.class).final_();
 
         boolean hasBackfills = false;
+        boolean hasDeferred = false;
 
         for (int i=0; i<mSecondaryIndexes.length; i++) {
             mClassMaker.addField(Index.class, "ix" + i).private_().final_();
@@ -210,16 +231,20 @@ public class IndexTriggerMaker<R> {
                 hasBackfills = true;
                 mClassMaker.addField(IndexBackfill.class, "backfill" + i).private_().final_();
             }
-        }
 
+            if (mDeferredIndexes[i] != null) {
+                hasDeferred = true;
+                mClassMaker.addField(DeferredIndex.class, "deferred" + i).private_().final_();
+            }
+        }
 
-        MethodType ctorMethodType;
-        if (!hasBackfills) {
-            ctorMethodType = MethodType.methodType
-                (void.class, Index[].class, RowPredicateLock[].class);
-        } else {
-            ctorMethodType = MethodType.methodType
-                (void.class, Index[].class, RowPredicateLock[].class, IndexBackfill[].class);
+        MethodType ctorMethodType = MethodType.methodType
+            (void.class, Index[].class, RowPredicateLock[].class);
+        if (hasBackfills) {
+            ctorMethodType = ctorMethodType.appendParameterTypes(IndexBackfill[].class);
+        }
+        if (hasDeferred) {
+            ctorMethodType = ctorMethodType.appendParameterTypes(DeferredIndex[].class);
         }
 
         {
@@ -243,6 +268,15 @@ public class IndexTriggerMaker<R> {
                     }
                 }
             }
+
+            if (hasDeferred) {
+                var deferredVar = mm.param(hasBackfills ? 3 : 2);
+                for (int i=0; i<mDeferredIndexes.length; i++) {
+                    if (mDeferredIndexes[i] != null) {
+                        mm.field("deferred" + i).set(deferredVar.aget(i));
+                    }
+                }
+            }
         }
 
         {
@@ -275,11 +309,16 @@ public class IndexTriggerMaker<R> {
 
         try {
             var ctor = lookup.findConstructor(lookup.lookupClass(), ctorMethodType);
-            if (!hasBackfills) {
-                trigger = (Trigger<R>) ctor.invoke(mSecondaryIndexes, mSecondaryLocks);
-            } else {
-                trigger = (Trigger<R>) ctor.invoke(mSecondaryIndexes, mSecondaryLocks, mBackfills);
+            var args = new ArrayList<Object>(4);
+            args.add(mSecondaryIndexes);
+            args.add(mSecondaryLocks);
+            if (hasBackfills) {
+                args.add(mBackfills);
+            }
+            if (hasDeferred) {
+                args.add(mDeferredIndexes);
             }
+            trigger = (Trigger<R>) ctor.invokeWithArguments(args);
         } catch (Throwable e) {
             throw rethrow(e);
         }
@@ -327,16 +366,47 @@ public class IndexTriggerMaker<R> {
 
         var tm = new TransformMaker<R>(mRowType, mPrimaryGen.info, available);
 
-        for (RowInfo secondaryInfo : mSecondaryInfos) {
-            tm.addKeyTarget(secondaryInfo, 0, true);
-            tm.addValueTarget(secondaryInfo, 0, true);
+        boolean anyFilters = false;
+
+        for (int i=0; i<mSecondaryInfos.length; i++) {
+            RowInfo secondaryInfo = mSecondaryInfos[i];
+            // Partial indexes are encoded by their own TransformMaker, and so the targets
+            // added here are only placeholders.
+            boolean eager = mSecondaryFilters[i] == null;
+            anyFilters |= !eager;
+            tm.addKeyTarget(secondaryInfo, 0, eager);
+            tm.addValueTarget(secondaryInfo, 0, eager);
         }
 
         tm.begin(mm, rowVar, keyVar, newValueVar, -1);
 
         for (int i=0; i<mSecondaryInfos.length; i++) {
-            var secondaryKeyVar = tm.encode(i << 1);
-            var secondaryValueVar = tm.encode((i << 1) + 1);
+            Variable secondaryKeyVar, secondaryValueVar;
+
+            RowPredicate<R> filter = mSecondaryFilters[i];
+            Label skip = null;
+
+            if (filter == null) {
+                secondaryKeyVar = tm.encode(i << 1);
+                secondaryValueVar = tm.encode((i << 1) + 1);
+            } else {
+                // Partial index, so skip the rows which don't match the filter. Column
+                // variables prepared by a TransformMaker must be definitely assigned, and so
+                // one which is only used within the conditional code is required.
+                skip = mm.label();
+                var filterVar = mm.var(RowPredicate.class).setExact(filter);
+                if (isPartial) {
+                    filterVar.invoke("testP", rowVar, keyVar, newValueVar).ifFalse(skip);
+                } else {
+                    filterVar.invoke("test", rowVar).ifFalse(skip);
+                }
+                var ftm = new TransformMaker<R>(mRowType, mPrimaryGen.info, available);
+                ftm.addKeyTarget(mSecondaryInfos[i], 0, true);
+                ftm.addValueTarget(mSecondaryInfos[i], 0, true);
+                ftm.begin(mm, rowVar, keyVar, newValueVar, -1);
+                secondaryKeyVar = ftm.encode(0);
+                secondaryValueVar = ftm.encode(1);
+            }
 
             Variable closerVar = acquirePredicateLock
                 (mm, i, isPartial, txnVar, rowVar, secondaryKeyVar, secondaryValueVar);
@@ -345,7 +415,7 @@ public class IndexTriggerMaker<R> {
             var ixField = mm.field("ix" + i);
 
             if (!mSecondaryInfos[i].isAltKey()) {
-                ixField.invoke("store", txnVar, secondaryKeyVar, secondaryValueVar);
+                storeEntry(mm, i, txnVar, secondaryKeyVar, secondaryValueVar);
                 if (closerVar != null) {
                     mm.finally_(opStart, () -> closerVar.invoke("close"));
                 }
@@ -360,7 +430,7 @@ public class IndexTriggerMaker<R> {
                 pass.here();
             }
 
-            if (isPartial) {
+            if (isPartial && mDeferredIndexes[i] == null) {
                 var attachment = txnVar.invoke("attachment");
                 Label noAttachment = mm.label();
                 attachment.instanceOf(TriggerIndexAccessor.class).ifFalse(noAttachment);
@@ -377,9 +447,14 @@ public class IndexTriggerMaker<R> {
             mm.catch_(opStart, DeletedIndexException.class, exVar -> {
                 // Index was dropped. Assume that this trigger will soon be replaced.
             });
+
+            if (skip != null) {
+                skip.here();
+            }
         }
 
-        return tm.requiresRow();
+        // A filter which is tested against the row instance always requires it.
+        return tm.requiresRow() || anyFilters;
     }
 
     @SuppressWarnings("unchecked")
@@ -420,7 +495,9 @@ public class IndexTriggerMaker<R> {
 
         WeakReference<IndexBackfill>[] backfillRefs = null;
         if (hasBackfills) {
-            backfillRefs = new WeakReference[mBackfills.length];
+            @SuppressWarnings("unchecked")
+            var refs = (WeakReference<IndexBackfill>[]) new WeakReference<?>[mBackfills.length];
+            backfillRefs = refs;
             for (int i=0; i<mBackfills.length; i++) {
                 IndexBackfill backfill = mBackfills[i];
                 if (backfill != null) {
@@ -429,9 +506,31 @@ public class IndexTriggerMaker<R> {
             }
         }
 
+        RowPredicate<?>[] filters = null;
+        for (int i=0; i<mSecondaryFilters.length; i++) {
+            if (mSecondaryFilters[i] != null) {
+                filters = mSecondaryFilters;
+                break;
+            }
+        }
+
+        WeakReference<DeferredIndex>[] deferredRefs = null;
+        for (int i=0; i<mDeferredIndexes.length; i++) {
+            DeferredIndex deferred = mDeferredIndexes[i];
+            if (deferred != null) {
+                if (deferredRefs == null) {
+                    @SuppressWarnings("unchecked")
+                    var refs = (WeakReference<DeferredIndex>[])
+                        new WeakReference<?>[mDeferredIndexes.length];
+                    deferredRefs = refs;
+                }
+                deferredRefs[i] = new WeakReference<>(deferred);
+            }
+        }
+
         var indy = mm.var(IndexTriggerMaker.class).indy
             ("indyDelete", rs.ref(), mRowType, primaryIndexId,
-             mSecondaryDescriptors, secondaryIndexIds, backfillRefs);
+             mSecondaryDescriptors, secondaryIndexIds, backfillRefs, filters, deferredRefs);
 
         if (hasRow) {
             indy.invoke(null, "delete", null, schemaVersion, txnVar, rowVar, keyVar, oldValueVar);
@@ -452,7 +551,9 @@ public class IndexTriggerMaker<R> {
                                             MethodType mt, WeakReference<RowStore> storeRef,
                                             Class<?> rowType, long indexId,
                                             byte[][] secondaryDescs, long[] secondaryIndexIds,
-                                            WeakReference<IndexBackfill>[] backfillRefs)
+                                            WeakReference<IndexBackfill>[] backfillRefs,
+                                            RowPredicate<?>[] filters,
+                                            WeakReference<DeferredIndex>[] deferredRefs)
     {
         Class<?> rowClass;
         if (mt.parameterCount() == 5) {
@@ -499,8 +600,20 @@ public class IndexTriggerMaker<R> {
                 }
             }
 
+            DeferredIndex[] deferred = null;
+            if (deferredRefs != null) {
+                deferred = new DeferredIndex[deferredRefs.length];
+                for (int i=0; i<deferred.length; i++) {
+                    var deferredRef = deferredRefs[i];
+                    if (deferredRef != null) {
+                        deferred[i] = deferredRef.get();
+                    }
+                }
+            }
+
             return makeDeleteMethod(mtx, schemaVersion, rowType, rowClass, primaryInfo,
-                                    secondaryInfos, secondaryIndexes, backfills);
+                                    secondaryInfos, secondaryIndexes, backfills, filters,
+                                    deferred);
         });
     }
 
@@ -508,18 +621,13 @@ public class IndexTriggerMaker<R> {
         (MethodType mt, int schemaVersion,
          Class<?> rowType, Class rowClass, RowInfo primaryInfo,
          RowInfo[] secondaryInfos, Index[] secondaryIndexes,
-         IndexBackfill[] backfills)
+         IndexBackfill[] backfills, RowPredicate<?>[] filters, DeferredIndex[] deferred)
     {
         ClassMaker cm = primaryInfo.rowGen().beginClassMaker
             (IndexTriggerMaker.class, rowType, "trigger-delete").final_();
 
-        MethodType ctorMethodType;
-        if (backfills == null) {
-            ctorMethodType = MethodType.methodType(void.class, Index[].class);
-        } else {
-            ctorMethodType = MethodType.methodType
-                (void.class, Index[].class, IndexBackfill.class);
-        }
+        MethodType ctorMethodType = MethodType.methodType
+            (void.class, Index[].class, IndexBackfill[].class, DeferredIndex[].class);
 
         MethodMaker ctorMaker = cm.addConstructor(ctorMethodType);
         ctorMaker.invokeSuperConstructor();
@@ -546,11 +654,15 @@ public class IndexTriggerMaker<R> {
 
         var tm = new TransformMaker<>(rowType, primaryInfo, available);
 
+        var targetIds = new int[secondaryInfos.length];
+
         for (int i=0; i<secondaryInfos.length; i++) {
             if (secondaryIndexes[i] == null) {
                 // Index was dropped, so no need to delete anything from it either.
+            } else if (filters != null && filters[i] != null) {
+                // Partial index is encoded by its own TransformMaker.
             } else {
-                tm.addKeyTarget(secondaryInfos[i], 0, true);
+                targetIds[i] = tm.addKeyTarget(secondaryInfos[i], 0, true);
             }
         }
 
@@ -563,7 +675,21 @@ public class IndexTriggerMaker<R> {
                 continue;
             }
 
-            var secondaryKeyVar = tm.encode(i);
+            Variable secondaryKeyVar;
+            Label skip = null;
+
+            if (filters == null || filters[i] == null) {
+                secondaryKeyVar = tm.encode(targetIds[i]);
+            } else {
+                // Partial index, so only delete the entries which matched the filter.
+                skip = mm.label();
+                mm.var(RowPredicate.class).setExact(filters[i])
+                    .invoke("test", keyVar, oldValueVar).ifFalse(skip);
+                var ftm = new TransformMaker<>(rowType, primaryInfo, available);
+                ftm.addKeyTarget(secondaryInfos[i], 0, true);
+                ftm.begin(mm, rowVar, keyVar, oldValueVar, valueOffset);
+                secondaryKeyVar = ftm.encode(0);
+            }
 
             String ixFieldName = "ix" + i;
             cm.addField(Index.class, ixFieldName).private_().final_();
@@ -581,18 +707,35 @@ public class IndexTriggerMaker<R> {
             Label opStart = mm.label().here();
 
             var ixField = mm.field(ixFieldName);
-            if (rowVar != null) {
-                ixField.invoke("store", txnVar, secondaryKeyVar, null);
+            if (deferred != null && deferred[i] != null) {
+                String deferredFieldName = "deferred" + i;
+                cm.addField(DeferredIndex.class, deferredFieldName).private_().final_();
+                ctorMaker.field(deferredFieldName).set(ctorMaker.param(2).aget(i));
+                mm.field(deferredFieldName).invoke("store", txnVar, secondaryKeyVar, null);
             } else {
-                var attachment = txnVar.invoke("attachment");
-                Label noAttachment = mm.label();
-                attachment.instanceOf(TriggerIndexAccessor.class).ifFalse(noAttachment);
-                Label cont = mm.label();
-                attachment.cast(TriggerIndexAccessor.class)
-                    .invoke("delete", ixField, secondaryKeyVar).ifTrue(cont);
-                noAttachment.here();
-                ixField.invoke("store", txnVar, secondaryKeyVar, null);
-                cont.here();
+                boolean batchable = backfillFieldName == null && !secondaryInfos[i].isAltKey();
+                if (rowVar != null) {
+                    if (batchable) {
+                        storeOrBatch(mm, ixField, txnVar, txnVar.invoke("attachment"),
+                                     secondaryKeyVar, null);
+                    } else {
+                        ixField.invoke("store", txnVar, secondaryKeyVar, null);
+                    }
+                } else {
+                    var attachment = txnVar.invoke("attachment");
+                    Label noAttachment = mm.label();
+                    attachment.instanceOf(TriggerIndexAccessor.class).ifFalse(noAttachment);
+                    Label cont = mm.label();
+                    attachment.cast(TriggerIndexAccessor.class)
+                        .invoke("delete", ixField, secondaryKeyVar).ifTrue(cont);
+                    noAttachment.here();
+                    if (batchable) {
+                        storeOrBatch(mm, ixField, txnVar, attachment, secondaryKeyVar, null);
+                    } else {
+                        ixField.invoke("store", txnVar, secondaryKeyVar, null);
+                    }
+                    cont.here();
+                }
             }
 
             if (backfillFieldName != null) {
@@ -602,6 +745,10 @@ public class IndexTriggerMaker<R> {
             mm.catch_(opStart, DeletedIndexException.class, exVar -> {
                 // Index was dropped. Assume that this trigger will soon be replaced.
             });
+
+            if (skip != null) {
+                skip.here();
+            }
         }
 
         var lookup = cm.finishHidden();
@@ -609,12 +756,7 @@ public class IndexTriggerMaker<R> {
 
         try {
             var ctor = lookup.findConstructor(clazz, ctorMethodType);
-            Object deleter;
-            if (backfills == null) {
-                deleter = ctor.invoke(secondaryIndexes);
-            } else {
-                deleter = ctor.invoke(secondaryIndexes, backfills);
-            }
+            Object deleter = ctor.invoke(secondaryIndexes, backfills, deferred);
             return lookup.findVirtual(clazz, "delete", mt).bindTo(deleter);
         } catch (Throwable e) {
             throw rethrow(e);
@@ -653,12 +795,16 @@ public class IndexTriggerMaker<R> {
 
         var tm = new TransformMaker<R>(mRowType, mPrimaryGen.info, available);
 
-        for (RowInfo secondaryInfo : mSecondaryInfos) {
+        boolean anyFilters = false;
+
+        for (int i=0; i<mSecondaryInfos.length; i++) {
+            RowInfo secondaryInfo = mSecondaryInfos[i];
             tm.addKeyTarget(secondaryInfo, 0, false);
             tm.addValueTarget(secondaryInfo, 0, false);
+            anyFilters |= mSecondaryFilters[i] != null;
         }
 
-        if (tm.onlyNeedsKeys()) {
+        if (tm.onlyNeedsKeys() && !anyFilters) {
             // If the targets only depend on the primary keys, then any differences in the
             // values are irrelevant.
             mm.return_();
@@ -674,6 +820,12 @@ public class IndexTriggerMaker<R> {
         TransformMaker otm = tm.beginValueDiff(mm, rowVar, keyVar, newValueVar, -1, oldValueVar);
 
         for (int i=0; i<mSecondaryInfos.length; i++) {
+            if (mSecondaryFilters[i] != null) {
+                addPartialIndexStore(mm, i, isPartial, txnVar, rowVar, keyVar,
+                                     oldValueVar, newValueVar, tm, otm);
+                continue;
+            }
+
             Label modified = mm.label();
 
             Label cont = mm.label();
@@ -695,7 +847,7 @@ public class IndexTriggerMaker<R> {
             RowGen secondaryGen = secondaryInfo.rowGen();
 
             if (!secondaryInfo.isAltKey()) {
-                ixField.invoke("store", txnVar, secondaryKeyVar, secondaryValueVar);
+                storeEntry(mm, i, txnVar, secondaryKeyVar, secondaryValueVar);
                 if (closerVar != null) {
                     mm.finally_(opStart, () -> closerVar.invoke("close"));
                 }
@@ -710,7 +862,7 @@ public class IndexTriggerMaker<R> {
                 pass.here();
             }
 
-            if (isPartial) {
+            if (isPartial && mDeferredIndexes[i] == null) {
                 var attachment = txnVar.invoke("attachment");
                 Label noAttachment = mm.label();
                 attachment.instanceOf(TriggerIndexAccessor.class).ifFalse(noAttachment);
@@ -733,7 +885,7 @@ public class IndexTriggerMaker<R> {
                 mm.var(Arrays.class).invoke("equals", secondaryKeyVar, deleteKeyVar).ifTrue(cont);
             }
 
-            ixField.invoke("store", txnVar, deleteKeyVar, null);
+            storeEntry(mm, i, txnVar, deleteKeyVar, null);
 
             if (mBackfills[i] != null) {
                 mm.field("backfill" + i).invoke("deleted", txnVar, deleteKeyVar);
@@ -746,7 +898,142 @@ public class IndexTriggerMaker<R> {
             cont.here();
         }
 
-        return tm.requiresRow();
+        return tm.requiresRow() || anyFilters;
+    }
+
+    /**
+     * Makes code for the store method which updates a partial index. When the old and new
+     * rows both match the filter, the index is updated just like a regular index. Otherwise,
+     * an entry is only inserted or only deleted.
+     *
+     * @param i secondaryInfo index
+     * @param tm maker for the new value
+     * @param otm maker for the old value
+     */
+    private void addPartialIndexStore(MethodMaker mm, int i, boolean isPartial,
+                                      Variable txnVar, Variable rowVar, Variable keyVar,
+                                      Variable oldValueVar, Variable newValueVar,
+                                      TransformMaker<?> tm, TransformMaker<?> otm)
+    {
+        var filterVar = mm.var(RowPredicate.class).setExact(mSecondaryFilters[i]);
+        var oldMatchVar = filterVar.invoke("test", keyVar, oldValueVar);
+        Variable newMatchVar;
+        if (isPartial) {
+            newMatchVar = filterVar.invoke("testP", rowVar, keyVar, newValueVar);
+        } else {
+            newMatchVar = filterVar.invoke("test", rowVar);
+        }
+
+        Label changed = mm.label();
+        Label cont = mm.label();
+        oldMatchVar.ifNe(newMatchVar, changed);
+        oldMatchVar.ifFalse(cont);
+        if (!otm.diffValueCheck(cont, i << 1, (i << 1) + 1)) {
+            mm.goto_(cont);
+        }
+        changed.here();
+
+        var secondaryKeyVar = tm.encode(i << 1);
+        var secondaryValueVar = tm.encode((i << 1) + 1);
+        var deleteKeyVar = otm.encode(i << 1);
+
+        Label opStart = mm.label().here();
+        Field ixField = mm.field("ix" + i);
+        RowInfo secondaryInfo = mSecondaryInfos[i];
+
+        // Insert the new entry if it matches the filter.
+
+        Label noInsert = mm.label();
+        newMatchVar.ifFalse(noInsert);
+
+        Variable closerVar = acquirePredicateLock
+            (mm, i, isPartial, txnVar, rowVar, secondaryKeyVar, secondaryValueVar);
+
+        Label insertStart = mm.label().here();
+        storeEntry(mm, i, txnVar, secondaryKeyVar, secondaryValueVar);
+        if (closerVar != null) {
+            mm.finally_(insertStart, () -> closerVar.invoke("close"));
+        }
+
+        if (isPartial && mDeferredIndexes[i] == null) {
+            var attachment = txnVar.invoke("attachment");
+            Label noAttachment = mm.label();
+            attachment.instanceOf(TriggerIndexAccessor.class).ifFalse(noAttachment);
+            attachment.cast(TriggerIndexAccessor.class)
+                .invoke("stored", ixField, secondaryKeyVar, secondaryValueVar);
+            noAttachment.here();
+        }
+
+        if (mBackfills[i] != null) {
+            mm.field("backfill" + i).invoke
+                ("inserted", txnVar, secondaryKeyVar, secondaryValueVar);
+        }
+
+        noInsert.here();
+
+        // Delete the old entry if it matched the filter.
+
+        oldMatchVar.ifFalse(cont);
+
+        if (!secondaryInfo.valueColumns.isEmpty()) {
+            // If this is a covering index, then the key might be the same. Don't delete it.
+            Label doDelete = mm.label();
+            newMatchVar.ifFalse(doDelete);
+            mm.var(Arrays.class).invoke("equals", secondaryKeyVar, deleteKeyVar).ifTrue(cont);
+            doDelete.here();
+        }
+
+        storeEntry(mm, i, txnVar, deleteKeyVar, null);
+
+        if (mBackfills[i] != null) {
+            mm.field("backfill" + i).invoke("deleted", txnVar, deleteKeyVar);
+        }
+
+        mm.catch_(opStart, DeletedIndexException.class, exVar -> {
+            // Index was dropped. Assume that this trigger will soon be replaced.
+        });
+
+        cont.here();
+    }
+
+    /**
+     * Makes code which stores or deletes a secondary index entry. If the index is deferred,
+     * then the change is enqueued instead. If a SecondaryBatch is attached to the
+     * transaction, then the change is passed to the batch.
+     *
+     * @param i secondaryInfo index
+     * @param valueVar pass null to delete the entry
+     */
+    private void storeEntry(MethodMaker mm, int i, Variable txnVar,
+                            Variable keyVar, Variable valueVar)
+    {
+        if (mDeferredIndexes[i] != null) {
+            mm.field("deferred" + i).invoke("store", txnVar, keyVar, valueVar);
+        } else if (mBackfills[i] != null || mSecondaryInfos[i].isAltKey()) {
+            mm.field("ix" + i).invoke("store", txnVar, keyVar, valueVar);
+        } else {
+            storeOrBatch(mm, mm.field("ix" + i), txnVar, txnVar.invoke("attachment"),
+                         keyVar, valueVar);
+        }
+    }
+
+    /**
+     * Makes code which passes a change to the SecondaryBatch which is attached to the
+     * transaction, or else stores it into the index directly.
+     *
+     * @param valueVar pass null to delete the entry
+     */
+    private static void storeOrBatch(MethodMaker mm, Variable ixVar, Variable txnVar,
+                                     Variable attachmentVar, Variable keyVar, Variable valueVar)
+    {
+        Label direct = mm.label();
+        attachmentVar.instanceOf(SecondaryBatch.class).ifFalse(direct);
+        attachmentVar.cast(SecondaryBatch.class).invoke("store", ixVar, keyVar, valueVar);
+        Label cont = mm.label();
+        mm.goto_(cont);
+        direct.here();
+        ixVar.invoke("store", txnVar, keyVar, valueVar);
+        cont.here();
     }
 
     /**
@@ -43,6 +43,8 @@ import org.cojen.tupl.diag.QueryPlan;
 import org.cojen.tupl.table.expr.Cardinality;
 import org.cojen.tupl.table.expr.CompiledQuery;
 import org.cojen.tupl.table.expr.Parser;
+import org.cojen.tupl.table.expr.RelationExpr;
+import org.cojen.tupl.table.expr.SliceExpr;
 
 /**
  * Defines an unmodifiable table consisting of one row with no columns. It represents the
@@ -264,7 +266,11 @@ public final class JoinIdentityTable extends BaseTable<Row> implements Query<Row
     protected Object cacheNewValue(Type type, Object key, Object helper) throws IOException {
         if (type == TYPE_1) { // see the query method
             var queryStr = (String) key;
-            if (Parser.parse(queryStr).type().cardinality() != Cardinality.ZERO) {
+            RelationExpr expr = Parser.parse(queryStr);
+            if (expr.type().cardinality() != Cardinality.ZERO) {
+                if (expr instanceof SliceExpr se) {
+                    return LimitQuery.make(query(se.sourceQueryString(queryStr)), se.slice());
+                }
                 return this;
             }
             EmptyQuery<Row> empty = cEmptyQuery;
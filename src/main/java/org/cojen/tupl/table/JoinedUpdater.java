@@ -114,6 +114,7 @@ final class JoinedUpdater<R> extends BasicScanner<R> implements Updater<R> {
     @Override
     public R update(R row) throws IOException {
         updateCurrent();
+        BasicUpdater.rowFinished(this, txn());
         return doStep(row);
     }
 
@@ -131,6 +132,7 @@ final class JoinedUpdater<R> extends BasicScanner<R> implements Updater<R> {
     @Override
     public R delete(R row) throws IOException {
         deleteCurrent();
+        BasicUpdater.rowFinished(this, txn());
         return doStep(row);
     }
 
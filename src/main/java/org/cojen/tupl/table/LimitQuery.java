@@ -0,0 +1,195 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import org.cojen.tupl.Query;
+import org.cojen.tupl.Scanner;
+import org.cojen.tupl.Transaction;
+import org.cojen.tupl.Updater;
+
+import org.cojen.tupl.diag.QueryPlan;
+
+/**
+ * Wraps a Query such that it skips over an optional amount of rows, and produces a limited
+ * amount of rows. The limit is pushed down into the source query when possible, which can
+ * then perform optimizations such as a top-N sort.
+ *
+ * @author Brian S. O'Neill
+ * @see Query#limit
+ * @see QuerySlice
+ */
+public final class LimitQuery<R> extends QueryLauncher<R> {
+    /**
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    public static <R> QueryLauncher<R> make(Query<R> source, long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit: " + limit);
+        }
+        if (source instanceof LimitQuery<R> lq && !lq.mSlice.hasOffset()
+            && lq.mSlice.limitArg() == 0)
+        {
+            if (limit >= lq.mSlice.limit()) {
+                return lq;
+            }
+            source = lq.mSource;
+        }
+        return new LimitQuery<>(source, QuerySlice.limit(limit));
+    }
+
+    /**
+     * @param slice the limit and offset to apply
+     */
+    public static <R> QueryLauncher<R> make(Query<R> source, QuerySlice slice) {
+        return new LimitQuery<>(source, slice);
+    }
+
+    /**
+     * Returns a scanner which produces at most the given amount of rows, pushing the limit
+     * into the source query if possible.
+     */
+    static <R> Scanner<R> newScanner(Query<R> source, long limit,
+                                     R row, Transaction txn, Object... args)
+        throws IOException
+    {
+        if (source instanceof QueryLauncher<R> launcher) {
+            return launcher.newLimitScanner(limit, row, txn, args);
+        }
+        if (source instanceof ConcatQuery<R> concat) {
+            return concat.newLimitScanner(limit, row, txn, args);
+        }
+        return new LimitScanner<>(source.newScanner(row, txn, args), limit);
+    }
+
+    /**
+     * Returns a query plan for the newScanner method.
+     */
+    static <R> QueryPlan scannerPlan(Query<R> source, long limit,
+                                     Transaction txn, Object... args)
+        throws IOException
+    {
+        if (source instanceof QueryLauncher<R> launcher) {
+            return launcher.limitScannerPlan(limit, txn, args);
+        }
+        if (source instanceof ConcatQuery<R> concat) {
+            return concat.limitScannerPlan(limit, txn, args);
+        }
+        return new QueryPlan.Limit(limit, source.scannerPlan(txn, args));
+    }
+
+    private final Query<R> mSource;
+    private final QuerySlice mSlice;
+
+    private LimitQuery(Query<R> source, QuerySlice slice) {
+        mSource = source;
+        mSlice = slice;
+    }
+
+    @Override
+    public Class<R> rowType() {
+        return mSource.rowType();
+    }
+
+    @Override
+    public int argumentCount() {
+        return Math.max(mSource.argumentCount(), mSlice.maxArgument());
+    }
+
+    @Override
+    public Scanner<R> newScanner(R row, Transaction txn, Object... args) throws IOException {
+        long limit = mSlice.limit(args);
+        long offset = mSlice.offset(args);
+        if (offset == 0) {
+            return newScanner(mSource, limit, row, txn, args);
+        }
+        Scanner<R> source = newScanner(mSource, QuerySlice.bound(limit, offset), row, txn, args);
+        return new LimitScanner<>(source, offset, limit);
+    }
+
+    @Override
+    public Scanner<R> newLimitScanner(long limit, R row, Transaction txn, Object... args)
+        throws IOException
+    {
+        long offset = mSlice.offset(args);
+        limit = Math.min(limit, mSlice.limit(args));
+        Scanner<R> source = newScanner(mSource, QuerySlice.bound(limit, offset), row, txn, args);
+        return offset == 0 ? source : new LimitScanner<>(source, offset, limit);
+    }
+
+    @Override
+    public Updater<R> newUpdater(R row, Transaction txn, Object... args) throws IOException {
+        long limit = mSlice.limit(args);
+        long offset = mSlice.offset(args);
+        return new LimitUpdater<>(mSource.newUpdater(row, txn, args), offset, limit);
+    }
+
+    @Override
+    public void scanWrite(Transaction txn, RowWriter<R> writer, Object... args) throws IOException {
+        long limit = mSlice.limit(args);
+        long offset = mSlice.offset(args);
+        if (mSource instanceof QueryLauncher<R> launcher) {
+            launcher.limitScanWrite(txn, writer, offset, limit, args);
+        } else {
+            QueryLauncher.limitScanWrite(mSource, txn, writer, offset, limit, args);
+        }
+    }
+
+    @Override
+    public QueryPlan scannerPlan(Transaction txn, Object... args) throws IOException {
+        long limit = mSlice.limit(args);
+        long offset = mSlice.offset(args);
+        if (offset == 0) {
+            return scannerPlan(mSource, limit, txn, args);
+        }
+        QueryPlan plan = scannerPlan(mSource, QuerySlice.bound(limit, offset), txn, args);
+        return new QueryPlan.Limit(limit, offset, plan);
+    }
+
+    @Override
+    public QueryPlan limitScannerPlan(long limit, Transaction txn, Object... args)
+        throws IOException
+    {
+        long offset = mSlice.offset(args);
+        limit = Math.min(limit, mSlice.limit(args));
+        QueryPlan plan = scannerPlan(mSource, QuerySlice.bound(limit, offset), txn, args);
+        return offset == 0 ? plan : new QueryPlan.Limit(limit, offset, plan);
+    }
+
+    @Override
+    public QueryPlan updaterPlan(Transaction txn, Object... args) throws IOException {
+        long limit = mSlice.limit(args);
+        long offset = mSlice.offset(args);
+        return new QueryPlan.Limit(limit, offset, mSource.updaterPlan(txn, args));
+    }
+
+    @Override
+    protected void closeIndexes() throws IOException {
+        if (mSource instanceof QueryLauncher<R> launcher) {
+            launcher.closeIndexes();
+        }
+    }
+
+    @Override
+    protected void clearCache() {
+        if (mSource instanceof QueryLauncher<R> launcher) {
+            launcher.clearCache();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import java.util.Comparator;
+
+import org.cojen.tupl.Scanner;
+
+/**
+ * Wraps a Scanner, skips over an optional amount of rows, and closes it once a limit has been
+ * reached.
+ *
+ * @author Brian S. O'Neill
+ * @see LimitQuery
+ */
+class LimitScanner<R> implements Scanner<R> {
+    protected final Scanner<R> mSource;
+
+    private long mRemaining;
+
+    /**
+     * @param limit must not be negative
+     */
+    LimitScanner(Scanner<R> source, long limit) throws IOException {
+        this(source, 0, limit);
+    }
+
+    /**
+     * @param offset amount of source rows to skip; must not be negative
+     * @param limit must not be negative
+     */
+    LimitScanner(Scanner<R> source, long offset, long limit) throws IOException {
+        mSource = source;
+        if (limit <= 0) {
+            source.close();
+        } else if (offset > 0) {
+            try {
+                R row = source.row();
+                while (row != null && --offset >= 0) {
+                    row = source.step(row);
+                }
+            } catch (Throwable e) {
+                RowUtils.closeQuietly(source);
+                throw e;
+            }
+        }
+        mRemaining = limit;
+    }
+
+    @Override
+    public final R row() {
+        return mSource.row();
+    }
+
+    @Override
+    public final R step() throws IOException {
+        return advance() ? mSource.step() : finished();
+    }
+
+    @Override
+    public final R step(R row) throws IOException {
+        return advance() ? mSource.step(row) : finished();
+    }
+
+    @Override
+    public final void close() throws IOException {
+        mRemaining = 0;
+        mSource.close();
+    }
+
+    @Override
+    public final long estimateSize() {
+        return Math.min(mSource.estimateSize(), Math.max(0, mRemaining));
+    }
+
+    @Override
+    public final int characteristics() {
+        return mSource.characteristics() & ~(SIZED | SUBSIZED);
+    }
+
+    @Override
+    public final Comparator<? super R> getComparator() {
+        return mSource.getComparator();
+    }
+
+    /**
+     * Returns true if the source can advance to the next row, and then counts it.
+     */
+    protected final boolean advance() {
+        if (mRemaining > 1) {
+            mRemaining--;
+            return true;
+        }
+        return false;
+    }
+
+    protected final R finished() throws IOException {
+        close();
+        return null;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import org.cojen.tupl.Updater;
+
+/**
+ * Wraps an Updater, skips over an optional amount of rows, and closes it once a limit has
+ * been reached.
+ *
+ * @author Brian S. O'Neill
+ * @see LimitQuery
+ */
+final class LimitUpdater<R> extends LimitScanner<R> implements Updater<R> {
+    /**
+     * @param limit must not be negative
+     */
+    LimitUpdater(Updater<R> source, long limit) throws IOException {
+        super(source, limit);
+    }
+
+    /**
+     * @param offset amount of source rows to skip; must not be negative
+     * @param limit must not be negative
+     */
+    LimitUpdater(Updater<R> source, long offset, long limit) throws IOException {
+        super(source, offset, limit);
+    }
+
+    @Override
+    public R update() throws IOException {
+        var source = (Updater<R>) mSource;
+        if (advance()) {
+            return source.update();
+        }
+        source.update();
+        return finished();
+    }
+
+    @Override
+    public R update(R row) throws IOException {
+        var source = (Updater<R>) mSource;
+        if (advance()) {
+            return source.update(row);
+        }
+        source.update(row);
+        return finished();
+    }
+
+    @Override
+    public R delete() throws IOException {
+        var source = (Updater<R>) mSource;
+        if (advance()) {
+            return source.delete();
+        }
+        source.delete();
+        return finished();
+    }
+
+    @Override
+    public R delete(R row) throws IOException {
+        var source = (Updater<R>) mSource;
+        if (advance()) {
+            return source.delete(row);
+        }
+        source.delete(row);
+        return finished();
+    }
+}
@@ -40,7 +40,7 @@ public final class LoadOneQueryLauncher<R> extends ScanQueryLauncher<R> {
     }
 
     @Override
-    public void scanWrite(Transaction txn, RowWriter writer, Object... args) throws IOException {
+    public void scanWrite(Transaction txn, RowWriter<R> writer, Object... args) throws IOException {
         // The one row is written indirectly by the constructor.
         new LoadOneScanner<>(writer, mTable.mSource, txn, mFactory.scanController(args));
     }
@@ -38,7 +38,7 @@ final class LoadOneScanner<R> implements Scanner<R>, UnsupportedCursor {
     /**
      * Constructor used by the LoadOneQueryLauncher.newScanner method.
      *
-     * @param row can pass null to construct a new instance
+     * @param row can pass null to construct a new instance; can also be a RowConsumer
      */
     LoadOneScanner(View source, Transaction txn, ScanController<R> controller, R row)
         throws IOException
@@ -48,7 +48,13 @@ final class LoadOneScanner<R> implements Scanner<R>, UnsupportedCursor {
         if (value != null) {
             mKey = key;
             mValue = value;
-            mRow = controller.evaluator().evalRow(this, LockResult.UNOWNED, row);
+            RowEvaluator<R> evaluator = controller.evaluator();
+            if (row instanceof RowConsumer<?>) {
+                @SuppressWarnings("unchecked")
+                var consumer = (RowConsumer<R>) row;
+                consumer.beginBatch(this, evaluator);
+            }
+            mRow = evaluator.evalRow(this, LockResult.UNOWNED, row);
         }
         mController = controller;
     }
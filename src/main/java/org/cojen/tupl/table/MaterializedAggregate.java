@@ -0,0 +1,851 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.cojen.tupl.Aggregate;
+import org.cojen.tupl.Cursor;
+import org.cojen.tupl.LockMode;
+import org.cojen.tupl.Scanner;
+import org.cojen.tupl.Table;
+import org.cojen.tupl.Transaction;
+import org.cojen.tupl.Updater;
+import org.cojen.tupl.View;
+
+import org.cojen.tupl.core.RowPredicate;
+
+import static org.cojen.tupl.table.RowUtils.*;
+
+/**
+ * Maintains the rows of a materialized aggregate table, as changes are made to the source
+ * table. The source changes are supplied by an {@link AggregateTrigger}, within the scope of
+ * the transaction which made the change.
+ *
+ * <p>The definition is persisted, and so the rows are maintained again as soon as the source
+ * table is opened. The target rows are built by scanning the source table in primary key
+ * order, in batches, and the trigger only applies changes to the source rows which have
+ * already been scanned. The position of the scan is persisted along with each batch, and so
+ * an interrupted build can resume where it left off.
+ *
+ * @author Brian S O'Neill
+ * @see Table#materialize
+ */
+final class MaterializedAggregate<S, T> {
+    /**
+     * Accessors for a column which is copied from the source row to the target row.
+     */
+    private record GroupColumn(MethodHandle sourceGetter, MethodHandle targetSetter) { }
+
+    // Maximum number of source rows to scan, or target rows to delete, per transaction.
+    private static final int BATCH_SIZE = 1000;
+
+    // Persisted definition states: target must be cleared, build is in progress, or the
+    // build has finished.
+    private static final byte S_CLEAR = 'C', S_BUILDING = 'B', S_ACTIVE = 'A';
+
+    // Special frontier which indicates that the build has finished.
+    private static final byte[] COMPLETE = new byte[0];
+
+    private static final int K_LONG = 1, K_INT = 2, K_DOUBLE = 3, K_FLOAT = 4,
+        K_BIG_INTEGER = 5, K_BIG_DECIMAL = 6;
+
+    /**
+     * Accessors for an aggregate column of the target row.
+     *
+     * @param sourceGetter is null for COUNT
+     * @param kind numerical kind for COUNT and SUM
+     */
+    private record AggColumn(Aggregate.Type type, MethodHandle sourceGetter,
+                             MethodHandle targetGetter, MethodHandle targetSetter, int kind)
+    {
+    }
+
+    private final StoredTable<S> mSource;
+    private final RowDecoder<S> mDecoder;
+    private final Table<T> mTarget;
+    private final long mTargetId;
+
+    private final View mDefinitions;
+    private final byte[] mDefinitionKey;
+
+    private final GroupColumn[] mGroupColumns;
+    private final MethodHandle[] mSourceKeyGetters;
+    private final AggColumn[] mAggColumns;
+    private final AggColumn mCount;
+
+    // Query which finds all the source rows of a group.
+    private final String mGroupQuery;
+
+    // Compares target rows by their primary key.
+    private final Comparator<T> mGroupComparator;
+
+    // Is false if the target rows must be deleted before the build can start.
+    private boolean mCleared;
+
+    // Highest source key which has been scanned by the build, or null if none, or COMPLETE.
+    private volatile byte[] mFrontier;
+
+    /**
+     * @param definitions see RowStore.materializedView
+     * @param definition persisted definition, or null if new
+     * @throws IllegalArgumentException if the target type is malformed
+     */
+    MaterializedAggregate(StoredTable<S> source, Table<T> target, long targetId,
+                          View definitions, byte[] definition)
+    {
+        mSource = source;
+        mDecoder = source.unfiltered();
+        mTarget = target;
+        mTargetId = targetId;
+
+        mDefinitions = definitions;
+        mDefinitionKey = new byte[8];
+        encodeLongBE(mDefinitionKey, 0, targetId);
+
+        if (definition != null) {
+            switch (definition[0]) {
+            case S_ACTIVE -> {
+                mCleared = true;
+                mFrontier = COMPLETE;
+            }
+            case S_BUILDING -> {
+                mCleared = true;
+                int offset = 5 + decodeIntLE(definition, 1);
+                mFrontier = Arrays.copyOfRange(definition, offset, definition.length);
+            }
+            }
+        }
+
+        Class<S> sourceType = source.rowType();
+        Class<T> targetType = target.rowType();
+        RowInfo sourceInfo = RowInfo.find(sourceType);
+        RowInfo targetInfo = RowInfo.find(targetType);
+
+        if (targetInfo.keyColumns.isEmpty()) {
+            throw new IllegalArgumentException("Materialized table must have a primary key");
+        }
+
+        var lookup = MethodHandles.publicLookup();
+
+        try {
+            mGroupColumns = new GroupColumn[targetInfo.keyColumns.size()];
+            var query = new StringBuilder();
+            var spec = new StringBuilder();
+            int i = 0;
+            for (ColumnInfo targetColumn : targetInfo.keyColumns.values()) {
+                String name = targetColumn.name;
+                ColumnInfo sourceColumn = sourceInfo.allColumns.get(name);
+                if (sourceColumn == null) {
+                    throw new IllegalArgumentException("Source column doesn't exist: " + name);
+                }
+                if (!sameType(sourceColumn, targetColumn)) {
+                    throw new IllegalArgumentException("Mismatched column type: " + name);
+                }
+                mGroupColumns[i++] = new GroupColumn
+                    (getter(lookup, sourceType, sourceColumn),
+                     setter(lookup, targetType, targetColumn));
+                if (!query.isEmpty()) {
+                    query.append(" && ");
+                }
+                query.append(name).append(" == ?").append(i);
+                spec.append('+').append(name);
+            }
+            mGroupQuery = query.toString();
+            mGroupComparator = target.comparator(spec.toString());
+
+            mSourceKeyGetters = new MethodHandle[sourceInfo.keyColumns.size()];
+            i = 0;
+            for (ColumnInfo column : sourceInfo.keyColumns.values()) {
+                mSourceKeyGetters[i++] = getter(lookup, sourceType, column);
+            }
+
+            mAggColumns = new AggColumn[targetInfo.valueColumns.size()];
+            AggColumn count = null;
+            i = 0;
+            for (ColumnInfo targetColumn : targetInfo.valueColumns.values()) {
+                AggColumn agg = aggColumn(lookup, sourceType, sourceInfo,
+                                          targetType, targetColumn);
+                if (count == null && agg.type() == Aggregate.Type.COUNT) {
+                    count = agg;
+                }
+                mAggColumns[i++] = agg;
+            }
+
+            if (count == null) {
+                throw new IllegalArgumentException("Materialized table requires a count column");
+            }
+
+            mCount = count;
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static boolean sameType(ColumnInfo source, ColumnInfo target) {
+        return source.boxedType() == target.boxedType() && source.isArray() == target.isArray()
+            && (!source.isNullable() || target.isNullable());
+    }
+
+    private static MethodHandle getter(MethodHandles.Lookup lookup,
+                                       Class<?> rowType, ColumnInfo column)
+        throws NoSuchMethodException, IllegalAccessException
+    {
+        return lookup.findVirtual(rowType, column.name, MethodType.methodType(column.type))
+            .asType(MethodType.methodType(Object.class, Object.class));
+    }
+
+    private static MethodHandle setter(MethodHandles.Lookup lookup,
+                                       Class<?> rowType, ColumnInfo column)
+        throws NoSuchMethodException, IllegalAccessException
+    {
+        return lookup.findVirtual(rowType, column.name,
+                                  MethodType.methodType(void.class, column.type))
+            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+    }
+
+    private static AggColumn aggColumn(MethodHandles.Lookup lookup,
+                                       Class<?> sourceType, RowInfo sourceInfo,
+                                       Class<?> targetType, ColumnInfo targetColumn)
+        throws NoSuchMethodException, IllegalAccessException
+    {
+        String name = targetColumn.name;
+
+        Aggregate ann = targetType.getMethod(name).getAnnotation(Aggregate.class);
+        if (ann == null) {
+            throw new IllegalArgumentException("Column must be an aggregate: " + name);
+        }
+
+        Aggregate.Type type = ann.value();
+        MethodHandle sourceGetter = null;
+        int kind = 0;
+
+        if (type == Aggregate.Type.COUNT) {
+            kind = kind(targetColumn);
+            if (kind != K_LONG && kind != K_INT) {
+                throw new IllegalArgumentException("Count column must be an int or long: " + name);
+            }
+        } else {
+            String sourceName = ann.column();
+            ColumnInfo sourceColumn = sourceInfo.allColumns.get(sourceName);
+            if (sourceColumn == null) {
+                throw new IllegalArgumentException
+                    ("Source column doesn't exist: " + sourceName);
+            }
+
+            sourceGetter = getter(lookup, sourceType, sourceColumn);
+
+            if (type == Aggregate.Type.SUM) {
+                kind = kind(targetColumn);
+                if (kind == 0 || sourceColumn.isArray()
+                    || !Number.class.isAssignableFrom(sourceColumn.boxedType()))
+                {
+                    throw new IllegalArgumentException("Sum column must be numerical: " + name);
+                }
+            } else {
+                if (!sameType(sourceColumn, targetColumn) || sourceColumn.isArray()
+                    || !Comparable.class.isAssignableFrom(targetColumn.boxedType()))
+                {
+                    throw new IllegalArgumentException("Mismatched column type: " + name);
+                }
+                if (!targetColumn.isNullable()) {
+                    throw new IllegalArgumentException
+                        ("Minimum or maximum column must be nullable: " + name);
+                }
+            }
+        }
+
+        return new AggColumn(type, sourceGetter, getter(lookup, targetType, targetColumn),
+                             setter(lookup, targetType, targetColumn), kind);
+    }
+
+    /**
+     * Returns a numerical kind, or else 0 if not supported for a count or sum column.
+     */
+    private static int kind(ColumnInfo column) {
+        if (column.isArray()) {
+            return 0;
+        }
+        Class<?> type = column.boxedType();
+        if (type == Long.class) {
+            return K_LONG;
+        } else if (type == Integer.class) {
+            return K_INT;
+        } else if (type == Double.class) {
+            return K_DOUBLE;
+        } else if (type == Float.class) {
+            return K_FLOAT;
+        } else if (type == BigInteger.class) {
+            return K_BIG_INTEGER;
+        } else if (type == BigDecimal.class) {
+            return K_BIG_DECIMAL;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the target type name of a persisted definition.
+     */
+    static String typeName(byte[] definition) {
+        return new String(definition, 5, decodeIntLE(definition, 1), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a copy of a persisted definition which requires that the target be rebuilt.
+     */
+    static byte[] cleared(byte[] definition) {
+        definition = definition.clone();
+        definition[0] = S_CLEAR;
+        return definition;
+    }
+
+    long targetId() {
+        return mTargetId;
+    }
+
+    /**
+     * Returns true if the build hasn't finished.
+     */
+    boolean isBuilding() {
+        return mFrontier != COMPLETE;
+    }
+
+    Table<T> target() {
+        return mTarget;
+    }
+
+    void inserted(Transaction txn, byte[] key, byte[] newValue) throws IOException {
+        if (isScanned(key)) {
+            apply(txn, null, mDecoder.decodeRow(null, key, newValue));
+        }
+    }
+
+    void stored(Transaction txn, byte[] key, byte[] oldValue, byte[] newValue)
+        throws IOException
+    {
+        if (isScanned(key)) {
+            apply(txn, mDecoder.decodeRow(null, key, oldValue),
+                  mDecoder.decodeRow(null, key, newValue));
+        }
+    }
+
+    void deleted(Transaction txn, byte[] key, byte[] oldValue) throws IOException {
+        if (isScanned(key)) {
+            apply(txn, mDecoder.decodeRow(null, key, oldValue), null);
+        }
+    }
+
+    /**
+     * Returns true if the source row has been scanned by the build, and so changes to it
+     * must be applied. Otherwise, the build will see the change when it scans the row. The
+     * caller must hold the source row lock.
+     */
+    private boolean isScanned(byte[] key) {
+        byte[] frontier = mFrontier;
+        return frontier == COMPLETE
+            || (frontier != null && Arrays.compareUnsigned(key, frontier) <= 0);
+    }
+
+    /**
+     * Builds the target rows, resuming from the persisted position, and returns when the
+     * build has finished. If the build fails, calling this method again resumes it.
+     */
+    synchronized void build() throws IOException {
+        if (mFrontier == COMPLETE) {
+            return;
+        }
+
+        if (!mCleared) {
+            storeDefinition(null, S_CLEAR, null);
+            clearTarget();
+            mCleared = true;
+        }
+
+        while (!buildBatch());
+    }
+
+    /**
+     * Deletes all the target rows, in batches. The trigger doesn't apply any changes while
+     * this is in progress, because no source rows have been scanned yet.
+     */
+    private void clearTarget() throws IOException {
+        while (true) {
+            Transaction txn = mTarget.newTransaction(null);
+            try {
+                int count = 0;
+                try (Updater<T> updater = mTarget.newUpdater(txn)) {
+                    for (T row = updater.row(); row != null && count < BATCH_SIZE; count++) {
+                        row = updater.delete(row);
+                    }
+                }
+                txn.commit();
+                if (count < BATCH_SIZE) {
+                    return;
+                }
+            } finally {
+                txn.reset();
+            }
+        }
+    }
+
+    /**
+     * Scans the next batch of source rows, and merges their aggregates into the target rows.
+     * The frontier advances when the transaction commits, and from then on, the trigger
+     * applies changes made to the scanned rows.
+     *
+     * @return true if the build has finished
+     */
+    private boolean buildBatch() throws IOException {
+        byte[] frontier = mFrontier;
+
+        Transaction txn = mSource.newTransaction(null);
+        try {
+            // Block inserts until the batch commits. Otherwise, a row could be inserted
+            // behind the scan, and then the trigger would ignore it too.
+            mSource.mIndexLock.addPredicate(txn, RowPredicate.all());
+
+            // Retain upgradable source row locks until the batch commits, for the same
+            // reason. Writers acquire upgradable locks before calling the trigger, and so
+            // shared locks wouldn't block them from reading the old frontier.
+            txn.lockMode(LockMode.UPGRADABLE_READ);
+
+            var groups = new TreeMap<T, T>(mGroupComparator);
+            byte[] last = null;
+            int count = 0;
+
+            try (Cursor c = mSource.mSource.newCursor(txn)) {
+                if (frontier == null) {
+                    c.first();
+                } else {
+                    c.findGt(frontier);
+                }
+                for (byte[] key; (key = c.key()) != null; c.next()) {
+                    S row = mDecoder.decodeRow(null, key, c.value());
+                    T group = newGroup(row);
+                    T existing = groups.putIfAbsent(group, group);
+                    if (existing != null) {
+                        group = existing;
+                    }
+                    add(group, row);
+                    last = key;
+                    if (++count >= BATCH_SIZE) {
+                        break;
+                    }
+                }
+            }
+
+            for (T delta : groups.values()) {
+                merge(txn, delta);
+            }
+
+            boolean finished = count < BATCH_SIZE;
+
+            if (finished) {
+                storeDefinition(txn, S_ACTIVE, null);
+                mFrontier = COMPLETE;
+            } else {
+                storeDefinition(txn, S_BUILDING, last);
+                mFrontier = last;
+            }
+
+            txn.commit();
+
+            return finished;
+        } catch (Throwable e) {
+            mFrontier = frontier;
+            throw e;
+        } finally {
+            txn.reset();
+        }
+    }
+
+    /**
+     * Adds the aggregates of a partial group into the corresponding target row, which might
+     * also have been changed by the trigger.
+     */
+    private void merge(Transaction txn, T delta) throws IOException {
+        T group = mTarget.newRow();
+        mTarget.copyRow(delta, group);
+
+        if (!mTarget.tryLoad(txn, group)) {
+            mTarget.store(txn, delta);
+            return;
+        }
+
+        try {
+            for (AggColumn agg : mAggColumns) {
+                Object value = agg.targetGetter().invoke(delta);
+                switch (agg.type()) {
+                case COUNT, SUM -> {
+                    Object total = agg.targetGetter().invoke(group);
+                    agg.targetSetter().invoke(group, add(agg.kind(), total, value, false));
+                }
+                case MIN, MAX -> {
+                    if (value != null) {
+                        Object current = agg.targetGetter().invoke(group);
+                        if (current == null || better(agg.type(), value, current)) {
+                            agg.targetSetter().invoke(group, value);
+                        }
+                    }
+                }
+                }
+            }
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+
+        mTarget.store(txn, group);
+    }
+
+    /**
+     * @param txn pass null for auto-commit
+     * @param frontier highest scanned source key, if building
+     */
+    private void storeDefinition(Transaction txn, byte state, byte[] frontier)
+        throws IOException
+    {
+        byte[] name = mTarget.rowType().getName().getBytes(StandardCharsets.UTF_8);
+        var definition = new byte[5 + name.length + (frontier == null ? 0 : frontier.length)];
+        definition[0] = state;
+        encodeIntLE(definition, 1, name.length);
+        System.arraycopy(name, 0, definition, 5, name.length);
+        if (frontier != null) {
+            System.arraycopy(frontier, 0, definition, 5 + name.length, frontier.length);
+        }
+        mDefinitions.store(txn, mDefinitionKey, definition);
+    }
+
+    /**
+     * @param oldRow is null if inserted
+     * @param newRow is null if deleted
+     */
+    private void apply(Transaction txn, S oldRow, S newRow) throws IOException {
+        if (oldRow != null) {
+            T group = loadGroup(txn, oldRow);
+            if (newRow != null && sameGroup(oldRow, newRow)) {
+                remove(txn, group, oldRow);
+                add(group, newRow);
+                save(txn, group);
+                return;
+            }
+            remove(txn, group, oldRow);
+            save(txn, group);
+        }
+
+        if (newRow != null) {
+            T group = loadGroup(txn, newRow);
+            add(group, newRow);
+            save(txn, group);
+        }
+    }
+
+    private boolean sameGroup(S a, S b) {
+        try {
+            for (GroupColumn column : mGroupColumns) {
+                MethodHandle getter = column.sourceGetter();
+                if (!Objects.deepEquals(getter.invoke(a), getter.invoke(b))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private boolean samePrimaryKey(S a, S b) {
+        try {
+            for (MethodHandle getter : mSourceKeyGetters) {
+                if (!Objects.deepEquals(getter.invoke(a), getter.invoke(b))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Returns a new target row for the group which the source row belongs to, with a count
+     * of zero.
+     */
+    private T newGroup(S row) {
+        T group = mTarget.newRow();
+        try {
+            for (GroupColumn column : mGroupColumns) {
+                column.targetSetter().invoke(group, column.sourceGetter().invoke(row));
+            }
+            for (AggColumn agg : mAggColumns) {
+                Object initial = switch (agg.type()) {
+                    case COUNT, SUM -> zero(agg.kind());
+                    default -> null;
+                };
+                agg.targetSetter().invoke(group, initial);
+            }
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+        return group;
+    }
+
+    /**
+     * Loads the target row for the group which the source row belongs to, or else returns a
+     * new row with a count of zero.
+     */
+    private T loadGroup(Transaction txn, S row) throws IOException {
+        T group = newGroup(row);
+        T existing = mTarget.newRow();
+        mTarget.copyRow(group, existing);
+        return mTarget.tryLoad(txn, existing) ? existing : group;
+    }
+
+    private long count(T group) throws Throwable {
+        return ((Number) mCount.targetGetter().invoke(group)).longValue();
+    }
+
+    /**
+     * Stores the target row, or deletes it if the count is zero.
+     */
+    private void save(Transaction txn, T group) throws IOException {
+        long count;
+        try {
+            count = count(group);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+        if (count <= 0) {
+            mTarget.delete(txn, group);
+        } else {
+            mTarget.store(txn, group);
+        }
+    }
+
+    private void add(T group, S row) {
+        try {
+            for (AggColumn agg : mAggColumns) {
+                switch (agg.type()) {
+                case COUNT -> {
+                    Object total = agg.targetGetter().invoke(group);
+                    agg.targetSetter().invoke(group, add(agg.kind(), total, 1L, false));
+                }
+                case SUM -> {
+                    Object value = agg.sourceGetter().invoke(row);
+                    if (value != null) {
+                        Object total = agg.targetGetter().invoke(group);
+                        agg.targetSetter().invoke(group, add(agg.kind(), total, value, false));
+                    }
+                }
+                case MIN, MAX -> {
+                    Object value = agg.sourceGetter().invoke(row);
+                    if (value != null) {
+                        Object current = agg.targetGetter().invoke(group);
+                        if (current == null || better(agg.type(), value, current)) {
+                            agg.targetSetter().invoke(group, value);
+                        }
+                    }
+                }
+                }
+            }
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private void remove(Transaction txn, T group, S row) throws IOException {
+        boolean recompute = false;
+
+        try {
+            if (count(group) <= 0) {
+                // Group doesn't exist, which implies that the materialized table is out of
+                // sync with the source. Leave it alone.
+                return;
+            }
+
+            for (AggColumn agg : mAggColumns) {
+                switch (agg.type()) {
+                case COUNT -> {
+                    Object total = agg.targetGetter().invoke(group);
+                    agg.targetSetter().invoke(group, add(agg.kind(), total, 1L, true));
+                }
+                case SUM -> {
+                    Object value = agg.sourceGetter().invoke(row);
+                    if (value != null) {
+                        Object total = agg.targetGetter().invoke(group);
+                        agg.targetSetter().invoke(group, add(agg.kind(), total, value, true));
+                    }
+                }
+                case MIN, MAX -> {
+                    Object value = agg.sourceGetter().invoke(row);
+                    if (value != null && value.equals(agg.targetGetter().invoke(group))) {
+                        // The extreme value is being removed, and so the remaining source
+                        // rows must be examined to find the next one.
+                        agg.targetSetter().invoke(group, null);
+                        recompute = true;
+                    }
+                }
+                }
+            }
+
+            if (!recompute || count(group) <= 0) {
+                return;
+            }
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+
+        recompute(txn, group, row);
+    }
+
+    /**
+     * Recomputes the minimum and maximum columns which were cleared, by scanning the source
+     * rows of the group.
+     *
+     * @param removed source row which is being removed, and so it must be skipped
+     */
+    private void recompute(Transaction txn, T group, S removed) throws IOException {
+        var args = new Object[mGroupColumns.length];
+        try {
+            for (int i=0; i<args.length; i++) {
+                args[i] = mGroupColumns[i].sourceGetter().invoke(removed);
+            }
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+
+        // Only apply the min and max functions, and only to the cleared columns.
+        var partial = new TreeMap<Integer, AggColumn>();
+        try {
+            for (int i=0; i<mAggColumns.length; i++) {
+                AggColumn agg = mAggColumns[i];
+                if ((agg.type() == Aggregate.Type.MIN || agg.type() == Aggregate.Type.MAX)
+                    && agg.targetGetter().invoke(group) == null)
+                {
+                    partial.put(i, agg);
+                }
+            }
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+
+        // The target row is locked, and so concurrent changes to the group are applied after
+        // this transaction finishes. Retaining the source row locks isn't necessary, and it
+        // could deadlock with a build batch which has locked the rows and is waiting to
+        // merge into the target row.
+        LockMode original = txn.lockMode();
+        txn.lockMode(LockMode.READ_COMMITTED);
+
+        try (Scanner<S> scanner = mSource.newScanner(txn, mGroupQuery, args)) {
+            for (S row = scanner.row(); row != null; row = scanner.step(row)) {
+                if (samePrimaryKey(row, removed)) {
+                    continue;
+                }
+                for (AggColumn agg : partial.values()) {
+                    Object value = agg.sourceGetter().invoke(row);
+                    if (value != null) {
+                        Object current = agg.targetGetter().invoke(group);
+                        if (current == null || better(agg.type(), value, current)) {
+                            agg.targetSetter().invoke(group, value);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        } finally {
+            txn.lockMode(original);
+        }
+    }
+
+    /**
+     * Returns true if the value should replace the current minimum or maximum.
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean better(Aggregate.Type type, Object value, Object current) {
+        int cmp = ((Comparable<Object>) value).compareTo(current);
+        return type == Aggregate.Type.MIN ? cmp < 0 : cmp > 0;
+    }
+
+    private static Object zero(int kind) {
+        return switch (kind) {
+            case K_LONG -> 0L;
+            case K_INT -> 0;
+            case K_DOUBLE -> 0.0d;
+            case K_FLOAT -> 0.0f;
+            case K_BIG_INTEGER -> BigInteger.ZERO;
+            default -> BigDecimal.ZERO;
+        };
+    }
+
+    /**
+     * @param total current total, of the given kind
+     * @param value any numerical value
+     * @param subtract when true, subtract the value instead of adding it
+     */
+    private static Object add(int kind, Object total, Object value, boolean subtract) {
+        var n = (Number) value;
+        return switch (kind) {
+            case K_LONG -> {
+                long v = n.longValue();
+                yield ((Number) total).longValue() + (subtract ? -v : v);
+            }
+            case K_INT -> {
+                int v = n.intValue();
+                yield ((Number) total).intValue() + (subtract ? -v : v);
+            }
+            case K_DOUBLE -> {
+                double v = n.doubleValue();
+                yield ((Number) total).doubleValue() + (subtract ? -v : v);
+            }
+            case K_FLOAT -> {
+                float v = n.floatValue();
+                yield ((Number) total).floatValue() + (subtract ? -v : v);
+            }
+            case K_BIG_INTEGER -> {
+                BigInteger v = n instanceof BigInteger bi ? bi
+                    : (n instanceof BigDecimal bd ? bd.toBigInteger()
+                       : BigInteger.valueOf(n.longValue()));
+                var t = (BigInteger) total;
+                yield subtract ? t.subtract(v) : t.add(v);
+            }
+            default -> {
+                BigDecimal v = n instanceof BigDecimal bd ? bd
+                    : (n instanceof BigInteger bi ? new BigDecimal(bi)
+                       : new BigDecimal(n.toString()));
+                var t = (BigDecimal) total;
+                yield subtract ? t.subtract(v) : t.add(v);
+            }
+        };
+    }
+}
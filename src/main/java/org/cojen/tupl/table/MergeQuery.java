@@ -70,6 +70,28 @@ final class MergeQuery<R> extends ConcatQuery<R> {
         return MergeScanner.make(mComparator, sources);
     }
 
+    @Override
+    Scanner<R> newLimitScanner(long limit, R dst, Transaction txn, Object... args)
+        throws IOException
+    {
+        @SuppressWarnings("unchecked")
+        var sources = (Scanner<R>[]) new Scanner<?>[mSources.length];
+
+        sources[0] = LimitQuery.newScanner(mSources[0], limit, dst, txn, args);
+
+        try {
+            for (int i=1; i<mSources.length; i++) {
+                // cannot share dst among the sources
+                sources[i] = LimitQuery.newScanner(mSources[i], limit, null, txn, args);
+            }
+        } catch (Throwable e) {
+            for (var source : sources) RowUtils.closeQuietly(source);
+            throw e;
+        }
+
+        return new LimitScanner<>(MergeScanner.make(mComparator, sources), limit);
+    }
+
     @Override
     public Updater<R> newUpdater(R dst, Transaction txn, Object... args) throws IOException {
         checkCanUpdate(txn, args);
@@ -0,0 +1,272 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cojen.tupl.Query;
+
+import org.cojen.tupl.diag.DatabaseStats;
+
+/**
+ * Bounded cache of Query objects which are prepared on behalf of remote clients. The caches
+ * maintained by the tables themselves are softly referenced, and so the generated query
+ * classes can be discarded when memory is low, only to be generated again when the client
+ * makes another request. The entries in this cache are strongly referenced, and they're
+ * shared by all connections. When the cache is full, the least recently used entry is evicted.
+ *
+ * <p>Each database has its own cache, which is cleared when the database is closed. The
+ * maximum size can be set with the "org.cojen.tupl.table.PreparedQueryCache.size" system
+ * property, which is 1000 by default. A size of zero disables the cache.
+ *
+ * @author Brian S. O'Neill
+ * @see RowStore#preparedQueries
+ */
+public final class PreparedQueryCache {
+    private static final int DEFAULT_CAPACITY;
+
+    static {
+        int capacity = 1000;
+        String name = PreparedQueryCache.class.getName() + ".size";
+        String prop = System.getProperty(name);
+        if (prop != null) {
+            try {
+                capacity = Math.max(0, Integer.parseInt(prop.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException
+                    ("Malformed system property: " + name + '=' + prop, e);
+            }
+        }
+        DEFAULT_CAPACITY = capacity;
+    }
+
+    private final int mCapacity;
+    private final LinkedHashMap<Key, Entry> mEntries;
+
+    private long mHits, mMisses, mEvictions;
+
+    PreparedQueryCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PreparedQueryCache(int capacity) {
+        mCapacity = capacity;
+        // Use access order for LRU eviction.
+        mEntries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= mCapacity) {
+                    return false;
+                }
+                mEvictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a key which identifies a table that was derived from another one. Derived
+     * tables are created anew each time, and so they cannot be compared by identity.
+     * Instead, equivalent derived tables share the same prepared queries.
+     *
+     * @param sourceKey the table which was derived from, or a key returned by this method
+     * @param descriptor descriptor of the derived row type; can be null if inferred
+     * @param query the query which derived the table
+     * @param args the arguments which were passed along with the query
+     */
+    public static Object derivedKey(Object sourceKey, byte[] descriptor,
+                                    String query, Object... args)
+    {
+        return new Derived(sourceKey, descriptor, query, args);
+    }
+
+    /**
+     * Returns a Query object for the given table and query string, preparing it if necessary.
+     */
+    public <R> Query<R> obtain(BaseTable<R> table, String queryStr) throws IOException {
+        return obtain(table, table, queryStr);
+    }
+
+    /**
+     * Returns a Query object for the given table and query string, preparing it if necessary.
+     *
+     * @param tableKey the table itself, or a key returned by the derivedKey method
+     */
+    public <R> Query<R> obtain(BaseTable<R> table, Object tableKey, String queryStr)
+        throws IOException
+    {
+        return obtain(table, tableKey, queryStr, false);
+    }
+
+    /**
+     * Same as the obtain method, except the entry is also referenced by a handle, which must
+     * be released when it's no longer used.
+     *
+     * @param tableKey the table itself, or a key returned by the derivedKey method
+     * @see #release
+     */
+    public <R> Query<R> acquire(BaseTable<R> table, Object tableKey, String queryStr)
+        throws IOException
+    {
+        return obtain(table, tableKey, queryStr, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> Query<R> obtain(BaseTable<R> table, Object tableKey, String queryStr,
+                                boolean acquire)
+        throws IOException
+    {
+        var key = new Key(tableKey, queryStr);
+
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry != null) {
+                mHits++;
+                if (acquire) {
+                    entry.mHandles++;
+                }
+                return (Query<R>) entry.mQuery;
+            }
+            mMisses++;
+        }
+
+        // Prepare the query without holding the lock, because code generation can be slow.
+        Query<R> query = table.query(queryStr);
+
+        if (mCapacity == 0) {
+            return query;
+        }
+
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry == null) {
+                entry = new Entry(query);
+                mEntries.put(key, entry);
+            }
+            if (acquire) {
+                entry.mHandles++;
+            }
+            return (Query<R>) entry.mQuery;
+        }
+    }
+
+    /**
+     * Releases a handle which was acquired earlier. When no handles remain, the entry is
+     * removed, since the remote client no longer needs it.
+     *
+     * @param tableKey the table itself, or a key returned by the derivedKey method
+     * @param query the Query object which was returned by the acquire method
+     */
+    public synchronized void release(Object tableKey, String queryStr, Query<?> query) {
+        var key = new Key(tableKey, queryStr);
+        Entry entry = mEntries.get(key);
+        if (entry != null && entry.mQuery == query && entry.mHandles > 0) {
+            if (--entry.mHandles == 0) {
+                mEntries.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries which refer to the given table, including those which refer
+     * to tables derived from it.
+     */
+    public synchronized void removeAll(BaseTable<?> table) {
+        mEntries.keySet().removeIf(key -> dependsOn(key.table, table));
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    synchronized void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * Adds the size and activity counts of this cache to the given stats object.
+     */
+    public synchronized void addStats(DatabaseStats stats) {
+        stats.preparedQueries += mEntries.size();
+        stats.preparedQueryHits += mHits;
+        stats.preparedQueryMisses += mMisses;
+        stats.preparedQueryEvictions += mEvictions;
+    }
+
+    private static boolean dependsOn(Object tableKey, BaseTable<?> table) {
+        return tableKey == table || tableKey instanceof Derived d && dependsOn(d.source, table);
+    }
+
+    /**
+     * Tables are compared by identity, because a new query must be prepared against each
+     * table instance. Derived table keys are compared by value.
+     */
+    private static boolean sameTable(Object a, Object b) {
+        return a == b || a instanceof Derived d && d.equals(b);
+    }
+
+    private static int tableHash(Object tableKey) {
+        return tableKey instanceof Derived d ? d.hashCode() : System.identityHashCode(tableKey);
+    }
+
+    private record Key(Object table, String query) {
+        @Override
+        public int hashCode() {
+            return tableHash(table) * 31 + query.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key other
+                && sameTable(table, other.table) && query.equals(other.query);
+        }
+    }
+
+    private record Derived(Object source, byte[] descriptor, String query, Object[] args) {
+        @Override
+        public int hashCode() {
+            int hash = tableHash(source);
+            hash = hash * 31 + Arrays.hashCode(descriptor);
+            hash = hash * 31 + query.hashCode();
+            return hash * 31 + Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Derived other
+                && sameTable(source, other.source)
+                && Arrays.equals(descriptor, other.descriptor)
+                && query.equals(other.query)
+                && Arrays.deepEquals(args, other.args);
+        }
+    }
+
+    private static final class Entry {
+        final Query<?> mQuery;
+
+        // Number of remote handles which refer to this entry.
+        int mHandles;
+
+        Entry(Query<?> query) {
+            mQuery = query;
+        }
+    }
+}
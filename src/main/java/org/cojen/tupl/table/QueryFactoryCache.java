@@ -23,6 +23,7 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 
+import org.cojen.tupl.Query;
 import org.cojen.tupl.Table;
 
 import org.cojen.tupl.table.expr.CompiledQuery;
@@ -90,6 +91,11 @@ public final class QueryFactoryCache extends SoftCache<String, MethodHandle, Obj
         QuerySpec query = expr.tryQuerySpec(rowType);
 
         if (query != null) {
+            QuerySlice slice = query.slice();
+            if (slice != null) {
+                MethodHandle mh = obtain(query.withSlice(null).toString(), helper);
+                return sliced(mh, slice);
+            }
             String canonicalStr = query.toString();
             if (canonicalStr.equals(queryStr)) {
                 return helper.makeQueryFactory(query);
@@ -105,6 +111,23 @@ public final class QueryFactoryCache extends SoftCache<String, MethodHandle, Obj
         }
     }
 
+    /**
+     * Wraps the Query returned by the given MethodHandle with a LimitQuery.
+     */
+    private static MethodHandle sliced(MethodHandle mh, QuerySlice slice) {
+        try {
+            MethodHandle filter = MethodHandles.lookup().findStatic
+                (LimitQuery.class, "make",
+                 MethodType.methodType(QueryLauncher.class, Query.class, QuerySlice.class));
+            filter = MethodHandles.insertArguments(filter, 1, slice);
+            filter = filter.asType(MethodType.methodType(Query.class, Query.class));
+            mh = mh.asType(mh.type().changeReturnType(Query.class));
+            return MethodHandles.filterReturnValue(mh, filter);
+        } catch (Throwable e) {
+            throw RowUtils.rethrow(e);
+        }
+    }
+
     private static record ForCanonical(Helper helper, QuerySpec query) {
         MethodHandle makeQueryFactory() {
             return helper.makeQueryFactory(query);
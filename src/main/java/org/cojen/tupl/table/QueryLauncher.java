@@ -26,6 +26,8 @@ import org.cojen.tupl.Transaction;
 
 import org.cojen.tupl.diag.QueryPlan;
 
+import static java.util.Spliterator.*;
+
 /**
  * 
  *
@@ -39,6 +41,20 @@ public abstract class QueryLauncher<R> implements Query<R> {
     public abstract Scanner<R> newScanner(R row, Transaction txn, Object... args)
         throws IOException;
 
+    /**
+     * Returns a new scanner which produces at most the given amount of rows. Subclasses can
+     * override this method to avoid doing more work than necessary.
+     *
+     * @param limit maximum amount of rows to produce; must not be negative
+     * @param row initial row; can be null
+     * @see LimitQuery
+     */
+    public Scanner<R> newLimitScanner(long limit, R row, Transaction txn, Object... args)
+        throws IOException
+    {
+        return new LimitScanner<>(newScanner(row, txn, args), limit);
+    }
+
     /**
      * @param row initial row; can be null
      */
@@ -49,12 +65,64 @@ public abstract class QueryLauncher<R> implements Query<R> {
     /**
      * Scan and write rows to a remote endpoint.
      */
-    public abstract void scanWrite(Transaction txn, RowWriter writer, Object... args)
+    public abstract void scanWrite(Transaction txn, RowWriter<R> writer, Object... args)
         throws IOException;
 
+    /**
+     * Scan and write a limited amount of rows to a remote endpoint, after skipping over an
+     * initial amount of them. Skipped rows aren't written.
+     *
+     * @param offset amount of rows to skip; must not be negative
+     * @param limit maximum amount of rows to write; must not be negative
+     * @see LimitQuery
+     */
+    public void limitScanWrite(Transaction txn, RowWriter<R> writer, long offset, long limit,
+                               Object... args)
+        throws IOException
+    {
+        limitScanWrite(this, txn, writer, offset, limit, args);
+    }
+
+    /**
+     * Scan and write a limited amount of rows from the given source query to a remote
+     * endpoint, after skipping over an initial amount of them. The source query must produce
+     * scanners which accept a RowConsumer in place of a row.
+     *
+     * @see LimitQuery#newScanner(Query, long, Object, Transaction, Object...)
+     */
+    @SuppressWarnings("unchecked")
+    static <R> void limitScanWrite(Query<R> source, Transaction txn, RowWriter<R> writer,
+                                   long offset, long limit, Object... args)
+        throws IOException
+    {
+        var consumer = new SkipConsumer<R>(writer, offset);
+
+        // Pass the consumer as if it's a row, but it's actually a RowConsumer.
+        Scanner<R> scanner = LimitQuery.newScanner
+            (source, QuerySlice.bound(limit, offset), (R) consumer, txn, args);
+
+        try {
+            while (scanner.step((R) consumer) != null);
+        } catch (Throwable e) {
+            RowUtils.closeQuietly(scanner);
+            throw RowUtils.rethrow(e);
+        }
+    }
+
     @Override
     public abstract QueryPlan scannerPlan(Transaction txn, Object... args) throws IOException;
 
+    /**
+     * Returns a query plan used by the newLimitScanner method.
+     *
+     * @param limit maximum amount of rows to produce; must not be negative
+     */
+    public QueryPlan limitScannerPlan(long limit, Transaction txn, Object... args)
+        throws IOException
+    {
+        return new QueryPlan.Limit(limit, scannerPlan(txn, args));
+    }
+
     @Override
     public abstract QueryPlan updaterPlan(Transaction txn, Object... args) throws IOException;
 
@@ -68,4 +136,40 @@ public abstract class QueryLauncher<R> implements Query<R> {
      * Clears any cached state.
      */
     protected abstract void clearCache();
+
+    /**
+     * Passes rows along to a RowWriter, after skipping over an initial amount of them.
+     */
+    private static final class SkipConsumer<R> implements RowConsumer<R> {
+        private final RowWriter<R> mWriter;
+        private long mSkip;
+        private boolean mBegan;
+
+        SkipConsumer(RowWriter<R> writer, long skip) {
+            mWriter = writer;
+            mSkip = skip;
+        }
+
+        @Override
+        public void beginBatch(Scanner<?> scanner, RowEvaluator<R> evaluator)
+            throws IOException
+        {
+            if (!mBegan) {
+                // The size isn't known because of the skip and limit.
+                int characteristics = scanner.characteristics() & ~(SIZED | SUBSIZED);
+                mWriter.writeCharacteristics(characteristics, 0);
+                mBegan = true;
+            }
+            mWriter.beginBatch(scanner, evaluator);
+        }
+
+        @Override
+        public void accept(byte[] key, byte[] value) throws IOException {
+            if (mSkip > 0) {
+                mSkip--;
+            } else {
+                mWriter.accept(key, value);
+            }
+        }
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+/**
+ * Describes the limit and offset of a query. Each is either a constant or else it refers to a
+ * query argument, which is resolved when the query is executed.
+ *
+ * @param limit constant limit, which is Long.MAX_VALUE if unlimited
+ * @param limitArg argument number which supplies the limit, or 0 if constant
+ * @param offset constant offset, which is 0 if none
+ * @param offsetArg argument number which supplies the offset, or 0 if constant
+ * @author Brian S. O'Neill
+ * @see LimitQuery
+ */
+public record QuerySlice(long limit, int limitArg, long offset, int offsetArg) {
+    public QuerySlice {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit: " + limit);
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset: " + offset);
+        }
+    }
+
+    public static QuerySlice limit(long limit) {
+        return new QuerySlice(limit, 0, 0, 0);
+    }
+
+    public boolean hasLimit() {
+        return limitArg != 0 || limit != Long.MAX_VALUE;
+    }
+
+    public boolean hasOffset() {
+        return offsetArg != 0 || offset != 0;
+    }
+
+    public int maxArgument() {
+        return Math.max(limitArg, offsetArg);
+    }
+
+    /**
+     * Returns the effective limit, which is Long.MAX_VALUE if unlimited.
+     *
+     * @throws IllegalArgumentException if the argument is illegal
+     */
+    public long limit(Object... args) {
+        return limitArg == 0 ? limit : resolve("limit", limitArg, Long.MAX_VALUE, args);
+    }
+
+    /**
+     * Returns the effective offset, which is 0 if none.
+     *
+     * @throws IllegalArgumentException if the argument is illegal
+     */
+    public long offset(Object... args) {
+        return offsetArg == 0 ? offset : resolve("offset", offsetArg, 0, args);
+    }
+
+    /**
+     * Returns the amount of rows needed to produce the results, which is the sum of the limit
+     * and the offset.
+     */
+    public static long bound(long limit, long offset) {
+        long bound = limit + offset;
+        return bound < 0 ? Long.MAX_VALUE : bound;
+    }
+
+    /**
+     * @param defaultValue is returned if the argument is null
+     */
+    private static long resolve(String which, int argNum, long defaultValue, Object... args) {
+        if (args.length < argNum) {
+            throw RowUtils.tooFewArgumentsException(argNum, args.length);
+        }
+        Object arg = args[argNum - 1];
+        if (arg == null) {
+            return defaultValue;
+        }
+        if (!(arg instanceof Number n)) {
+            throw new IllegalArgumentException("Query " + which + " must be a number: " + arg);
+        }
+        long value = n.longValue();
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative " + which + ": " + value);
+        }
+        return value;
+    }
+
+    public void appendTo(StringBuilder b) {
+        boolean any = false;
+        if (hasLimit()) {
+            b.append("limit ");
+            appendCount(b, limit, limitArg);
+            any = true;
+        }
+        if (hasOffset()) {
+            if (any) {
+                b.append(' ');
+            }
+            b.append("offset ");
+            appendCount(b, offset, offsetArg);
+        }
+    }
+
+    private static void appendCount(StringBuilder b, long value, int argNum) {
+        if (argNum == 0) {
+            b.append(value);
+        } else {
+            b.append('?').append(argNum);
+        }
+    }
+
+    @Override
+    public String toString() {
+        var b = new StringBuilder();
+        appendTo(b);
+        return b.toString();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import org.cojen.tupl.util.Latch;
+
+/**
+ * Cache of weakly referenced generated values, which are also strongly retained by a {@link
+ * CacheRetainer}. Subclasses must implement the generate method instead of newValue.
+ *
+ * @author Brian S. O'Neill
+ */
+abstract class RetainedCache<K, V, H> extends WeakCache<K, V, H> {
+    private final CacheRetainer mRetainer;
+
+    /**
+     * @param retainer can be null to rely on weak references alone
+     */
+    RetainedCache(CacheRetainer retainer) {
+        mRetainer = retainer;
+    }
+
+    /**
+     * Same as the obtain method, except that existing values are reported to the retainer.
+     */
+    @SuppressWarnings("unchecked")
+    final V find(K key, H helper) {
+        CacheRetainer retainer = mRetainer;
+        if (retainer != null) {
+            Object value = get(key);
+            if (value != null && !(value instanceof Latch)) {
+                retainer.hit(value);
+                return (V) value;
+            }
+        }
+        return obtain(key, helper);
+    }
+
+    @Override
+    protected final V newValue(K key, H helper) {
+        long start = System.nanoTime();
+        V value = generate(key, helper);
+        CacheRetainer retainer = mRetainer;
+        if (retainer != null && value != null) {
+            retainer.retain(value, System.nanoTime() - start);
+        }
+        return value;
+    }
+
+    /**
+     * Generates a new value for the given key.
+     */
+    protected abstract V generate(K key, H helper);
+}
@@ -27,7 +27,7 @@ import org.cojen.tupl.Scanner;
  * @author Brian S O'Neill
  */
 public interface RowConsumer<R> {
-    void beginBatch(Scanner scanner, RowEvaluator<R> evaluator) throws IOException;
+    void beginBatch(Scanner<?> scanner, RowEvaluator<R> evaluator) throws IOException;
 
     void accept(byte[] key, byte[] value) throws IOException;
 }
@@ -44,11 +44,13 @@ import org.cojen.maker.MethodMaker;
 
 import org.cojen.tupl.AlternateKey;
 import org.cojen.tupl.Automatic;
+import org.cojen.tupl.Computed;
 import org.cojen.tupl.Hidden;
 import org.cojen.tupl.Nullable;
 import org.cojen.tupl.PrimaryKey;
 import org.cojen.tupl.Row;
 import org.cojen.tupl.SecondaryIndex;
+import org.cojen.tupl.TimeToLive;
 import org.cojen.tupl.Unsigned;
 
 import static org.cojen.tupl.table.ColumnInfo.*;
@@ -118,6 +120,16 @@ public class RowInfo extends ColumnSet {
 
         info.examineAutoColumn(messages, autoColumn);
 
+        for (ColumnInfo column : info.keyColumns.values()) {
+            if (column.isComputed()) {
+                messages.add("primary key column \"" + column.name + "\" cannot be computed");
+            }
+            if (column.isExpiration()) {
+                messages.add("primary key column \"" + column.name +
+                             "\" cannot have a time-to-live");
+            }
+        }
+
         AlternateKey altKey = rowType.getAnnotation(AlternateKey.class);
         AlternateKey.Set altKeySet = rowType.getAnnotation(AlternateKey.Set.class);
         if (altKey == null && altKeySet == null) {
@@ -143,11 +155,15 @@ public class RowInfo extends ColumnSet {
             // Add the primary key initially, which will be removed by reduction.
             info.secondaryIndexes.add(info);
             if (index != null) {
-                info.examineIndex(messages, info.secondaryIndexes, index.value(), false);
+                info.examineIndex(messages, info.secondaryIndexes,
+                                  index.value(), index.include(), index.filter(),
+                                  index.deferred(), false);
             }
             if (indexSet != null) {
                 for (SecondaryIndex ix : indexSet.value()) {
-                    info.examineIndex(messages, info.secondaryIndexes, ix.value(), false);
+                    info.examineIndex(messages, info.secondaryIndexes,
+                                      ix.value(), ix.include(), ix.filter(),
+                                      ix.deferred(), false);
                 }
             }
         }
@@ -157,6 +173,13 @@ public class RowInfo extends ColumnSet {
         info.alternateKeys = info.finishIndexSet(info.alternateKeys);
         info.secondaryIndexes = info.finishIndexSet(info.secondaryIndexes);
 
+        ColumnInfo expirationColumn = info.expirationColumn();
+        if (expirationColumn != null && info.expirationIndex() == null) {
+            messages.add("time-to-live column \"" + expirationColumn.name +
+                         "\" must be the first column of a complete secondary index");
+            errorCheck(rowType, messages);
+        }
+
         if (CompareUtils.needsCompareTo(rowType)) {
             StringBuilder b = null;
 
@@ -223,6 +246,36 @@ public class RowInfo extends ColumnSet {
         return false;
     }
 
+    /**
+     * Returns the column which has a time-to-live, or null if rows don't expire.
+     */
+    ColumnInfo expirationColumn() {
+        for (ColumnInfo column : valueColumns.values()) {
+            if (column.isExpiration()) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the complete secondary index whose first column is the expiration column, or
+     * null if none.
+     */
+    ColumnSet expirationIndex() {
+        ColumnInfo column = expirationColumn();
+        if (column != null && secondaryIndexes != null) {
+            for (ColumnSet set : secondaryIndexes) {
+                if (set.filter == null && !set.keyColumns.isEmpty()
+                    && set.keyColumns.values().iterator().next().name.equals(column.name))
+                {
+                    return set;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns a new or cached RowGen instance.
      */
@@ -292,7 +345,11 @@ public class RowInfo extends ColumnSet {
             bob.append(isAltKey() ? "alternate key" : "secondary index").append(' ');
         }
         bob.append(name).append('(');
-        return appendIndexSpec(bob).append(')').toString();
+        appendIndexSpec(bob).append(')');
+        if (filter != null) {
+            bob.append(" where ").append(filter);
+        }
+        return bob.toString();
     }
 
     @Override
@@ -451,11 +508,14 @@ public class RowInfo extends ColumnSet {
                         if (autoColumn == null) {
                             info.autoMin = min;
                             info.autoMax = max;
+                            info.autoSequential = auto.sequential();
                             autoColumn = info;
                         } else {
                             messages.add("at most one column can be automatic");
                         }
-                    } else if (info.autoMin != min || info.autoMax != max) {
+                    } else if (info.autoMin != min || info.autoMax != max
+                               || info.autoSequential != auto.sequential())
+                    {
                         messages.add("inconsistent automatic range");
                     }
                     break;
@@ -466,14 +526,49 @@ public class RowInfo extends ColumnSet {
             }
 
             info.hidden |= method.isAnnotationPresent(Hidden.class);
+
+            Computed computed = method.getAnnotation(Computed.class);
+            if (computed != null) {
+                String expr = computed.value();
+                if (info.computed == null) {
+                    info.computed = expr;
+                } else if (!info.computed.equals(expr)) {
+                    messages.add("inconsistent computed expression");
+                }
+            }
+
+            TimeToLive ttl = method.getAnnotation(TimeToLive.class);
+            if (ttl != null) {
+                long millis = ttl.unit().toMillis(ttl.value());
+                if (millis <= 0) {
+                    messages.add("illegal time-to-live: " + ttl.value() + ' ' + ttl.unit());
+                } else if (info.timeToLive == 0) {
+                    info.timeToLive = millis;
+                } else if (info.timeToLive != millis) {
+                    messages.add("inconsistent time-to-live");
+                }
+            }
         }
 
+        ColumnInfo expirationColumn = null;
+
         for (ColumnInfo info : allColumns.values()) {
             if (info.accessor == null) {
                 messages.add("no accessor method for column \"" + info.name + '"');
             } else if (info.mutator == null) {
                 messages.add("no mutator method for column \"" + info.name + '"');
             }
+
+            if (info.isExpiration()) {
+                if (info.typeCode != TYPE_LONG) {
+                    messages.add("column \"" + info.type.getSimpleName() + ' ' + info.name +
+                                 "\" cannot have a time-to-live");
+                } else if (expirationColumn == null) {
+                    expirationColumn = info;
+                } else {
+                    messages.add("at most one column can have a time-to-live");
+                }
+            }
         }
 
         return autoColumn;
@@ -702,6 +797,64 @@ public class RowInfo extends ColumnSet {
         }
     }
 
+    /**
+     * Examines a secondary index and fills in the key and data columns. The included columns
+     * are added as data columns.
+     *
+     * @param fullSet result is added here
+     * @param filter partial index filter; pass an empty string if none
+     * @param deferred true if the index is maintained asynchronously
+     */
+    void examineIndex(Set<String> messages, NavigableSet<ColumnSet> fullSet,
+                      String[] columnNames, String[] includeNames, String filter,
+                      boolean deferred, boolean forAltKey)
+    {
+        ColumnSet set = examineIndex(messages, columnNames, forAltKey);
+        if (set != null && includeColumns(messages, set, includeNames)) {
+            filter = filter.trim();
+            if (!filter.isEmpty()) {
+                set.filter = filter;
+            }
+            set.deferred = deferred;
+            fullSet.add(set);
+        }
+    }
+
+    /**
+     * Adds included columns to a secondary index as data columns, unless they're already
+     * available.
+     *
+     * @param messages error messages are added to this set (optional)
+     * @return false if there was an error
+     */
+    boolean includeColumns(Set<String> messages, ColumnSet set, String[] includeNames) {
+        for (String name : includeNames) {
+            ColumnInfo info = allColumns.get(name);
+
+            if (info == null) {
+                if (messages != null) {
+                    messages.add(notExist("secondary index include", name));
+                }
+                return false;
+            }
+
+            if (set.keyColumns.containsKey(info.name)
+                || set.valueColumns.containsKey(info.name))
+            {
+                // Already available.
+                continue;
+            }
+
+            if (set.valueColumns.isEmpty()) {
+                set.valueColumns = new TreeMap<>();
+            }
+
+            set.valueColumns.put(info.name, info);
+        }
+
+        return true;
+    }
+
     /**
      * Examines an alternate key or secondary index and fills in the key and data columns.
      * The "allColumns" map isn't filled in, and some column types might be unspecified.
@@ -955,6 +1108,9 @@ public class RowInfo extends ColumnSet {
                 AnnotationMaker am = mm.addAnnotation(Automatic.class, true);
                 am.put("min", ci.autoMin);
                 am.put("max", ci.autoMax);
+                if (ci.autoSequential) {
+                    am.put("sequential", true);
+                }
             }
 
             if (ci.isHidden()) {
@@ -999,8 +1155,11 @@ public class RowInfo extends ColumnSet {
         if (!secondaryIndexes.isEmpty()) {
             if (secondaryIndexes.size() == 1) {
                 ColumnSet secondary = secondaryIndexes.getFirst();
-                cm.addAnnotation(SecondaryIndex.class, true)
-                    .put("value", makeKeyAnnotationValues(secondary, true));
+                AnnotationMaker am = cm.addAnnotation(SecondaryIndex.class, true);
+                am.put("value", makeKeyAnnotationValues(secondary, true));
+                if (secondary.filter != null) {
+                    am.put("filter", secondary.filter);
+                }
             } else {
                 AnnotationMaker am = cm.addAnnotation(SecondaryIndex.Set.class, true);
                 var values = new AnnotationMaker[secondaryIndexes.size()];
@@ -1008,6 +1167,9 @@ public class RowInfo extends ColumnSet {
                 for (ColumnSet secondary : secondaryIndexes) {
                     AnnotationMaker sub = am.newAnnotation(SecondaryIndex.class);
                     sub.put("value", makeKeyAnnotationValues(secondary, true));
+                    if (secondary.filter != null) {
+                        sub.put("filter", secondary.filter);
+                    }
                     values[i++] = sub;
                 }
                 am.put("value", values);
@@ -25,9 +25,14 @@ import java.lang.invoke.MethodType;
 
 import java.lang.reflect.Method;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import org.cojen.maker.ClassMaker;
 import org.cojen.maker.Field;
@@ -35,11 +40,17 @@ import org.cojen.maker.Label;
 import org.cojen.maker.MethodMaker;
 import org.cojen.maker.Variable;
 
+import org.cojen.tupl.QueryException;
 import org.cojen.tupl.Row;
 import org.cojen.tupl.UnsetColumnException;
 
 import org.cojen.tupl.table.codec.ColumnCodec;
 
+import org.cojen.tupl.table.expr.Expr;
+import org.cojen.tupl.table.expr.Parser;
+import org.cojen.tupl.table.expr.TableExpr;
+import org.cojen.tupl.table.expr.TupleType;
+
 /**
  * Makes code for the main Row implementation class.
  *
@@ -137,6 +148,11 @@ public class RowMaker {
     private final RowInfo mRowInfo;
     private final ClassMaker mClassMaker;
 
+    // Maps source column names to the computed columns which depend on them.
+    private Map<String, List<ComputedColumn>> mComputed;
+
+    private record ComputedColumn(ColumnInfo info, int columnNum, Expr expr) { }
+
     private RowMaker(Class<?> rowType, RowGen rowGen) {
         mRowType = rowType;
         mRowGen = rowGen;
@@ -163,6 +179,7 @@ public class RowMaker {
         // Add column methods.
         {
             Map<String, Integer> columnNumbers = mRowGen.columnNumbers();
+            mComputed = examineComputed(columnNumbers);
             for (ColumnInfo info : mRowInfo.allColumns.values()) {
                 int num = columnNumbers.get(info.name);
                 addAccessor(num, info);
@@ -212,6 +229,89 @@ public class RowMaker {
         mm.field(info.name).set(mm.param(0));
         Field state = stateField(mm, columnNum);
         state.set(state.or(RowGen.stateFieldMask(columnNum))); // set dirty
+
+        List<ComputedColumn> computed = mComputed.get(info.name);
+        if (computed != null) {
+            for (ComputedColumn cc : computed) {
+                mm.field(cc.info.name).set(cc.expr.makeEval(mm.this_()));
+                state = stateField(mm, cc.columnNum);
+                state.set(state.or(RowGen.stateFieldMask(cc.columnNum))); // set dirty
+            }
+        }
+    }
+
+    /**
+     * Parses the expressions of all the computed columns, and maps them by source column.
+     *
+     * @throws IllegalArgumentException if any expression is malformed
+     */
+    private Map<String, List<ComputedColumn>> examineComputed(Map<String, Integer> columnNumbers) {
+        var computed = new HashMap<String, List<ComputedColumn>>();
+
+        TableExpr from = null;
+        TupleType rowType = null;
+        var messages = new LinkedHashSet<String>(1);
+
+        for (ColumnInfo info : mRowInfo.allColumns.values()) {
+            if (!info.isComputed()) {
+                continue;
+            }
+
+            if (from == null) {
+                from = TableExpr.make(-1, -1, mRowType);
+                rowType = from.rowType();
+            }
+
+            String prefix = "computed column \"" + info.name + "\" ";
+
+            Expr expr;
+            try {
+                expr = Parser.parseExpr(from, info.computed);
+            } catch (QueryException e) {
+                messages.add(prefix + "expression is malformed: " + e.getMessage());
+                continue;
+            }
+
+            Set<String> sources = new LinkedHashSet<>();
+            expr.gatherEvalColumns(c -> sources.add(c.name()));
+
+            if (sources.size() != 1) {
+                messages.add(prefix + "must refer to exactly one column");
+                continue;
+            }
+
+            String source = sources.iterator().next();
+            ColumnInfo sourceInfo = mRowInfo.allColumns.get(source);
+
+            if (sourceInfo == null || sourceInfo.isComputed()) {
+                messages.add(prefix + "cannot refer to column \"" + source + '"');
+                continue;
+            }
+
+            if (!expr.isPureFunction() || expr.maxArgument() != 0) {
+                messages.add(prefix + "must be a pure function and have no parameters");
+                continue;
+            }
+
+            if (expr.isNullable() && !info.isNullable()) {
+                messages.add(prefix + "must be nullable");
+                continue;
+            }
+
+            try {
+                expr = expr.asType(rowType.findColumn(info.name).type());
+            } catch (QueryException e) {
+                messages.add(prefix + "expression type isn't compatible: " + e.getMessage());
+                continue;
+            }
+
+            computed.computeIfAbsent(source, k -> new ArrayList<>())
+                .add(new ComputedColumn(info, columnNumbers.get(info.name), expr));
+        }
+
+        mRowInfo.errorCheck(messages);
+
+        return computed;
     }
 
     /**
@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Set;
 
+import org.cojen.tupl.Database;
 import org.cojen.tupl.DatabaseException;
 import org.cojen.tupl.Entry;
 import org.cojen.tupl.Scanner;
@@ -83,11 +84,119 @@ final class RowSorter<R> extends ScanBatch<R> implements RowConsumer<R> {
     }
 
     /**
-     * Sorts binary rows and writes the results to a remote endpoint.
+     * Returns true if the given limit is small enough such that a top-N sort should be
+     * performed instead of a full sort.
      */
+    static boolean isTopLimit(long limit) {
+        return limit < EXTERNAL_THRESHOLD;
+    }
+
+    /**
+     * Sorts rows and only retains the first ones, as determined by the limit. The source
+     * rows are materialized, but only a bounded amount of them are retained in a heap. If the
+     * limit is too large, then a full sort is performed instead.
+     */
+    static <R> Scanner<R> sortTop(SortedQueryLauncher<R> launcher, long limit,
+                                  Transaction txn, Object... args)
+        throws IOException
+    {
+        if (!isTopLimit(limit)) {
+            return new LimitScanner<>(sort(launcher, txn, args), limit);
+        }
+        Scanner<R> source = launcher.mSource.newScanner(null, txn, args);
+        return sortTop(launcher.mTable, source, launcher.mComparator, (int) limit);
+    }
+
     @SuppressWarnings("unchecked")
-    static <R> void sortWrite(SortedQueryLauncher<R> launcher, RowWriter writer,
-                              Transaction txn, Object... args)
+    private static <R> Scanner<R> sortTop(Table<R> table, Scanner<R> source,
+                                          Comparator<R> comparator, int limit)
+        throws IOException
+    {
+        // The heap is ordered such that the "largest" row is at the root, which is the first
+        // one to be replaced when a "smaller" row is found.
+        var heap = (R[]) new Object[Math.min(limit, 16)];
+        int size = 0;
+
+        try (source) {
+            R row = source.row();
+            if (limit <= 0) {
+                row = null;
+            }
+
+            while (row != null) {
+                R free;
+                if (size < limit) {
+                    if (size >= heap.length) {
+                        heap = Arrays.copyOf(heap, (int) Math.min(limit, size * 2L));
+                    }
+                    heapUp(heap, size++, row, comparator);
+                    free = null;
+                } else if (comparator.compare(row, heap[0]) < 0) {
+                    free = heap[0];
+                    heapDown(heap, size, row, comparator);
+                } else {
+                    // Recycle the rejected row.
+                    free = row;
+                }
+                row = source.step(free);
+            }
+        }
+
+        if (size == 0) {
+            return new ARS<>(comparator);
+        }
+
+        R[] rows = size == heap.length ? heap : Arrays.copyOf(heap, size);
+        Arrays.sort(rows, comparator);
+
+        return new ARS<>(table, rows, comparator);
+    }
+
+    private static <R> void heapUp(R[] heap, int pos, R row, Comparator<R> comparator) {
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            R parent = heap[parentPos];
+            if (comparator.compare(row, parent) <= 0) {
+                break;
+            }
+            heap[pos] = parent;
+            pos = parentPos;
+        }
+        heap[pos] = row;
+    }
+
+    /**
+     * Replaces the root of the heap.
+     */
+    private static <R> void heapDown(R[] heap, int size, R row, Comparator<R> comparator) {
+        int pos = 0;
+        int half = size >>> 1;
+        while (pos < half) {
+            int childPos = (pos << 1) + 1;
+            R child = heap[childPos];
+            int rightPos = childPos + 1;
+            if (rightPos < size && comparator.compare(heap[rightPos], child) > 0) {
+                child = heap[childPos = rightPos];
+            }
+            if (comparator.compare(row, child) >= 0) {
+                break;
+            }
+            heap[pos] = child;
+            pos = childPos;
+        }
+        heap[pos] = row;
+    }
+
+    /**
+     * Sorts binary rows and writes the results to a remote endpoint. Only the rows within the
+     * given offset and limit are written.
+     *
+     * @param offset amount of sorted rows to skip
+     * @param limit maximum amount of rows to write
+     */
+    @SuppressWarnings("unchecked")
+    static <R> void sortWrite(SortedQueryLauncher<R> launcher, RowWriter<R> writer,
+                              long offset, long limit, Transaction txn, Object... args)
         throws IOException
     {
         var ext = new External<R>(launcher);
@@ -114,8 +223,15 @@ final class RowSorter<R> extends ScanBatch<R> implements RowConsumer<R> {
         }
 
         try (sorted) {
-            for (Entry e = sorted.row(); e != null; e = sorted.step(e)) {
+            Entry e = sorted.row();
+            for (; e != null && offset > 0; offset--) {
+                e = sorted.step(e);
+            }
+            for (; e != null && limit > 0; e = sorted.step(e)) {
                 mh.invokeExact(writer, e.key(), e.value());
+                if (--limit <= 0) {
+                    break;
+                }
             }
         } catch (Throwable e) {
             throw RowUtils.rethrow(e);
@@ -161,11 +277,22 @@ final class RowSorter<R> extends ScanBatch<R> implements RowConsumer<R> {
      * @return null if not supported
      */
     private static Sorter newSorter(Table<?> table) throws DatabaseException {
+        Database db = findDatabase(table);
+        return db == null ? null : db.newSorter();
+    }
+
+    /**
+     * Returns the database which the given table is ultimately backed by, which can be used
+     * for creating sorters and temporary indexes.
+     *
+     * @return null if not found
+     */
+    static Database findDatabase(Table<?> table) throws DatabaseException {
         while (true) {
-            if (table instanceof MappedTable mapped) {
-                table = mapped.source();
+            if (table instanceof WrappedTable<?, ?> wrapped) {
+                table = wrapped.source();
             } else if (table instanceof StoredTable base) {
-                return base.rowStore().mDatabase.newSorter();
+                return base.rowStore().mDatabase;
             } else {
                 return null;
             }
@@ -206,7 +333,7 @@ final class RowSorter<R> extends ScanBatch<R> implements RowConsumer<R> {
     }
 
     @Override
-    public void beginBatch(Scanner scanner, RowEvaluator<R> evaluator) {
+    public void beginBatch(Scanner<?> scanner, RowEvaluator<R> evaluator) {
         ScanBatch<R> batch;
         if (mLastBatch == null) {
             mFirstBatch = batch = this;
@@ -358,7 +485,7 @@ final class RowSorter<R> extends ScanBatch<R> implements RowConsumer<R> {
         }
 
         @Override
-        public void beginBatch(Scanner scanner, RowEvaluator<R> evaluator) throws IOException {
+        public void beginBatch(Scanner<?> scanner, RowEvaluator<R> evaluator) throws IOException {
             flush();
             assignTranscoder(evaluator);
         }
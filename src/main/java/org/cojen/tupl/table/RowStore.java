@@ -41,6 +41,7 @@ import java.util.TreeSet;
 import java.util.WeakHashMap;
 
 import java.util.function.Consumer;
+import java.util.function.LongUnaryOperator;
 import java.util.function.Supplier;
 
 import org.cojen.tupl.CorruptDatabaseException;
@@ -55,6 +56,7 @@ import org.cojen.tupl.SchemaChangeException;
 import org.cojen.tupl.Table;
 import org.cojen.tupl.Transaction;
 import org.cojen.tupl.UniqueConstraintException;
+import org.cojen.tupl.UnmodifiableReplicaException;
 import org.cojen.tupl.View;
 
 import org.cojen.tupl.core.LHashTable;
@@ -63,6 +65,7 @@ import org.cojen.tupl.core.RowPredicateLock;
 import org.cojen.tupl.core.ScanVisitor;
 import org.cojen.tupl.core.TupleKey;
 
+import org.cojen.tupl.diag.DatabaseStats;
 import org.cojen.tupl.diag.EventListener;
 import org.cojen.tupl.diag.EventType;
 
@@ -98,6 +101,14 @@ public final class RowStore {
 
        (secondaryIndexId, 0, K_DROPPED) -> primaryIndexId, descriptor
 
+       (indexId, 0, K_AUTO_MARK) -> long high-water mark of sequential automatic column
+
+       (secondaryIndexId, 0, K_DEFERRED) -> queueIndexId  // for deferred index maintenance
+
+       (indexId, 0, K_MATERIALIZED, targetIndexId) -> state, type name, build position
+
+       (indexId, 0, K_COMPUTED, column name) -> expression of a backfilled computed column
+
        (0L, indexId, taskType) -> ...  workflow task against an index
 
        The schemaVersion is limited to 2^31, and the hash is encoded with bit 31 set,
@@ -115,14 +126,18 @@ public final class RowStore {
 
     private Object mSchemaChangeListeners;
 
-    private WeakCache<TranscoderKey, Transcoder, SecondaryInfo> mSortTranscoderCache;
+    private final PreparedQueryCache mPreparedQueries;
+
+    private final CacheRetainer mCacheRetainer;
+
+    private RetainedCache<TranscoderKey, Transcoder, SecondaryInfo> mSortTranscoderCache;
     private static final VarHandle cSortTranscoderCacheHandle;
 
     static {
         try {
             MethodHandles.Lookup lookup = MethodHandles.lookup();
             cSortTranscoderCacheHandle = lookup.findVarHandle
-                (RowStore.class, "mSortTranscoderCache", WeakCache.class);
+                (RowStore.class, "mSortTranscoderCache", RetainedCache.class);
         } catch (Throwable e) {
             throw RowUtils.rethrow(e);
         }
@@ -140,6 +155,18 @@ public final class RowStore {
     // Extended key to track secondary indexes which are being dropped.
     private static final int K_DROPPED = 3;
 
+    // Extended key to store the high-water mark of a sequential automatic column.
+    private static final int K_AUTO_MARK = 4;
+
+    // Extended key to reference the change queue of a deferred secondary index.
+    private static final int K_DEFERRED = 5;
+
+    // Extended key to define the materialized aggregate tables of a table.
+    private static final int K_MATERIALIZED = 6;
+
+    // Extended key to track the computed columns whose values have been backfilled.
+    private static final int K_COMPUTED = 7;
+
     private static final int TASK_DELETE_SCHEMA = 1, TASK_NOTIFY_SCHEMA = 2;
 
     public RowStore(LocalDatabase db, Index schemata) throws IOException {
@@ -148,6 +175,8 @@ public final class RowStore {
         mSchemata = schemata;
         mTableManagers = new WeakCache<>();
         mIndexLocks = new LHashTable.Obj<>(8);
+        mPreparedQueries = new PreparedQueryCache();
+        mCacheRetainer = new CacheRetainer();
 
         registerToUpdateSchemata();
 
@@ -227,10 +256,36 @@ public final class RowStore {
     }
 
     /**
-     * Is called when the database is closing, to stop any background tasks.
+     * Is called when the database is closing, to stop any background tasks and to release
+     * cached queries and codecs.
      */
     public void shutdown() {
         mTableManagers.clear(TableManager::shutdown);
+        mPreparedQueries.clear();
+        mCacheRetainer.clear();
+    }
+
+    /**
+     * Returns the object which strongly retains the codecs and queries generated for this
+     * database.
+     */
+    CacheRetainer cacheRetainer() {
+        return mCacheRetainer;
+    }
+
+    /**
+     * Returns the cache of queries which are prepared on behalf of remote clients.
+     */
+    public PreparedQueryCache preparedQueries() {
+        return mPreparedQueries;
+    }
+
+    /**
+     * Adds the prepared query and generated code cache statistics.
+     */
+    public void addStats(DatabaseStats stats) {
+        mPreparedQueries.addStats(stats);
+        mCacheRetainer.addStats(stats);
     }
 
     WeakReference<RowStore> ref() {
@@ -555,7 +610,19 @@ public final class RowStore {
         (StoredTable<R> primaryTable, boolean alt, String... columns)
         throws IOException
     {
-        Object key = TupleKey.make.with(primaryTable.rowType(), alt, columns);
+        return indexTable(primaryTable, alt, null, columns);
+    }
+
+    /**
+     * @param filter partial secondary index filter; pass null for a complete index
+     * @throws NoSuchIndexException if not found or isn't available
+     */
+    public <R> StoredTableIndex<R> indexTable
+        (StoredTable<R> primaryTable, boolean alt, String filter, String... columns)
+        throws IOException
+    {
+        Object key = filter == null ? TupleKey.make.with(primaryTable.rowType(), alt, columns)
+            : TupleKey.make.with(primaryTable.rowType(), filter, columns);
         WeakCache<Object, StoredTableIndex<R>, Object> indexTables =
             primaryTable.mTableManager.indexTables();
 
@@ -565,11 +632,14 @@ public final class RowStore {
             synchronized (indexTables) {
                 table = indexTables.get(key);
                 if (table == null) {
-                    table = makeIndexTable(indexTables, primaryTable, alt, columns);
+                    table = makeIndexTable(indexTables, primaryTable, alt, filter, columns);
                     if (table == null) {
-                        throw new NoSuchIndexException
-                            ((alt ? "Alternate key" : "Secondary index") + " not found: " +
-                             Arrays.toString(columns));
+                        String message = (alt ? "Alternate key" : "Secondary index") +
+                            " not found: " + Arrays.toString(columns);
+                        if (filter != null) {
+                            message += " where " + filter;
+                        }
+                        throw new NoSuchIndexException(message);
                     }
                     indexTables.put(key, table);
                 }
@@ -581,13 +651,14 @@ public final class RowStore {
 
     /**
      * @param indexTables check and store in this cache, which is synchronized by the caller
+     * @param filter partial secondary index filter; pass null for a complete index
      * @return null if not found
      */
     @SuppressWarnings("unchecked")
     private <R> StoredTableIndex<R> makeIndexTable
         (WeakCache<Object, StoredTableIndex<R>, Object> indexTables,
          StoredTable<R> primaryTable,
-         boolean alt, String... columns)
+         boolean alt, String filter, String... columns)
         throws IOException
     {
         Class<R> rowType = primaryTable.rowType();
@@ -598,6 +669,8 @@ public final class RowStore {
             return null;
         }
 
+        cs.filter = filter;
+
         var encoder = new Encoder(columns.length * 16);
         char type = alt ? 'A' : 'I';
         byte[] search = EncodedRowInfo.encodeDescriptor(type, encoder, cs);
@@ -730,7 +803,8 @@ public final class RowStore {
             }
         }
 
-        return offset == search.length; // should always be true unless descriptor is malformed
+        // Compare the partial index filters, if any.
+        return Arrays.equals(search, offset, search.length, found, offset, found.length);
     }
 
     private void registerToUpdateSchemata() {
@@ -889,6 +963,139 @@ public final class RowStore {
         return deleteIndex(primaryIndexId, indexId, descriptor, null, taskFactory);
     }
 
+    /**
+     * Leases a block of sequential automatic column values by advancing the persisted
+     * high-water mark. The mark is durably stored before any values in the block can be
+     * used, and so values are never reused after a restart.
+     *
+     * @param first the start of the first block, if no mark exists yet
+     * @param next given the start of a block, returns the start of the next block
+     * @return the start of the leased block
+     */
+    long leaseAutoBlock(long indexId, long first, LongUnaryOperator next) throws IOException {
+        View markView = viewExtended(indexId, K_AUTO_MARK);
+
+        Transaction txn = mDatabase.newTransaction();
+        try {
+            txn.lockMode(LockMode.UPGRADABLE_READ);
+
+            byte[] value = markView.load(txn, EMPTY_BYTES);
+            long start = value == null ? first : decodeLongLE(value, 0);
+
+            value = new byte[8];
+            encodeLongLE(value, 0, next.applyAsLong(start));
+            markView.store(txn, EMPTY_BYTES, value);
+
+            txn.commit();
+            return start;
+        } finally {
+            txn.reset();
+        }
+    }
+
+    /**
+     * Returns a view which maps target index ids to the definitions of the materialized
+     * aggregate tables of a source table.
+     *
+     * @see MaterializedAggregate
+     */
+    View materializedView(long indexId) {
+        return viewExtended(indexId, K_MATERIALIZED);
+    }
+
+    /**
+     * Returns a view which maps column names (UTF-8) to the expressions of the computed
+     * columns whose values have been backfilled into all the rows of a table.
+     *
+     * @see ComputedBackfill
+     */
+    View computedView(long indexId) {
+        return viewExtended(indexId, K_COMPUTED);
+    }
+
+    /**
+     * Returns the durable change queue of a deferred secondary index.
+     *
+     * @param create when true, create the queue if it doesn't exist
+     * @return null if not found, or if it cannot be created because this is a replica
+     * @see DeferredIndex
+     */
+    Index deferredQueue(long secondaryIndexId, boolean create) throws IOException {
+        View queueView = viewExtended(secondaryIndexId, K_DEFERRED);
+
+        byte[] value = queueView.load(Transaction.BOGUS, EMPTY_BYTES);
+        if (value != null) {
+            return mDatabase.indexById(decodeLongLE(value, 0));
+        }
+
+        if (!create) {
+            return null;
+        }
+
+        Transaction txn = mDatabase.newTransaction();
+        try {
+            txn.lockMode(LockMode.UPGRADABLE_READ);
+
+            value = queueView.load(txn, EMPTY_BYTES);
+            if (value != null) {
+                return mDatabase.indexById(decodeLongLE(value, 0));
+            }
+
+            var ids = new long[1];
+
+            // Transaction is committed as a side-effect.
+            mDatabase.createSecondaryIndexes(txn, 0, ids, () -> {
+                try {
+                    var newValue = new byte[8];
+                    encodeLongLE(newValue, 0, ids[0]);
+                    queueView.store(txn, EMPTY_BYTES, newValue);
+                } catch (IOException e) {
+                    rethrow(e);
+                }
+            });
+
+            return mDatabase.indexById(ids[0]);
+        } catch (UnmodifiableReplicaException e) {
+            return null;
+        } finally {
+            txn.reset();
+        }
+    }
+
+    /**
+     * Deletes the change queue of a deferred secondary index, if it exists.
+     */
+    private void deleteDeferredQueue(long secondaryIndexId) throws IOException {
+        View queueView = viewExtended(secondaryIndexId, K_DEFERRED);
+
+        byte[] value = queueView.load(Transaction.BOGUS, EMPTY_BYTES);
+        if (value != null) {
+            Index queue = mDatabase.indexById(decodeLongLE(value, 0));
+            if (queue != null) {
+                mDatabase.deleteIndex(queue).run();
+            }
+            queueView.delete(null, EMPTY_BYTES);
+        }
+    }
+
+    /**
+     * Returns the descriptors of the secondary indexes which are maintained asynchronously.
+     *
+     * @return null if none
+     */
+    static TreeSet<byte[]> deferredDescriptors(RowInfo info) {
+        TreeSet<byte[]> descriptors = null;
+        for (ColumnSet cs : info.secondaryIndexes) {
+            if (cs.deferred) {
+                if (descriptors == null) {
+                    descriptors = new TreeSet<>(KEY_COMPARATOR);
+                }
+                descriptors.add(EncodedRowInfo.encodeDescriptor('I', cs));
+            }
+        }
+        return descriptors;
+    }
+
     /**
      * Called by IndexBackfill when an index backfill has finished.
      */
@@ -1251,6 +1458,11 @@ public final class RowStore {
 
                             task.run();
 
+                            if (taskFactory == null) {
+                                // Replicas delete the queue in response to the leader.
+                                deleteDeferredQueue(fSecondaryIndexId);
+                            }
+
                             if (listener != null) {
                                 listener.notify(EventType.TABLE_INDEX_INFO,
                                                 "Finished dropping %1$s", eventStr);
@@ -1673,10 +1885,10 @@ public final class RowStore {
         }
 
         int numValues = decodePrefixPF(desc, offset);
+        offset += lengthPrefixPF(numValues);
         if (numValues == 0) {
             info.valueColumns = Collections.emptyNavigableMap();
         } else {
-            offset += lengthPrefixPF(numValues);
             info.valueColumns = new TreeMap<>();
             do {
                 offset = decodeIndexColumn(primaryInfo, desc, offset, info.valueColumns);
@@ -1686,6 +1898,14 @@ public final class RowStore {
         info.allColumns = new TreeMap<>(info.keyColumns);
         info.allColumns.putAll(info.valueColumns);
 
+        if (offset < desc.length) {
+            // Decode the partial index filter.
+            int filterLength = decodePrefixPF(desc, offset);
+            offset += lengthPrefixPF(filterLength);
+            info.filter = decodeStringUTF(desc, offset, filterLength);
+            offset += filterLength;
+        }
+
         return offset;
     }
 
@@ -1911,16 +2131,32 @@ public final class RowStore {
         }
 
         if (currentData != null) {
-            info.alternateKeys = new TreeSet<>(ColumnSetComparator.THE);
-            pos = decodeColumnSets(currentData, 4 + 8, names, info.alternateKeys);
-            if (info.alternateKeys.isEmpty()) {
+            // Decode into lists first, because the filters are decoded last and they affect
+            // the set ordering.
+
+            var alternateKeys = new ArrayList<ColumnSet>();
+            pos = decodeColumnSets(currentData, 4 + 8, names, alternateKeys);
+
+            var secondaryIndexes = new ArrayList<ColumnSet>();
+            pos = decodeColumnSets(currentData, pos, names, secondaryIndexes);
+
+            if (pos < currentData.length) {
+                pos = decodeFilters(currentData, pos, alternateKeys);
+                pos = decodeFilters(currentData, pos, secondaryIndexes);
+            }
+
+            if (alternateKeys.isEmpty()) {
                 info.alternateKeys = EmptyNavigableSet.the();
+            } else {
+                info.alternateKeys = new TreeSet<>(ColumnSetComparator.THE);
+                info.alternateKeys.addAll(alternateKeys);
             }
 
-            info.secondaryIndexes = new TreeSet<>(ColumnSetComparator.THE);
-            pos = decodeColumnSets(currentData, pos, names, info.secondaryIndexes);
-            if (info.secondaryIndexes.isEmpty()) {
+            if (secondaryIndexes.isEmpty()) {
                 info.secondaryIndexes = EmptyNavigableSet.the();
+            } else {
+                info.secondaryIndexes = new TreeSet<>(ColumnSetComparator.THE);
+                info.secondaryIndexes.addAll(secondaryIndexes);
             }
 
             if (pos < currentData.length) {
@@ -1959,7 +2195,7 @@ public final class RowStore {
      * @return updated position
      */
     private static int decodeColumnSets(byte[] data, int pos, String[] names,
-                                        Set<ColumnSet> columnSets)
+                                        Collection<ColumnSet> columnSets)
     {
         int size = decodePrefixPF(data, pos);
         pos += lengthPrefixPF(size);
@@ -1979,6 +2215,23 @@ public final class RowStore {
         return pos;
     }
 
+    /**
+     * @param columnSets filters are assigned to these
+     * @return updated position
+     * @see EncodedRowInfo#encodeFilters
+     */
+    private static int decodeFilters(byte[] data, int pos, List<ColumnSet> columnSets) {
+        for (ColumnSet cs : columnSets) {
+            int length = decodePrefixPF(data, pos);
+            pos += lengthPrefixPF(length);
+            if (length != 0) {
+                cs.filter = decodeStringUTF(data, pos, length);
+                pos += length;
+            }
+        }
+        return pos;
+    }
+
     private static byte[] key(long indexId) {
         var key = new byte[8];
         encodeLongBE(key, 0, indexId);
@@ -1996,12 +2249,12 @@ public final class RowStore {
     <R> Transcoder findSortTranscoder(Class<?> rowType, RowEvaluator<R> evaluator,
                                       SecondaryInfo sortedInfo)
     {
-        WeakCache<TranscoderKey, Transcoder, SecondaryInfo> cache = mSortTranscoderCache;
+        RetainedCache<TranscoderKey, Transcoder, SecondaryInfo> cache = mSortTranscoderCache;
 
         if (cache == null) {
-            cache = new WeakCache<>() {
+            cache = new RetainedCache<>(mCacheRetainer) {
                 @Override
-                protected Transcoder newValue(TranscoderKey key, SecondaryInfo sortedInfo) {
+                protected Transcoder generate(TranscoderKey key, SecondaryInfo sortedInfo) {
                     Class<?> rowType = key.mRowType;
                     RowInfo rowInfo = RowInfo.find(rowType);
 
@@ -2014,7 +2267,7 @@ public final class RowStore {
                 }
             };
 
-            var existing = (WeakCache<TranscoderKey, Transcoder, SecondaryInfo>)
+            var existing = (RetainedCache<TranscoderKey, Transcoder, SecondaryInfo>)
                 cSortTranscoderCacheHandle.compareAndExchange(this, null, cache);
 
             if (existing != null) {
@@ -2024,7 +2277,7 @@ public final class RowStore {
 
         var key = new TranscoderKey(rowType, evaluator, sortedInfo.indexSpec());
 
-        return cache.obtain(key, sortedInfo);
+        return cache.find(key, sortedInfo);
     }
 
     private static final class TranscoderKey {
@@ -2105,6 +2358,7 @@ public final class RowStore {
             encoder.writeLongLE(0); // slot for table version
             encodeColumnSets(encoder, info.alternateKeys, columnNameMap);
             encodeColumnSets(encoder, info.secondaryIndexes, columnNameMap);
+            encodeFilters(encoder, info.alternateKeys, info.secondaryIndexes);
 
             currentData = encoder.toByteArray();
 
@@ -2142,6 +2396,32 @@ public final class RowStore {
             }
         }
 
+        /**
+         * Encode the partial index filters of all the column sets, in the same order as
+         * encodeColumnSets. Nothing is encoded if no filters are defined, which is compatible
+         * with the original format. An empty string indicates that a column set doesn't have
+         * a filter.
+         */
+        @SafeVarargs
+        private static void encodeFilters(Encoder encoder, Collection<ColumnSet>... sets) {
+            find: {
+                for (Collection<ColumnSet> columnSets : sets) {
+                    for (ColumnSet cs : columnSets) {
+                        if (cs.filter != null) {
+                            break find;
+                        }
+                    }
+                }
+                return;
+            }
+
+            for (Collection<ColumnSet> columnSets : sets) {
+                for (ColumnSet cs : columnSets) {
+                    encoder.writeStringUTF(cs.filter == null ? "" : cs.filter);
+                }
+            }
+        }
+
         /**
          * Encode an index descriptor.
          *
@@ -2162,6 +2442,9 @@ public final class RowStore {
             encoder.writeByte((byte) type);
             encodeColumns(encoder, cs.keyColumns);
             encodeColumns(encoder, cs.valueColumns);
+            if (cs.filter != null) {
+                encoder.writeStringUTF(cs.filter);
+            }
             return encoder.toByteArray();
         }
 
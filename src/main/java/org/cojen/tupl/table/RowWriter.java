@@ -74,7 +74,9 @@ public sealed class RowWriter<R> implements RowConsumer<R> {
     }
 
     @Override
-    public final void beginBatch(Scanner scanner, RowEvaluator<R> evaluator) throws IOException {
+    public final void beginBatch(Scanner<?> scanner, RowEvaluator<R> evaluator)
+        throws IOException
+    {
         mEvaluator = evaluator;
 
         if (!mWrittenCharacteristics) {
@@ -62,7 +62,7 @@ class ScanQueryLauncher<R> extends QueryLauncher<R> {
 
     @Override
     @SuppressWarnings("unchecked")
-    public void scanWrite(Transaction txn, RowWriter writer, Object... args) throws IOException {
+    public void scanWrite(Transaction txn, RowWriter<R> writer, Object... args) throws IOException {
         // Pass the writer as if it's a row, but it's actually a RowConsumer.
         Scanner<R> scanner = newScanner((R) writer, txn, args);
         try {
@@ -0,0 +1,192 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.cojen.tupl.Cursor;
+import org.cojen.tupl.DeletedIndexException;
+import org.cojen.tupl.Index;
+import org.cojen.tupl.LockMode;
+import org.cojen.tupl.Transaction;
+
+import org.cojen.tupl.core.LocalTransaction;
+
+/**
+ * Collects secondary index changes made by an index trigger, to be applied later in key
+ * order. When attached to a transaction, the trigger passes changes to the batch instead of
+ * storing them into the secondary indexes directly. Alternate keys, deferred indexes, and
+ * indexes which are being backfilled are always updated directly.
+ *
+ * @author Brian S O'Neill
+ * @see BatchUpdater
+ */
+public final class SecondaryBatch {
+    // Number of accepted changes or rows which causes the batch to be applied.
+    static final int BATCH_SIZE = 10_000;
+
+    private record Change(Index ix, byte[] key, byte[] value) { }
+
+    private final boolean mCommit;
+
+    // Changes made by the current row, which haven't been accepted yet.
+    private final ArrayList<Change> mRowChanges = new ArrayList<>();
+
+    private final Map<Index, TreeMap<byte[], byte[]>> mChanges = new IdentityHashMap<>();
+
+    private int mSize;
+
+    // Number of rows accepted since the transaction last committed.
+    private int mRows;
+
+    /**
+     * @param commit pass true if the transaction is owned by the batch, and it should be
+     * committed whenever the batch is applied by the rowFinished method
+     */
+    SecondaryBatch(boolean commit) {
+        mCommit = commit;
+    }
+
+    /**
+     * Called by an updater after the current row has been updated or deleted, but before
+     * stepping to the next row. If the batch is attached to the transaction, then the row
+     * changes are accepted. If the transaction is owned by the batch and the batch is full,
+     * then it's applied and the transaction commits. No lock is held on the next row at this
+     * point, and so the commit cannot release it.
+     */
+    static void rowFinished(Transaction txn) throws IOException {
+        if (txn.attachment() instanceof SecondaryBatch batch) {
+            batch.accept();
+            if (batch.mCommit && (batch.mSize >= BATCH_SIZE || ++batch.mRows >= BATCH_SIZE)) {
+                try {
+                    batch.apply(txn);
+                    txn.commit();
+                } catch (Throwable e) {
+                    // Cannot commit with incomplete secondary indexes.
+                    txn.reset(e);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies any batched changes which are registered with the given transaction, such that
+     * the secondary indexes can be read consistently.
+     */
+    static void applyDeferred(Transaction txn) throws IOException {
+        if (txn instanceof LocalTransaction local) {
+            local.applyDeferred();
+        }
+    }
+
+    /**
+     * Called by the index trigger.
+     *
+     * @param value pass null to delete the entry
+     */
+    public void store(Index ix, byte[] key, byte[] value) {
+        mRowChanges.add(new Change(ix, key, value));
+    }
+
+    /**
+     * Accepts all the changes made by the current row. If a secondary entry is changed more
+     * than once, only the last change is retained.
+     */
+    void accept() {
+        for (Change change : mRowChanges) {
+            TreeMap<byte[], byte[]> changes = mChanges.get(change.ix);
+            if (changes == null) {
+                changes = new TreeMap<>(Arrays::compareUnsigned);
+                mChanges.put(change.ix, changes);
+            }
+            int size = changes.size();
+            changes.put(change.key, change.value);
+            mSize += changes.size() - size;
+        }
+        mRowChanges.clear();
+    }
+
+    /**
+     * Discards all the changes made by the current row, because the row change failed.
+     */
+    void discard() {
+        mRowChanges.clear();
+    }
+
+    /**
+     * Discards all the changes, including the accepted ones, because the transaction scope
+     * they were made in has been rolled back.
+     */
+    void clear() {
+        mRowChanges.clear();
+        mChanges.clear();
+        mSize = 0;
+        mRows = 0;
+    }
+
+    /**
+     * Returns true if enough changes have been accepted such that the batch should be applied.
+     */
+    boolean isFull() {
+        return mSize >= BATCH_SIZE;
+    }
+
+    /**
+     * Applies all the accepted changes, in key order for each index, and then clears the
+     * batch.
+     */
+    void apply(Transaction txn) throws IOException {
+        mRows = 0;
+
+        if (mSize == 0) {
+            return;
+        }
+
+        // A repeatable read transaction would acquire shared locks when positioning the
+        // cursor, which cannot be upgraded when storing.
+        LockMode original = txn.lockMode();
+        if (original == LockMode.REPEATABLE_READ) {
+            txn.lockMode(LockMode.UPGRADABLE_READ);
+        }
+
+        try {
+            for (Map.Entry<Index, TreeMap<byte[], byte[]>> e : mChanges.entrySet()) {
+                try (Cursor c = e.getKey().newCursor(txn)) {
+                    c.autoload(false);
+                    for (Map.Entry<byte[], byte[]> change : e.getValue().entrySet()) {
+                        c.findNearby(change.getKey());
+                        c.store(change.getValue());
+                    }
+                } catch (DeletedIndexException ex) {
+                    // Index was dropped.
+                }
+            }
+        } finally {
+            txn.lockMode(original);
+            mChanges.clear();
+            mSize = 0;
+        }
+    }
+}
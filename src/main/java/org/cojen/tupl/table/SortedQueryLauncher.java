@@ -105,6 +105,13 @@ final class SortedQueryLauncher<R> extends QueryLauncher<R> {
         return RowSorter.sort(this, txn, args);
     }
 
+    @Override
+    public Scanner<R> newLimitScanner(long limit, R row, Transaction txn, Object... args)
+        throws IOException
+    {
+        return RowSorter.sortTop(this, limit, txn, args);
+    }
+
     /**
      * @see MappedTable.newWrappedUpdater
      */
@@ -148,10 +155,20 @@ final class SortedQueryLauncher<R> extends QueryLauncher<R> {
     }
 
     @Override
-    public void scanWrite(Transaction txn, RowWriter writer, Object... args) throws IOException {
+    public void scanWrite(Transaction txn, RowWriter<R> writer, Object... args) throws IOException {
         writer.writeCharacteristics(NONNULL | ORDERED | IMMUTABLE | SORTED, 0);
 
-        RowSorter.sortWrite(this, writer, txn, args);
+        RowSorter.sortWrite(this, writer, 0, Long.MAX_VALUE, txn, args);
+    }
+
+    @Override
+    public void limitScanWrite(Transaction txn, RowWriter<R> writer, long offset, long limit,
+                               Object... args)
+        throws IOException
+    {
+        writer.writeCharacteristics(NONNULL | ORDERED | IMMUTABLE | SORTED, 0);
+
+        RowSorter.sortWrite(this, writer, offset, limit, txn, args);
     }
 
     @Override
@@ -159,6 +176,18 @@ final class SortedQueryLauncher<R> extends QueryLauncher<R> {
         return new QueryPlan.Sort(OrderBy.splitSpec(mSpec), mSource.scannerPlan(txn, args));
     }
 
+    @Override
+    public QueryPlan limitScannerPlan(long limit, Transaction txn, Object... args)
+        throws IOException
+    {
+        QueryPlan plan = mSource.scannerPlan(txn, args);
+        String[] columns = OrderBy.splitSpec(mSpec);
+        if (RowSorter.isTopLimit(limit)) {
+            return new QueryPlan.TopSort(columns, limit, plan);
+        }
+        return new QueryPlan.Limit(limit, new QueryPlan.Sort(columns, plan));
+    }
+
     @Override
     public QueryPlan updaterPlan(Transaction txn, Object... args) throws IOException {
         return new QueryPlan.Sort(OrderBy.splitSpec(mSpec), mSource.updaterPlan(txn, args));
@@ -265,8 +265,14 @@ class StaticTableMaker extends TableMaker {
 
             mClassMaker.addField(autoGenClass, "autogen").final_();
 
-            ctor.field("autogen").set
-                (ctor.new_(autoGenClass, ctor.param(1), minVal, maxVal, ctor.this_()));
+            if (mAutoColumn.autoSequential) {
+                ctor.field("autogen").set
+                    (ctor.new_(autoGenClass, ctor.param(0), ctor.param(1),
+                               minVal, maxVal, ctor.this_()));
+            } else {
+                ctor.field("autogen").set
+                    (ctor.new_(autoGenClass, ctor.param(1), minVal, maxVal, ctor.this_()));
+            }
 
             {
                 MethodMaker mm = mClassMaker.addMethod
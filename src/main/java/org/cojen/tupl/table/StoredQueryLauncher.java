@@ -68,7 +68,13 @@ final class StoredQueryLauncher<R> extends QueryLauncher<R> {
     {
         QuerySpec query = expr.tryQuerySpec(table.rowType());
         if (query != null) {
-            return new StoredQueryLauncher<>(table, queryStr, query.reduce());
+            QuerySlice slice = query.slice();
+            if (slice == null) {
+                return new StoredQueryLauncher<>(table, queryStr, query.reduce());
+            }
+            query = query.withSlice(null).reduce();
+            var launcher = new StoredQueryLauncher<>(table, query.toString(), query);
+            return LimitQuery.make(launcher, slice);
         } else {
             return expr.makeCompiledQuery(table.rowType());
         }
@@ -119,6 +125,17 @@ final class StoredQueryLauncher<R> extends QueryLauncher<R> {
         }
     }
 
+    @Override
+    public Scanner<R> newLimitScanner(long limit, R row, Transaction txn, Object... args)
+        throws IOException
+    {
+        try {
+            return forScanner(txn).newLimitScanner(limit, row, txn, args);
+        } catch (Throwable e) {
+            return retry(e).newLimitScanner(limit, row, txn, args);
+        }
+    }
+
     @Override
     public Updater<R> newUpdater(R row, Transaction txn, Object... args) throws IOException {
         try {
@@ -129,13 +146,26 @@ final class StoredQueryLauncher<R> extends QueryLauncher<R> {
     }
 
     @Override
-    public void scanWrite(Transaction txn, RowWriter writer, Object... args)
+    public Updater<R> newBatchUpdater(Transaction txn, Object... args) throws IOException {
+        return BatchUpdater.make(mTable, this, null, txn, args);
+    }
+
+    @Override
+    public void scanWrite(Transaction txn, RowWriter<R> writer, Object... args)
         throws IOException
     {
         // FIXME: Attempt to retry if nothing has been written yet.
         forScanner(txn).scanWrite(txn, writer, args);
     }
 
+    @Override
+    public void limitScanWrite(Transaction txn, RowWriter<R> writer, long offset, long limit,
+                               Object... args)
+        throws IOException
+    {
+        forScanner(txn).limitScanWrite(txn, writer, offset, limit, args);
+    }
+
     /* FIXME: Override and optimize deleteAll.
        @Override
        public long deleteAll(Transaction txn, Object... args) throws IOException {
@@ -146,6 +176,13 @@ final class StoredQueryLauncher<R> extends QueryLauncher<R> {
         return forScanner(txn).scannerPlan(txn, args);
     }
 
+    @Override
+    public QueryPlan limitScannerPlan(long limit, Transaction txn, Object... args)
+        throws IOException
+    {
+        return forScanner(txn).limitScannerPlan(limit, txn, args);
+    }
+
     @Override
     public QueryPlan updaterPlan(Transaction txn, Object... args) throws IOException {
         return forUpdater(txn).updaterPlan(txn, args);
@@ -31,6 +31,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
+import java.util.concurrent.TimeUnit;
+
 import org.cojen.dirmi.Pipe;
 
 import org.cojen.tupl.ClosedIndexException;
@@ -93,10 +95,10 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
 
     protected final RowPredicateLock<R> mIndexLock;
 
-    private WeakCache<TupleKey, MethodHandle, byte[]> mDecodePartialCache;
+    private RetainedCache<TupleKey, MethodHandle, byte[]> mDecodePartialCache;
     private static final VarHandle cDecodePartialCacheHandle;
 
-    private WeakCache<Object, MethodHandle, byte[]> mWriteRowCache;
+    private RetainedCache<Object, MethodHandle, byte[]> mWriteRowCache;
     private static final VarHandle cWriteRowCacheHandle;
 
     static {
@@ -105,9 +107,9 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
             cTriggerHandle = lookup.findVarHandle
                 (StoredTable.class, "mTrigger", Trigger.class);
             cDecodePartialCacheHandle = lookup.findVarHandle
-                (StoredTable.class, "mDecodePartialCache", WeakCache.class);
+                (StoredTable.class, "mDecodePartialCache", RetainedCache.class);
             cWriteRowCacheHandle = lookup.findVarHandle
-                (StoredTable.class, "mWriteRowCache", WeakCache.class);
+                (StoredTable.class, "mWriteRowCache", RetainedCache.class);
         } catch (Throwable e) {
             throw Utils.rethrow(e);
         }
@@ -145,6 +147,11 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
         final BasicScanner<R> scanner;
         RowPredicateLock.Closer closer = null;
 
+        if (txn != null && this instanceof StoredTableIndex) {
+            // Apply any secondary index changes which are pending in a batch.
+            SecondaryBatch.applyDeferred(txn);
+        }
+
         newScanner: {
             if (txn == null) {
                 // A null transaction behaves like a read committed transaction (as usual), but
@@ -212,7 +219,7 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
         // Might need to double-check the filter after joining to the primary, in case there
         // were any changes after the secondary entry was loaded. See the cacheNewValue method.
         MultiCache.Type cacheType = RowUtils.isUnlocked(txn) ? TYPE_4 : TYPE_3;
-        return (ScanControllerFactory<R>) cacheObtain(cacheType, queryStr, null);
+        return (ScanControllerFactory<R>) cacheFind(cacheType, queryStr, null);
     }
 
     @Override
@@ -236,6 +243,11 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
         final BasicUpdater<R> updater;
         RowPredicateLock.Closer closer = null;
 
+        if (txn != null && secondary != null) {
+            // Apply any secondary index changes which are pending in a batch.
+            SecondaryBatch.applyDeferred(txn);
+        }
+
         addPredicate: {
             if (txn == null) {
                 txn = mSource.newTransaction(null); // always UPGRADABLE_READ
@@ -326,21 +338,21 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
         // note that FOR_UPDATE isn't used, because mFilterFactoryCache doesn't support it.
         // See the cacheNewValue method.
         MultiCache.Type cacheType = RowUtils.isUnsafe(txn) ? TYPE_4 : TYPE_3;
-        return (ScanControllerFactory<R>) cacheObtain(cacheType, queryStr, null);
+        return (ScanControllerFactory<R>) cacheFind(cacheType, queryStr, null);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public final QueryLauncher<R> query(String queryStr) throws IOException {
         // See the cacheNewValue method.
-        return (QueryLauncher<R>) cacheObtain(MultiCache.TYPE_1, queryStr, null);
+        return (QueryLauncher<R>) cacheFind(MultiCache.TYPE_1, queryStr, null);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public final Table<Row> derive(String query, Object... args) throws IOException {
         // See the cacheNewValue method.
-        return ((CompiledQuery<Row>) cacheObtain(MultiCache.TYPE_2, query, this)).table(args);
+        return ((CompiledQuery<Row>) cacheFind(MultiCache.TYPE_2, query, this)).table(args);
     }
 
     @Override
@@ -350,7 +362,7 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
     {
         // See the cacheNewValue method.
         var key = new CompiledQuery.DerivedKey(derivedType, query);
-        return ((CompiledQuery<D>) cacheObtain(MultiCache.TYPE_2, key, this)).table(args);
+        return ((CompiledQuery<D>) cacheFind(MultiCache.TYPE_2, key, this)).table(args);
     }
 
     @Override
@@ -358,6 +370,21 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
         return this;
     }
 
+    @Override
+    public <T> Table<T> materialize(Index target, Class<T> targetType) throws IOException {
+        Objects.requireNonNull(target);
+        Objects.requireNonNull(targetType);
+        if (!supportsSecondaries()) {
+            throw new UnsupportedOperationException();
+        }
+        return mTableManager.materialize(this, target, targetType);
+    }
+
+    @Override
+    public boolean awaitIndexes(long timeout, TimeUnit unit) throws IOException {
+        return mTableManager.awaitIndexes(timeout, unit);
+    }
+
     @Override
     public final String toString() {
         var b = new StringBuilder();
@@ -420,13 +447,14 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
      *
      * @param query expected to be a Query object obtained from this StoredTable
      */
+    @Override
     public final void scanWrite(Transaction txn, Pipe out, Query<R> query, Object... args)
         throws IOException
     {
         var writer = new RowWriter<R>(out);
 
         try {
-            ((QueryLauncher) query).scanWrite(txn, writer, args);
+            ((QueryLauncher<R>) query).scanWrite(txn, writer, args);
         } catch (RuntimeException | IOException e) {
             writer.writeTerminalException(e);
             return;
@@ -484,6 +512,26 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
         return rowStore().indexTable(this, alt, columns);
     }
 
+    /**
+     * @param filter partial secondary index filter; pass null for a complete index
+     */
+    final StoredTableIndex<R> viewIndexTable(boolean alt, String filter, String[] columns)
+        throws IOException
+    {
+        return rowStore().indexTable(this, alt, filter, columns);
+    }
+
+    /**
+     * Returns a predicate which evaluates a partial secondary index filter against the rows
+     * of this table. The predicate supports all schema versions.
+     */
+    @SuppressWarnings("unchecked")
+    final RowPredicate<R> indexFilterPredicate(IndexFilter filter) throws IOException {
+        var factory = (ScanControllerFactory<R>)
+            cacheObtain(MultiCache.TYPE_3, filter.queryString(), null);
+        return factory.predicate(filter.arguments());
+    }
+
     /**
      * Returns a direct view of an alternate key or secondary index, in the form of an
      * unmodifiable table. The rows of the table only contain the columns of the alternate key
@@ -615,7 +663,9 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
 
             if (key instanceof TupleKey) {
                 var pq = (ParsedQuery) helper;
-                return StoredQueryLauncher.make(StoredTable.this, pq.queryStr(), pq.expr());
+                long start = System.nanoTime();
+                return retain(StoredQueryLauncher.make(StoredTable.this, pq.queryStr(), pq.expr()),
+                              start);
             }
 
             String queryStr = (String) key;
@@ -628,7 +678,10 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
         }
 
         if (cacheType == MultiCache.TYPE_2) { // see the derive method
-            return CompiledQuery.makeDerived(this, cacheType, key, helper);
+            long start = System.nanoTime();
+            Object value = CompiledQuery.makeDerived(this, cacheType, key, helper);
+            // Only the canonical instance is generated, and the rest map to it.
+            return key instanceof TupleKey ? retain(value, start) : value;
         }
 
         throw new AssertionError();
@@ -646,6 +699,8 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
     private ScanControllerFactory<R> newFilteredFactory(int type, String queryStr, QuerySpec query)
         throws IOException
     {
+        long start = System.nanoTime();
+
         Class<?> rowType = rowType();
         RowInfo rowInfo = RowInfo.find(rowType);
 
@@ -706,7 +761,7 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
                 rangeFactories[i] = newFilteredFactory
                     (rowGen, ranges[i], predClass, query.projection());
             }
-            return new RangeUnionScanControllerFactory(rangeFactories);
+            return retain(new RangeUnionScanControllerFactory(rangeFactories), start);
         }
 
         // Only one range to scan.
@@ -721,7 +776,7 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
             splitRemainders(rowInfo, range);
         }
 
-        return newFilteredFactory(rowGen, range, predClass, query.projection());
+        return retain(newFilteredFactory(rowGen, range, predClass, query.projection()), start);
     }
 
     private ScanControllerFactory<R> newFilteredFactory(RowGen rowGen, RowFilter[] range,
@@ -849,6 +904,18 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
             launcher = new SortedQueryLauncher<R>(this, launcher, selector.projection(), orderBy);
         }
 
+        IndexFilter.Guard[] guards = selector.partialGuards();
+        if (guards != null) {
+            // A partial secondary index was selected, but it can only be used when the query
+            // arguments match the literals of the index filter.
+            IndexSelector<R> full = selector.withoutPartialIndexes(this);
+            QueryLauncher<R> fallback = newQueryLauncher(type, full);
+            if (fallback == null) {
+                fallback = newQueryLauncher(type & ~FOR_UPDATE, full);
+            }
+            launcher = new GuardedQueryLauncher<R>(guards, launcher, fallback);
+        }
+
         return launcher;
     }
 
@@ -909,6 +976,53 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
         return rs;
     }
 
+    /**
+     * Returns the cache of queries which are prepared on behalf of remote clients, or null
+     * if the database is closed.
+     */
+    public final PreparedQueryCache preparedQueries() {
+        RowStore rs = rowStoreRef().get();
+        return rs == null ? null : rs.preparedQueries();
+    }
+
+    private CacheRetainer cacheRetainer() {
+        RowStore rs = rowStoreRef().get();
+        return rs == null ? null : rs.cacheRetainer();
+    }
+
+    /**
+     * Same as the cacheObtain method, except that existing values are reported to the cache
+     * retainer.
+     */
+    private Object cacheFind(MultiCache.Type type, Object key, Object helper)
+        throws IOException
+    {
+        Object value = cacheGet(type, key);
+        if (value != null) {
+            CacheRetainer retainer = cacheRetainer();
+            if (retainer != null) {
+                retainer.hit(value);
+            }
+            return value;
+        }
+        return cacheObtain(type, key, helper);
+    }
+
+    /**
+     * Passes a newly generated cache value to the cache retainer, which prevents it from
+     * being cleared by the garbage collector.
+     *
+     * @param start System.nanoTime when generation started
+     * @return the value
+     */
+    private <V> V retain(V value, long start) {
+        CacheRetainer retainer = cacheRetainer();
+        if (retainer != null && value != null) {
+            retainer.retain(value, System.nanoTime() - start);
+        }
+        return value;
+    }
+
     protected final WeakReference<RowStore> rowStoreRef() {
         return mTableManager.mRowStoreRef;
     }
@@ -940,12 +1054,12 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
      */
     @SuppressWarnings("unchecked")
     protected final MethodHandle decodePartialHandle(byte[] spec, int schemaVersion) {
-        WeakCache<TupleKey, MethodHandle, byte[]> cache = mDecodePartialCache;
+        RetainedCache<TupleKey, MethodHandle, byte[]> cache = mDecodePartialCache;
 
         if (cache == null) {
-            cache = new WeakCache<>() {
+            cache = new RetainedCache<>(cacheRetainer()) {
                 @Override
-                protected MethodHandle newValue(TupleKey key, byte[] spec) {
+                protected MethodHandle generate(TupleKey key, byte[] spec) {
                     int schemaVersion = 0;
                     if (key.size() == 2) {
                         schemaVersion = key.get_int(0);
@@ -954,7 +1068,7 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
                 }
             };
 
-            var existing = (WeakCache<TupleKey, MethodHandle, byte[]>)
+            var existing = (RetainedCache<TupleKey, MethodHandle, byte[]>)
                 cDecodePartialCacheHandle.compareAndExchange(this, null, cache);
 
             if (existing != null) {
@@ -965,7 +1079,7 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
         final TupleKey key = schemaVersion == 0 ?
             TupleKey.make.with(spec) : TupleKey.make.with(schemaVersion, spec);
 
-        return cache.obtain(key, spec);
+        return cache.find(key, spec);
     }
 
     protected abstract MethodHandle makeDecodePartialHandle(byte[] spec, int schemaVersion);
@@ -985,12 +1099,12 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
      */
     @SuppressWarnings("unchecked")
     protected final MethodHandle writeRowHandle(byte[] spec) {
-        WeakCache<Object, MethodHandle, byte[]> cache = mWriteRowCache;
+        RetainedCache<Object, MethodHandle, byte[]> cache = mWriteRowCache;
 
         if (cache == null) {
-            cache = new WeakCache<>() {
+            cache = new RetainedCache<>(cacheRetainer()) {
                 @Override
-                protected MethodHandle newValue(Object key, byte[] spec) {
+                protected MethodHandle generate(Object key, byte[] spec) {
                     if (isEvolvable()) {
                         return WriteRowMaker.makeWriteRowHandle
                             (rowStoreRef(), rowType(), mSource.id(), spec);
@@ -1010,7 +1124,7 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
                 }
             };
 
-            var existing = (WeakCache<Object, MethodHandle, byte[]>)
+            var existing = (RetainedCache<Object, MethodHandle, byte[]>)
                 cWriteRowCacheHandle.compareAndExchange(this, null, cache);
 
             if (existing != null) {
@@ -1018,7 +1132,7 @@ public abstract class StoredTable<R> extends BaseTable<R> implements ScanControl
             }
         }
 
-        return cache.obtain(TupleKey.make.with(spec), spec);
+        return cache.find(TupleKey.make.with(spec), spec);
     }
 
     @Override
@@ -21,9 +21,15 @@ import java.io.IOException;
 
 import java.lang.ref.WeakReference;
 
+import java.nio.charset.StandardCharsets;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeUnit;
@@ -31,9 +37,16 @@ import java.util.concurrent.TimeUnit;
 import org.cojen.tupl.CorruptDatabaseException;
 import org.cojen.tupl.Cursor;
 import org.cojen.tupl.Index;
+import org.cojen.tupl.Table;
 import org.cojen.tupl.Transaction;
+import org.cojen.tupl.UnmodifiableReplicaException;
 import org.cojen.tupl.View;
 
+import org.cojen.tupl.diag.EventListener;
+import org.cojen.tupl.diag.EventType;
+
+import org.cojen.tupl.io.Utils;
+
 import org.cojen.tupl.util.Worker;
 
 import static org.cojen.tupl.table.RowUtils.*;
@@ -54,12 +67,26 @@ public final class TableManager<R> {
 
     private TreeMap<byte[], IndexBackfill<R>> mIndexBackfills;
 
+    // Maps secondary descriptors to objects which maintain deferred indexes.
+    private volatile TreeMap<byte[], DeferredIndex> mDeferredIndexes;
+
+    // Deletes expired rows, as defined by the most recently updated table.
+    private Expiration<R> mExpiration;
+
     private volatile WeakReference<Worker> mWorkerRef;
 
     private volatile WeakCache<Object, StoredTableIndex<R>, Object> mIndexTables;
 
     private long mTableVersion;
 
+    private volatile MaterializedAggregate<?, ?>[] mAggregates;
+
+    private boolean mAggregatesRestored;
+
+    // Maps the names of computed columns whose values have been backfilled to their
+    // expressions. Is copy on write, and is null until a table instance is opened.
+    private volatile Map<String, String> mComputed;
+
     TableManager(RowStore rs, Index primaryIndex) {
         mRowStoreRef = rs.ref();
         mPrimaryIndex = primaryIndex;
@@ -79,6 +106,45 @@ public final class TableManager<R> {
         if (worker != null) {
             worker.interrupt();
         }
+
+        TreeMap<byte[], DeferredIndex> deferredIndexes = mDeferredIndexes;
+        if (deferredIndexes != null) {
+            for (DeferredIndex deferred : deferredIndexes.values()) {
+                deferred.close();
+            }
+        }
+
+        synchronized (this) {
+            if (mExpiration != null) {
+                mExpiration.close();
+                mExpiration = null;
+            }
+        }
+    }
+
+    /**
+     * @see org.cojen.tupl.Table#awaitIndexes
+     */
+    boolean awaitIndexes(long timeout, TimeUnit unit) throws IOException {
+        TreeMap<byte[], DeferredIndex> deferredIndexes = mDeferredIndexes;
+        if (deferredIndexes == null) {
+            return true;
+        }
+
+        long end = timeout < 0 ? 0 : (System.nanoTime() + unit.toNanos(timeout));
+
+        for (DeferredIndex deferred : deferredIndexes.values()) {
+            if (timeout < 0) {
+                deferred.await(-1, null);
+            } else {
+                long remaining = Math.max(0, end - System.nanoTime());
+                if (!deferred.await(remaining, TimeUnit.NANOSECONDS)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
     }
 
     StoredTable<R> asTable(RowStore rs, Index ix, Class<R> type) throws IOException {
@@ -94,9 +160,26 @@ public final class TableManager<R> {
             }
         });
 
+        List<MaterializedAggregate<?, ?>> building = restoreAggregates(rs, table);
+
         // Must be called after the table is added to the cache. No harm if called redundantly.
         rs.examineSecondaries(this, true);
 
+        if (building != null) {
+            // Can only safely resume the builds after the trigger has been installed.
+            Worker worker = worker(true);
+            for (var agg : building) {
+                worker.enqueue(new AggregateBuild(rs, agg));
+            }
+        }
+
+        ComputedBackfill<R> backfill = examineComputed(rs, table);
+        if (backfill != null) {
+            // Must also run after the trigger has been installed, which updates the
+            // secondary indexes over the computed columns.
+            worker(true).enqueue(backfill);
+        }
+
         Worker worker = worker(false);
         if (worker != null && ix.isEmpty()) {
             // Backfill of nothing is fast, so wait for it before returning Table to caller.
@@ -260,9 +343,16 @@ public final class TableManager<R> {
             if (!secondaries.exists(txn, desc)) {
                 it.remove();
                 removeIndexBackfill(desc);
+                removeDeferredIndex(desc);
             }
         }
 
+        // Deferred maintenance is defined by the current row type, and it isn't persisted.
+        TreeSet<byte[]> deferredDescs = table == null ? null
+            : RowStore.deferredDescriptors(primaryInfo);
+
+        ArrayList<DeferredIndex> newDeferred = null;
+
         ArrayList<IndexBackfill> newBackfills = null;
 
         IndexTriggerMaker<R> maker = null;
@@ -282,6 +372,7 @@ public final class TableManager<R> {
                     removeIndexBackfill(desc);
 
                     if (state == 'D') { // "deleting" state
+                        removeDeferredIndex(desc);
                         continue;
                     }
                 }
@@ -291,12 +382,52 @@ public final class TableManager<R> {
                     throw new CorruptDatabaseException("Secondary index is missing: " + indexId);
                 }
 
+                SecondaryInfo secondaryInfo = secondaryInfo(primaryInfo, desc);
+
                 maker.mSecondaryDescriptors[i] = desc;
-                maker.mSecondaryInfos[i] = secondaryInfo(primaryInfo, desc);
+                maker.mSecondaryInfos[i] = secondaryInfo;
                 maker.mSecondaryIndexes[i] = index;
-                maker.mSecondaryLocks[i] = rs.indexLock(index);
 
-                if (state == 'B') { // "backfill" state
+                DeferredIndex deferred = null;
+
+                if (table != null && state != 'B') {
+                    boolean isDeferred = deferredDescs != null && deferredDescs.contains(desc);
+                    deferred = deferredIndex(rs, desc, index, secondaryInfo, isDeferred);
+                    if (deferred != null) {
+                        if (newDeferred == null) {
+                            newDeferred = new ArrayList<>();
+                        }
+                        newDeferred.add(deferred);
+                        if (!isDeferred) {
+                            // Only drain the queue which was left over from when the index
+                            // was deferred.
+                            deferred = null;
+                        }
+                    }
+                }
+
+                if (deferred != null) {
+                    // Deferred indexes are eventually consistent, and so predicate locks
+                    // don't apply.
+                    maker.mDeferredIndexes[i] = deferred;
+                } else {
+                    maker.mSecondaryLocks[i] = rs.indexLock(index);
+                }
+
+                boolean canBackfill = true;
+
+                if (secondaryInfo.filter != null) {
+                    if (table != null) {
+                        maker.mSecondaryFilters[i] = table.indexFilterPredicate
+                            (IndexFilter.parse(rowType, secondaryInfo.filter));
+                    } else {
+                        // The partial index filter cannot be evaluated without a table, so
+                        // wait until one is opened before starting the backfill.
+                        canBackfill = false;
+                    }
+                }
+
+                if (state == 'B' && canBackfill) { // "backfill" state
                     if (mIndexBackfills == null) {
                         mIndexBackfills = new TreeMap<>(KEY_COMPARATOR);
                     }
@@ -328,9 +459,25 @@ public final class TableManager<R> {
             if (maker != null) {
                 trigger = maker.makeTrigger(rs, mPrimaryIndex.id(), table);
             }
+            MaterializedAggregate<?, ?>[] aggregates = mAggregates;
+            if (aggregates != null) {
+                trigger = new AggregateTrigger<>(trigger, aggregates);
+            }
             table.setTrigger(trigger);
         }
 
+        if (newDeferred != null) {
+            // Apply any changes which were left over from before, and also drain any queues
+            // which are no longer used.
+            for (var deferred : newDeferred) {
+                deferred.signal();
+            }
+        }
+
+        if (table != null) {
+            updateExpiration(table, primaryInfo);
+        }
+
         // Can only safely start new backfills after the new trigger has been installed.
 
         if (newBackfills != null && !newBackfills.isEmpty()) {
@@ -345,6 +492,430 @@ public final class TableManager<R> {
         }
     }
 
+    /**
+     * Starts or stops the task which deletes expired rows, as defined by the given table.
+     */
+    private synchronized void updateExpiration(StoredTable<R> table, RowInfo primaryInfo) {
+        Expiration<R> expiration = mExpiration;
+        if (expiration != null && expiration.table() == table) {
+            return;
+        }
+
+        ColumnInfo column = primaryInfo.expirationColumn();
+        if (column == null) {
+            if (expiration != null && expiration.table() == null) {
+                expiration.close();
+                mExpiration = null;
+            }
+            return;
+        }
+
+        if (expiration != null) {
+            expiration.close();
+        }
+
+        mExpiration = expiration = new Expiration<>(table, column, primaryInfo.expirationIndex());
+        expiration.start();
+    }
+
+    /**
+     * Registers a materialized aggregate table, installs a trigger which maintains it, and
+     * then builds all of its rows.
+     *
+     * @see org.cojen.tupl.Table#materialize
+     */
+    <T> Table<T> materialize(StoredTable<R> source, Index target, Class<T> targetType)
+        throws IOException
+    {
+        long targetId = target.id();
+        if (targetId == mPrimaryIndex.id()) {
+            throw new IllegalArgumentException("Cannot materialize into the source table");
+        }
+
+        RowStore rs = source.rowStore();
+
+        MaterializedAggregate<?, ?> agg = null;
+        boolean added = false;
+
+        synchronized (this) {
+            MaterializedAggregate<?, ?>[] aggregates = mAggregates;
+
+            if (aggregates != null) {
+                for (var existing : aggregates) {
+                    if (existing.targetId() == targetId) {
+                        Table<?> table = existing.target();
+                        if (table.rowType() != targetType) {
+                            throw new IllegalStateException
+                                ("Target index is already materialized using a different " +
+                                 "row type: " + table.rowType().getName());
+                        }
+                        agg = existing;
+                        break;
+                    }
+                }
+            }
+
+            if (agg == null) {
+                agg = new MaterializedAggregate<>(source, target.asTable(targetType), targetId,
+                                                  rs.materializedView(mPrimaryIndex.id()),
+                                                  null);
+                addAggregate(agg);
+                added = true;
+            }
+        }
+
+        if (added) {
+            try {
+                // Install a new trigger which maintains the aggregates.
+                rs.examineSecondaries(this, true);
+            } catch (Throwable e) {
+                synchronized (this) {
+                    removeAggregate(agg);
+                }
+                try {
+                    rs.examineSecondaries(this, true);
+                } catch (Throwable e2) {
+                    Utils.suppress(e, e2);
+                }
+                throw e;
+            }
+        }
+
+        try {
+            agg.build();
+        } catch (UnmodifiableReplicaException e) {
+            // The leader maintains the rows, and the changes are replicated.
+        }
+
+        @SuppressWarnings("unchecked")
+        Table<T> result = (Table<T>) agg.target();
+        return result;
+    }
+
+    /**
+     * Registers the materialized aggregate tables which were persisted by the source table,
+     * when the first table instance is opened. If a target type cannot be loaded, then the
+     * target rows cannot be maintained, and so they're rebuilt when materialize is called
+     * again.
+     *
+     * @return the aggregates whose build must be resumed, or null if none
+     */
+    private List<MaterializedAggregate<?, ?>> restoreAggregates(RowStore rs,
+                                                               StoredTable<R> table)
+        throws IOException
+    {
+        synchronized (this) {
+            if (mAggregatesRestored) {
+                return null;
+            }
+            mAggregatesRestored = true;
+        }
+
+        View definitions = rs.materializedView(mPrimaryIndex.id());
+        ClassLoader loader = table.rowType().getClassLoader();
+
+        List<MaterializedAggregate<?, ?>> building = null;
+        List<byte[]> stale = null;
+
+        try (Cursor c = definitions.newCursor(Transaction.BOGUS)) {
+            for (c.first(); c.key() != null; c.next()) {
+                byte[] definition = c.value();
+                MaterializedAggregate<?, ?> agg;
+                try {
+                    Index target = rs.mDatabase.indexById(decodeLongBE(c.key(), 0));
+                    if (target == null) {
+                        // The target index was deleted.
+                        agg = null;
+                    } else {
+                        var type = Class.forName
+                            (MaterializedAggregate.typeName(definition), true, loader);
+                        agg = new MaterializedAggregate<>(table, target.asTable(type),
+                                                          target.id(), definitions, definition);
+                    }
+                } catch (ClassNotFoundException | LinkageError | IllegalArgumentException e) {
+                    agg = null;
+                }
+
+                if (agg == null) {
+                    if (stale == null) {
+                        stale = new ArrayList<>();
+                    }
+                    stale.add(c.key());
+                    stale.add(MaterializedAggregate.cleared(definition));
+                    continue;
+                }
+
+                synchronized (this) {
+                    addAggregate(agg);
+                }
+
+                if (agg.isBuilding()) {
+                    if (building == null) {
+                        building = new ArrayList<>();
+                    }
+                    building.add(agg);
+                }
+            }
+        }
+
+        if (stale != null) {
+            try {
+                for (int i=0; i<stale.size(); i+=2) {
+                    definitions.store(null, stale.get(i), stale.get(i + 1));
+                }
+            } catch (UnmodifiableReplicaException e) {
+                // The leader maintains the definitions.
+            }
+        }
+
+        return building;
+    }
+
+    /**
+     * Returns true if the values of the given computed column have been backfilled into all
+     * the rows, and so the column can be used in place of its expression.
+     */
+    public boolean isComputedReady(ColumnInfo column) {
+        Map<String, String> computed = mComputed;
+        return computed != null && column.computed.equals(computed.get(column.name));
+    }
+
+    /**
+     * Loads the set of backfilled computed columns, and returns a task to backfill the
+     * computed columns of the given table which aren't in the set. Columns which aren't
+     * computed the same way by the given table are removed from the set, because the table
+     * doesn't maintain them.
+     *
+     * @return null if no backfill is needed
+     */
+    private ComputedBackfill<R> examineComputed(RowStore rs, StoredTable<R> table)
+        throws IOException
+    {
+        Map<String, ColumnInfo> columns = RowInfo.find(table.rowType()).allColumns;
+        View view = rs.computedView(mPrimaryIndex.id());
+        List<ColumnInfo> pending = null;
+        boolean clear;
+
+        synchronized (this) {
+            Map<String, String> computed = mComputed;
+
+            if (computed == null) {
+                computed = new HashMap<>();
+                try (Cursor c = view.newCursor(Transaction.BOGUS)) {
+                    for (c.first(); c.key() != null; c.next()) {
+                        computed.put(new String(c.key(), StandardCharsets.UTF_8),
+                                     new String(c.value(), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+
+            List<String> stale = null;
+
+            for (Map.Entry<String, String> e : computed.entrySet()) {
+                ColumnInfo column = columns.get(e.getKey());
+                if (column == null || !e.getValue().equals(column.computed)) {
+                    if (stale == null) {
+                        stale = new ArrayList<>();
+                    }
+                    stale.add(e.getKey());
+                }
+            }
+
+            if (stale != null) {
+                computed = new HashMap<>(computed);
+                for (String name : stale) {
+                    computed.remove(name);
+                    try {
+                        view.delete(null, name.getBytes(StandardCharsets.UTF_8));
+                    } catch (UnmodifiableReplicaException e) {
+                        // The leader maintains the set.
+                    }
+                }
+            }
+
+            mComputed = computed;
+            clear = stale != null;
+
+            for (ColumnInfo column : columns.values()) {
+                if (column.isComputed() && !computed.containsKey(column.name)) {
+                    if (pending == null) {
+                        pending = new ArrayList<>();
+                    }
+                    pending.add(column);
+                }
+            }
+        }
+
+        if (clear) {
+            // Queries which reference the stale columns must be prepared again.
+            clearQueryCaches();
+        }
+
+        return pending == null ? null : new ComputedBackfill<>(rs, table, pending);
+    }
+
+    /**
+     * Called by ComputedBackfill when all the rows have been updated. If any table instance
+     * is open which doesn't compute the columns the same way, then it might have stored
+     * stale values, and so the columns remain unavailable until the next backfill.
+     */
+    void computedFinished(RowStore rs, List<ColumnInfo> columns) throws IOException {
+        List<StoredTable<R>> tables = mTables.copyValues();
+        if (tables != null) {
+            for (var table : tables) {
+                Map<String, ColumnInfo> tableColumns = RowInfo.find(table.rowType()).allColumns;
+                for (ColumnInfo column : columns) {
+                    ColumnInfo tableColumn = tableColumns.get(column.name);
+                    if (tableColumn == null || !column.computed.equals(tableColumn.computed)) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        View view = rs.computedView(mPrimaryIndex.id());
+
+        Transaction txn = rs.mDatabase.newTransaction();
+        try {
+            for (ColumnInfo column : columns) {
+                view.store(txn, column.name.getBytes(StandardCharsets.UTF_8),
+                           column.computed.getBytes(StandardCharsets.UTF_8));
+            }
+            txn.commit();
+        } finally {
+            txn.reset();
+        }
+
+        synchronized (this) {
+            var computed = new HashMap<String, String>(mComputed);
+            for (ColumnInfo column : columns) {
+                computed.put(column.name, column.computed);
+            }
+            mComputed = computed;
+        }
+
+        // Queries which were parsed before the backfill finished don't use the columns.
+        clearQueryCaches();
+    }
+
+    /**
+     * Discards all the cached queries, forcing them to be parsed again.
+     */
+    private void clearQueryCaches() {
+        List<StoredTable<R>> tables = mTables.copyValues();
+        if (tables != null) {
+            tables.forEach(StoredTable::cacheClear);
+        }
+
+        WeakCache<Object, StoredTableIndex<R>, Object> indexTables = mIndexTables;
+        if (indexTables != null) {
+            indexTables.traverse(StoredTable::cacheClear);
+        }
+    }
+
+    private void addAggregate(MaterializedAggregate<?, ?> agg) {
+        MaterializedAggregate<?, ?>[] aggregates = mAggregates;
+        if (aggregates == null) {
+            aggregates = new MaterializedAggregate<?, ?>[] {agg};
+        } else {
+            aggregates = Arrays.copyOf(aggregates, aggregates.length + 1);
+            aggregates[aggregates.length - 1] = agg;
+        }
+        mAggregates = aggregates;
+    }
+
+    private void removeAggregate(MaterializedAggregate<?, ?> agg) {
+        MaterializedAggregate<?, ?>[] aggregates = mAggregates;
+        int i = 0;
+        while (aggregates[i] != agg) {
+            i++;
+        }
+        var newAggregates = new MaterializedAggregate<?, ?>[aggregates.length - 1];
+        System.arraycopy(aggregates, 0, newAggregates, 0, i);
+        System.arraycopy(aggregates, i + 1, newAggregates, i, newAggregates.length - i);
+        mAggregates = newAggregates.length == 0 ? null : newAggregates;
+    }
+
+    /**
+     * Resumes the build of a materialized aggregate table which didn't finish before the
+     * database was closed.
+     */
+    private static final class AggregateBuild extends Worker.Task {
+        private final RowStore mRowStore;
+        private final MaterializedAggregate<?, ?> mAggregate;
+
+        AggregateBuild(RowStore rs, MaterializedAggregate<?, ?> agg) {
+            mRowStore = rs;
+            mAggregate = agg;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mAggregate.build();
+            } catch (UnmodifiableReplicaException e) {
+                // The leader maintains the rows, and the changes are replicated.
+            } catch (Throwable e) {
+                if (mRowStore.mDatabase.isClosed()) {
+                    return;
+                }
+                EventListener listener = mRowStore.mDatabase.eventListener();
+                if (listener == null) {
+                    uncaught(e);
+                } else {
+                    listener.notify(EventType.TABLE_INDEX_ERROR,
+                                    "Unable to build materialized table %1$s: %2$s",
+                                    mAggregate.target().rowType().getName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the object which maintains a deferred index, creating it if necessary.
+     *
+     * @param create when false, only return an object when a change queue exists
+     * @return null if no change queue exists and one cannot be created
+     */
+    private DeferredIndex deferredIndex(RowStore rs, byte[] desc, Index index,
+                                        SecondaryInfo secondaryInfo, boolean create)
+        throws IOException
+    {
+        TreeMap<byte[], DeferredIndex> deferredIndexes = mDeferredIndexes;
+
+        if (deferredIndexes != null) {
+            DeferredIndex deferred = deferredIndexes.get(desc);
+            if (deferred != null) {
+                return deferred;
+            }
+        }
+
+        Index queue = rs.deferredQueue(index.id(), create);
+        if (queue == null) {
+            return null;
+        }
+
+        var deferred = new DeferredIndex(rs, index, queue, secondaryInfo.eventString());
+
+        // Copy on write, allowing the awaitIndexes method to be called without
+        // synchronization.
+        deferredIndexes = deferredIndexes == null
+            ? new TreeMap<>(KEY_COMPARATOR) : new TreeMap<>(deferredIndexes);
+        deferredIndexes.put(desc, deferred);
+        mDeferredIndexes = deferredIndexes;
+
+        return deferred;
+    }
+
+    private void removeDeferredIndex(byte[] desc) {
+        TreeMap<byte[], DeferredIndex> deferredIndexes = mDeferredIndexes;
+        if (deferredIndexes != null && deferredIndexes.containsKey(desc)) {
+            deferredIndexes = new TreeMap<>(deferredIndexes);
+            deferredIndexes.remove(desc).close();
+            mDeferredIndexes = deferredIndexes.isEmpty() ? null : deferredIndexes;
+        }
+    }
+
     private void removeIndexBackfill(byte[] desc) {
         if (mIndexBackfills != null) {
             // When an IndexBackfill is removed, it doesn't need to be immediately closed. When
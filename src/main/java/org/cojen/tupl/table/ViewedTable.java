@@ -46,6 +46,7 @@ import org.cojen.maker.Variable;
 import org.cojen.tupl.ColumnProcessor;
 import org.cojen.tupl.NoSuchRowException;
 import org.cojen.tupl.Query;
+import org.cojen.tupl.QueryException;
 import org.cojen.tupl.Row;
 import org.cojen.tupl.Scanner;
 import org.cojen.tupl.Table;
@@ -89,6 +90,9 @@ public abstract sealed class ViewedTable<R> extends WrappedTable<R, R> {
 
                 if (query == null) {
                     query = Parser.parseQuerySpec(rowType, queryStr);
+                    if (query.slice() != null) {
+                        throw new QueryException("View query cannot have a limit or offset");
+                    }
                     String canonical = query.toString();
                     if (!canonical.equals(queryStr)) {
                         return obtain(TupleKey.make.with(rowType, canonical), query);
@@ -386,7 +390,7 @@ public abstract sealed class ViewedTable<R> extends WrappedTable<R, R> {
 
             RowFilter filter = thisQuery.filter().and(otherQuery.filter());
 
-            return new QuerySpec(projection, orderBy, filter).toString();
+            return new QuerySpec(projection, orderBy, filter, otherQuery.slice()).toString();
         }
 
         if (type == TYPE_4) { // see the derive method
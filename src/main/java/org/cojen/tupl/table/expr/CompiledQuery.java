@@ -86,7 +86,7 @@ public abstract class CompiledQuery<R> extends QueryLauncher<R> {
     }
 
     @Override
-    public void scanWrite(Transaction txn, RowWriter writer, Object... args) throws IOException {
+    public void scanWrite(Transaction txn, RowWriter<R> writer, Object... args) throws IOException {
         // FIXME: scanWrite
         throw null;
     }
@@ -329,6 +329,14 @@ public abstract sealed class Expr
         return resultVar;
     }
 
+    /**
+     * Generates code which evaluates the expression against the columns of the given row.
+     * The expression cannot refer to any parameters.
+     */
+    public final Variable makeEval(Variable rowVar) {
+        return makeEval(new EvalContext(null, rowVar));
+    }
+
     /**
      * Implementation of makeEval, which should only be called via the makeEval method.
      *
@@ -31,6 +31,8 @@ import java.util.Set;
 import org.cojen.tupl.QueryException;
 import org.cojen.tupl.Table;
 
+import org.cojen.tupl.table.QuerySlice;
+
 import org.cojen.tupl.table.filter.QuerySpec;
 
 import static org.cojen.tupl.table.RowMethodsMaker.unescape;
@@ -125,6 +127,25 @@ public final class Parser {
         }
     }
 
+    /**
+     * Parses a standalone expression which refers to the columns of the given relation,
+     * throwing a QueryException if the operation fails.
+     */
+    public static Expr parseExpr(RelationExpr from, String source) throws QueryException {
+        try {
+            var parser = new Parser(0, from, null, source);
+            Expr expr = parser.parseExpr();
+            Token peek = parser.peekToken();
+            if (peek.type() != T_EOF) {
+                throw peek.queryException("Unexpected trailing characters");
+            }
+            return expr;
+        } catch (IOException e) {
+            // Not expected.
+            throw new QueryException(e);
+        }
+    }
+
     private final int mParamDelta;
     private final RelationExpr mFrom;
     private final Class<?> mRowType;
@@ -182,8 +203,8 @@ public final class Parser {
     }
 
     /*
-     * QueryExpr  = Projection [ Filter ]
-     *            | Filter
+     * QueryExpr  = ( Projection [ Filter ] | Filter ) [ Slice ]
+     *            | Slice
      * Filter     = Expr
      * Projection = "{" ProjExprs [ ";" ProjExprs ] "}"
      */
@@ -196,10 +217,15 @@ public final class Parser {
         final int endPos;
 
         if (first.type() != T_LBRACE) {
-            filter = parseExpr();
+            if (isSliceStart()) {
+                filter = null;
+                endPos = first.startPos();
+            } else {
+                filter = parseExpr();
+                endPos = filter.endPos();
+            }
             projection = null;
             groupBy = -1;
-            endPos = filter.endPos();
         } else {
             consumePeek();
             Map<String, ProjExpr> projExprs = parseProjExprs();
@@ -217,7 +243,7 @@ public final class Parser {
                     ? "At most one group specification is allowed" : "Right brace expected";
                 throw next.queryException(message);
             }
-            if (peekTokenType() == T_EOF) {
+            if (peekTokenType() == T_EOF || isSliceStart()) {
                 filter = null;
                 endPos = next.endPos();
             } else {
@@ -226,6 +252,45 @@ public final class Parser {
             }
         }
 
+        final QuerySlice slice;
+        final int slicePos, sliceEndPos;
+
+        if (!isSliceStart()) {
+            slice = null;
+            slicePos = -1;
+            sliceEndPos = endPos;
+        } else {
+            slicePos = peekToken().startPos();
+            long limit = java.lang.Long.MAX_VALUE, offset = 0;
+            int limitArg = 0, offsetArg = 0;
+            int lastPos = endPos;
+
+            if (isSliceStart("limit")) {
+                consumePeek();
+                Expr count = parseCount();
+                if (count instanceof ParamExpr pe) {
+                    limitArg = pe.ordinal();
+                } else {
+                    limit = ((Number) ((ConstantExpr) count).value()).longValue();
+                }
+                lastPos = count.endPos();
+            }
+
+            if (isSliceStart("offset")) {
+                consumePeek();
+                Expr count = parseCount();
+                if (count instanceof ParamExpr pe) {
+                    offsetArg = pe.ordinal();
+                } else {
+                    offset = ((Number) ((ConstantExpr) count).value()).longValue();
+                }
+                lastPos = count.endPos();
+            }
+
+            slice = new QuerySlice(limit, limitArg, offset, offsetArg);
+            sliceEndPos = lastPos;
+        }
+
         Token peek = peekToken();
         if (peek.type() != T_EOF) {
             throw peek.queryException("Unexpected trailing characters");
@@ -240,8 +305,48 @@ public final class Parser {
             }
         }
 
-        return QueryExpr.make(first.startPos(), endPos, mFrom, mRowType,
-                              filter, projection, groupBy);
+        RelationExpr expr = QueryExpr.make(first.startPos(), endPos, mFrom, mRowType,
+                                           filter, projection, groupBy);
+
+        if (slice != null) {
+            expr = SliceExpr.make(first.startPos(), sliceEndPos, slicePos, expr, slice);
+        }
+
+        return expr;
+    }
+
+    /*
+     * Slice = "limit" Count [ "offset" Count ]
+     *       | "offset" Count
+     */
+    private boolean isSliceStart() throws IOException {
+        return isSliceStart("limit") || isSliceStart("offset");
+    }
+
+    /**
+     * Returns true if the next token is the given keyword, and it's followed by a count.
+     * Because the keyword is contextual, it can still be used as a column name.
+     */
+    private boolean isSliceStart(String keyword) throws IOException {
+        Token t = peekToken();
+        if (t.type() != T_IDENTIFIER || !keyword.equals(((Token.Text) t).mText)) {
+            return false;
+        }
+        consumePeek();
+        int nextType = peekTokenType();
+        pushbackToken(t);
+        return nextType == T_INT || nextType == T_LONG || nextType == T_ARG;
+    }
+
+    /*
+     * Count = uint | ArgRef
+     */
+    private Expr parseCount() throws IOException {
+        Token t = peekToken();
+        return switch (t.type()) {
+            case T_INT, T_LONG, T_ARG -> parseEntityExpr();
+            default -> throw t.queryException("Count expected");
+        };
     }
 
     private static void verifyNoGrouping(Expr expr) {
@@ -809,15 +914,21 @@ public final class Parser {
                 }
                 return ParamExpr.make(t.startPos(), next.endPos(), ordinal + mParamDelta);
             } else {
+                pushbackToken(next);
                 switch (next.type()) {
+                case T_IDENTIFIER:
+                    // Permit a trailing slice, as in "a == ? limit 10".
+                    if (!isSliceStart()) {
+                        throw next.queryException("Malformed argument number");
+                    }
+                    break;
                 case T_ARG:
                 case T_FALSE: case T_TRUE: case T_NULL:
-                case T_IDENTIFIER: case T_STRING:
+                case T_STRING:
                 case T_INT: case T_LONG: case T_BIGINT:
                 case T_FLOAT: case T_DOUBLE: case T_BIGDEC:
                     throw next.queryException("Malformed argument number");
                 }
-                pushbackToken(next);
                 return ParamExpr.make(t.startPos(), t.endPos(), ++mParamOrdinal + mParamDelta);
             }
         }
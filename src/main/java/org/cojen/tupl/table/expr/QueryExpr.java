@@ -37,6 +37,8 @@ import org.cojen.tupl.Untransformed;
 import org.cojen.tupl.table.ColumnInfo;
 import org.cojen.tupl.table.OrderBy;
 import org.cojen.tupl.table.RowInfo;
+import org.cojen.tupl.table.StoredTable;
+import org.cojen.tupl.table.TableManager;
 
 import org.cojen.tupl.table.filter.ColumnToArgFilter;
 import org.cojen.tupl.table.filter.ColumnToColumnFilter;
@@ -76,6 +78,8 @@ public abstract sealed class QueryExpr extends RelationExpr
             filter = filter.asType(BasicType.BOOLEAN);
             if (filter instanceof ConstantExpr ce && ce.value() == Boolean.TRUE) {
                 filter = null;
+            } else if (from instanceof TableExpr te) {
+                filter = replaceComputed(te, filter);
             }
         }
 
@@ -389,6 +393,56 @@ public abstract sealed class QueryExpr extends RelationExpr
                                      projection, groupBy, maxArgument, mappedOrderBy);
     }
 
+    /**
+     * Replaces expressions which match the computed columns of the given table with
+     * references to the computed columns, allowing the filter to be pushed down and matched
+     * against secondary indexes. A column is only used once its values have been backfilled
+     * into all the rows, and until then the original expression is kept.
+     *
+     * @see org.cojen.tupl.Computed
+     */
+    private static Expr replaceComputed(TableExpr from, Expr filter) {
+        if (!(from.table() instanceof StoredTable<?> table)) {
+            return filter;
+        }
+
+        TableManager<?> manager = table.tableManager();
+        TupleType rowType = from.rowType();
+        Map<Expr, ColumnExpr> replacements = null;
+
+        for (ColumnInfo info : RowInfo.find(rowType.clazz()).allColumns.values()) {
+            if (!info.isComputed() || !manager.isComputedReady(info)) {
+                continue;
+            }
+
+            Column column = rowType.tryFindColumn(info.name);
+            if (column == null) {
+                continue;
+            }
+
+            Expr expr;
+            try {
+                expr = Parser.parseExpr(from, info.computed);
+            } catch (QueryException e) {
+                // Source column isn't available.
+                continue;
+            }
+
+            if (!column.type().nullable().equals(expr.type().nullable())) {
+                // Replacing the expression would change the type.
+                continue;
+            }
+
+            if (replacements == null) {
+                replacements = new HashMap<>();
+            }
+
+            replacements.put(expr, ColumnExpr.make(-1, -1, rowType, column));
+        }
+
+        return replacements == null ? filter : filter.replace(replacements);
+    }
+
     /**
      * Add additional columns to the projection, based on what the given expression needs.
      */
@@ -42,7 +42,9 @@ import org.cojen.maker.Variable;
  *
  * @author Brian S. O'Neill
  */
-public abstract sealed class RelationExpr extends Expr permits TableExpr, QueryExpr {
+public abstract sealed class RelationExpr extends Expr
+    permits TableExpr, QueryExpr, SliceExpr
+{
     private final RelationType mType;
 
     protected RelationExpr(int startPos, int endPos, RelationType type) {
@@ -138,6 +140,16 @@ public abstract sealed class RelationExpr extends Expr permits TableExpr, QueryE
      */
     public abstract QuerySpec tryQuerySpec(Class<?> rowType);
 
+    /**
+     * Returns a QuerySpec if this RelationExpr can be represented by one, against the given
+     * row type, in which all literals have been replaced with arguments. The literal values
+     * are added to the given list, ordered by argument number, starting after maxArgument.
+     * Returns null if not possible.
+     */
+    public QuerySpec tryLiteralQuerySpec(Class<?> rowType, List<Object> literals) {
+        return tryQuerySpec(rowType);
+    }
+
     /**
      * Makes a fully functional CompiledQuery from this expression.
      */
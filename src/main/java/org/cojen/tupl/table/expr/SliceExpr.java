@@ -0,0 +1,268 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table.expr;
+
+import java.io.IOException;
+
+import java.util.Map;
+import java.util.Set;
+
+import java.util.stream.Stream;
+
+import org.cojen.tupl.QueryException;
+import org.cojen.tupl.Scanner;
+import org.cojen.tupl.Table;
+import org.cojen.tupl.Transaction;
+import org.cojen.tupl.Updater;
+
+import org.cojen.tupl.diag.QueryPlan;
+
+import org.cojen.tupl.table.LimitQuery;
+import org.cojen.tupl.table.QueryLauncher;
+import org.cojen.tupl.table.QuerySlice;
+
+import org.cojen.tupl.table.filter.QuerySpec;
+
+/**
+ * Defines an expression which skips over an optional amount of rows from a relation, and
+ * then produces a limited amount of rows.
+ *
+ * @author Brian S. O'Neill
+ * @see QuerySlice
+ */
+public final class SliceExpr extends RelationExpr {
+    /**
+     * @param startPos source code start position, zero-based, inclusive; is -1 if not applicable
+     * @param endPos source code end position, zero-based, exclusive; is -1 if not applicable
+     * @param slicePos source code start position of the slice, zero-based, inclusive; is -1
+     * if not applicable
+     */
+    public static SliceExpr make(int startPos, int endPos, int slicePos,
+                                 RelationExpr source, QuerySlice slice)
+    {
+        return new SliceExpr(startPos, endPos, slicePos, source, slice);
+    }
+
+    private final int mSlicePos;
+    private final RelationExpr mSource;
+    private final QuerySlice mSlice;
+
+    private SliceExpr(int startPos, int endPos, int slicePos,
+                      RelationExpr source, QuerySlice slice)
+    {
+        super(startPos, endPos, source.type());
+        mSlicePos = slicePos;
+        mSource = source;
+        mSlice = slice;
+    }
+
+    public RelationExpr source() {
+        return mSource;
+    }
+
+    public QuerySlice slice() {
+        return mSlice;
+    }
+
+    /**
+     * Returns the portion of the given query string which was parsed into the source
+     * expression. This is the original query string without the trailing slice.
+     *
+     * @param queryStr the query string which was parsed into this expression
+     * @throws IllegalStateException if the slice position isn't known
+     */
+    public String sourceQueryString(String queryStr) {
+        if (mSlicePos < 0) {
+            throw new IllegalStateException();
+        }
+        String sourceStr = queryStr.substring(0, mSlicePos).strip();
+        return sourceStr.isEmpty() ? "{*}" : sourceStr;
+    }
+
+    @Override
+    public int maxArgument() {
+        return Math.max(mSource.maxArgument(), mSlice.maxArgument());
+    }
+
+    @Override
+    public boolean isPureFunction() {
+        return mSource.isPureFunction();
+    }
+
+    @Override
+    public boolean isOrderDependent() {
+        return mSource.isOrderDependent();
+    }
+
+    @Override
+    public boolean isGrouping() {
+        return mSource.isGrouping();
+    }
+
+    @Override
+    public boolean isAccumulating() {
+        return mSource.isAccumulating();
+    }
+
+    @Override
+    public boolean isAggregating() {
+        return mSource.isAggregating();
+    }
+
+    @Override
+    public Expr asAggregate(Set<String> group) {
+        throw new QueryException("Query has a limit or offset");
+    }
+
+    @Override
+    public Expr asWindow(Map<ColumnExpr, AssignExpr> newAssignments) {
+        throw new QueryException("Query has a limit or offset");
+    }
+
+    @Override
+    public String orderBySpec() {
+        return mSource.orderBySpec();
+    }
+
+    @Override
+    public QuerySpec querySpec() {
+        return mSource.querySpec().withSlice(mSlice);
+    }
+
+    @Override
+    public QuerySpec tryQuerySpec(Class<?> rowType) {
+        QuerySpec spec = mSource.tryQuerySpec(rowType);
+        return spec == null ? null : spec.withSlice(mSlice);
+    }
+
+    @Override
+    public CompiledQuery<?> makeCompiledQuery() throws IOException {
+        return new Sliced<>(mSource.makeCompiledQuery(), mSlice, maxArgument());
+    }
+
+    private static final byte K_TYPE = KeyEncoder.allocType();
+
+    @Override
+    protected void encodeKey(KeyEncoder enc) {
+        if (enc.encode(this, K_TYPE)) {
+            mSource.encodeKey(enc);
+            enc.encodeLong(mSlice.limit());
+            enc.encodeInt(mSlice.limitArg());
+            enc.encodeLong(mSlice.offset());
+            enc.encodeInt(mSlice.offsetArg());
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return mSource.hashCode() * 31 + mSlice.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this ||
+            obj instanceof SliceExpr se && mSource.equals(se.mSource) && mSlice.equals(se.mSlice);
+    }
+
+    @Override
+    public String toString() {
+        return defaultToString();
+    }
+
+    @Override
+    public void appendTo(StringBuilder b) {
+        mSource.appendTo(b);
+        b.append(' ');
+        mSlice.appendTo(b);
+    }
+
+    /**
+     * Applies the slice to a compiled query. A table cannot be derived from it, because the
+     * limit and offset would need to apply to all of the table operations.
+     */
+    private static final class Sliced<R> extends CompiledQuery.Wrapped<R> {
+        private final QueryLauncher<R> mQuery;
+
+        Sliced(CompiledQuery<R> source, QuerySlice slice, int argCount) {
+            super(source, argCount);
+            mQuery = LimitQuery.make(source, slice);
+        }
+
+        @Override
+        public Table<R> table(Object... args) {
+            throw new QueryException("Cannot derive a table from a query with a limit or offset");
+        }
+
+        @Override
+        public Scanner<R> newScanner(R row, Transaction txn, Object... args) throws IOException {
+            checkArgumentCount(args);
+            return mQuery.newScanner(row, txn, args);
+        }
+
+        @Override
+        public Scanner<R> newLimitScanner(long limit, R row, Transaction txn, Object... args)
+            throws IOException
+        {
+            checkArgumentCount(args);
+            return mQuery.newLimitScanner(limit, row, txn, args);
+        }
+
+        @Override
+        public Updater<R> newUpdater(R row, Transaction txn, Object... args) throws IOException {
+            checkArgumentCount(args);
+            return mQuery.newUpdater(row, txn, args);
+        }
+
+        @Override
+        public Stream<R> newStream(Transaction txn, Object... args) {
+            return mQuery.newStream(txn, args);
+        }
+
+        @Override
+        public long deleteAll(Transaction txn, Object... args) throws IOException {
+            return mQuery.deleteAll(txn, args);
+        }
+
+        @Override
+        public boolean anyRows(Transaction txn, Object... args) throws IOException {
+            return mQuery.anyRows(txn, args);
+        }
+
+        @Override
+        public QueryPlan scannerPlan(Transaction txn, Object... args) throws IOException {
+            return mQuery.scannerPlan(txn, args);
+        }
+
+        @Override
+        public QueryPlan limitScannerPlan(long limit, Transaction txn, Object... args)
+            throws IOException
+        {
+            return mQuery.limitScannerPlan(limit, txn, args);
+        }
+
+        @Override
+        public QueryPlan updaterPlan(Transaction txn, Object... args) throws IOException {
+            return mQuery.updaterPlan(txn, args);
+        }
+
+        @Override
+        public QueryPlan streamPlan(Transaction txn, Object... args) throws IOException {
+            return mQuery.streamPlan(txn, args);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.math.BigInteger;
 
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Locale;
 import java.util.Map;
 
 import java.util.concurrent.ThreadLocalRandom;
@@ -308,6 +309,95 @@ public final class StandardFunctionFinder extends SoftCache<String, Object, Obje
         }
     }
 
+    /**
+     * Defines a function which converts a string argument to lowercase, using the rules of
+     * the root locale.
+     */
+    private static class lower extends StringCase {
+        lower(Type type) {
+            super(type);
+        }
+
+        @Override
+        protected lower make(Type type) {
+            return new lower(type);
+        }
+
+        @Override
+        protected String methodName() {
+            return "toLowerCase";
+        }
+    }
+
+    /**
+     * Defines a function which converts a string argument to uppercase, using the rules of
+     * the root locale.
+     */
+    private static class upper extends StringCase {
+        upper(Type type) {
+            super(type);
+        }
+
+        @Override
+        protected upper make(Type type) {
+            return new upper(type);
+        }
+
+        @Override
+        protected String methodName() {
+            return "toUpperCase";
+        }
+    }
+
+    private abstract static class StringCase extends FunctionApplier.Plain {
+        StringCase(Type type) {
+            super(type);
+        }
+
+        protected abstract StringCase make(Type type);
+
+        protected abstract String methodName();
+
+        @Override
+        public StringCase validate(List<Expr> args, Map<String, Expr> namedArgs,
+                                   Map<String, ProjExpr> projectionMap,
+                                   Consumer<String> reason)
+        {
+            if (!checkNumArgs(1, 1, args.size(), reason)) {
+                return null;
+            }
+
+            Type type = args.getFirst().type();
+
+            if (type == NullType.THE || type == AnyType.THE) {
+                type = BasicType.make(String.class, TYPE_UTF8 | TYPE_NULLABLE);
+                args.set(0, args.getFirst().asType(type));
+            } else if (type.plainTypeCode() != TYPE_UTF8 || type.isArray()) {
+                reason.accept("argument must be a string");
+                return null;
+            }
+
+            return make(type);
+        }
+
+        @Override
+        public void apply(FunctionContext context, Variable resultVar) {
+            MethodMaker mm = context.methodMaker();
+            var argVar = context.args().getFirst().eval(true);
+
+            Label done = mm.label();
+
+            if (type().isNullable()) {
+                resultVar.set(null);
+                argVar.ifEq(null, done);
+            }
+
+            resultVar.set(argVar.invoke(methodName(), mm.var(Locale.class).field("ROOT")));
+
+            done.here();
+        }
+    }
+
     /**
      * Defines an aggregated function which counts all rows in the group, or counts all
      * non-null results for one argument.
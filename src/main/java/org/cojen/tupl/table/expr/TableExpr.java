@@ -94,6 +94,13 @@ public final class TableExpr extends RelationExpr {
         mTable = table;
     }
 
+    /**
+     * Returns the table, or null if only the row type is known.
+     */
+    Table<?> table() {
+        return mTable;
+    }
+
     @Override
     public int maxArgument() {
         return 0;
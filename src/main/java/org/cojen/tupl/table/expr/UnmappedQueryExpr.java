@@ -120,6 +120,17 @@ final class UnmappedQueryExpr extends QueryExpr {
         return null;
     }
 
+    @Override
+    public QuerySpec tryLiteralQuerySpec(Class<?> rowType, List<Object> literals) {
+        if (mFrom.rowTypeClass() == rowType && mFrom instanceof TableExpr) {
+            if (mArgMap != null) {
+                literals.addAll(mArgMap.keySet());
+            }
+            return super.querySpec(false);
+        }
+        return null;
+    }
+
     private static final byte K_TYPE = KeyEncoder.allocType();
 
     @Override
@@ -24,6 +24,7 @@ import java.util.Set;
 
 import org.cojen.tupl.table.ColumnInfo;
 import org.cojen.tupl.table.OrderBy;
+import org.cojen.tupl.table.QuerySlice;
 
 /**
  * Describes a fully parsed query specification.
@@ -31,9 +32,12 @@ import org.cojen.tupl.table.OrderBy;
  * @param projection can be null if projection is all columns
  * @param orderBy can be null if none; all orderBy columns must also be in the projection
  * @param filter never null
+ * @param slice can be null if no limit or offset is specified
  * @see Parser#parseQuery
  */
-public record QuerySpec(Map<String, ColumnInfo> projection, OrderBy orderBy, RowFilter filter) {
+public record QuerySpec(Map<String, ColumnInfo> projection, OrderBy orderBy, RowFilter filter,
+                        QuerySlice slice)
+{
     public QuerySpec {
         if (orderBy != null && orderBy.isEmpty()) {
             orderBy = null;
@@ -41,8 +45,12 @@ public record QuerySpec(Map<String, ColumnInfo> projection, OrderBy orderBy, Row
         Objects.requireNonNull(filter);
     }
 
+    public QuerySpec(Map<String, ColumnInfo> projection, OrderBy orderBy, RowFilter filter) {
+        this(projection, orderBy, filter, null);
+    }
+
     public QuerySpec withProjection(Map<String, ColumnInfo> proj) {
-        return proj.equals(projection) ? this : new QuerySpec(proj, orderBy, filter);
+        return proj.equals(projection) ? this : new QuerySpec(proj, orderBy, filter, slice);
     }
 
     public QuerySpec withOrderBy(OrderBy ob) {
@@ -55,7 +63,7 @@ public record QuerySpec(Map<String, ColumnInfo> projection, OrderBy orderBy, Row
         }
 
         if (ob == null || projection == null || projection.keySet().containsAll(ob.keySet())) {
-            return new QuerySpec(projection, ob, filter);
+            return new QuerySpec(projection, ob, filter, slice);
         }
 
         // Expand the projection to include the additional orderBy columns.
@@ -67,11 +75,18 @@ public record QuerySpec(Map<String, ColumnInfo> projection, OrderBy orderBy, Row
             proj.putIfAbsent(column.name, column);
         }
 
-        return new QuerySpec(proj, ob, filter);
+        return new QuerySpec(proj, ob, filter, slice);
     }
 
     public QuerySpec withFilter(RowFilter rf) {
-        return rf.equals(filter) ? this : new QuerySpec(projection, orderBy, rf);
+        return rf.equals(filter) ? this : new QuerySpec(projection, orderBy, rf, slice);
+    }
+
+    /**
+     * @param s can be null to remove the limit and offset
+     */
+    public QuerySpec withSlice(QuerySlice s) {
+        return Objects.equals(slice, s) ? this : new QuerySpec(projection, orderBy, filter, s);
     }
 
     public QuerySpec reduce() {
@@ -89,7 +104,7 @@ public record QuerySpec(Map<String, ColumnInfo> projection, OrderBy orderBy, Row
      * Returns true if the effective query is "{*}".
      */
     public boolean isFullScan() {
-        return projection == null && orderBy == null && filter == TrueFilter.THE;
+        return projection == null && orderBy == null && filter == TrueFilter.THE && slice == null;
     }
 
     /**
@@ -123,9 +138,19 @@ public record QuerySpec(Map<String, ColumnInfo> projection, OrderBy orderBy, Row
         } else if (orderBy != null) {
             names = orderBy.keySet();
         } else if (filter != TrueFilter.THE) {
-            return filter.toString();
-        } else {
+            if (slice == null) {
+                return filter.toString();
+            }
+            var b = new StringBuilder();
+            filter.appendTo(b);
+            slice.appendTo(b.append(' '));
+            return b.toString();
+        } else if (slice == null) {
             return "{*}";
+        } else {
+            var b = new StringBuilder().append("{*} ");
+            slice.appendTo(b);
+            return b.toString();
         }
 
         var b = new StringBuilder().append('{');
@@ -153,6 +178,11 @@ public record QuerySpec(Map<String, ColumnInfo> projection, OrderBy orderBy, Row
             filter.appendTo(b);
         }
 
+        if (slice != null) {
+            b.append(' ');
+            slice.appendTo(b);
+        }
+
         return b.toString();
     }
 }
@@ -36,11 +36,16 @@ import org.cojen.tupl.Table;
 import org.cojen.tupl.Transaction;
 
 import org.cojen.tupl.table.BaseTable;
+import org.cojen.tupl.table.LimitQuery;
 import org.cojen.tupl.table.QueryLauncher;
+import org.cojen.tupl.table.QuerySlice;
 import org.cojen.tupl.table.RowInfo;
 import org.cojen.tupl.table.RowUtils;
 
 import org.cojen.tupl.table.expr.CompiledQuery;
+import org.cojen.tupl.table.expr.Parser;
+
+import org.cojen.tupl.table.filter.QuerySpec;
 
 /**
  * Base class for generated join tables.
@@ -219,6 +224,12 @@ public abstract class JoinTable<J> extends BaseTable<J> {
     protected final Object cacheNewValue(Type type, Object key, Object helper) throws IOException {
         if (type == TYPE_1) { // see the scannerQueryLauncher method
             var queryStr = (String) key;
+            QuerySpec query = Parser.parseQuerySpec(rowType(), queryStr);
+            QuerySlice slice = query.slice();
+            if (slice != null) {
+                String unsliced = query.withSlice(null).toString();
+                return LimitQuery.make(scannerQueryLauncher(unsliced), slice);
+            }
             return JoinQueryLauncherMaker.newInstance(JoinTable.this, queryStr);
         }
 
@@ -38,18 +38,24 @@ import static org.cojen.tupl.io.Utils.rethrow;
  * it just kept trying. This behavior holds true for downgrades as well. Another thread cannot
  * switch to contended mode until after the downgraded latch is fully released.
  *
+ * <p>A clutch also supports optimistic reads, which don't acquire the clutch at all. A version
+ * stamp is incremented whenever the clutch is acquired exclusively, and an optimistic read is
+ * {@linkplain #validate validated} by checking that the stamp didn't change and that no
+ * exclusive clutch is held. Data which is read optimistically might be inconsistent, and so
+ * it must not be acted upon until after it has been validated.
+ *
  * @author Brian S O'Neill
  */
 public abstract class Clutch extends Latch {
     // Inherited latch methods are used for non-contended mode, and for switching to it.
 
-    private static final VarHandle cContendedSlotHandle;
+    private static final VarHandle cContendedSlotHandle, cVersionHandle;
 
     static {
         try {
-            cContendedSlotHandle =
-                MethodHandles.lookup().findVarHandle
-                (Clutch.class, "mContendedSlot", int.class);
+            var lookup = MethodHandles.lookup();
+            cContendedSlotHandle = lookup.findVarHandle(Clutch.class, "mContendedSlot", int.class);
+            cVersionHandle = lookup.findVarHandle(Clutch.class, "mVersion", int.class);
         } catch (Throwable e) {
             throw rethrow(e);
         }
@@ -58,6 +64,9 @@ public abstract class Clutch extends Latch {
     // Is >=0 when in contended mode.
     private volatile int mContendedSlot = -1;
 
+    // Is incremented whenever the clutch is acquired exclusively.
+    private int mVersion;
+
     /**
      * Return a new Clutch instance, which might share a pack with other instances returned
      * from this method.
@@ -93,6 +102,39 @@ public abstract class Clutch extends Latch {
         return mContendedSlot >= 0;
     }
 
+    /**
+     * Returns a stamp for performing an optimistic read, or a negative value if an exclusive
+     * clutch is held.
+     */
+    public final int tryOptimisticRead() {
+        // Acquire semantics ensure that the optimistic data reads cannot be ordered before
+        // the version is read.
+        int version = (int) cVersionHandle.getAcquire(this);
+        return mLatchState < 0 ? -1 : (version & Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns true if no exclusive clutch has been acquired since the given stamp was
+     * obtained, and so all the data which was read optimistically is consistent.
+     *
+     * @param stamp value returned by tryOptimisticRead
+     */
+    public final boolean validate(int stamp) {
+        // Data reads must not be ordered after the checks.
+        VarHandle.acquireFence();
+        return mLatchState >= 0
+            && (((int) cVersionHandle.getOpaque(this)) & Integer.MAX_VALUE) == stamp;
+    }
+
+    /**
+     * Must be called after the exclusive clutch is acquired, and before anything is modified.
+     */
+    private void exclusiveAcquired() {
+        cVersionHandle.setOpaque(this, ((int) cVersionHandle.getOpaque(this)) + 1);
+        // Ensure that the new version is visible before any modifications are.
+        VarHandle.storeStoreFence();
+    }
+
     @Override
     public final boolean tryAcquireExclusive() {
         if (!super.tryAcquireExclusive()) {
@@ -106,6 +148,7 @@ public abstract class Clutch extends Latch {
             }
             mContendedSlot = -1;
         }
+        exclusiveAcquired();
         return true;
     }
 
@@ -135,6 +178,7 @@ public abstract class Clutch extends Latch {
             mContendedSlot = -1;
         }
 
+        exclusiveAcquired();
         return true;
     }
 
@@ -146,6 +190,7 @@ public abstract class Clutch extends Latch {
             getPack().unregisterExclusive(slot);
             mContendedSlot = -1;
         }
+        exclusiveAcquired();
     }
 
     @Override
@@ -156,6 +201,7 @@ public abstract class Clutch extends Latch {
             getPack().tryUnregisterExclusiveNanos(slot, this, -1);
             mContendedSlot = -1;
         }
+        exclusiveAcquired();
     }
 
     @Override
@@ -166,6 +212,7 @@ public abstract class Clutch extends Latch {
                 getPack().unregisterExclusive(slot);
                 mContendedSlot = -1;
             }
+            exclusiveAcquired();
             cont.run();
         });
     }
@@ -390,7 +437,11 @@ public abstract class Clutch extends Latch {
     public final boolean tryUpgrade() {
         // With shared clutch held, another thread cannot switch to contended mode. Hence, no
         // double check is required here.
-        return ((int) cContendedSlotHandle.get(this)) < 0 && super.tryUpgrade();
+        if (((int) cContendedSlotHandle.get(this)) < 0 && super.tryUpgrade()) {
+            exclusiveAcquired();
+            return true;
+        }
+        return false;
     }
 
     @Override
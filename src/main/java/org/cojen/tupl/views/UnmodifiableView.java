@@ -35,6 +35,7 @@ import org.cojen.tupl.UnmodifiableViewException;
 import org.cojen.tupl.View;
 import org.cojen.tupl.ViewConstraintException;
 
+import org.cojen.tupl.diag.CompactionObserver;
 import org.cojen.tupl.diag.IndexStats;
 import org.cojen.tupl.diag.VerificationObserver;
 
@@ -342,6 +343,11 @@ public final class UnmodifiableView implements Index {
         return ix.verify(obs, numThreads);
     }
 
+    @Override
+    public boolean defragment(CompactionObserver observer) throws IOException {
+        throw new UnmodifiableViewException();
+    }
+
     @Override
     public void close() throws IOException {
         throw new UnmodifiableViewException();
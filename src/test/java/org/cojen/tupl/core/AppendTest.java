@@ -0,0 +1,139 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import org.cojen.tupl.diag.VerificationObserver;
+
+import static org.cojen.tupl.TestUtils.*;
+
+/**
+ *
+ *
+ * @author Brian S O'Neill
+ */
+public class AppendTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(AppendTest.class.getName());
+    }
+
+    @Before
+    public void setup() throws Exception {
+        mDb = newTempDatabase(getClass(), new DatabaseConfig()
+                              .pageSize(512)
+                              .durabilityMode(DurabilityMode.NO_FLUSH));
+    }
+
+    @After
+    public void teardown() throws Exception {
+        deleteTempDatabases(getClass());
+        mDb = null;
+    }
+
+    private Database mDb;
+
+    @Test
+    public void ascending() throws Exception {
+        Index ix = mDb.openIndex("test");
+
+        final int count = 100_000;
+        for (int i=0; i<count; i++) {
+            ix.store(null, key(i), ("value-" + i).getBytes());
+        }
+
+        for (int i=0; i<count; i++) {
+            fastAssertArrayEquals(("value-" + i).getBytes(), ix.load(null, key(i)));
+        }
+
+        assertEquals(count, ix.count(null, null));
+
+        var observer = new FillObserver();
+        assertTrue(ix.verify(observer, 1));
+
+        // Only the rightmost node of each level should be partially filled.
+        assertTrue(observer.mInternalCount > 10);
+        assertTrue(observer.mInternalFree / observer.mInternalCount < 512 / 8);
+        assertTrue(observer.mLeafFree / observer.mLeafCount < 512 / 8);
+    }
+
+    @Test
+    public void mixed() throws Exception {
+        // Interleave appends with random stores, which switch the append hint on and off.
+
+        Index ix = mDb.openIndex("test");
+        var rnd = new Random(8675309);
+
+        final int count = 50_000;
+        for (int i=0; i<count; i++) {
+            ix.store(null, key(i * 2), key(i));
+            if ((i & 7) == 0) {
+                int k = rnd.nextInt(i + 1) * 2 + 1;
+                ix.store(null, key(k), key(k));
+            }
+        }
+
+        for (int i=0; i<count; i++) {
+            fastAssertArrayEquals(key(i), ix.load(null, key(i * 2)));
+        }
+
+        assertTrue(ix.verify(null, 1));
+
+        // Insert in descending order too, which shouldn't be confused with appends.
+        Index ix2 = mDb.openIndex("test2");
+        for (int i=count; --i>=0; ) {
+            ix2.store(null, key(i), key(i));
+        }
+        for (int i=0; i<count; i++) {
+            fastAssertArrayEquals(key(i), ix2.load(null, key(i)));
+        }
+        assertEquals(count, ix2.count(null, null));
+        assertTrue(ix2.verify(null, 1));
+    }
+
+    private static byte[] key(int i) {
+        var key = new byte[8];
+        Utils.encodeIntBE(key, 0, 0x12345678);
+        Utils.encodeIntBE(key, 4, i);
+        return key;
+    }
+
+    static class FillObserver extends VerificationObserver {
+        long mInternalCount, mInternalFree;
+        long mLeafCount, mLeafFree;
+
+        @Override
+        public boolean indexNodePassed(long id, int level,
+                                       int entryCount, int freeBytes, int largeValueCount)
+        {
+            if (level < height) {
+                mInternalCount++;
+                mInternalFree += freeBytes;
+            } else {
+                mLeafCount++;
+                mLeafFree += freeBytes;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import org.cojen.tupl.io.PageCompressor;
+
+import static org.cojen.tupl.TestUtils.*;
+
+/**
+ *
+ *
+ * @author Brian S O'Neill
+ */
+public class CompressedCacheTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(CompressedCacheTest.class.getName());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        deleteTempDatabases(getClass());
+    }
+
+    private static DatabaseConfig newConfig(long compressedCacheSize) {
+        return new DatabaseConfig()
+            .cacheSize(1_000_000L)
+            .durabilityMode(DurabilityMode.NO_FLUSH)
+            .checkpointRate(-1, null)
+            .compressedCacheSize(compressedCacheSize, PageCompressor.lz4());
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        Database db = newTempDatabase(getClass(), newConfig(0));
+        Index ix = db.openIndex("test");
+        fill(ix, 20_000);
+        db.checkpoint();
+        scan(ix, 20_000);
+
+        PageDb.Stats stats = ((LocalDatabase) db).mPageDb.stats();
+        assertEquals(0, stats.compressedCachePages);
+        assertEquals(0, stats.compressedCacheHits);
+        assertEquals(0, stats.compressedCacheMisses);
+    }
+
+    @Test
+    public void illegal() throws Exception {
+        try {
+            newConfig(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        try {
+            new DatabaseConfig().compressedCacheSize(1_000_000, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void hits() throws Exception {
+        Database db = newTempDatabase(getClass(), newConfig(50_000_000L));
+        Index ix = db.openIndex("test");
+
+        final int count = 100_000;
+        fill(ix, count);
+
+        // Checkpoint to make all of the nodes clean, which is required for them to be
+        // moved into the secondary cache.
+        db.checkpoint();
+
+        scan(ix, count);
+
+        PageDb pageDb = ((LocalDatabase) db).mPageDb;
+        PageDb.Stats stats1 = pageDb.stats();
+        assertTrue(stats1.toString(), stats1.compressedCachePages > 0);
+
+        scan(ix, count);
+
+        PageDb.Stats stats2 = pageDb.stats();
+        long hits = stats2.compressedCacheHits - stats1.compressedCacheHits;
+        long misses = stats2.compressedCacheMisses - stats1.compressedCacheMisses;
+
+        // All of the pages should fit in the secondary cache, and so nearly every read is
+        // served by it.
+        assertTrue(stats2.toString(), hits > 0);
+        assertTrue(stats2.toString(), misses < hits / 10);
+
+        // Closing frees the cache.
+        db.close();
+
+        try {
+            ix.load(null, key(0));
+            fail();
+        } catch (ClosedIndexException e) {
+        }
+    }
+
+    @Test
+    public void mixed() throws Exception {
+        // Use a small secondary cache, to exercise eviction from it.
+        Database db = newTempDatabase(getClass(), newConfig(2_000_000L));
+        Index ix = db.openIndex("test");
+
+        var expect = new TreeMap<Integer, byte[]>();
+        var rnd = new Random(2095273);
+
+        for (int round=0; round<20; round++) {
+            for (int i=0; i<5000; i++) {
+                int k = rnd.nextInt(30_000);
+                if (rnd.nextInt(4) == 0) {
+                    ix.store(null, key(k), null);
+                    expect.remove(k);
+                } else {
+                    byte[] value = value(k + round);
+                    ix.store(null, key(k), value);
+                    expect.put(k, value);
+                }
+            }
+
+            if ((round & 1) == 0) {
+                db.checkpoint();
+            }
+
+            for (int i=0; i<2000; i++) {
+                int k = rnd.nextInt(30_000);
+                fastAssertArrayEquals(expect.get(k), ix.load(null, key(k)));
+            }
+        }
+
+        assertEquals(expect.size(), ix.count(null, null));
+
+        try (Cursor c = ix.newCursor(null)) {
+            c.first();
+            for (var e : expect.entrySet()) {
+                fastAssertArrayEquals(key(e.getKey()), c.key());
+                fastAssertArrayEquals(e.getValue(), c.value());
+                c.next();
+            }
+            assertNull(c.key());
+        }
+
+        PageDb.Stats stats = ((LocalDatabase) db).mPageDb.stats();
+        assertTrue(stats.toString(), stats.compressedCacheHits > 0);
+
+        assertTrue(db.verify(null, 1));
+    }
+
+    private static void fill(Index ix, int count) throws Exception {
+        for (int i=0; i<count; i++) {
+            ix.store(null, key(i), value(i));
+        }
+    }
+
+    private static void scan(Index ix, int count) throws Exception {
+        try (Cursor c = ix.newCursor(null)) {
+            int i = 0;
+            for (c.first(); c.key() != null; c.next()) {
+                fastAssertArrayEquals(key(i), c.key());
+                fastAssertArrayEquals(value(i), c.value());
+                i++;
+            }
+            assertEquals(count, i);
+        }
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key-%08d", i).getBytes();
+    }
+
+    private static byte[] value(int i) {
+        return ("value-" + i + "-" + "abcdefghij".repeat(3)).getBytes();
+    }
+}
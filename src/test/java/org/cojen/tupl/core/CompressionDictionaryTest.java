@@ -0,0 +1,257 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import org.cojen.tupl.io.PageCompressor;
+
+import static org.cojen.tupl.TestUtils.*;
+
+/**
+ *
+ *
+ * @author Brian S O'Neill
+ */
+public class CompressionDictionaryTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(CompressionDictionaryTest.class.getName());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        deleteTempDatabases(getClass());
+    }
+
+    @Test
+    public void train() throws Exception {
+        final int pageSize = 4096;
+        final int sampleCount = 100;
+
+        var rnd = new Random(8675309);
+
+        var samples = new byte[pageSize * sampleCount];
+        var sampleSizes = new int[sampleCount];
+        for (int i=0; i<sampleCount; i++) {
+            System.arraycopy(fillPage(rnd, pageSize), 0, samples, i * pageSize, pageSize);
+            sampleSizes[i] = pageSize;
+        }
+
+        PageCompressor compressor = PageCompressor.zlib().get();
+
+        byte[] dictionary = compressor.trainDictionary(samples, sampleSizes, 16384);
+        assertNotNull(dictionary);
+        assertTrue(dictionary.length > 0 && dictionary.length <= 16384);
+
+        long id = compressor.dictionaryId(dictionary);
+
+        try (Arena a = Arena.ofConfined()) {
+            MemorySegment page = a.allocate(pageSize);
+            MemorySegment.copy(fillPage(rnd, pageSize), 0, page, ValueLayout.JAVA_BYTE, 0,
+                               pageSize);
+
+            int plainLen = compressor.compress(page.address(), 0, pageSize);
+
+            compressor.dictionaries(new PageCompressor.Dictionaries() {
+                @Override
+                public byte[] current() {
+                    return dictionary;
+                }
+
+                @Override
+                public byte[] find(long findId) {
+                    return findId == id ? dictionary : null;
+                }
+            });
+
+            int dictLen = compressor.compress(page.address(), 0, pageSize);
+            assertTrue(plainLen + " <= " + dictLen, dictLen < plainLen * 0.8);
+
+            byte[] compressed = Arrays.copyOf(compressor.compressedBytes(), dictLen);
+
+            // Decompress using a different instance, which must find the dictionary.
+            PageCompressor decompressor = PageCompressor.zlib().get();
+            MemorySegment copy = a.allocate(pageSize);
+
+            try {
+                decompressor.decompress(compressed, 0, dictLen, copy.address(), 0, pageSize);
+                fail();
+            } catch (Exception e) {
+                // No dictionaries provided.
+            }
+
+            decompressor.dictionaries(new PageCompressor.Dictionaries() {
+                @Override
+                public byte[] current() {
+                    return null;
+                }
+
+                @Override
+                public byte[] find(long findId) {
+                    return findId == id ? dictionary : null;
+                }
+            });
+
+            decompressor.decompress(compressed, 0, dictLen, copy.address(), 0, pageSize);
+            assertEquals(-1, page.mismatch(copy));
+
+            decompressor.close();
+        }
+
+        compressor.close();
+    }
+
+    @Test
+    public void unsupported() throws Exception {
+        PageCompressor compressor = PageCompressor.lz4().get();
+        assertNull(compressor.trainDictionary(new byte[100], new int[] {100}, 100));
+        try {
+            compressor.dictionaryId(new byte[10]);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        compressor.close();
+    }
+
+    @Test
+    public void database() throws Exception {
+        database(PageCompressor.zlib(), true);
+    }
+
+    @Test
+    public void databaseUnsupported() throws Exception {
+        database(PageCompressor.lz4(), false);
+    }
+
+    private void database(Supplier<? extends PageCompressor> factory, boolean supported)
+        throws Exception
+    {
+        DatabaseConfig config = new DatabaseConfig()
+            .cacheSize(1_000_000L)
+            .durabilityMode(DurabilityMode.NO_FLUSH)
+            .compressPages(4096, 1_000_000L, factory)
+            .compressionDictionarySize(4096);
+
+        Database db = newTempDatabase(getClass(), config);
+
+        final int count = 50_000;
+
+        Index ix = db.openIndex("test");
+        fill(ix, 0, count);
+        db.checkpoint();
+
+        // Training is asynchronous, so wait for it to finish.
+        var pageDb = (StoredPageDb) ((LocalDatabase) db).mPageDb;
+        if (supported) {
+            for (int i=0; pageDb.currentDictionary() == null; i++) {
+                assertTrue("No dictionary was trained", i < 1000);
+                Thread.sleep(10);
+            }
+        } else {
+            assertNull(pageDb.currentDictionary());
+        }
+
+        fill(ix, count, count * 2);
+        db.checkpoint();
+
+        db = reopenTempDatabase(getClass(), db, config);
+        ix = db.openIndex("test");
+        verify(ix, 0, count * 2);
+
+        // The trained dictionary was persisted and is loaded again when reopened.
+        pageDb = (StoredPageDb) ((LocalDatabase) db).mPageDb;
+        assertEquals(supported, pageDb.currentDictionary() != null);
+
+        fill(ix, count * 2, count * 3);
+        db.checkpoint();
+
+        // Dictionaries are still required when training is disabled.
+        config.compressionDictionarySize(0);
+        db = reopenTempDatabase(getClass(), db, config);
+        ix = db.openIndex("test");
+        verify(ix, 0, count * 3);
+
+        assertTrue(db.verify(null, 1));
+
+        try {
+            config.compressionDictionarySize(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private static void fill(Index ix, int start, int end) throws Exception {
+        for (int i=start; i<end; i++) {
+            ix.store(null, key(i), value(i));
+        }
+    }
+
+    private static void verify(Index ix, int start, int end) throws Exception {
+        assertEquals(end - start, ix.count(key(start), key(end)));
+        for (int i=start; i<end; i++) {
+            fastAssertArrayEquals(value(i), ix.load(null, key(i)));
+        }
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key-%08d", i).getBytes();
+    }
+
+    private static byte[] value(int i) {
+        return ("{\"id\": " + i + ", \"name\": \"customer-" + (i * 31 % 1000) +
+                "\", \"status\": \"" + (i % 3 == 0 ? "active" : "inactive") + "\"}").getBytes();
+    }
+
+    /**
+     * Fills a page with records which have a common structure but differing content, such
+     * that each page is somewhat compressible by itself, but more so with a dictionary.
+     */
+    private static byte[] fillPage(Random rnd, int pageSize) {
+        var page = new byte[pageSize];
+        int pos = 0;
+        while (true) {
+            int i = rnd.nextInt(1_000_000);
+            byte[] record = ("{\"identifier\": " + i + ", \"description\": \"" +
+                             WORDS[rnd.nextInt(WORDS.length)] + ' ' +
+                             WORDS[rnd.nextInt(WORDS.length)] + "\", \"category\": \"" +
+                             WORDS[rnd.nextInt(WORDS.length)] + "\"}").getBytes();
+            if (pos + record.length > pageSize) {
+                return page;
+            }
+            System.arraycopy(record, 0, page, pos, record.length);
+            pos += record.length;
+        }
+    }
+
+    private static final String[] WORDS = {
+        "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india",
+        "juliett", "kilo", "lima", "mike", "november", "oscar", "papa", "quebec", "romeo",
+        "sierra", "tango", "uniform", "victor", "whiskey", "xray", "yankee", "zulu",
+    };
+}
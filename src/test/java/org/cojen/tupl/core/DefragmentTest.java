@@ -0,0 +1,292 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import org.cojen.tupl.diag.CompactionObserver;
+import org.cojen.tupl.diag.VerificationObserver;
+
+import static org.cojen.tupl.TestUtils.*;
+
+/**
+ *
+ *
+ * @author Brian S O'Neill
+ */
+public class DefragmentTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(DefragmentTest.class.getName());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        deleteTempDatabases(getClass());
+    }
+
+    private static DatabaseConfig newConfig() {
+        return new DatabaseConfig()
+            .durabilityMode(DurabilityMode.NO_SYNC)
+            .checkpointRate(-1, null);
+    }
+
+    @Test
+    public void empty() throws Exception {
+        Database db = newTempDatabase(getClass(), newConfig());
+        Index ix = db.openIndex("test");
+        assertTrue(ix.defragment(null));
+        assertTrue(ix.verify(null, 1));
+
+        ix.store(null, "hello".getBytes(), "world".getBytes());
+        assertTrue(ix.defragment(null));
+        assertTrue(ix.verify(null, 1));
+        fastAssertArrayEquals("world".getBytes(), ix.load(null, "hello".getBytes()));
+    }
+
+    @Test
+    public void pack() throws Exception {
+        Database db = newTempDatabase(getClass(), newConfig());
+        Index ix = db.openIndex("test");
+
+        final int count = 100_000;
+        fill(ix, count);
+
+        // Delete some entries, but not enough to cause nodes to merge.
+        for (int i=0; i<count; i++) {
+            if (i % 5 < 2) {
+                ix.delete(Transaction.BOGUS, key(i));
+            }
+        }
+
+        List<Long> before = leafIds(ix);
+
+        var observer = new CompactionObserver() {
+            int begin, complete, visited;
+
+            @Override
+            public boolean indexBegin(Index index) {
+                begin++;
+                return true;
+            }
+
+            @Override
+            public boolean indexComplete(Index index) {
+                complete++;
+                return true;
+            }
+
+            @Override
+            public boolean indexNodeVisited(long id) {
+                visited++;
+                return true;
+            }
+        };
+
+        assertTrue(ix.defragment(observer));
+
+        assertEquals(1, observer.begin);
+        assertEquals(1, observer.complete);
+        assertTrue(observer.visited > 0);
+
+        List<Long> after = leafIds(ix);
+
+        assertTrue(before.size() + " -> " + after.size(), after.size() < before.size() * 0.75);
+
+        assertTrue(ix.verify(null, 1));
+        assertEquals(count * 3 / 5, ix.count(null, null));
+
+        for (int i=0; i<count; i++) {
+            byte[] value = ix.load(null, key(i));
+            if (i % 5 < 2) {
+                assertNull(value);
+            } else {
+                fastAssertArrayEquals(key(i), value);
+            }
+        }
+
+        // Nothing changes when run again.
+        assertTrue(ix.defragment(null));
+        assertEquals(after.size(), leafIds(ix).size());
+
+        db = reopenTempDatabase(getClass(), db, newConfig());
+        ix = db.openIndex("test");
+        assertTrue(ix.verify(null, 1));
+        assertEquals(count * 3 / 5, ix.count(null, null));
+    }
+
+    @Test
+    public void ordered() throws Exception {
+        Database db = newTempDatabase(getClass(), newConfig().pageExtentSize(64));
+        Index ix = db.openIndex("test");
+
+        // Insert in random order, causing splits to allocate pages in random order too.
+        final int count = 100_000;
+        var rnd = ThreadLocalRandom.current();
+        for (int i=0; i<count; i++) {
+            int k = rnd.nextInt(count);
+            ix.store(Transaction.BOGUS, key(k), key(k));
+        }
+
+        db.checkpoint();
+
+        assertTrue(adjacentRatio(leafIds(ix)) < 0.5);
+
+        assertTrue(ix.defragment(null));
+
+        assertTrue(adjacentRatio(leafIds(ix)) > 0.8);
+        assertTrue(ix.verify(null, 1));
+    }
+
+    @Test
+    public void abort() throws Exception {
+        Database db = newTempDatabase(getClass(), newConfig());
+        Index ix = db.openIndex("test");
+        fill(ix, 10_000);
+
+        var observer = new CompactionObserver() {
+            int visited;
+
+            @Override
+            public boolean indexNodeVisited(long id) {
+                return ++visited < 10;
+            }
+        };
+
+        assertFalse(ix.defragment(observer));
+        assertEquals(10, observer.visited);
+        assertTrue(ix.verify(null, 1));
+        assertEquals(10_000, ix.count(null, null));
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        Database db = newTempDatabase(getClass(), newConfig());
+        Index ix = db.openIndex("test");
+
+        final int count = 100_000;
+        fill(ix, count);
+
+        for (int i=0; i<count; i+=2) {
+            ix.delete(Transaction.BOGUS, key(i));
+        }
+
+        var stop = new AtomicBoolean();
+
+        var threads = new Thread[4];
+        for (int t=0; t<threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    var rnd = ThreadLocalRandom.current();
+                    while (!stop.get()) {
+                        // Only modify the even keys.
+                        byte[] key = key(rnd.nextInt(count) & ~1);
+                        if (rnd.nextBoolean()) {
+                            ix.store(null, key, key);
+                        } else {
+                            ix.delete(null, key);
+                        }
+                        // Odd keys must always exist.
+                        byte[] odd = key(rnd.nextInt(count) | 1);
+                        fastAssertArrayEquals(odd, ix.load(null, odd));
+                    }
+                } catch (Exception e) {
+                    throw Utils.rethrow(e);
+                }
+            });
+            threads[t].start();
+        }
+
+        for (int i=0; i<3; i++) {
+            assertTrue(ix.defragment(null));
+        }
+
+        stop.set(true);
+
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertTrue(ix.verify(null, 1));
+
+        try (Cursor c = ix.newCursor(null)) {
+            int expect = 1;
+            for (c.first(); c.key() != null; c.next()) {
+                int k = Integer.parseInt(new String(c.key()).substring(4));
+                if ((k & 1) != 0) {
+                    assertEquals(expect, k);
+                    expect += 2;
+                }
+            }
+            assertEquals(count + 1, expect);
+        }
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key-%08d", i).getBytes();
+    }
+
+    private static void fill(Index ix, int count) throws Exception {
+        for (int i=0; i<count; i++) {
+            byte[] key = key(i);
+            ix.store(Transaction.BOGUS, key, key);
+        }
+    }
+
+    /**
+     * Returns the ids of all the leaf nodes, in key order.
+     */
+    private static List<Long> leafIds(Index ix) throws Exception {
+        var ids = new ArrayList<Long>();
+
+        var observer = new VerificationObserver() {
+            @Override
+            public boolean indexNodePassed(long id, int level,
+                                           int entryCount, int freeBytes, int largeValueCount)
+            {
+                if (level == height) {
+                    ids.add(id);
+                }
+                return true;
+            }
+        };
+
+        assertTrue(ix.verify(observer, 1));
+
+        return ids;
+    }
+
+    private static double adjacentRatio(List<Long> ids) {
+        int adjacent = 0;
+        for (int i=1; i<ids.size(); i++) {
+            if (ids.get(i) == ids.get(i - 1) + 1) {
+                adjacent++;
+            }
+        }
+        return ((double) adjacent) / (ids.size() - 1);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+import java.util.EnumSet;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import org.cojen.tupl.diag.DatabaseStats;
+
+import org.cojen.tupl.io.MappedPageArray;
+import org.cojen.tupl.io.OpenOption;
+
+import static org.cojen.tupl.TestUtils.*;
+
+/**
+ *
+ *
+ * @author Brian S O'Neill
+ */
+public class HugePagesTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(HugePagesTest.class.getName());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        deleteTempDatabases(getClass());
+    }
+
+    private static boolean isLinux() {
+        return System.getProperty("os.name").startsWith("Linux");
+    }
+
+    @Test
+    public void anonymous() throws Exception {
+        // Not a multiple of the huge page size.
+        final int pageSize = 4096;
+        final long pageCount = 1000;
+
+        for (int i=0; i<2; i++) {
+            EnumSet<OpenOption> options = i == 0 ? null : EnumSet.of(OpenOption.HUGE_PAGES);
+            MappedPageArray pa = MappedPageArray.factory
+                (pageSize, pageCount, null, options).get();
+
+            if (i == 0 || !isLinux()) {
+                assertEquals(0, pa.hugePageBytes());
+            }
+
+            // Touch the last page, which must be accessible.
+            long addr = pa.directPageAddress(pageCount - 1);
+            MemorySegment page = MemorySegment.ofAddress(addr).reinterpret(pageSize);
+            page.set(ValueLayout.JAVA_BYTE, pageSize - 1, (byte) 2);
+            assertEquals(2, page.get(ValueLayout.JAVA_BYTE, pageSize - 1));
+
+            pa.close();
+        }
+    }
+
+    @Test
+    public void database() throws Exception {
+        for (int i=0; i<2; i++) {
+            boolean huge = i != 0;
+
+            Database db = newTempDatabase(getClass(), new DatabaseConfig()
+                                          .cacheSize(10_000_000L)
+                                          .durabilityMode(DurabilityMode.NO_FLUSH)
+                                          .hugePages(huge));
+
+            DatabaseStats stats = db.stats();
+            if (!huge || !isLinux()) {
+                assertEquals(0, stats.cacheHugePages);
+            } else {
+                // Transparent huge pages might only back some of the cache.
+                assertTrue(stats.toString(), stats.cacheHugePages >= 0
+                           && stats.cacheHugePages <= stats.cachePages);
+            }
+
+            Index ix = db.openIndex("test");
+            for (int k=0; k<100_000; k++) {
+                ix.store(null, ("key-" + k).getBytes(), ("value-" + k).getBytes());
+            }
+            for (int k=0; k<100_000; k++) {
+                byte[] value = ix.load(null, ("key-" + k).getBytes());
+                fastAssertArrayEquals(("value-" + k).getBytes(), value);
+            }
+
+            assertTrue(db.verify(null, 1));
+
+            deleteTempDatabase(getClass(), db);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import static org.cojen.tupl.TestUtils.*;
+
+import static org.cojen.tupl.core.PageOps.*;
+
+/**
+ *
+ *
+ * @author Brian S O'Neill
+ */
+public class NumaTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(NumaTest.class.getName());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        deleteTempDatabases(getClass());
+    }
+
+    @Test
+    public void parseList() {
+        assertArrayEquals(new int[0], Numa.parseList(""));
+        assertArrayEquals(new int[] {0}, Numa.parseList("0\n"));
+        assertArrayEquals(new int[] {0, 1, 2, 3}, Numa.parseList("0-3"));
+        assertArrayEquals(new int[] {0, 1, 4, 8, 9, 10}, Numa.parseList("0-1,4,8-10"));
+
+        int[] many = Numa.parseList("0-99");
+        assertEquals(100, many.length);
+        assertEquals(99, many[99]);
+    }
+
+    @Test
+    public void topology() {
+        Numa numa = Numa.topology();
+        if (numa != null) {
+            assertTrue(numa.nodeCount() >= 2);
+            int node = numa.currentNode();
+            assertTrue(node >= 0 && node < numa.nodeCount());
+        }
+    }
+
+    @Test
+    public void arena() throws Exception {
+        // Fake topology with two logical nodes, both of which map to actual node 0.
+        var numa = new Numa(new int[] {0, 0}, new int[] {0, 1});
+
+        for (int node = 0; node < 2; node++) {
+            Object arena = p_arenaAlloc(4096, 100, false, numa, node, null);
+            if (arena == null) {
+                // Not supported.
+                return;
+            }
+            p_arenaDelete(arena);
+        }
+    }
+
+    @Test
+    public void database() throws Exception {
+        Database db = newTempDatabase(getClass(), new DatabaseConfig()
+                                      .cacheSize(10_000_000L)
+                                      .durabilityMode(DurabilityMode.NO_FLUSH)
+                                      .numaAware(true));
+
+        Index ix = db.openIndex("test");
+        for (int i=0; i<100_000; i++) {
+            ix.store(null, ("key-" + i).getBytes(), ("value-" + i).getBytes());
+        }
+        for (int i=0; i<100_000; i++) {
+            byte[] value = ix.load(null, ("key-" + i).getBytes());
+            fastAssertArrayEquals(("value-" + i).getBytes(), value);
+        }
+
+        assertTrue(db.verify(null, 1));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import static org.cojen.tupl.TestUtils.*;
+
+/**
+ *
+ *
+ * @author Brian S O'Neill
+ */
+public class OptimisticSearchTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(OptimisticSearchTest.class.getName());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        deleteTempDatabases(getClass());
+    }
+
+    @Test
+    public void concurrentChanges() throws Exception {
+        // Use a small cache, to force nodes to be evicted and reused while being searched.
+        Database db = newTempDatabase(getClass(), new DatabaseConfig()
+                                      .cacheSize(2_000_000L)
+                                      .durabilityMode(DurabilityMode.NO_FLUSH));
+
+        Index ix = db.openIndex("test");
+
+        // Even keys are stable, and odd keys are inserted and deleted by the writers, causing
+        // nodes to split and merge.
+        final int count = 100_000;
+        for (int i=0; i<count; i+=2) {
+            ix.store(null, key(i), value(i));
+        }
+
+        var failure = new AtomicReference<Throwable>();
+        var threads = new Thread[8];
+
+        for (int t=0; t<threads.length; t++) {
+            boolean writer = (t & 1) == 0;
+            threads[t] = new Thread(() -> {
+                try {
+                    var rnd = ThreadLocalRandom.current();
+                    for (int n=0; n<200_000 && failure.get() == null; n++) {
+                        int i = rnd.nextInt(count);
+                        if (writer) {
+                            i |= 1;
+                            ix.store(null, key(i), rnd.nextBoolean() ? value(i) : null);
+                        } else {
+                            byte[] value = ix.load(null, key(i));
+                            if ((i & 1) == 0) {
+                                fastAssertArrayEquals(value(i), value);
+                                assertTrue(ix.exists(null, key(i)));
+                            } else if (value != null) {
+                                fastAssertArrayEquals(value(i), value);
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+
+        for (Thread t : threads) {
+            t.start();
+        }
+
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        assertTrue(db.verify(null, 1));
+    }
+
+    @Test
+    public void closeWhileSearching() throws Exception {
+        Database db = newTempDatabase(getClass(), new DatabaseConfig()
+                                      .cacheSize(10_000_000L)
+                                      .durabilityMode(DurabilityMode.NO_FLUSH));
+
+        Index ix = db.openIndex("test");
+
+        final int count = 100_000;
+        for (int i=0; i<count; i++) {
+            ix.store(null, key(i), value(i));
+        }
+
+        var failure = new AtomicReference<Throwable>();
+        var threads = new Thread[4];
+
+        for (int t=0; t<threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    var rnd = ThreadLocalRandom.current();
+                    while (true) {
+                        int i = rnd.nextInt(count);
+                        fastAssertArrayEquals(value(i), ix.load(null, key(i)));
+                    }
+                } catch (DatabaseException e) {
+                    // Expected.
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+
+        for (Thread t : threads) {
+            t.start();
+        }
+
+        Thread.sleep(500);
+
+        db.close();
+
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private static byte[] key(int i) {
+        return String.format("key-%08d", i).getBytes();
+    }
+
+    private static byte[] value(int i) {
+        return ("value-" + i).getBytes();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import org.cojen.tupl.diag.DatabaseStats;
+import org.cojen.tupl.diag.VerificationObserver;
+
+import static org.cojen.tupl.TestUtils.*;
+
+/**
+ *
+ *
+ * @author Brian S O'Neill
+ */
+public class PageExtentTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(PageExtentTest.class.getName());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        deleteTempDatabases(getClass());
+    }
+
+    private static DatabaseConfig newConfig(int extentSize) {
+        return new DatabaseConfig()
+            .durabilityMode(DurabilityMode.NO_SYNC)
+            .checkpointRate(-1, null)
+            .pageExtentSize(extentSize);
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        // Interleaved inserts into two indexes don't produce adjacent leaf nodes.
+        assertTrue(adjacentRatio(0) < 0.5);
+    }
+
+    @Test
+    public void enabled() throws Exception {
+        assertTrue(adjacentRatio(64) > 0.8);
+    }
+
+    @Test
+    public void illegal() throws Exception {
+        try {
+            new DatabaseConfig().pageExtentSize(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        DatabaseConfig config = newConfig(64);
+        Database db = newTempDatabase(getClass(), config);
+
+        Index ix0 = db.openIndex("test-0");
+        Index ix1 = db.openIndex("test-1");
+
+        // Populate the free lists, and then allocate from them.
+        fill(ix0, ix1, 20_000);
+        truncate(ix0);
+        truncate(ix1);
+        db.checkpoint();
+
+        DatabaseStats stats1 = db.stats();
+
+        fill(ix0, ix1, 20_000);
+        db.checkpoint();
+
+        // File shouldn't have grown much, since free pages were reused.
+        DatabaseStats stats2 = db.stats();
+        assertTrue(stats2.toString(), stats2.totalPages < stats1.totalPages * 1.1);
+
+        assertTrue(db.verify(null, 1));
+
+        truncate(ix0);
+        truncate(ix1);
+        db.checkpoint();
+
+        fill(ix0, ix1, 100);
+
+        // Reopen while some pages are reserved by the extents, and verify that no pages were
+        // leaked. The unlogged stores are lost.
+        db = reopenTempDatabase(getClass(), db, config);
+
+        assertEquals(0, db.openIndex("test-0").count(null, null));
+        assertEquals(0, db.openIndex("test-1").count(null, null));
+
+        DatabaseStats dstats = db.stats();
+        long usedPages = dstats.totalPages - dstats.freePages;
+        assertTrue(dstats.toString(), usedPages < 100);
+
+        assertTrue(db.verify(null, 1));
+    }
+
+    @Test
+    public void slowGrowth() throws Exception {
+        Database db = newTempDatabase(getClass(), newConfig(256));
+
+        // Many small indexes shouldn't each reserve a full extent of new pages.
+        for (int i=0; i<200; i++) {
+            Index ix = db.openIndex("test-" + i);
+            for (int j=0; j<200; j++) {
+                ix.store(Transaction.BOGUS, String.format("key-%08d", j).getBytes(),
+                         new byte[100]);
+            }
+        }
+
+        db.checkpoint();
+
+        DatabaseStats stats = db.stats();
+        assertTrue(stats.toString(), stats.totalPages < 200 * 20);
+
+        assertTrue(db.verify(null, 1));
+    }
+
+    /**
+     * Returns the ratio of leaf nodes in the first index which immediately follow the
+     * previous leaf node, in key order.
+     */
+    private double adjacentRatio(int extentSize) throws Exception {
+        Database db = newTempDatabase(getClass(), newConfig(extentSize));
+
+        Index ix0 = db.openIndex("test-0");
+        Index ix1 = db.openIndex("test-1");
+
+        fill(ix0, ix1, 50_000);
+        db.checkpoint();
+
+        var ids = new ArrayList<Long>();
+
+        var observer = new VerificationObserver() {
+            @Override
+            public boolean indexNodePassed(long id, int level,
+                                           int entryCount, int freeBytes, int largeValueCount)
+            {
+                if (level == height) {
+                    ids.add(id);
+                }
+                return true;
+            }
+        };
+
+        assertTrue(ix0.verify(observer, 1));
+
+        assertTrue(ids.size() > 100);
+
+        int adjacent = 0;
+        for (int i=1; i<ids.size(); i++) {
+            if (ids.get(i) == ids.get(i - 1) + 1) {
+                adjacent++;
+            }
+        }
+
+        db.close();
+
+        return ((double) adjacent) / (ids.size() - 1);
+    }
+
+    private static void fill(Index ix0, Index ix1, int count) throws Exception {
+        for (int i=0; i<count; i++) {
+            byte[] key = String.format("key-%08d", i).getBytes();
+            ix0.store(Transaction.BOGUS, key, new byte[100]);
+            ix1.store(Transaction.BOGUS, key, new byte[100]);
+        }
+    }
+
+    private static void truncate(Index ix) throws Exception {
+        try (Cursor c = ix.newCursor(Transaction.BOGUS)) {
+            for (c.first(); c.key() != null; c.next()) {
+                c.store(null);
+            }
+        }
+    }
+}
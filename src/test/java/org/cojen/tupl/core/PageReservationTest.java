@@ -0,0 +1,171 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.core;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import org.cojen.tupl.diag.DatabaseStats;
+
+import static org.cojen.tupl.TestUtils.*;
+
+/**
+ *
+ *
+ * @author Brian S O'Neill
+ */
+public class PageReservationTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(PageReservationTest.class.getName());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        deleteTempDatabases(getClass());
+    }
+
+    private static DatabaseConfig newConfig() {
+        return new DatabaseConfig()
+            .durabilityMode(DurabilityMode.NO_SYNC)
+            .checkpointRate(-1, null);
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        DatabaseConfig config = newConfig();
+        Database db = newTempDatabase(getClass(), config);
+
+        final int threadCount = 8;
+        final int count = 20_000;
+
+        var indexes = new Index[threadCount];
+        for (int i=0; i<threadCount; i++) {
+            indexes[i] = db.openIndex("test-" + i);
+        }
+
+        // Fill and then delete, to populate the free lists.
+        fill(indexes, count);
+        for (Index ix : indexes) {
+            truncate(ix);
+        }
+        db.checkpoint();
+
+        PageDb pageDb = ((LocalDatabase) db).mPageDb;
+        long refills = pageDb.stats().reservationRefills;
+
+        fill(indexes, count);
+
+        PageDb.Stats stats = pageDb.stats();
+        assertTrue(stats.toString(), stats.reservationRefills > refills);
+        assertTrue(stats.toString(), stats.reservedPages <= stats.freePages);
+
+        db.checkpoint();
+
+        // Reservations are returned when checkpointing.
+        stats = pageDb.stats();
+        assertEquals(stats.toString(), 0, stats.reservedPages);
+
+        assertTrue(db.verify(null, 1));
+
+        for (Index ix : indexes) {
+            truncate(ix);
+        }
+        db.checkpoint();
+
+        fill(indexes, 100);
+
+        // Reopen while some pages are reserved, and verify that no pages were leaked. The
+        // unlogged stores are lost.
+        db = reopenTempDatabase(getClass(), db, config);
+
+        for (int i=0; i<threadCount; i++) {
+            Index ix = db.openIndex("test-" + i);
+            assertEquals(0, ix.count(null, null));
+        }
+
+        DatabaseStats dstats = db.stats();
+        long usedPages = dstats.totalPages - dstats.freePages;
+        assertTrue(dstats.toString(), usedPages < 100);
+
+        assertTrue(db.verify(null, 1));
+    }
+
+    @Test
+    public void compaction() throws Exception {
+        Database db = newTempDatabase(getClass(), newConfig());
+
+        var indexes = new Index[4];
+        for (int i=0; i<indexes.length; i++) {
+            indexes[i] = db.openIndex("test-" + i);
+        }
+
+        fill(indexes, 20_000);
+        for (int i=1; i<indexes.length; i++) {
+            truncate(indexes[i]);
+        }
+        db.checkpoint();
+
+        // Allocate some pages, leaving some of the reserved pages unused.
+        fill(new Index[] {indexes[1]}, 1000);
+
+        DatabaseStats stats1 = db.stats();
+
+        // Reserved pages in the compaction zone must be moved into the reserve list.
+        assertTrue(db.compactFile(null, 0.9));
+
+        DatabaseStats stats2 = db.stats();
+        assertTrue(stats2.totalPages < stats1.totalPages);
+
+        assertTrue(db.verify(null, 1));
+        assertEquals(20_000, indexes[0].count(null, null));
+        assertEquals(1000, indexes[1].count(null, null));
+    }
+
+    private static void fill(Index[] indexes, int count) throws Exception {
+        var threads = new Thread[indexes.length];
+
+        for (int i=0; i<threads.length; i++) {
+            Index ix = indexes[i];
+            threads[i] = new Thread(() -> {
+                try {
+                    for (int j=0; j<count; j++) {
+                        byte[] key = ("key-" + j).getBytes();
+                        ix.store(Transaction.BOGUS, key, new byte[100]);
+                    }
+                } catch (Exception e) {
+                    throw Utils.rethrow(e);
+                }
+            });
+            threads[i].start();
+        }
+
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+
+    private static void truncate(Index ix) throws Exception {
+        try (Cursor c = ix.newCursor(Transaction.BOGUS)) {
+            for (c.first(); c.key() != null; c.next()) {
+                c.store(null);
+            }
+        }
+    }
+}
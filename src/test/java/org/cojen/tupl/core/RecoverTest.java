@@ -937,6 +937,54 @@ public class RecoverTest {
         assertFalse(primer.exists());
     }
 
+    @Test
+    public void pageCachePriming() throws Exception {
+        mConfig.minCacheSize(100_000_000).cachePriming(true);
+        mDb = reopenTempDatabase(getClass(), mDb, mConfig);
+
+        Index ix = mDb.openIndex("test");
+
+        for (int i=0; i<200_000; i++) {
+            byte[] key = ("key-" + i).getBytes();
+            byte[] value = ("value-" + i).getBytes();
+            ix.store(null, key, value);
+        }
+
+        mDb.checkpoint();
+        mDb = reopenTempDatabase(getClass(), mDb, mConfig);
+        ix = mDb.openIndex("test");
+
+        // Load the leftmost half of the nodes.
+        try (Cursor c = ix.newCursor(null)) {
+            for (c.first(); c.key() != null; c.next()) {
+                if (new String(c.key()).compareTo("key-5") >= 0) {
+                    break;
+                }
+            }
+        }
+
+        long expect = loadedNodes(ix);
+        assertTrue(expect > 100);
+
+        mDb = reopenTempDatabase(getClass(), mDb, mConfig);
+        ix = mDb.openIndex("test");
+
+        // All nodes are loaded by the primer, without being accessed.
+        assertEquals(expect, loadedNodes(ix));
+
+        assertTrue(mDb.verify(null, 1));
+        assertArrayEquals("value-123".getBytes(), ix.load(null, "key-123".getBytes()));
+    }
+
+    private static long loadedNodes(Index ix) throws Exception {
+        var count = new long[1];
+        ((BTree) ix).traverseLoaded(node -> {
+            count[0]++;
+            node.releaseShared();
+        });
+        return count[0];
+    }
+
     @Test
     public void trashDelete() throws Exception {
         Index ix = mDb.openIndex("trash");
@@ -1072,6 +1120,44 @@ public class RecoverTest {
         assertEquals(0, ix.count(null, null));
     }
 
+    @Test
+    public void manyLargeOpenTransactions() throws Exception {
+        // Test which recovers several transactions with large undo logs, which are recovered
+        // by multiple threads.
+
+        Index ix = mDb.openIndex("test");
+
+        var txns = new Transaction[8];
+        for (int i=0; i<txns.length; i++) {
+            txns[i] = mDb.newTransaction();
+        }
+
+        for (int j=0; j<2000; j++) {
+            for (int i=0; i<txns.length; i++) {
+                ix.store(txns[i], ("key-" + i + "-" + j).getBytes(), ("value-" + j).getBytes());
+            }
+            ix.store(null, ("committed-" + j).getBytes(), ("value-" + j).getBytes());
+        }
+
+        mDb.checkpoint();
+
+        mDb = reopenTempDatabase(getClass(), mDb, mConfig);
+
+        // Only the auto-commit stores should remain.
+        ix = mDb.openIndex("test");
+        assertEquals(2000, ix.count(null, null));
+
+        for (int j=0; j<2000; j++) {
+            byte[] value = ix.load(null, ("committed-" + j).getBytes());
+            assertArrayEquals(("value-" + j).getBytes(), value);
+        }
+
+        // All the locks were released.
+        Transaction txn = mDb.newTransaction();
+        ix.store(txn, "key-0-0".getBytes(), "value".getBytes());
+        txn.commit();
+    }
+
     @Test
     public void largeUndoMidCheckpoint() throws Exception {
         // Test commit of a transaction with a large undo log, with a checkpoint in the middle
@@ -0,0 +1,267 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.remote;
+
+import java.net.ServerSocket;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import org.cojen.tupl.diag.DatabaseStats;
+
+import org.cojen.tupl.table.BaseTable;
+import org.cojen.tupl.table.PreparedQueryCache;
+
+import static org.cojen.tupl.TestUtils.*;
+
+/**
+ *
+ *
+ * @author Brian S. O'Neill
+ */
+public class RemotePreparedQueryTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(RemotePreparedQueryTest.class.getName());
+    }
+
+    @Before
+    public void setup() throws Exception {
+        mServerDb = newTempDatabase(getClass());
+
+        var ss = new ServerSocket(0);
+        mServerDb.newServer().acceptAll(ss, 123456);
+
+        mClientDb1 = Database.connect(ss.getLocalSocketAddress(), null, 123456);
+        mClientDb2 = Database.connect(ss.getLocalSocketAddress(), null, 123456);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        if (mClientDb1 != null) {
+            mClientDb1.close();
+            mClientDb1 = null;
+        }
+
+        if (mClientDb2 != null) {
+            mClientDb2.close();
+            mClientDb2 = null;
+        }
+
+        mServerDb = null;
+
+        deleteTempDatabases(getClass());
+    }
+
+    private Database mServerDb;
+    private Database mClientDb1, mClientDb2;
+
+    @Test
+    public void shared() throws Exception {
+        Table<TestRow> table1 = mClientDb1.openTable(TestRow.class);
+        Table<TestRow> table2 = mClientDb2.openTable(TestRow.class);
+
+        for (int i=0; i<10; i++) {
+            TestRow row = table1.newRow();
+            row.id(i);
+            row.name("name-" + i);
+            table1.insert(null, row);
+        }
+
+        DatabaseStats stats = mServerDb.stats();
+
+        Query<TestRow> query1 = table1.query("{id, name} id >= ?");
+        assertEquals(1, query1.argumentCount());
+
+        DatabaseStats stats2 = mServerDb.stats();
+        assertEquals(stats.preparedQueryMisses + 1, stats2.preparedQueryMisses);
+
+        // The other connection shares the prepared query.
+        Query<TestRow> query2 = table2.query("{id, name} id >= ?");
+        assertEquals(1, query2.argumentCount());
+
+        DatabaseStats stats3 = mServerDb.stats();
+        assertEquals(stats2.preparedQueryMisses, stats3.preparedQueryMisses);
+        assertEquals(stats2.preparedQueryHits + 1, stats3.preparedQueryHits);
+
+        int count = 0;
+        try (Scanner<TestRow> s = query2.newScanner(null, 5)) {
+            for (TestRow row = s.row(); row != null; row = s.step(row)) {
+                assertEquals("name-" + row.id(), row.name());
+                count++;
+            }
+        }
+        assertEquals(5, count);
+
+        assertTrue(query1.anyRows(null, 9));
+        assertFalse(query1.anyRows(null, 10));
+
+        String plan = query1.scannerPlan(null, 5).toString();
+        assertTrue(plan, plan.contains("range scan over primary key"));
+
+        try (Updater<TestRow> u = query1.newUpdater(null, 8)) {
+            for (TestRow row = u.row(); row != null; ) {
+                row.name(row.name() + "!");
+                row = u.update(row);
+            }
+        }
+
+        assertEquals("name-9!", table2.query("id == ?").newStream(null, 9)
+                     .findFirst().get().name());
+
+        assertEquals(2, query2.deleteAll(null, 8));
+        assertFalse(query1.anyRows(null, 8));
+
+        // Executing the prepared query doesn't consult the cache again.
+        assertEquals(stats3.preparedQueryMisses + 1, mServerDb.stats().preparedQueryMisses);
+
+        try {
+            table1.query("{name} id >= ? &&");
+            fail();
+        } catch (QueryException e) {
+        }
+    }
+
+    @Test
+    public void eviction() throws Exception {
+        BaseTable<TestRow> table = (BaseTable<TestRow>) mServerDb.openTable(TestRow.class);
+
+        var cache = new PreparedQueryCache(2);
+
+        Query<TestRow> q1 = cache.obtain(table, "id == ?");
+        cache.obtain(table, "id != ?");
+        assertSame(q1, cache.obtain(table, "id == ?"));
+        cache.obtain(table, "id > ?");
+
+        DatabaseStats stats = stats(cache);
+        assertEquals(2, stats.preparedQueries);
+        assertEquals(1, stats.preparedQueryHits);
+        assertEquals(3, stats.preparedQueryMisses);
+        assertEquals(1, stats.preparedQueryEvictions);
+
+        // The least recently used entry was evicted.
+        assertSame(q1, cache.obtain(table, "id == ?"));
+        cache.obtain(table, "id != ?");
+        assertEquals(4, stats(cache).preparedQueryMisses);
+
+        cache.removeAll(table);
+        assertEquals(0, stats(cache).preparedQueries);
+
+        cache = new PreparedQueryCache(0);
+        cache.obtain(table, "id == ?");
+        assertEquals(0, stats(cache).preparedQueries);
+    }
+
+    @Test
+    public void released() throws Exception {
+        BaseTable<TestRow> table = (BaseTable<TestRow>) mServerDb.openTable(TestRow.class);
+
+        var cache = new PreparedQueryCache(10);
+
+        Query<TestRow> q1 = cache.acquire(table, table, "id == ?");
+        assertSame(q1, cache.acquire(table, table, "id == ?"));
+        assertEquals(1, stats(cache).preparedQueries);
+
+        // The entry is removed when the last handle is released.
+        cache.release(table, "id == ?", q1);
+        assertEquals(1, stats(cache).preparedQueries);
+        cache.release(table, "id == ?", q1);
+        assertEquals(0, stats(cache).preparedQueries);
+
+        // Releasing again has no effect.
+        cache.obtain(table, "id == ?");
+        cache.release(table, "id == ?", q1);
+        assertEquals(1, stats(cache).preparedQueries);
+    }
+
+    @Test
+    public void derived() throws Exception {
+        Table<TestRow> table1 = mClientDb1.openTable(TestRow.class);
+        Table<TestRow> table2 = mClientDb2.openTable(TestRow.class);
+
+        for (int i=0; i<10; i++) {
+            TestRow row = table1.newRow();
+            row.id(i);
+            row.name("name-" + i);
+            table1.insert(null, row);
+        }
+
+        Table<Row> derived1 = table1.derive("{id, name} id >= ?", 5);
+        Query<Row> q1 = derived1.query("id < ?");
+
+        DatabaseStats stats = mServerDb.stats();
+
+        // Each connection derives a new table on the server, but an equivalent derived table
+        // shares the prepared query.
+        Table<Row> derived2 = table2.derive("{id, name} id >= ?", 5);
+        Query<Row> q2 = derived2.query("id < ?");
+
+        DatabaseStats stats2 = mServerDb.stats();
+        assertEquals(stats.preparedQueryMisses, stats2.preparedQueryMisses);
+        assertEquals(stats.preparedQueryHits + 1, stats2.preparedQueryHits);
+
+        assertEquals(2, q1.newStream(null, 7).count());
+        assertEquals(2, q2.newStream(null, 7).count());
+
+        // Different arguments derive a different table.
+        Query<Row> q3 = table2.derive("{id, name} id >= ?", 6).query("id < ?");
+        assertEquals(stats2.preparedQueryMisses + 1, mServerDb.stats().preparedQueryMisses);
+        assertEquals(1, q3.newStream(null, 7).count());
+    }
+
+    private static DatabaseStats stats(PreparedQueryCache cache) {
+        var stats = new DatabaseStats();
+        cache.addStats(stats);
+        return stats;
+    }
+
+    @Test
+    public void closed() throws Exception {
+        Table<TestRow> table = mClientDb1.openTable(TestRow.class);
+        // Hold the queries, or else the server can release them when they're disposed.
+        Query<TestRow> q1 = table.query("id == ?");
+        Query<TestRow> q2 = table.query("id != ?");
+        assertEquals(2, mServerDb.stats().preparedQueries);
+        assertFalse(q1.anyRows(null, 1));
+        assertFalse(q2.anyRows(null, 1));
+
+        // Each database has its own cache.
+        Database db2 = newTempDatabase(getClass());
+        db2.openTable(TestRow.class);
+        assertEquals(0, db2.stats().preparedQueries);
+        db2.close();
+
+        mClientDb1.close();
+        mClientDb1 = null;
+        mClientDb2.close();
+        mClientDb2 = null;
+
+        mServerDb.close();
+        assertEquals(0, mServerDb.stats().preparedQueries);
+    }
+
+    @PrimaryKey("id")
+    public interface TestRow {
+        int id();
+        void id(int id);
+
+        String name();
+        void name(String str);
+    }
+}
@@ -219,6 +219,18 @@ public class RemoteTest {
         assertTrue(co.visited > 0);
 
         assertTrue(mClientDb.compactFile(null, 0.5));
+
+        co.begin = 0;
+        co.complete = 0;
+        co.visited = 0;
+
+        assertTrue(temp.defragment(co));
+
+        assertEquals(1, co.begin);
+        assertEquals(1, co.complete);
+        assertTrue(co.visited > 0);
+
+        assertTrue(temp.defragment(null));
     }
 
     @Test
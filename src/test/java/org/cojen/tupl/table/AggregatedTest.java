@@ -18,6 +18,7 @@
 package org.cojen.tupl.table;
 
 import java.util.Comparator;
+import java.util.HashSet;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -529,6 +530,44 @@ public class AggregatedTest {
         }
     }
 
+    @Test
+    public void hashDistinct() throws Exception {
+        for (int i=1; i<=100; i++) {
+            var row = mTable.newRow();
+            row.id(i);
+            row.name("name-" + (i % 3));
+            row.num(i % 7);
+            mTable.insert(null, row);
+        }
+
+        Table<Row> distinct = mTable.derive("{num}").distinct();
+        assertTrue(distinct.hasPrimaryKey());
+
+        String plan = distinct.queryAll().scannerPlan(null).toString();
+        assertTrue(plan, plan.contains("operation: hash distinct"));
+        assertFalse(plan, plan.contains("sort:"));
+
+        var nums = new HashSet<Integer>();
+        try (var s = distinct.newScanner(null)) {
+            for (var row = s.row(); row != null; row = s.step(row)) {
+                assertTrue(nums.add(row.get_int("num")));
+            }
+        }
+        assertEquals(7, nums.size());
+
+        // When an ordering is requested, the source is sorted instead.
+        plan = distinct.query("{+num}").scannerPlan(null).toString();
+        assertFalse(plan, plan.contains("hash distinct"));
+
+        int expect = 0;
+        try (var s = distinct.newScanner(null, "{+num}")) {
+            for (var row = s.row(); row != null; row = s.step(row)) {
+                assertEquals(expect++, row.get_int("num"));
+            }
+        }
+        assertEquals(7, expect);
+    }
+
     private void fill() throws Exception {
         Object[][] data = {
             {1, "hello", 1},
@@ -528,4 +528,147 @@ public class AutoTest {
 
         assertTrue("" + i, i > 90 && i <= 109);
     }
+
+    @Test
+    public void sequentialLong() throws Exception {
+        Table<TestRow9> table = mDb.openTable(TestRow9.class);
+
+        for (int i=1; i<=1000; i++) {
+            var row = table.newRow();
+            row.val("val-" + i);
+            table.insert(null, row);
+            assertEquals(i, row.id());
+        }
+
+        // Explicitly assigned ids are skipped over.
+        for (int i=1001; i<=1010; i++) {
+            var row = table.newRow();
+            row.id(i);
+            row.val("val-" + i);
+            table.insert(null, row);
+        }
+
+        var row = table.newRow();
+        row.val("next");
+        table.insert(null, row);
+        assertEquals(1011, row.id());
+    }
+
+    @PrimaryKey("id")
+    public interface TestRow9 {
+        @Automatic(sequential=true)
+        long id();
+        void id(long id);
+
+        String val();
+        void val(String str);
+    }
+
+    @Test
+    public void sequentialInt() throws Exception {
+        Table<TestRow10> table = mDb.openTable(TestRow10.class);
+
+        // Range is smaller than the block size, and so values wrap around.
+        for (int i=0; i<50; i++) {
+            var row = table.newRow();
+            row.val("val-" + i);
+            table.insert(null, row);
+            assertEquals(-10 + i + (i >= 10 ? 1 : 0), row.id());
+        }
+
+        try {
+            var row = table.newRow();
+            row.val("full");
+            table.insert(null, row);
+            fail();
+        } catch (LockFailureException e) {
+        }
+    }
+
+    @PrimaryKey("id")
+    public interface TestRow10 {
+        @Automatic(min=-10, max=40, sequential=true)
+        int id();
+        void id(int id);
+
+        String val();
+        void val(String str);
+    }
+
+    @Test
+    public void sequentialConcurrent() throws Exception {
+        Table<TestRow9> table = mDb.openTable(TestRow9.class);
+
+        class Task implements Runnable {
+            @Override
+            public void run() {
+                try {
+                    long last = 0;
+                    for (int i=0; i<10_000; i++) {
+                        var row = table.newRow();
+                        row.val("val-" + i);
+                        assertNull(table.exchange(null, row));
+                        // Values are ascending within each thread.
+                        assertTrue(row.id() > last);
+                        last = row.id();
+                    }
+                } catch (Throwable e) {
+                    throw RowUtils.rethrow(e);
+                }
+            }
+        }
+
+        var tasks = new TestUtils.TestTask[4];
+        for (int i=0; i<tasks.length; i++) {
+            tasks[i] = TestUtils.startTestTask(new Task());
+        }
+        for (var task : tasks) {
+            task.join();
+        }
+
+        int count = 0;
+        long max = 0;
+
+        try (var scanner = table.newScanner(null)) {
+            for (var row = scanner.row(); row != null; row = scanner.step()) {
+                count++;
+                max = row.id();
+            }
+        }
+
+        assertEquals(40_000, count);
+
+        // Only a few leased blocks should be partially used.
+        assertTrue(max <= 40_000 + tasks.length * AutomaticKeyGenerator.BLOCK_SIZE);
+    }
+
+    @Test
+    public void sequentialReopen() throws Exception {
+        var config = new DatabaseConfig().durabilityMode(DurabilityMode.NO_FLUSH);
+        Database db = TestUtils.newTempDatabase(getClass(), config);
+        try {
+            Table<TestRow9> table = db.openTable(TestRow9.class);
+
+            for (int i=1; i<=10; i++) {
+                var row = table.newRow();
+                row.val("val-" + i);
+                table.insert(null, row);
+            }
+
+            // Delete the rows, which must not cause the ids to be reused.
+            try (var updater = table.newUpdater(null)) {
+                for (var row = updater.row(); row != null; row = updater.delete());
+            }
+
+            db = TestUtils.reopenTempDatabase(getClass(), db, config);
+            table = db.openTable(TestRow9.class);
+
+            var row = table.newRow();
+            row.val("again");
+            table.insert(null, row);
+            assertEquals(1 + AutomaticKeyGenerator.BLOCK_SIZE, row.id());
+        } finally {
+            TestUtils.deleteTempDatabases(getClass());
+        }
+    }
 }
@@ -0,0 +1,173 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import org.cojen.tupl.diag.DatabaseStats;
+
+/**
+ * 
+ *
+ * @author Brian S. O'Neill
+ */
+public class CacheRetainerTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(CacheRetainerTest.class.getName());
+    }
+
+    @Test
+    public void disabled() {
+        var retainer = new CacheRetainer(0);
+
+        var value = new Object();
+        retainer.retain(value, 100);
+        retainer.hit(value);
+        retainer.hit(value);
+
+        CacheRetainer.Stats stats = retainer.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(100, stats.generateNanos());
+        assertEquals(0, stats.retained());
+        assertEquals(0, stats.capacity());
+    }
+
+    @Test
+    public void frequency() {
+        var retainer = new CacheRetainer(10);
+
+        var hot = new Object[5];
+        for (int i=0; i<hot.length; i++) {
+            retainer.retain(hot[i] = new Object(), 1);
+            retainer.hit(hot[i]);
+        }
+
+        // A burst of values which are only used once doesn't evict the frequently used ones.
+        for (int i=0; i<100; i++) {
+            retainer.retain(new Object(), 1);
+        }
+
+        assertEquals(10, retainer.stats().retained());
+
+        var cold = new Object();
+        var coldRef = new WeakReference<>(cold);
+        retainer.retain(cold, 1);
+
+        var hotRefs = new WeakReference[hot.length];
+        for (int i=0; i<hot.length; i++) {
+            hotRefs[i] = new WeakReference<>(hot[i]);
+        }
+
+        hot = null;
+        cold = null;
+
+        for (int i=0; i<100; i++) {
+            retainer.retain(new Object(), 1);
+        }
+
+        for (int i=0; i<10; i++) {
+            System.gc();
+            if (coldRef.get() == null) {
+                break;
+            }
+        }
+
+        assertNull(coldRef.get());
+
+        for (var ref : hotRefs) {
+            assertNotNull(ref.get());
+        }
+
+        assertEquals(10, retainer.stats().retained());
+    }
+
+    @Test
+    public void cache() {
+        var retainer = new CacheRetainer(10);
+
+        var cache = new RetainedCache<String, Object, Object>(retainer) {
+            @Override
+            protected Object generate(String key, Object helper) {
+                return new Object();
+            }
+        };
+
+        Object value = cache.find("a", null);
+        assertSame(value, cache.find("a", null));
+
+        CacheRetainer.Stats stats = retainer.stats();
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.retained());
+
+        var ref = new WeakReference<>(value);
+        value = null;
+
+        // Retained even though the cache only weakly references the value.
+        System.gc();
+        assertNotNull(ref.get());
+
+        // Clearing the retainer, as is done when the database is closed, allows the value to
+        // be collected.
+        retainer.clear();
+        assertEquals(0, retainer.stats().retained());
+
+        for (int i=0; i<10; i++) {
+            System.gc();
+            if (ref.get() == null) {
+                break;
+            }
+        }
+
+        assertNull(ref.get());
+    }
+
+    @PrimaryKey("id")
+    public interface TestRow {
+        long id();
+        void id(long id);
+
+        String name();
+        void name(String str);
+    }
+
+    @Test
+    public void database() throws Exception {
+        Database db = Database.open(new DatabaseConfig());
+        Table<TestRow> table = db.openTable(TestRow.class);
+
+        DatabaseStats stats1 = db.stats();
+
+        Query<TestRow> query = table.query("name == ?");
+        assertSame(query, table.query("name == ?"));
+
+        // Generating the query is a miss, and finding it again is a hit.
+        DatabaseStats stats2 = db.stats();
+        assertTrue(stats2.codeCacheMisses > stats1.codeCacheMisses);
+        assertTrue(stats2.codeCacheHits > stats1.codeCacheHits);
+        assertTrue(stats2.codeCacheRetained > stats1.codeCacheRetained);
+
+        db.close();
+    }
+}
@@ -403,22 +403,19 @@ public class ConcatTest {
 
         String expect = """
 - aggregate: TARGET
-  operation: distinct
+  operation: hash distinct
   group by: a, b, c, d, id
   - map: TARGET
-    - merge concat
-      - sort: +a, +b, +c, +d, +id
-        - map: org.cojen.tupl.table.ConcatTest$ConcatRow
-          - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow1
-            key columns: +id
-      - sort: +a, +b, +c, +d, +id
-        - map: org.cojen.tupl.table.ConcatTest$ConcatRow
-          - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow2
-            key columns: +id
-      - sort: +a, +b, +c, +d, +id
-        - map: org.cojen.tupl.table.ConcatTest$ConcatRow
-          - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow1
-            key columns: +id
+    - concat
+      - map: org.cojen.tupl.table.ConcatTest$ConcatRow
+        - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow1
+          key columns: +id
+      - map: org.cojen.tupl.table.ConcatTest$ConcatRow
+        - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow2
+          key columns: +id
+      - map: org.cojen.tupl.table.ConcatTest$ConcatRow
+        - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow1
+          key columns: +id
 """;
 
         expect = expect.replaceAll
@@ -428,11 +425,11 @@ public class ConcatTest {
 
         try (var s = distinct.newScanner(null)) {
             verify(s, new String[] {
-                    "{a=0, b=93, c=null, d=300, id=3}",
-                    "{a=0, b=95, c=null, d=200, id=2}",
-                    "{a=0, b=97, c=null, d=100, id=1}",
                     "{a=11, b=98, c=100, d=, id=1}",
                     "{a=12, b=96, c=200, d=, id=2}",
+                    "{a=0, b=97, c=null, d=100, id=1}",
+                    "{a=0, b=95, c=null, d=200, id=2}",
+                    "{a=0, b=93, c=null, d=300, id=3}",
                    });
         }
 
@@ -440,11 +437,11 @@ public class ConcatTest {
 
         try (var s = derive.newScanner(null)) {
             verify(s, new String[] {
-                    "{a=0, id=3}",
-                    "{a=0, id=2}",
-                    "{a=0, id=1}",
                     "{a=11, id=1}",
                     "{a=12, id=2}",
+                    "{a=0, id=1}",
+                    "{a=0, id=2}",
+                    "{a=0, id=3}",
                    });
         }
 
@@ -489,18 +486,18 @@ public class ConcatTest {
 
         // Note: If the distinct method was smarter, it would eliminate the duplicate tables.
         String expect = """
-- merge union
-  - sort: +id, +a, +b, +c, +d
+- aggregate: TARGET
+  operation: hash distinct
+  group by: id, a, b, c, d
+  - concat
     - map: TARGET
       - filter: b != ?2
         - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow1
           key columns: +id
-  - sort: +id, +a, +b, +c, +d
     - map: TARGET
       - filter: b != ?1
         - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow2
           key columns: +id
-  - sort: +id, +a, +b, +c, +d
     - map: TARGET
       - filter: b != ?2
         - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow1
@@ -514,11 +511,11 @@ public class ConcatTest {
 
         try (var s = derive.newScanner(null)) {
             verify(s, new String[] {
-                    "{a=0, c=null}",
                     "{a=11, c=100}",
-                    "{a=0, c=null}",
                     "{a=12, c=200}",
                     "{a=0, c=null}",
+                    "{a=0, c=null}",
+                    "{a=0, c=null}",
                    });
         }
 
@@ -529,21 +526,21 @@ public class ConcatTest {
 
         expect = """
 - aggregate: TARGET2
-  operation: distinct
+  operation: hash distinct
   group by: a, c
   - map: TARGET2
-    - merge union
-      - sort: +a, +c, +id, +b, +d
+    - aggregate: TARGET1
+      operation: hash distinct
+      group by: id, a, b, c, d
+      - concat
         - map: TARGET1
           - filter: b != ?2
             - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow1
               key columns: +id
-      - sort: +a, +c, +id, +b, +d
         - map: TARGET1
           - filter: b != ?1
             - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow2
               key columns: +id
-      - sort: +a, +c, +id, +b, +d
         - map: TARGET1
           - filter: b != ?2
             - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow1
@@ -560,13 +557,87 @@ public class ConcatTest {
 
         try (var s = distinct.newScanner(null)) {
             verify(s, new String[] {
-                    "{a=0, c=null}",
                     "{a=11, c=100}",
                     "{a=12, c=200}",
+                    "{a=0, c=null}",
                    });
         }
     }
 
+    @Test
+    public void slice() throws Exception {
+        for (int i=1; i<=2; i++) {
+            TestRow1 row = mTable1.newRow();
+            row.id(i);
+            row.a(10 + i);
+            row.b(100 - (i * 2));
+            row.c(100L * i);
+            mTable1.insert(null, row);
+        }
+
+        for (int i=1; i<=3; i++) {
+            TestRow2 row = mTable2.newRow();
+            row.id(i);
+            row.b("" + (100 - (i * 2 + 1)));
+            row.d("" + (100L * i));
+            mTable2.insert(null, row);
+        }
+
+        Table<ConcatRow> concat = Table.concat(ConcatRow.class, mTable1, mTable2);
+
+        Query<ConcatRow> query = concat.query("{+b, id} limit ? offset 1");
+        String plan = query.scannerPlan(null, 2).toString();
+
+        // The limit is pushed down to each source, as the sum of the limit and offset.
+        assertEquals("""
+- limit: 2
+  offset: 1
+  - limit: 3
+    - merge concat
+      - limit: 3
+        - sort: +b
+          - map: org.cojen.tupl.table.ConcatTest$ConcatRow
+            - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow1
+              key columns: +id
+      - limit: 3
+        - map: org.cojen.tupl.table.ConcatTest$ConcatRow
+          - sort: +b
+            - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow2
+              key columns: +id
+""", plan);
+
+        try (var s = query.newScanner(null, 2)) {
+            verify(s, new String[] {
+                    "{id=2, b=95}",
+                    "{id=2, b=96}",
+                });
+        }
+
+        query = concat.query("{id, b} limit 3");
+        plan = query.scannerPlan(null).toString();
+
+        assertEquals("""
+- limit: 3
+  - concat
+    - limit: 3
+      - map: org.cojen.tupl.table.ConcatTest$ConcatRow
+        - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow1
+          key columns: +id
+    - limit: 3
+      - map: org.cojen.tupl.table.ConcatTest$ConcatRow
+        - full scan over primary key: org.cojen.tupl.table.ConcatTest$TestRow2
+          key columns: +id
+""", plan);
+
+        try (var s = query.newScanner(null)) {
+            verify(s, new String[] {
+                    "{id=1, b=98}",
+                    "{id=2, b=96}",
+                    "{id=1, b=97}",
+                });
+        }
+    }
+
     private void verify(Scanner<?> s, String[] expect) throws Exception {
         Object current = null;
 
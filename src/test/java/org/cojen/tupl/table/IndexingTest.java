@@ -25,6 +25,8 @@ import java.util.Random;
 
 import java.util.concurrent.TimeUnit;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -1835,4 +1837,1040 @@ public class IndexingTest {
 
         db.close();
     }
+
+    @Test
+    public void partialIndex() throws Exception {
+        Database db = Database.open(new DatabaseConfig());
+        var table = (StoredTable<TestRow4>) db.openTable(TestRow4.class);
+        Table<TestRow4> ix = table.viewIndexTable
+            (false, "state == \"active\"", new String[] {"name"})
+            .viewUnjoined();
+
+        for (int i=0; i<10; i++) {
+            var row = table.newRow();
+            row.id(i);
+            row.name("name-" + (i % 3));
+            row.state((i & 1) == 0 ? "active" : "inactive");
+            row.num(i);
+            table.insert(null, row);
+        }
+
+        assertEquals(5, count(ix));
+
+        // Only the query which implies the index filter can select the partial index.
+
+        var query = table.query("name == ? && state == \"active\"");
+        assertTrue(query.scannerPlan(null, "name-0").toString().contains("secondary index"));
+        assertEquals(2, count(query, "name-0"));
+
+        query = table.query("name == ? && state == \"inactive\"");
+        assertFalse(query.scannerPlan(null, "name-0").toString().contains("secondary index"));
+        assertEquals(2, count(query, "name-0"));
+
+        query = table.query("name == ?");
+        assertFalse(query.scannerPlan(null, "name-0").toString().contains("secondary index"));
+        assertEquals(4, count(query, "name-0"));
+
+        // Updates which change the filter result must insert or delete index entries.
+
+        {
+            var row = table.newRow();
+            row.id(1);
+            row.state("active");
+            table.update(null, row);
+            assertEquals(6, count(ix));
+
+            row = table.newRow();
+            row.id(0);
+            row.state("inactive");
+            table.update(null, row);
+            assertEquals(5, count(ix));
+        }
+
+        // An update to an indexed column of a matching row moves the index entry.
+
+        {
+            var row = table.newRow();
+            row.id(2);
+            row.name("name-x");
+            table.update(null, row);
+            assertEquals(5, count(ix));
+
+            row = ix.newRow();
+            row.name("name-x");
+            row.id(2);
+            assertTrue(ix.exists(null, row));
+        }
+
+        // An update to an unrelated column leaves the index alone.
+
+        {
+            var row = table.newRow();
+            row.id(4);
+            row.num(100);
+            table.update(null, row);
+            assertEquals(5, count(ix));
+        }
+
+        // Deleting a non-matching row leaves the index alone.
+
+        {
+            var row = table.newRow();
+            row.id(3);
+            table.delete(null, row);
+            assertEquals(5, count(ix));
+
+            row.id(4);
+            table.delete(null, row);
+            assertEquals(4, count(ix));
+        }
+
+        try (var scanner = ix.newScanner(null)) {
+            for (var row = scanner.row(); row != null; row = scanner.step(row)) {
+                var full = table.newRow();
+                full.id(row.id());
+                table.load(null, full);
+                assertEquals("active", full.state());
+                assertEquals(full.name(), row.name());
+            }
+        }
+
+        query = table.query("name == ? && state == \"active\"");
+        assertEquals(1, count(query, "name-1"));
+        assertEquals(1, count(query, "name-x"));
+
+        db.close();
+    }
+
+    private static <R> long count(Query<R> query, Object... args) throws Exception {
+        long count = 0;
+        try (var scanner = query.newScanner(null, args)) {
+            for (var row = scanner.row(); row != null; row = scanner.step(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @PrimaryKey("id")
+    @SecondaryIndex(value="name", filter="state == \"active\"")
+    public interface TestRow4 {
+        long id();
+        void id(long id);
+
+        String name();
+        void name(String str);
+
+        String state();
+        void state(String str);
+
+        int num();
+        void num(int num);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void partialIndexBackfill() throws Exception {
+        Database db = Database.open(new DatabaseConfig());
+
+        final String typeName = newRowTypeName();
+
+        final Object[] spec = {
+            long.class, "+id",
+            String.class, "name",
+            int.class, "num"
+        };
+
+        Class t1 = newRowType(typeName, spec);
+        var setters1 = access(spec, t1)[1];
+        var table1 = db.openIndex("test").asTable(t1);
+
+        final int fillAmount = 1000;
+
+        for (int i=0; i<fillAmount; i++) {
+            var row = table1.newRow();
+            setters1[0].invoke(row, i); // id
+            setters1[1].invoke(row, "name-" + (i % 10)); // name
+            setters1[2].invoke(row, i % 4); // num
+            table1.store(null, row);
+        }
+
+        // Define the table again, with a partial secondary index.
+
+        ClassMaker cm = newRowTypeMaker(typeName, spec);
+        var ann = cm.addAnnotation(SecondaryIndex.class, true);
+        ann.put("value", new String[] {"name"});
+        ann.put("filter", "num == 1");
+        Class t2 = cm.finish();
+        var table2 = (StoredTable) db.openIndex("test").asTable(t2);
+
+        Table ix = null;
+        for (int i=0; i<1000; i++) {
+            try {
+                ix = table2.viewIndexTable
+                    (false, "num == 1", new String[] {"name"}).viewUnjoined();
+                break;
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("not found"));
+            }
+            // Wait for backfill to finish.
+            sleep(100);
+        }
+
+        assertNotNull(ix);
+        assertEquals(fillAmount / 4, count(ix));
+
+        {
+            var row = table1.newRow();
+            setters1[0].invoke(row, fillAmount); // id
+            setters1[1].invoke(row, "name-x"); // name
+            setters1[2].invoke(row, 1); // num
+            table1.store(null, row);
+        }
+
+        assertEquals(fillAmount / 4 + 1, count(ix));
+
+        var query = table2.query("name == ? && num == 1");
+        assertTrue(query.scannerPlan(null, "name-x").toString().contains("secondary index"));
+        assertEquals(1, count(query, "name-x"));
+        assertEquals(fillAmount / 20, count(query, "name-1"));
+
+        db.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void parallelBackfill() throws Exception {
+        Database db = Database.open(new DatabaseConfig()
+                                    .maxCacheSize(100_000_000).maxBackfillThreads(4));
+
+        final String typeName = newRowTypeName();
+
+        final Object[] spec = {
+            long.class, "+id",
+            String.class, "name",
+            int.class, "num"
+        };
+
+        Class t1 = newRowType(typeName, spec);
+        var setters1 = access(spec, t1)[1];
+        var table1 = db.openIndex("test").asTable(t1);
+
+        // Large enough to be split into multiple ranges.
+        final int fillAmount = 50_000;
+
+        for (int i=0; i<fillAmount; i++) {
+            var row = table1.newRow();
+            setters1[0].invoke(row, i); // id
+            setters1[1].invoke(row, "name-" + (i % 1000)); // name
+            setters1[2].invoke(row, i); // num
+            table1.store(null, row);
+        }
+
+        // Define the table again, with a secondary index.
+
+        ClassMaker cm = newRowTypeMaker(typeName, spec);
+        cm.addAnnotation(SecondaryIndex.class, true).put("value", new String[] {"name", "num"});
+        Class t2 = cm.finish();
+        var table2 = (StoredTable) db.openIndex("test").asTable(t2);
+
+        Table ix = null;
+        for (int i=0; i<1000; i++) {
+            try {
+                ix = table2.viewSecondaryIndex("name", "num").viewUnjoined();
+                break;
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("not found"));
+            }
+            // Wait for backfill to finish.
+            sleep(100);
+        }
+
+        assertNotNull(ix);
+        assertEquals(fillAmount, count(ix));
+
+        var getters2 = access(spec, t2)[0];
+        try (var s = ix.newScanner(null)) {
+            String lastName = null;
+            int lastNum = -1;
+            for (var row = s.row(); row != null; row = s.step(row)) {
+                var name = (String) getters2[1].invoke(row);
+                var num = (int) getters2[2].invoke(row);
+                assertEquals("name-" + (num % 1000), name);
+                // Rows are ordered by name and then by num.
+                if (name.equals(lastName)) {
+                    assertTrue(num > lastNum);
+                } else {
+                    assertTrue(lastName == null || name.compareTo(lastName) > 0);
+                }
+                lastName = name;
+                lastNum = num;
+            }
+        }
+
+        db.close();
+    }
+
+    @PrimaryKey("id")
+    @SecondaryIndex(value="name", deferred=true)
+    @SecondaryIndex("num")
+    public interface TestRow5 {
+        long id();
+        void id(long id);
+
+        String name();
+        void name(String str);
+
+        int num();
+        void num(int num);
+    }
+
+    @Test
+    public void deferredIndex() throws Exception {
+        var config = new DatabaseConfig().durabilityMode(DurabilityMode.NO_FLUSH);
+        Database db = newTempDatabase(getClass(), config);
+        var table = (StoredTable<TestRow5>) db.openTable(TestRow5.class);
+
+        Transaction txn = db.newTransaction();
+        for (int i=0; i<1000; i++) {
+            store(table, txn, i, "name-" + i, i);
+        }
+
+        // Changes aren't applied until the transaction commits.
+        assertFalse(table.awaitIndexes(100, TimeUnit.MILLISECONDS));
+        txn.commit();
+        assertTrue(table.awaitIndexes(-1, null));
+
+        var ix = table.viewSecondaryIndex("name").viewUnjoined();
+        verifyDeferred(table, ix, 1000);
+
+        // Update and delete some rows.
+        for (int i=0; i<1000; i+=3) {
+            store(table, null, i, "renamed-" + i, i);
+        }
+        for (int i=1; i<1000; i+=3) {
+            TestRow5 row = table.newRow();
+            row.id(i);
+            table.delete(null, row);
+        }
+
+        assertTrue(table.awaitIndexes(10, TimeUnit.SECONDS));
+        verifyDeferred(table, ix, 1000 - 333);
+
+        var query = table.query("name == ?");
+        assertTrue(query.scannerPlan(null, "x").toString().contains("secondary index"));
+        assertEquals(1, count(query, "renamed-3"));
+        assertEquals(0, count(query, "name-3"));
+
+        // Queued changes are durable, and they're applied after the database is reopened.
+        for (int i=1000; i<2000; i++) {
+            store(table, null, i, "name-" + i, i);
+        }
+
+        db = reopenTempDatabase(getClass(), db, config);
+        table = (StoredTable<TestRow5>) db.openTable(TestRow5.class);
+        assertTrue(table.awaitIndexes(-1, null));
+
+        ix = table.viewSecondaryIndex("name").viewUnjoined();
+        verifyDeferred(table, ix, 2000 - 333);
+
+        db.close();
+    }
+
+    @Test
+    public void deferredIndexStale() throws Exception {
+        Database db = newTempDatabase(getClass());
+        var table = (StoredTable<TestRow5>) db.openTable(TestRow5.class);
+
+        for (int i=0; i<1000; i++) {
+            store(table, null, i, "a-" + i, i);
+        }
+        assertTrue(table.awaitIndexes(-1, null));
+
+        // Prepare the queries in advance, to run them as soon as possible.
+        var query = table.query("name == ?");
+        assertEquals(1, count(query, "a-0"));
+        var ix = table.viewSecondaryIndex("name");
+        assertEquals(1000, count(ix));
+
+        Transaction txn = db.newTransaction();
+        for (int i=0; i<1000; i++) {
+            store(table, txn, i, "b-" + i, i);
+        }
+        txn.commit();
+
+        // Query before the changes have been applied. New rows might not be found, but the
+        // old entries must not be found.
+        for (int i=0; i<1000; i+=10) {
+            assertEquals(0, count(query, "a-" + i));
+        }
+
+        var ids = new HashSet<Long>();
+        try (var s = ix.newScanner(null)) {
+            for (var row = s.row(); row != null; row = s.step(row)) {
+                assertTrue(row.name(), row.name().startsWith("b-"));
+                assertTrue(ids.add(row.id()));
+            }
+        }
+
+        assertTrue(table.awaitIndexes(-1, null));
+        verifyDeferred(table, ix.viewUnjoined(), 1000);
+
+        db.close();
+    }
+
+    @Test
+    public void deferredIndexIngest() throws Exception {
+        Database db = newTempDatabase(getClass());
+        var table = (StoredTable<TestRow5>) db.openTable(TestRow5.class);
+
+        // A steady stream of changes doesn't prevent the await from finishing, even though a
+        // change is always in progress.
+        var stop = new AtomicBoolean();
+        var writer = new Thread(() -> {
+            try {
+                Transaction txn = db.newTransaction();
+                for (long id = 0; !stop.get(); id++) {
+                    Transaction next = db.newTransaction();
+                    store(table, next, id, "name-" + id, 0);
+                    Thread.sleep(1);
+                    txn.commit();
+                    txn = next;
+                }
+                txn.commit();
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        writer.start();
+        try {
+            for (int i=0; i<10; i++) {
+                assertTrue(table.awaitIndexes(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+
+        assertTrue(table.awaitIndexes(-1, null));
+        verifyDeferred(table, table.viewSecondaryIndex("name").viewUnjoined(), count(table));
+
+        db.close();
+    }
+
+    private static void store(Table<TestRow5> table, Transaction txn,
+                              long id, String name, int num)
+        throws Exception
+    {
+        TestRow5 row = table.newRow();
+        row.id(id);
+        row.name(name);
+        row.num(num);
+        table.store(txn, row);
+    }
+
+    /**
+     * Verifies that the deferred index exactly matches the primary table.
+     */
+    private static void verifyDeferred(Table<TestRow5> table, Table<TestRow5> ix, long expect)
+        throws Exception
+    {
+        assertEquals(expect, count(table));
+        assertEquals(expect, count(ix));
+
+        try (var s = ix.newScanner(null)) {
+            for (var row = s.row(); row != null; row = s.step(row)) {
+                TestRow5 primary = table.newRow();
+                primary.id(row.id());
+                assertTrue(table.tryLoad(null, primary));
+                assertEquals(primary.name(), row.name());
+            }
+        }
+    }
+
+    @PrimaryKey("id")
+    @SecondaryIndex("emailLower")
+    public interface TestRow6 {
+        long id();
+        void id(long id);
+
+        @Nullable
+        String email();
+        void email(String email);
+
+        @Computed("lower(email)") @Nullable
+        String emailLower();
+        void emailLower(String str);
+
+        int num();
+        void num(int num);
+
+        @Computed("num % 10")
+        int numMod();
+        void numMod(int num);
+    }
+
+    @Test
+    public void computedIndex() throws Exception {
+        Database db = newTempDatabase(getClass());
+        var table = (StoredTable<TestRow6>) db.openTable(TestRow6.class);
+
+        for (int i=0; i<100; i++) {
+            TestRow6 row = table.newRow();
+            row.id(i);
+            row.email("User" + i + "@Example.com");
+            row.num(i);
+            assertEquals("user" + i + "@example.com", row.emailLower());
+            assertEquals(i % 10, row.numMod());
+            table.insert(null, row);
+        }
+
+        var query = table.query("lower(email) == ?");
+        assertTrue(query.scannerPlan(null, "x").toString().contains("secondary index"));
+        assertEquals(1, count(query, "user5@example.com"));
+        assertEquals(0, count(query, "User5@Example.com"));
+
+        var query2 = table.query("{id} lower(email) >= ? && lower(email) < ?");
+        assertTrue(query2.scannerPlan(null, "a", "b").toString().contains("secondary index"));
+        assertEquals(11, count(query2, "user1", "user2"));
+
+        // Only the exact expression is replaced.
+        var query3 = table.query("upper(email) == ?");
+        assertFalse(query3.scannerPlan(null, "x").toString().contains("secondary index"));
+        assertEquals(1, count(query3, "USER5@EXAMPLE.COM"));
+
+        assertEquals(10, count(table.query("num % 10 == ?"), 3));
+
+        // Update the source column of a partially set row.
+        {
+            TestRow6 row = table.newRow();
+            row.id(5);
+            row.email("Other@Example.com");
+            table.update(null, row);
+        }
+
+        assertEquals(0, count(query, "user5@example.com"));
+        assertEquals(1, count(query, "other@example.com"));
+
+        try (var updater = table.newUpdater(null, "id == ?", 6)) {
+            TestRow6 row = updater.row();
+            row.email(null);
+            assertNull(row.emailLower());
+            updater.update();
+        }
+
+        assertEquals(0, count(query, "user6@example.com"));
+        assertEquals(1, count(table.query("emailLower == ?"), (Object) null));
+
+        try (var s = table.viewSecondaryIndex("emailLower").viewUnjoined().newScanner(null)) {
+            long total = 0;
+            for (var row = s.row(); row != null; row = s.step(row)) {
+                TestRow6 primary = table.newRow();
+                primary.id(row.id());
+                table.load(null, primary);
+                if (primary.email() == null) {
+                    assertNull(row.emailLower());
+                } else {
+                    assertEquals(primary.email().toLowerCase(), row.emailLower());
+                }
+                total++;
+            }
+            assertEquals(100, total);
+        }
+
+        db.close();
+    }
+
+    @PrimaryKey("id")
+    public interface BadComputed1 {
+        long id();
+        void id(long id);
+
+        String a();
+        void a(String a);
+
+        @Computed("lower(a) + b")
+        String b();
+        void b(String b);
+    }
+
+    @PrimaryKey("id")
+    public interface BadComputed2 {
+        @Computed("-num")
+        long id();
+        void id(long id);
+
+        int num();
+        void num(int num);
+    }
+
+    @PrimaryKey("id")
+    public interface BadComputed3 {
+        long id();
+        void id(long id);
+
+        @Nullable
+        String a();
+        void a(String a);
+
+        @Computed("lower(a)")
+        String b();
+        void b(String b);
+    }
+
+    @PrimaryKey("id")
+    public interface TestRow7a {
+        long id();
+        void id(long id);
+
+        String email();
+        void email(String email);
+    }
+
+    @PrimaryKey("id")
+    @SecondaryIndex("emailLower")
+    public interface TestRow7b {
+        long id();
+        void id(long id);
+
+        String email();
+        void email(String email);
+
+        @Computed("lower(email)")
+        String emailLower();
+        void emailLower(String str);
+    }
+
+    @Test
+    public void computedEvolve() throws Exception {
+        // Computed columns which are added to an existing table are backfilled, and queries
+        // only reference the computed column once the backfill has finished.
+
+        var config = new DatabaseConfig().durabilityMode(DurabilityMode.NO_FLUSH);
+        Database db = newTempDatabase(getClass(), config);
+
+        var table1 = db.openIndex("test").asTable(TestRow7a.class);
+
+        for (int i=0; i<5000; i++) {
+            TestRow7a row = table1.newRow();
+            row.id(i);
+            row.email("User" + i + "@Example.com");
+            table1.insert(null, row);
+        }
+
+        // Reopen, ensuring that no table instance with the older definition exists.
+        db = reopenTempDatabase(getClass(), db, config);
+
+        var table2 = db.openIndex("test").asTable(TestRow7b.class);
+        var query = table2.query("lower(email) == ?");
+
+        // Results are always correct, even while the backfill is running.
+        assertEquals(1, count(query, "user5@example.com"));
+
+        for (int i=0; !table2.query("lower(email) == ?").scannerPlan(null, "x").toString()
+                 .contains("secondary index"); )
+        {
+            if (++i >= 100) {
+                fail("backfill didn't finish");
+            }
+            Thread.sleep(100);
+        }
+
+        assertEquals(1, count(query, "user5@example.com"));
+        assertEquals(1, count(query, "user4999@example.com"));
+        assertEquals(0, count(query, "User5@Example.com"));
+        assertEquals(1, count(table2.query("emailLower == ?"), "user1234@example.com"));
+
+        // Opening the table with the older definition removes the backfilled state, because
+        // the older definition doesn't maintain the computed column.
+        var table3 = db.openIndex("test").asTable(TestRow7a.class);
+        TestRow7a row = table3.newRow();
+        row.id(5000);
+        row.email("New@Example.com");
+        table3.insert(null, row);
+
+        query = table2.query("lower(email) == ?");
+        assertFalse(query.scannerPlan(null, "x").toString().contains("secondary index"));
+        assertEquals(1, count(query, "new@example.com"));
+
+        db.close();
+    }
+
+    @Test
+    public void computedMalformed() throws Exception {
+        Database db = newTempDatabase(getClass());
+
+        try {
+            db.openTable(BadComputed1.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("exactly one column"));
+        }
+
+        try {
+            db.openTable(BadComputed2.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("cannot be computed"));
+        }
+
+        try {
+            db.openTable(BadComputed3.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("must be nullable"));
+        }
+
+        db.close();
+    }
+
+    @PrimaryKey("id")
+    @SecondaryIndex("name")
+    @SecondaryIndex({"num", "id"})
+    @AlternateKey("code")
+    public interface TestRow7 {
+        long id();
+        void id(long id);
+
+        String name();
+        void name(String str);
+
+        int num();
+        void num(int num);
+
+        String code();
+        void code(String code);
+    }
+
+    @Test
+    public void batchUpdater() throws Exception {
+        Database db = newTempDatabase(getClass());
+        var table = (StoredTable<TestRow7>) db.openTable(TestRow7.class);
+
+        final int count = 25_000;
+
+        for (int i=0; i<count; i++) {
+            TestRow7 row = table.newRow();
+            row.id(i);
+            row.name("name-" + i);
+            row.num(count - i);
+            row.code("code-" + i);
+            table.insert(null, row);
+        }
+
+        // Update and delete rows within an explicit transaction, enough to apply the batch
+        // more than once.
+        Transaction txn = db.newTransaction();
+        try (var updater = table.query("id >= ?").newBatchUpdater(txn, 10)) {
+            for (var row = updater.row(); row != null; ) {
+                long id = row.id();
+                if (id % 5 == 0) {
+                    row = updater.delete(row);
+                } else {
+                    row.name("renamed-" + id);
+                    row.num((int) -id);
+                    if (id % 7 == 0) {
+                        row.code("recoded-" + id);
+                    }
+                    row = updater.update(row);
+                }
+            }
+        }
+        txn.commit();
+
+        int expect = count - ((count - 10) / 5);
+        verifyBatch(table, expect);
+
+        var query = table.query("name == ?");
+        assertTrue(query.scannerPlan(null, "x").toString().contains("secondary index"));
+        assertEquals(1, count(query, "renamed-11"));
+        assertEquals(0, count(query, "name-11"));
+        assertEquals(1, count(query, "name-9"));
+        assertEquals(1, count(table.query("code == ?"), "recoded-14"));
+
+        // Auto-commit mode commits each time the batch is applied, and so the rows which were
+        // updated first aren't locked by the time the updater finishes.
+        try (var updater = table.query("num < ?").newBatchUpdater(null, 0)) {
+            TestRow7 first = null;
+            int n = 0;
+            for (var row = updater.row(); row != null; ) {
+                if (first == null) {
+                    first = table.newRow();
+                    first.id(row.id());
+                }
+                if (++n == 15_000) {
+                    table.load(null, first);
+                    assertEquals(-first.id() - 1_000_000, first.num());
+                }
+                row.num(row.num() - 1_000_000);
+                row = updater.update(row);
+            }
+            assertTrue(n > 15_000);
+        }
+
+        verifyBatch(table, expect);
+        assertEquals(expect - 10, count(table.query("num < ?"), -1_000_000));
+
+        // An alternate key conflict stops the updater, but the changes made by the earlier
+        // rows are still committed, along with their secondary index changes.
+        try (var updater = table.query("id >= ? && id < ?").newBatchUpdater(null, 1, 10)) {
+            for (var row = updater.row(); row != null; ) {
+                row.name("conflict-" + row.id());
+                if (row.id() == 4) {
+                    row.code("code-9");
+                }
+                row = updater.update(row);
+            }
+            fail();
+        } catch (UniqueConstraintException e) {
+        }
+
+        verifyBatch(table, expect);
+        assertEquals(3, count(table.query("name >= ? && name < ?"), "conflict-", "conflict."));
+
+        // A rolled back transaction discards everything.
+        txn = db.newTransaction();
+        try (var updater = table.query("id >= ?").newBatchUpdater(txn, 0)) {
+            for (var row = updater.row(); row != null; ) {
+                row = updater.delete(row);
+            }
+        }
+        assertNull(table.newScanner(txn).row());
+        txn.exit();
+
+        verifyBatch(table, expect);
+
+        // Committing the transaction applies the batch, even if the updater hasn't finished.
+        // Queries within the transaction observe the batched secondary index changes.
+        txn = db.newTransaction();
+        var updater = table.query("id >= ?").newBatchUpdater(txn, 0);
+        for (int i=0; i<100; i++) {
+            TestRow7 row = updater.row();
+            row.name("pending-" + row.id());
+            updater.update(row);
+        }
+        var pending = table.query("name >= ? && name < ?");
+        try (var scanner = pending.newScanner(txn, "pending-", "pending.")) {
+            int n = 0;
+            for (var row = scanner.row(); row != null; row = scanner.step(row)) {
+                n++;
+            }
+            assertEquals(100, n);
+        }
+        txn.commit();
+        verifyBatch(table, expect);
+        assertEquals(100, count(pending, "pending-", "pending."));
+        updater.close();
+        verifyBatch(table, expect);
+
+        // Exiting the transaction discards the batch, even if the updater hasn't finished.
+        txn = db.newTransaction();
+        updater = table.query("id >= ?").newBatchUpdater(txn, 0);
+        for (int i=0; i<100; i++) {
+            updater.delete();
+        }
+        txn.exit();
+        updater.close();
+        verifyBatch(table, expect);
+
+        db.close();
+    }
+
+    /**
+     * Verifies that the secondary indexes exactly match the primary table.
+     */
+    private static void verifyBatch(StoredTable<TestRow7> table, long expect) throws Exception {
+        assertEquals(expect, count(table));
+
+        String[][] specs = {{"name"}, {"num", "id"}, {"code"}};
+
+        for (String[] spec : specs) {
+            Table<TestRow7> ix = spec[0].equals("code")
+                ? table.viewAlternateKey(spec).viewUnjoined()
+                : table.viewSecondaryIndex(spec).viewUnjoined();
+            assertEquals(expect, count(ix));
+            try (var s = ix.newScanner(null)) {
+                for (var row = s.row(); row != null; row = s.step(row)) {
+                    TestRow7 primary = table.newRow();
+                    primary.id(row.id());
+                    assertTrue(table.tryLoad(null, primary));
+                    switch (spec[0]) {
+                        case "name" -> assertEquals(primary.name(), row.name());
+                        case "num" -> assertEquals(primary.num(), row.num());
+                        default -> assertEquals(primary.code(), row.code());
+                    }
+                }
+            }
+        }
+    }
+
+    @PrimaryKey("id")
+    @SecondaryIndex("created")
+    @SecondaryIndex("name")
+    public interface TestRow8 {
+        long id();
+        void id(long id);
+
+        @TimeToLive(value=1, unit=TimeUnit.HOURS)
+        long created();
+        void created(long created);
+
+        String name();
+        void name(String str);
+    }
+
+    @Test
+    public void expiration() throws Exception {
+        var config = new DatabaseConfig().durabilityMode(DurabilityMode.NO_FLUSH);
+        Database db = newTempDatabase(getClass(), config);
+        var table = db.openTable(TestRow8.class);
+
+        // Insert enough expired rows to require several batches.
+        long now = System.currentTimeMillis();
+        long hour = 60L * 60 * 1000;
+
+        for (int i=0; i<3000; i++) {
+            TestRow8 row = table.newRow();
+            row.id(i);
+            row.created(i % 3 == 0 ? now : (now - hour - i));
+            row.name("name-" + i);
+            table.insert(null, row);
+        }
+
+        // The first pass runs when the table is opened.
+        db = reopenTempDatabase(getClass(), db, config);
+        var stable = (StoredTable<TestRow8>) db.openTable(TestRow8.class);
+
+        for (int i=0; i<1000; i++) {
+            if (count(stable) == 1000) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+
+        assertEquals(1000, count(stable));
+
+        try (var s = stable.newScanner(null)) {
+            for (var row = s.row(); row != null; row = s.step(row)) {
+                assertEquals(0, row.id() % 3);
+                assertEquals(now, row.created());
+            }
+        }
+
+        for (String column : new String[] {"created", "name"}) {
+            Table<TestRow8> ix = stable.viewSecondaryIndex(column).viewUnjoined();
+            assertEquals(1000, count(ix));
+        }
+
+        db.close();
+    }
+
+    @Test
+    public void expirationLocked() throws Exception {
+        var config = new DatabaseConfig().durabilityMode(DurabilityMode.NO_FLUSH);
+        Database db = newTempDatabase(getClass(), config);
+        var table = db.openTable(TestRow8.class);
+
+        long now = System.currentTimeMillis();
+        long hour = 60L * 60 * 1000;
+
+        for (int i=0; i<100; i++) {
+            TestRow8 row = table.newRow();
+            row.id(i);
+            // The last row is the oldest.
+            row.created(now - hour - i);
+            row.name("name-" + i);
+            table.insert(null, row);
+        }
+
+        db = reopenTempDatabase(getClass(), db, config);
+
+        // Lock the oldest row before the table is opened, which starts the first pass.
+        Index primary = db.openIndex(TestRow8.class.getName());
+        var key = new byte[8];
+        RowUtils.encodeLongBE(key, 0, 99L ^ (1L << 63));
+        assertNotNull(primary.load(null, key));
+        Transaction txn = db.newTransaction();
+        txn.lockUpgradable(primary.id(), key);
+
+        var stable = (StoredTable<TestRow8>) db.openTable(TestRow8.class);
+
+        // The locked row is skipped, and the rest are deleted.
+        for (int i=0; i<1000; i++) {
+            if (count(stable) == 1) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, count(stable));
+
+        TestRow8 row = stable.newRow();
+        row.id(99);
+        assertTrue(stable.tryLoad(null, row));
+
+        txn.reset();
+        db.close();
+    }
+
+    @PrimaryKey("id")
+    public interface BadExpiration1 {
+        long id();
+        void id(long id);
+
+        @TimeToLive(1000)
+        long created();
+        void created(long created);
+    }
+
+    @PrimaryKey("id")
+    @SecondaryIndex("created")
+    public interface BadExpiration2 {
+        long id();
+        void id(long id);
+
+        @TimeToLive(1000)
+        String created();
+        void created(String created);
+    }
+
+    @PrimaryKey("id")
+    @SecondaryIndex("created")
+    public interface BadExpiration3 {
+        long id();
+        void id(long id);
+
+        @TimeToLive(0)
+        long created();
+        void created(long created);
+    }
+
+    @Test
+    public void expirationMalformed() throws Exception {
+        Database db = newTempDatabase(getClass());
+
+        try {
+            db.openTable(BadExpiration1.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("complete secondary index"));
+        }
+
+        try {
+            db.openTable(BadExpiration2.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("cannot have a time-to-live"));
+        }
+
+        try {
+            db.openTable(BadExpiration3.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("illegal time-to-live"));
+        }
+
+        db.close();
+    }
 }
@@ -263,6 +263,12 @@ public class MappedTest {
             assertNull(scanner.step());
         }
 
+        try (var scanner = mapped.newScanner(null, "{-str, id} limit 1 offset ?", 1)) {
+            row = scanner.row();
+            assertEquals("{id=2, str=123}", row.toString());
+            assertNull(scanner.step());
+        }
+
         mapped.close();
         assertFalse(mapped.isClosed());
     }
@@ -0,0 +1,377 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.table;
+
+import java.math.BigDecimal;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import org.cojen.tupl.*;
+
+import static org.cojen.tupl.TestUtils.*;
+
+/**
+ *
+ *
+ * @author Brian S O'Neill
+ */
+public class MaterializedTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(MaterializedTest.class.getName());
+    }
+
+    @After
+    public void teardown() throws Exception {
+        deleteTempDatabases(getClass());
+    }
+
+    @PrimaryKey("id")
+    @SecondaryIndex("dept")
+    public interface Emp {
+        long id();
+        void id(long id);
+
+        String dept();
+        void dept(String dept);
+
+        long salary();
+        void salary(long salary);
+
+        @Nullable
+        Integer bonus();
+        void bonus(Integer bonus);
+    }
+
+    @PrimaryKey("dept")
+    public interface DeptStats {
+        String dept();
+        void dept(String dept);
+
+        @Aggregate(Aggregate.Type.COUNT)
+        long count();
+        void count(long count);
+
+        @Aggregate(value=Aggregate.Type.SUM, column="salary")
+        long total();
+        void total(long total);
+
+        @Aggregate(value=Aggregate.Type.MIN, column="salary")
+        @Nullable
+        Long low();
+        void low(Long low);
+
+        @Aggregate(value=Aggregate.Type.MAX, column="salary")
+        @Nullable
+        Long high();
+        void high(Long high);
+
+        @Aggregate(value=Aggregate.Type.SUM, column="bonus")
+        BigDecimal bonuses();
+        void bonuses(BigDecimal bonuses);
+
+        @Aggregate(value=Aggregate.Type.MAX, column="bonus")
+        @Nullable
+        Integer topBonus();
+        void topBonus(Integer topBonus);
+    }
+
+    @Test
+    public void basic() throws Exception {
+        Database db = Database.open(new DatabaseConfig());
+        Table<Emp> emps = db.openTable(Emp.class);
+        Table<DeptStats> stats = emps.materialize(db.openIndex("stats"), DeptStats.class);
+
+        assertSame(stats, emps.materialize(db.openIndex("stats"), DeptStats.class));
+        assertTrue(stats.isEmpty());
+
+        store(emps, 1, "a", 100, null);
+        store(emps, 2, "a", 300, 10);
+        store(emps, 3, "b", 50, 5);
+
+        verify(stats, "a", 2, 400, 100L, 300L, 10, 10);
+        verify(stats, "b", 1, 50, 50L, 50L, 5, 5);
+
+        // Update within the same group, removing the maximum.
+        store(emps, 2, "a", 200, 20);
+        verify(stats, "a", 2, 300, 100L, 200L, 20, 20);
+
+        // Move to a different group, removing the minimum.
+        Emp row = emps.newRow();
+        row.id(1);
+        emps.load(null, row);
+        row.dept("b");
+        emps.update(null, row);
+        verify(stats, "a", 1, 200, 200L, 200L, 20, 20);
+        verify(stats, "b", 2, 150, 50L, 100L, 5, 5);
+
+        // Empty groups are deleted.
+        row = emps.newRow();
+        row.id(2);
+        emps.delete(null, row);
+        DeptStats s = stats.newRow();
+        s.dept("a");
+        assertFalse(stats.tryLoad(null, s));
+
+        // Rollback also reverts the materialized rows.
+        Transaction txn = db.newTransaction();
+        store(emps, txn, 4, "b", 1000, 100);
+        verify(stats, txn, "b", 3, 1150, 50L, 1000L, 105, 100);
+        txn.reset();
+        verify(stats, "b", 2, 150, 50L, 100L, 5, 5);
+
+        db.close();
+    }
+
+    @Test
+    public void rebuild() throws Exception {
+        var config = new DatabaseConfig().durabilityMode(DurabilityMode.NO_FLUSH);
+        Database db = newTempDatabase(getClass(), config);
+        Table<Emp> emps = db.openTable(Emp.class);
+
+        for (int i=0; i<100; i++) {
+            store(emps, i, "d" + (i % 3), i, i % 2 == 0 ? null : i);
+        }
+
+        Table<DeptStats> stats = emps.materialize(db.openIndex("stats"), DeptStats.class);
+        verify(stats, "d0", 34, 1683, 0L, 99L, 867, 99);
+        verify(stats, "d1", 33, 1617, 1L, 97L, 833, 97);
+
+        db = reopenTempDatabase(getClass(), db, config);
+        emps = db.openTable(Emp.class);
+
+        // The materialization is persisted, and so changes are tracked before materializing
+        // again.
+        Emp row = emps.newRow();
+        row.id(0);
+        emps.delete(null, row);
+
+        stats = db.openIndex("stats").asTable(DeptStats.class);
+        verify(stats, "d0", 33, 1683, 3L, 99L, 867, 99);
+
+        assertSame(stats, emps.materialize(db.openIndex("stats"), DeptStats.class));
+        verify(stats, "d0", 33, 1683, 3L, 99L, 867, 99);
+        assertEquals(3, count(stats));
+
+        db.close();
+    }
+
+    @Test
+    public void concurrentBuild() throws Exception {
+        Database db = Database.open(new DatabaseConfig());
+        Table<Emp> emps = db.openTable(Emp.class);
+
+        final int count = 10_000;
+        for (int i=0; i<count; i++) {
+            store(emps, i, "d" + (i % 7), i, null);
+        }
+
+        // Modify the rows while the build scans them in batches.
+        var started = new java.util.concurrent.CountDownLatch(1);
+        var done = new java.util.concurrent.atomic.AtomicBoolean();
+        var failure = new java.util.concurrent.atomic.AtomicReference<Throwable>();
+
+        var writer = new Thread(() -> {
+            try {
+                var rnd = new java.util.Random(8675309);
+                for (int i=0; !done.get(); i++) {
+                    long id = rnd.nextInt(count * 2);
+                    if (rnd.nextInt(4) == 0) {
+                        Emp row = emps.newRow();
+                        row.id(id);
+                        emps.tryDelete(null, row);
+                    } else {
+                        store(emps, id, "d" + rnd.nextInt(7), rnd.nextInt(1000), null);
+                    }
+                    if (i == 100) {
+                        started.countDown();
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+                started.countDown();
+            }
+        });
+
+        writer.start();
+        started.await();
+        Table<DeptStats> stats = emps.materialize(db.openIndex("stats"), DeptStats.class);
+        done.set(true);
+        writer.join();
+        assertNull(failure.get());
+
+        long total = 0;
+        for (int i=0; i<7; i++) {
+            String dept = "d" + i;
+            long expectCount = 0, expectTotal = 0;
+            try (var s = emps.newScanner(null, "dept == ?", dept)) {
+                for (Emp row = s.row(); row != null; row = s.step(row)) {
+                    expectCount++;
+                    expectTotal += row.salary();
+                }
+            }
+            DeptStats row = stats.newRow();
+            row.dept(dept);
+            assertTrue(stats.tryLoad(null, row));
+            assertEquals(expectCount, row.count());
+            assertEquals(expectTotal, row.total());
+            total += expectCount;
+        }
+
+        assertEquals(count(emps), total);
+
+        db.close();
+    }
+
+    @PrimaryKey("name")
+    public interface NoCount {
+        String name();
+        void name(String name);
+
+        @Aggregate(value=Aggregate.Type.SUM, column="salary")
+        long total();
+        void total(long total);
+    }
+
+    @PrimaryKey("dept")
+    public interface Plain {
+        String dept();
+        void dept(String dept);
+
+        @Aggregate(Aggregate.Type.COUNT)
+        long count();
+        void count(long count);
+
+        long extra();
+        void extra(long extra);
+    }
+
+    @PrimaryKey("dept")
+    public interface BadMin {
+        String dept();
+        void dept(String dept);
+
+        @Aggregate(Aggregate.Type.COUNT)
+        int count();
+        void count(int count);
+
+        @Aggregate(value=Aggregate.Type.MIN, column="bonus")
+        @Nullable
+        Long low();
+        void low(Long low);
+    }
+
+    @Test
+    public void malformed() throws Exception {
+        Database db = Database.open(new DatabaseConfig());
+        Table<Emp> emps = db.openTable(Emp.class);
+
+        try {
+            emps.materialize(db.openIndex("x1"), NoCount.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("name"));
+        }
+
+        try {
+            emps.materialize(db.openIndex("x2"), Plain.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("extra"));
+        }
+
+        try {
+            emps.materialize(db.openIndex("x3"), BadMin.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("low"));
+        }
+
+        try {
+            emps.materialize(db.openIndex(Emp.class.getName()), DeptStats.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        emps.materialize(db.openIndex("x"), DeptStats.class);
+
+        try {
+            emps.materialize(db.openIndex("x"), Plain.class);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+
+        // Failed attempts didn't leave anything behind.
+        store(emps, 1, "a", 10, null);
+        verify(emps.materialize(db.openIndex("x"), DeptStats.class),
+               "a", 1, 10, 10L, 10L, 0, null);
+
+        db.close();
+    }
+
+    private static void store(Table<Emp> emps, long id, String dept, long salary, Integer bonus)
+        throws Exception
+    {
+        store(emps, null, id, dept, salary, bonus);
+    }
+
+    private static void store(Table<Emp> emps, Transaction txn,
+                              long id, String dept, long salary, Integer bonus)
+        throws Exception
+    {
+        Emp row = emps.newRow();
+        row.id(id);
+        row.dept(dept);
+        row.salary(salary);
+        row.bonus(bonus);
+        emps.store(txn, row);
+    }
+
+    private static void verify(Table<DeptStats> stats, String dept, long count, long total,
+                               Long low, Long high, int bonuses, Integer topBonus)
+        throws Exception
+    {
+        verify(stats, null, dept, count, total, low, high, bonuses, topBonus);
+    }
+
+    private static void verify(Table<DeptStats> stats, Transaction txn,
+                               String dept, long count, long total,
+                               Long low, Long high, int bonuses, Integer topBonus)
+        throws Exception
+    {
+        DeptStats row = stats.newRow();
+        row.dept(dept);
+        assertTrue(stats.tryLoad(txn, row));
+        assertEquals(count, row.count());
+        assertEquals(total, row.total());
+        assertEquals(low, row.low());
+        assertEquals(high, row.high());
+        assertEquals(BigDecimal.valueOf(bonuses), row.bonuses());
+        assertEquals(topBonus, row.topBonus());
+    }
+
+    private static long count(Table<?> table) throws Exception {
+        long count = 0;
+        try (var s = table.newScanner(null)) {
+            for (var row = s.row(); row != null; row = s.step()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -904,6 +904,56 @@ public class QueryPlanTest {
                      plan);
     }
 
+    @Test
+    public void coveringInclude() throws Exception {
+        // Included columns are stored in the secondary index value, and so no join is needed.
+
+        var table = mDatabase.openTable(TestRow3.class);
+
+        QueryPlan plan = table.query("{id, b, c} b == ?").scannerPlan(null);
+        comparePlans(new QueryPlan.RangeScan
+                     (TestRow3.class.getName(), "secondary index",
+                      new String[] {"+b", "+id"}, false, "b >= ?1", "b <= ?1"),
+                     plan);
+
+        // Column d isn't included, and so a join is required.
+        plan = table.query("{id, b, d} b == ?").scannerPlan(null);
+        comparePlans(new QueryPlan.PrimaryJoin
+                     (TestRow3.class.getName(), new String[] {"+id"},
+                      new QueryPlan.RangeScan
+                      (TestRow3.class.getName(), "secondary index",
+                       new String[] {"+b", "+id"}, false, "b >= ?1", "b <= ?1")),
+                     plan);
+
+        for (int i=0; i<10; i++) {
+            var row = table.newRow();
+            row.id(i);
+            row.b("b" + (i % 3));
+            row.c("c" + i);
+            row.d("d" + i);
+            table.insert(null, row);
+        }
+
+        // Update an included column, which must also update the secondary index.
+        {
+            var row = table.newRow();
+            row.id(4);
+            row.c("updated");
+            table.update(null, row);
+        }
+
+        var query = table.query("{id, b, c} b == ?");
+        int count = 0;
+        try (var scanner = query.newScanner(null, "b1")) {
+            for (var row = scanner.row(); row != null; row = scanner.step(row)) {
+                assertEquals("b1", row.b());
+                assertEquals(row.id() == 4 ? "updated" : ("c" + row.id()), row.c());
+                count++;
+            }
+        }
+        assertEquals(3, count);
+    }
+
     @Test
     public void reverseScanOverSecondaryIndex() throws Exception {
         // Even though no ordering is specified, a reverse scan over a secondary index is
@@ -1045,4 +1095,20 @@ public class QueryPlanTest {
         Long c();
         void c(Long c);
     }
+
+    @PrimaryKey("id")
+    @SecondaryIndex(value="b", include="c")
+    public interface TestRow3 {
+        long id();
+        void id(long id);
+
+        String b();
+        void b(String b);
+
+        String c();
+        void c(String c);
+
+        String d();
+        void d(String d);
+    }
 }
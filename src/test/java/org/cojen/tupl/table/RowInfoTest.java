@@ -310,4 +310,63 @@ public class RowInfoTest {
         String e();
         void e(String e);
     }
+
+    @Test
+    public void includeColumns() throws Exception {
+        RowInfo info = RowInfo.find(Test201.class);
+
+        var set = info.secondaryIndexes;
+        assertEquals(2, set.size());
+
+        ColumnSet cs = set.first();
+        if (cs.valueColumns.isEmpty()) {
+            cs = set.last();
+        }
+
+        assertEquals(3, cs.keyColumns.size());
+        assertEquals(2, cs.valueColumns.size());
+        assertTrue(cs.valueColumns.containsKey("d"));
+        assertTrue(cs.valueColumns.containsKey("e"));
+        assertEquals(5, cs.allColumns.size());
+
+        try {
+            RowInfo.find(Test202.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("doesn't exist: x"));
+        }
+    }
+
+    @PrimaryKey({"+a", "-b"})
+    @SecondaryIndex({"c", "-a", "+b"})
+    @SecondaryIndex(value="c", include={"d", "e", "a"})
+    public interface Test201 extends Test200 {
+    }
+
+    @PrimaryKey("a")
+    @SecondaryIndex(value="c", include="x")
+    public interface Test202 extends Test200 {
+    }
+
+    @Test
+    public void partialIndexFilter() throws Exception {
+        RowInfo info = RowInfo.find(Test203.class);
+
+        // Same columns, but the filters differ, and so both indexes are defined.
+        var set = info.secondaryIndexes;
+        assertEquals(2, set.size());
+
+        ColumnSet cs1 = set.first();
+        ColumnSet cs2 = set.last();
+        assertNull(cs1.filter);
+        assertEquals("d == \"x\"", cs2.filter);
+        assertFalse(cs1.matches(cs2));
+        assertTrue(cs2.toString().contains("filter"));
+    }
+
+    @PrimaryKey("a")
+    @SecondaryIndex("c")
+    @SecondaryIndex(value="c", filter=" d == \"x\" ")
+    public interface Test203 extends Test200 {
+    }
 }
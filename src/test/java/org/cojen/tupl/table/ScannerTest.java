@@ -90,6 +90,29 @@ public class ScannerTest {
         }
     }
 
+    @Test
+    public void slice() throws Exception {
+        var table = mDb.openTable(TestRow.class);
+        fill(table, 1, 10);
+
+        verify(table.newScanner(null, "{} limit 3"), 1, 3);
+        verify(table.newScanner(null, "{id} limit 3 offset 2"), 3, 5, "id");
+        verify(table.newScanner(null, "{name} id > ? limit ?", 4, 2), 5, 6, "name");
+        verify(table.newScanner(null, "offset ?", 8), 9, 10, "id", "name", "path", "state");
+        verify(table.newScanner(null, "{state} limit 0"), 1, 0, "state");
+        verify(table.newScanner(null, "{+state, id} offset 9"), 10, 10, "id", "state");
+
+        assertEquals(2, table.query("{} limit ? offset ?").deleteAll(null, 2, 3));
+        verify(table.newScanner(null, "{id} offset 5"), 8, 10, "id");
+
+        try {
+            table.newScanner(null, "{} limit ?", "x");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("must be a number"));
+        }
+    }
+
     @Test
     public void timeout() throws Exception {
         Table<TestRow> table = mDb.openTable(TestRow.class);
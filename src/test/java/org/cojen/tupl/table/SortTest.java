@@ -176,6 +176,226 @@ public class SortTest {
         assertEquals(num, total);
     }
 
+    @Test
+    public void top() throws Exception {
+        Table<TestRow> table = mDb.openTable(TestRow.class);
+        var rnd = new Random(8675309);
+
+        var v2s = new int[10_000];
+        for (int i=0; i<v2s.length; i++) {
+            TestRow row = table.newRow();
+            row.v1((byte) rnd.nextInt());
+            row.v2(v2s[i] = rnd.nextInt());
+            table.insert(null, row);
+        }
+
+        java.util.Arrays.sort(v2s);
+
+        for (int limit : new int[] {0, 1, 2, 10, 100, 20_000}) {
+            Query<TestRow> query = table.query("{+v2, id}").limit(limit);
+
+            String plan = query.scannerPlan(null).toString();
+            assertTrue(plan, plan.contains("- top sort: +v2"));
+            assertTrue(plan, plan.contains("limit: " + limit));
+
+            int total = 0;
+            try (Scanner<TestRow> s = query.newScanner(null)) {
+                for (TestRow row = s.row(); row != null; row = s.step(row)) {
+                    assertEquals(v2s[total++], row.v2());
+                }
+            }
+
+            assertEquals(Math.min(limit, v2s.length), total);
+        }
+
+        // Limit the updater, which isn't a top-N sort.
+        Query<TestRow> query = table.query("{-v2, id}").limit(10);
+        String plan = query.updaterPlan(null).toString();
+        assertTrue(plan, plan.startsWith("- limit: 10"));
+
+        int total = 0;
+        try (Updater<TestRow> u = query.newUpdater(null)) {
+            for (TestRow row = u.row(); row != null; total++) {
+                assertEquals(v2s[v2s.length - 1 - total], row.v2());
+                row = u.delete(row);
+            }
+        }
+
+        assertEquals(10, total);
+        assertEquals(v2s.length - 10, table.query("{}").deleteAll(null));
+
+        try {
+            table.query("{+v2}").limit(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void limit() throws Exception {
+        Table<TestRow> table = mDb.openTable(TestRow.class);
+
+        for (int i=0; i<100; i++) {
+            TestRow row = table.newRow();
+            row.v1((byte) i);
+            row.v2(i);
+            table.insert(null, row);
+        }
+
+        // No sort is required, and so the limit is applied directly.
+        Query<TestRow> query = table.query("{+id, v2}").limit(5).limit(10);
+        String plan = query.scannerPlan(null).toString();
+        assertTrue(plan, plan.startsWith("- limit: 5"));
+
+        int total = 0;
+        int lastId = Integer.MIN_VALUE;
+        try (Scanner<TestRow> s = query.newScanner(null)) {
+            for (TestRow row = s.row(); row != null; row = s.step(row)) {
+                assertTrue(row.id() > lastId);
+                lastId = row.id();
+                total++;
+            }
+        }
+
+        assertEquals(5, total);
+    }
+
+    @Test
+    public void slice() throws Exception {
+        Table<TestRow> table = mDb.openTable(TestRow.class);
+
+        for (int i=0; i<100; i++) {
+            TestRow row = table.newRow();
+            row.v1((byte) i);
+            row.v2(99 - i);
+            table.insert(null, row);
+        }
+
+        Query<TestRow> query = table.query("{+v2, id} v2 >= ? limit 10 offset 5");
+        String plan = query.scannerPlan(null, 0).toString();
+        assertTrue(plan, plan.startsWith("- limit: 10\n  offset: 5\n"));
+        assertTrue(plan, plan.contains("- top sort: +v2"));
+        assertTrue(plan, plan.contains("limit: 15"));
+        verifySlice(query.newScanner(null, 0), 5, 10);
+        verifySlice(query.newScanner(null, 90), 95, 5);
+        verifySlice(query.newScanner(null, 100), 0, 0);
+
+        query = table.query("{+v2, id} limit ?2 offset ?1");
+        verifySlice(query.newScanner(null, 97, 1000), 97, 3);
+        verifySlice(query.newScanner(null, 0, 2), 0, 2);
+        verifySlice(query.newScanner(null, new Object[] {null, null}), 0, 100);
+        verifySlice(query.newScanner(null, 10, null), 10, 90);
+
+        try {
+            query.newScanner(null, 0, -1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("Negative limit"));
+        }
+
+        try {
+            query.newScanner(null, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        query = table.query("{+v2, id} offset 98");
+        verifySlice(query.newScanner(null), 98, 2);
+        verifySlice(query.newStream(null).iterator(), 98, 2);
+
+        query = table.query("limit 0");
+        verifySlice(query.newScanner(null), 0, 0);
+
+        // Not sorted, so only the limit and offset matter.
+        query = table.query("v2 < ? limit 10 offset ?");
+        int total = 0;
+        try (Scanner<TestRow> s = query.newScanner(null, 50, 45)) {
+            for (TestRow row = s.row(); row != null; row = s.step(row)) {
+                assertTrue(row.v2() < 50);
+                total++;
+            }
+        }
+        assertEquals(5, total);
+
+        assertEquals(10, table.query("{} v2 >= ? limit 10").deleteAll(null, 50));
+        assertEquals(90, table.query("{}").deleteAll(null));
+
+        try {
+            table.query("limit -1");
+            fail();
+        } catch (QueryException e) {
+        }
+
+        try {
+            ViewedTable.view(table, "limit 10");
+            fail();
+        } catch (QueryException e) {
+        }
+
+        try {
+            table.derive("{v2} limit 10");
+            fail();
+        } catch (QueryException e) {
+        }
+    }
+
+    @Test
+    public void disjointLimit() throws Exception {
+        Table<TestRow4> table = mDb.openTable(TestRow4.class);
+
+        for (int i=0; i<100; i++) {
+            TestRow4 row = table.newRow();
+            row.id(i);
+            row.v(i % 10);
+            table.insert(null, row);
+        }
+
+        Query<TestRow4> query = table.query("v == ? || id >= ? limit ?3 offset ?4");
+        String plan = query.scannerPlan(null, 5, 90, 20, 0).toString();
+        assertTrue(plan, plan.contains("disjoint union"));
+
+        // The limit is pushed into each of the disjoint scans.
+        plan = table.query("v == ? || id >= ?").limit(7).scannerPlan(null, 5, 90).toString();
+        assertTrue(plan, plan.startsWith("- limit: 7\n  - disjoint union"));
+        assertTrue(plan, plan.indexOf("limit: 7", 10) > 0);
+
+        // Expect 9 rows with v == 5 below id 90, and 10 rows with id >= 90.
+        assertEquals(19, count(query.newScanner(null, 5, 90, null, null)));
+        assertEquals(12, count(query.newScanner(null, 5, 90, 12, null)));
+        assertEquals(4, count(query.newScanner(null, 5, 90, 12, 15)));
+        assertEquals(0, count(query.newScanner(null, 5, 90, 0, null)));
+    }
+
+    private static int count(Scanner<?> s) throws Exception {
+        int total = 0;
+        try (s) {
+            for (Object row = s.row(); row != null; row = s.step()) {
+                total++;
+            }
+        }
+        return total;
+    }
+
+    private static void verifySlice(Scanner<TestRow> s, int start, int amount) throws Exception {
+        int total = 0;
+        try (s) {
+            for (TestRow row = s.row(); row != null; row = s.step(row)) {
+                assertEquals(start + total, row.v2());
+                total++;
+            }
+        }
+        assertEquals(amount, total);
+    }
+
+    private static void verifySlice(java.util.Iterator<TestRow> it, int start, int amount) {
+        int total = 0;
+        while (it.hasNext()) {
+            assertEquals(start + total, it.next().v2());
+            total++;
+        }
+        assertEquals(amount, total);
+    }
+
     @PrimaryKey("id")
     public static interface TestRow {
         @Automatic
@@ -358,4 +578,14 @@ public class SortTest {
         String name();
         void name(String name);
     }
+
+    @PrimaryKey("id")
+    @SecondaryIndex("v")
+    public static interface TestRow4 {
+        int id();
+        void id(int id);
+
+        int v();
+        void v(int v);
+    }
 }
@@ -233,6 +233,34 @@ public class FunctionTest {
                "{id=2, v=hello}", "{id=1, v=value-1}");
     }
 
+    @Test
+    public void lowerUpper() throws Exception {
+        try {
+            parse("{v = lower()}");
+            fail();
+        } catch (QueryException e) {
+            assertTrue(e.getMessage().contains("exactly 1 unnamed argument"));
+        }
+
+        try {
+            parse("{v = upper(5)}");
+            fail();
+        } catch (QueryException e) {
+            assertTrue(e.getMessage().contains("must be a string"));
+        }
+
+        verify("{v = lower('Hello')}", "{v=hello}");
+        verify("{v = upper('Hello')}", "{v=HELLO}");
+        verify("{v = lower(?)}", new Object[] {"WORLD"}, "{v=world}");
+        verify("{v = upper(null)}", "{v=null}");
+        verify("{a=1} lower('ABC') == 'abc'", "{a=1}");
+
+        Table<TestRow> table = fill(2);
+
+        verify(table, "{id, v = upper(value)}", "{id=1, v=VALUE-1}", "{id=2, v=null}");
+        verify(table, "{id} upper(name) == ?", new Object[] {"NAME-2"}, "{id=2}");
+    }
+
     @Test
     public void random() throws Exception {
         try {
@@ -0,0 +1,100 @@
+/*
+ *  Copyright (C) 2025 Cojen.org
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.cojen.tupl.util;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * 
+ *
+ * @author Brian S O'Neill
+ */
+public class ClutchTest {
+    public static void main(String[] args) throws Exception {
+        org.junit.runner.JUnitCore.main(ClutchTest.class.getName());
+    }
+
+    @Test
+    public void optimisticRead() throws Exception {
+        Clutch clutch = Clutch.make();
+
+        int stamp = clutch.tryOptimisticRead();
+        assertTrue(stamp >= 0);
+        assertTrue(clutch.validate(stamp));
+
+        // Shared access doesn't affect optimistic reads.
+        clutch.acquireShared();
+        assertEquals(stamp, clutch.tryOptimisticRead());
+        assertTrue(clutch.validate(stamp));
+        clutch.releaseShared();
+        assertTrue(clutch.validate(stamp));
+
+        clutch.acquireExclusive();
+        assertTrue(clutch.tryOptimisticRead() < 0);
+        assertFalse(clutch.validate(stamp));
+        clutch.releaseExclusive();
+
+        // Still invalid, even though the exclusive clutch was released.
+        assertFalse(clutch.validate(stamp));
+
+        stamp = clutch.tryOptimisticRead();
+        assertTrue(stamp >= 0);
+        assertTrue(clutch.validate(stamp));
+
+        assertTrue(clutch.tryAcquireExclusive());
+        clutch.releaseExclusive();
+        assertFalse(clutch.validate(stamp));
+
+        stamp = clutch.tryOptimisticRead();
+        clutch.acquireShared();
+        assertTrue(clutch.tryUpgrade());
+        clutch.releaseExclusive();
+        assertFalse(clutch.validate(stamp));
+
+        stamp = clutch.tryOptimisticRead();
+        var latch = new Latch(Latch.EXCLUSIVE);
+        clutch.uponExclusive(latch::releaseExclusive);
+        latch.acquireExclusive();
+        clutch.releaseExclusive();
+        assertFalse(clutch.validate(stamp));
+    }
+
+    @Test
+    public void optimisticReadContended() throws Exception {
+        Clutch clutch = Clutch.make();
+
+        // Switch to contended mode.
+        clutch.acquireExclusive();
+        int stamp = clutch.tryOptimisticRead();
+        assertTrue(stamp < 0);
+        clutch.releaseExclusive(true);
+
+        stamp = clutch.tryOptimisticRead();
+        assertTrue(stamp >= 0);
+
+        clutch.acquireShared();
+        assertTrue(clutch.validate(stamp));
+        clutch.releaseShared();
+
+        clutch.acquireExclusive();
+        assertFalse(clutch.isContended());
+        clutch.releaseExclusive();
+        assertFalse(clutch.validate(stamp));
+    }
+}